@@ -22,8 +22,8 @@ public class Main {
 		var bookRepository = context.getBean(BookRepository.class);
 
 		if (productRepository.count() == 0) {
-			var prod1 = Product.builder().name("Zumo multifrutas").price(1.33).quantity(1).active(true).build();
-			var prod2 = Product.builder().name("Granola").price(4.33).quantity(4).active(false).build();
+			var prod1 = Product.builder().name("Zumo multifrutas").price(Money.valueOf("1.33")).quantity(1).active(true).build();
+			var prod2 = Product.builder().name("Granola").price(Money.valueOf("4.33")).quantity(4).active(false).build();
 			productRepository.save(prod1);
 			productRepository.save(prod2);
 		}
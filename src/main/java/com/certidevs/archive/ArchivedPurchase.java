@@ -0,0 +1,40 @@
+package com.certidevs.archive;
+
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+
+import java.time.LocalDateTime;
+
+// Fila de una compra archivada: las columnas de purchase con el producto por id
+public record ArchivedPurchase(
+        long id,
+        String email,
+        Long productId,
+        int quantity,
+        Money totalPrice,
+        LocalDateTime purchaseDate) {
+
+    public static ArchivedPurchase from(Purchase purchase) {
+        return new ArchivedPurchase(purchase.getId(), purchase.getEmail(),
+                purchase.getProduct() != null ? purchase.getProduct().getId() : null,
+                purchase.getQuantity(), purchase.getTotalPrice(), purchase.getPurchaseDate());
+    }
+
+    // Posterior a la posición (fecha, id) de la paginación por clave
+    public boolean isAfter(LocalDateTime date, long afterId) {
+        int comparison = purchaseDate.compareTo(date);
+        return comparison > 0 || (comparison == 0 && id > afterId);
+    }
+
+    public Purchase toPurchase(Product product) {
+        return Purchase.builder()
+                .id(id)
+                .email(email)
+                .product(product)
+                .quantity(quantity)
+                .totalPrice(totalPrice)
+                .purchaseDate(purchaseDate)
+                .build();
+    }
+}
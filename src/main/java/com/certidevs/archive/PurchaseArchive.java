@@ -0,0 +1,227 @@
+package com.certidevs.archive;
+
+import com.certidevs.dto.PurchaseCursor;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+Archivo frío de compras: las particiones mensuales antiguas de purchase guardadas como segmentos
+comprimidos en disco (ver PurchaseSegment y PurchasePartitionManager).
+
+Todas las compras archivadas son anteriores a getArchivedBefore() y todas las de MySQL son posteriores,
+así que PurchaseService lee primero el archivo y después las particiones activas sin mezclar resultados.
+- Por fecha solo se descomprimen los segmentos que se solapan con el rango (poda como la de MySQL).
+- Por email se descartan los segmentos cuyo filtro de Bloom no contiene el email.
+- Por id se descartan los segmentos fuera de su [id mínimo, id máximo].
+Los segmentos descomprimidos se guardan en una caché LRU pequeña (cache-size segmentos).
+El archivo es de solo lectura: las compras archivadas no se pueden cancelar.
+ */
+@Slf4j
+@Component
+public class PurchaseArchive {
+
+    static final String PREFIX = "purchase-";
+    static final String SUFFIX = ".seg";
+
+    private final ProductRepository productRepository;
+    private final Path directory;
+    private final Map<Path, List<ArchivedPurchase>> cache;
+
+    private volatile List<PurchaseSegment> segments = List.of(); // Ordenados por límite superior
+
+    public PurchaseArchive(ProductRepository productRepository,
+                           @Value("${purchase.archive.directory:archive}") String directory,
+                           @Value("${purchase.archive.cache-size:4}") int cacheSize) {
+        this.productRepository = productRepository;
+        this.directory = Path.of(directory);
+        // LinkedHashMap en orden de acceso: al superar el tamaño se descarta el segmento usado hace más tiempo
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, List<ArchivedPurchase>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            List<PurchaseSegment> loaded = files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX))
+                    .filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .map(PurchaseSegment::open)
+                    .sorted(Comparator.comparing(PurchaseSegment::getUpperBound))
+                    .toList();
+            segments = loaded;
+            log.info("Archivo de compras: {} segmentos, compras anteriores a {}", loaded.size(), getArchivedBefore());
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el archivo de compras en " + directory, e);
+        }
+    }
+
+    // Fecha a partir de la cual las compras están en MySQL. null si no hay nada archivado
+    public LocalDateTime getArchivedBefore() {
+        List<PurchaseSegment> current = segments;
+        return current.isEmpty() ? null : current.get(current.size() - 1).getUpperBound();
+    }
+
+    public List<PurchaseSegment> getSegments() {
+        return segments;
+    }
+
+    // Escritor del segmento de un mes. El segmento no se lee hasta registrarlo (register)
+    public PurchaseSegment.Writer newSegment(YearMonth month) {
+        return new PurchaseSegment.Writer(directory.resolve(PREFIX + month + SUFFIX));
+    }
+
+    // Publica un segmento escrito (sustituye al anterior del mismo fichero, si lo había)
+    public synchronized void register(PurchaseSegment segment) {
+        List<PurchaseSegment> updated = new ArrayList<>(segments);
+        updated.removeIf(existing -> existing.getPath().equals(segment.getPath()));
+        updated.add(segment);
+        updated.sort(Comparator.comparing(PurchaseSegment::getUpperBound));
+        synchronized (cache) {
+            cache.remove(segment.getPath());
+        }
+        segments = List.copyOf(updated);
+    }
+
+    /*
+    Página de compras archivadas de [from, to) posteriores al cursor, ordenadas por (fecha, id).
+    email null: todas las compras. Devuelve como mucho limit filas.
+     */
+    public List<Purchase> findPage(String email, LocalDateTime from, LocalDateTime to, PurchaseCursor after, int limit) {
+        List<ArchivedPurchase> page = new ArrayList<>();
+        for (PurchaseSegment segment : segments) {
+            if (!segment.overlaps(from, to) || segment.getMaxDate().isBefore(after.purchaseDate())) continue;
+            if (email != null && !segment.mightContainEmail(email)) continue;
+
+            List<ArchivedPurchase> rows = rows(segment);
+            int taken = 0;
+            for (int i = firstAfter(rows, after); i < rows.size(); i++) {
+                ArchivedPurchase row = rows.get(i);
+                if (!row.purchaseDate().isBefore(to)) break;
+                if (row.purchaseDate().isBefore(from) || (email != null && !email.equals(row.email()))) continue;
+                page.add(row);
+                if (++taken == limit) break;
+            }
+        }
+        // Los segmentos no se solapan en la práctica, pero una compra con fecha atrasada puede caer en uno posterior
+        page.sort(Comparator.comparing(ArchivedPurchase::purchaseDate).thenComparing(ArchivedPurchase::id));
+        return toPurchases(page.size() > limit ? page.subList(0, limit) : page);
+    }
+
+    public List<Purchase> findByEmail(String email) {
+        List<ArchivedPurchase> found = new ArrayList<>();
+        for (PurchaseSegment segment : segments) {
+            if (!segment.mightContainEmail(email)) continue;
+            rows(segment).stream().filter(row -> email.equals(row.email())).forEach(found::add);
+        }
+        return toPurchases(found);
+    }
+
+    public List<Purchase> findAll() {
+        List<ArchivedPurchase> all = new ArrayList<>();
+        segments.forEach(segment -> all.addAll(rows(segment)));
+        return toPurchases(all);
+    }
+
+    public Optional<Purchase> findById(Long id) {
+        for (PurchaseSegment segment : segments) {
+            if (!segment.mightContainId(id)) continue;
+            for (ArchivedPurchase row : rows(segment)) {
+                if (row.id() == id) return Optional.of(toPurchases(List.of(row)).get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Recorre las compras archivadas de [from, to) en orden, segmento a segmento. Devuelve cuántas ha procesado
+    public long forEach(LocalDateTime from, LocalDateTime to, Consumer<Purchase> action) {
+        long count = 0;
+        for (PurchaseSegment segment : segments) {
+            if (!segment.overlaps(from, to)) continue;
+            List<ArchivedPurchase> inRange = rows(segment).stream()
+                    .filter(row -> !row.purchaseDate().isBefore(from) && row.purchaseDate().isBefore(to))
+                    .toList();
+            for (Purchase purchase : toPurchases(inRange)) {
+                action.accept(purchase);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+    Como forEach pero con las filas tal cual, sin consultar los productos (exportaciones).
+    Los segmentos se leen sin pasar por la caché: un recorrido completo no debe expulsar los segmentos en uso.
+     */
+    public long forEachRow(LocalDateTime from, LocalDateTime to, Consumer<ArchivedPurchase> action) {
+        long count = 0;
+        for (PurchaseSegment segment : segments) {
+            if (!segment.overlaps(from, to)) continue;
+            for (ArchivedPurchase row : segment.read()) {
+                if (row.purchaseDate().isBefore(from) || !row.purchaseDate().isBefore(to)) continue;
+                action.accept(row);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<ArchivedPurchase> rows(PurchaseSegment segment) {
+        synchronized (cache) {
+            List<ArchivedPurchase> cached = cache.get(segment.getPath());
+            if (cached != null) return cached;
+        }
+        List<ArchivedPurchase> rows = segment.read(); // Fuera del lock: descomprimir no bloquea al resto
+        synchronized (cache) {
+            cache.put(segment.getPath(), rows);
+        }
+        return rows;
+    }
+
+    // Posición de la primera fila posterior al cursor (búsqueda binaria: las filas están ordenadas por fecha e id)
+    private static int firstAfter(List<ArchivedPurchase> rows, PurchaseCursor after) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rows.get(middle).isAfter(after.purchaseDate(), after.id())) high = middle;
+            else low = middle + 1;
+        }
+        return low;
+    }
+
+    // Convierte las filas en compras con su producto (una única consulta por lote)
+    private List<Purchase> toPurchases(List<ArchivedPurchase> rows) {
+        if (rows.isEmpty()) return List.of();
+        Set<Long> productIds = rows.stream()
+                .map(ArchivedPurchase::productId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return rows.stream()
+                .map(row -> row.toPurchase(row.productId() != null ? products.get(row.productId()) : null))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+}
@@ -0,0 +1,48 @@
+package com.certidevs.archive;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+
+/*
+Partición mensual de purchase: p202401 contiene las compras de enero de 2024
+(VALUES LESS THAN ('2024-02-01 00:00:00')). pmax recoge las fechas posteriores a la última partición mensual.
+ */
+public record PurchasePartition(YearMonth month) {
+
+    public static final String MAX_PARTITION = "pmax";
+
+    /*
+    Condición SQL para las filas de archived_purchase_summary y archived_product_sales de meses cuya partición ya no
+    está en purchase. Esas filas se escriben antes del DROP PARTITION: hasta entonces (o si el archivado falla y se
+    reintenta al día siguiente) las compras del mes siguen en purchase y no deben contarse dos veces.
+    Va en la misma sentencia que la lectura de purchase: el DROP PARTITION no puede ocurrir en medio.
+     */
+    public static final String ARCHIVED_MONTH_WITHOUT_PARTITION = """
+            archive_month NOT IN (
+                SELECT CONCAT(SUBSTRING(PARTITION_NAME, 2, 4), '-', SUBSTRING(PARTITION_NAME, 6, 2))
+                FROM information_schema.PARTITIONS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'purchase' AND PARTITION_NAME REGEXP '^p[0-9]{6}$')
+            """;
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    // null para pmax o nombres que no son de una partición mensual
+    public static PurchasePartition fromName(String name) {
+        if (name == null || !name.matches("p\\d{6}")) return null;
+        return new PurchasePartition(YearMonth.parse(name, NAME));
+    }
+
+    public String name() {
+        return month.format(NAME);
+    }
+
+    // Límite superior (excluido): primer instante del mes siguiente
+    public LocalDateTime upperBound() {
+        return month.plusMonths(1).atDay(1).atStartOfDay();
+    }
+
+    // Definición para PARTITION BY RANGE COLUMNS y REORGANIZE PARTITION
+    public String definition() {
+        return "PARTITION " + name() + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + " 00:00:00')";
+    }
+}
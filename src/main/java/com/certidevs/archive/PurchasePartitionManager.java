@@ -0,0 +1,241 @@
+package com.certidevs.archive;
+
+import com.certidevs.model.Money;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/*
+Particiones mensuales de la tabla purchase (PARTITION BY RANGE COLUMNS(purchase_date)).
+
+Las consultas con rango de fechas (historial paginado, exportaciones) solo leen las particiones del rango
+(poda de particiones de MySQL), y las particiones antiguas se archivan sin DELETE masivos:
+
+1. Al arrancar, si purchase no está particionada se convierte: se quitan las claves ajenas (MySQL no las
+   admite en tablas particionadas), la clave primaria pasa a (id, purchase_date) y se crean particiones
+   desde el mes de la compra más antigua.
+2. Cada maintenance-interval se crean las particiones de los próximos months-ahead meses partiendo pmax.
+3. Las particiones con más de hot-months meses se archivan una a una, de la más antigua a la más nueva:
+   a. Se copian sus filas a un segmento comprimido (PurchaseArchive) y se relee para comprobar el CRC.
+   b. Se guardan los resúmenes por cliente del mes (archived_purchase_summary) y las unidades vendidas por
+      producto (archived_product_sales) con upserts: repetirlo es seguro. Hasta el DROP PARTITION las consultas
+      no los cuentan (PurchasePartition.ARCHIVED_MONTH_WITHOUT_PARTITION).
+   c. Se comprueba que la partición no ha cambiado (filas e ids) y se borra con DROP PARTITION.
+   d. Se publica el segmento: desde ese momento las lecturas de ese mes van al archivo.
+Si la aplicación se para a mitad, la siguiente pasada vuelve a archivar la misma partición desde el paso a.
+ */
+@Slf4j
+@Component
+public class PurchasePartitionManager implements ApplicationRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PurchaseArchive purchaseArchive;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int hotMonths;
+    private final Duration maintenanceInterval;
+    private final Clock clock;
+
+    private ScheduledExecutorService scheduler;
+
+    public PurchasePartitionManager(JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    PurchaseArchive purchaseArchive,
+                                    @Value("${purchase.partitions.enabled:false}") boolean enabled,
+                                    @Value("${purchase.partitions.months-ahead:3}") int monthsAhead,
+                                    @Value("${purchase.partitions.hot-months:12}") int hotMonths,
+                                    @Value("${purchase.partitions.maintenance-interval:P1D}") Duration maintenanceInterval) {
+        this(jdbcTemplate, transactionManager, purchaseArchive, enabled, monthsAhead, hotMonths, maintenanceInterval,
+                Clock.systemDefaultZone());
+    }
+
+    PurchasePartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             PurchaseArchive purchaseArchive, boolean enabled, int monthsAhead, int hotMonths,
+                             Duration maintenanceInterval, Clock clock) {
+        if (hotMonths < 1) throw new IllegalArgumentException("hot-months debe ser al menos 1.");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purchaseArchive = purchaseArchive;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.hotMonths = hotMonths;
+        this.maintenanceInterval = maintenanceInterval;
+        this.clock = clock;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) return;
+
+        partitionTable();
+        // El mantenimiento (archivar puede tardar) se hace en segundo plano, también la primera vez
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "purchase-partitions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                maintain();
+            } catch (RuntimeException e) {
+                log.error("Error en el mantenimiento de las particiones de compras, se reintentará", e);
+            }
+        }, 0, maintenanceInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Convierte purchase en tabla particionada por meses (solo la primera vez)
+    void partitionTable() {
+        if (!partitions().isEmpty()) return;
+
+        YearMonth current = YearMonth.now(clock);
+        LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(purchase_date) FROM purchase", LocalDateTime.class);
+        YearMonth first = oldest != null ? YearMonth.from(oldest) : current;
+        log.info("Particionando la tabla purchase por meses desde {}", first);
+
+        for (String foreignKey : jdbcTemplate.queryForList("""
+                SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'purchase' AND CONSTRAINT_TYPE = 'FOREIGN KEY'
+                """, String.class)) {
+            jdbcTemplate.execute("ALTER TABLE purchase DROP FOREIGN KEY " + foreignKey);
+        }
+        // La columna de particionado debe formar parte de todas las claves únicas
+        jdbcTemplate.execute("ALTER TABLE purchase DROP PRIMARY KEY, ADD PRIMARY KEY (id, purchase_date)");
+
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = first; !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            definitions.add(new PurchasePartition(month).definition());
+        }
+        definitions.add("PARTITION " + PurchasePartition.MAX_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE purchase PARTITION BY RANGE COLUMNS(purchase_date) ("
+                + String.join(", ", definitions) + ")");
+    }
+
+    // Crea las particiones de los próximos meses y archiva las antiguas. Devuelve las particiones archivadas
+    public synchronized int maintain() {
+        List<PurchasePartition> partitions = partitions().stream().filter(Objects::nonNull).toList();
+        if (partitions.isEmpty()) return 0;
+
+        YearMonth current = YearMonth.now(clock);
+        YearMonth last = partitions.get(partitions.size() - 1).month();
+        List<String> ahead = new ArrayList<>();
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            ahead.add(new PurchasePartition(month).definition());
+        }
+        if (!ahead.isEmpty()) {
+            ahead.add("PARTITION " + PurchasePartition.MAX_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+            // pmax está vacía (ninguna compra es futura) así que reorganizarla no mueve filas
+            jdbcTemplate.execute("ALTER TABLE purchase REORGANIZE PARTITION " + PurchasePartition.MAX_PARTITION
+                    + " INTO (" + String.join(", ", ahead) + ")");
+        }
+
+        // Siempre queda al menos una partición mensual: el primer rango de una tabla particionada recoge todo lo anterior
+        YearMonth archiveBefore = current.minusMonths(hotMonths);
+        int archived = 0;
+        for (int i = 0; i < partitions.size() - 1 && partitions.get(i).month().isBefore(archiveBefore); i++) {
+            archive(partitions.get(i));
+            archived++;
+        }
+        return archived;
+    }
+
+    void archive(PurchasePartition partition) {
+        String name = partition.name();
+        long started = System.nanoTime();
+
+        // a. Copia al segmento en el orden de idx_purchase_date_id, leyendo por bloques (useCursorFetch)
+        PurchaseSegment segment;
+        try (PurchaseSegment.Writer writer = purchaseArchive.newSegment(partition.month())) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT id, email, product_id, quantity, total_price, purchase_date FROM purchase PARTITION ("
+                                + name + ") ORDER BY purchase_date, id");
+                statement.setFetchSize(1000);
+                return statement;
+            }, (ResultSet row) -> writer.append(new ArchivedPurchase(
+                    row.getLong("id"),
+                    row.getString("email"),
+                    row.getObject("product_id", Long.class),
+                    row.getInt("quantity"),
+                    Money.ofMinor(row.getLong("total_price")),
+                    row.getObject("purchase_date", LocalDateTime.class)))));
+            segment = writer.finish(partition.upperBound());
+        }
+        segment.read(); // Comprueba el CRC y que todas las filas se descomprimen antes de borrar nada
+
+        // b. Resúmenes por cliente del mes (se sobrescriben si ya existían de un intento anterior)
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("""
+                INSERT INTO archived_purchase_summary (email, archive_month, purchase_count, total_spent, last_purchase_date)
+                SELECT p.email, ?, COUNT(*), COALESCE(SUM(p.total_price), 0), MAX(p.purchase_date)
+                FROM purchase PARTITION (%s) p
+                WHERE p.email IS NOT NULL
+                GROUP BY p.email
+                ON DUPLICATE KEY UPDATE
+                    purchase_count = VALUES(purchase_count),
+                    total_spent = VALUES(total_spent),
+                    last_purchase_date = VALUES(last_purchase_date)
+                """.formatted(name), partition.month().toString()));
+        // Unidades vendidas por producto del mes, para la reconciliación de stock
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update("""
+                INSERT INTO archived_product_sales (product_id, archive_month, units)
+                SELECT p.product_id, ?, SUM(p.quantity)
+                FROM purchase PARTITION (%s) p
+                WHERE p.product_id IS NOT NULL
+                GROUP BY p.product_id
+                ON DUPLICATE KEY UPDATE units = VALUES(units)
+                """.formatted(name), partition.month().toString()));
+
+        // c. La partición debe seguir como se copió (una cancelación entre medias obliga a repetir)
+        Map<String, Object> check = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS row_count, COALESCE(MIN(id), 0) AS min_id, COALESCE(MAX(id), 0) AS max_id FROM purchase PARTITION ("
+                        + name + ")");
+        if (((Number) check.get("row_count")).intValue() != segment.getRowCount()
+                || ((Number) check.get("min_id")).longValue() != segment.getMinId()
+                || ((Number) check.get("max_id")).longValue() != segment.getMaxId()) {
+            throw new IllegalStateException("La partición " + name + " cambió mientras se archivaba, se reintentará.");
+        }
+        jdbcTemplate.execute("ALTER TABLE purchase DROP PARTITION " + name);
+
+        // d. Las lecturas del mes pasan al archivo
+        purchaseArchive.register(segment);
+        log.info("Partición {} archivada en {}: {} compras en {} ms", name, segment.getPath(), segment.getRowCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    // Particiones de purchase en orden. null para pmax. Vacía si la tabla no está particionada
+    List<PurchasePartition> partitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT PARTITION_NAME FROM information_schema.PARTITIONS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'purchase' AND PARTITION_NAME IS NOT NULL
+                ORDER BY PARTITION_ORDINAL_POSITION
+                """, String.class).stream()
+                .map(PurchasePartition::fromName)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+}
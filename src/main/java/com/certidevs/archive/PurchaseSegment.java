@@ -0,0 +1,306 @@
+package com.certidevs.archive;
+
+import com.certidevs.model.Money;
+import com.certidevs.stats.HyperLogLog;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+Segmento del archivo de compras: un fichero por partición mensual archivada (purchase-2024-01.seg).
+
+Formato:
+- Cabecera: MAGIC (4) | VERSION (4)
+- Filas comprimidas con Deflater, ordenadas por (purchaseDate, id):
+  id (8) | fecha en microsegundos (8) | email (UTF) | producto (8, 0 = sin producto) | cantidad (4) | importe en céntimos (8)
+- Filtro de Bloom de los emails (palabras de 8 bytes)
+- Pie (FOOTER_SIZE): palabras del filtro (4) | filas (4) | id mínimo y máximo (16) | fecha mínima y máxima (16)
+  | límite superior de la partición (8) | bytes comprimidos (8) | CRC32C de los bytes comprimidos (4)
+  | CRC32C del filtro y del pie (4) | MAGIC (4)
+
+Al abrir solo se lee el pie y el filtro: con ellos se descartan segmentos por fecha, id o email sin descomprimirlos.
+Al leer las filas se comprueba el CRC32C antes de descomprimir: un fichero dañado nunca devuelve compras a medias.
+ */
+@Getter
+public final class PurchaseSegment {
+
+    static final int MAGIC = 0x50534547; // "PSEG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 68;
+    private static final int BLOOM_BITS_PER_ROW = 10;
+    private static final int BLOOM_HASHES = 7; // Óptimo para 10 bits por email: ~1 % de falsos positivos
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+    private final int rowCount;
+    private final long minId;
+    private final long maxId;
+    private final LocalDateTime minDate;
+    private final LocalDateTime maxDate;
+    private final LocalDateTime upperBound; // Todas las filas son anteriores (VALUES LESS THAN de la partición)
+    private final long payloadLength;
+    private final int payloadChecksum;
+    private final long[] emailFilter;
+
+    private PurchaseSegment(Path path, ByteBuffer footer, long[] emailFilter) {
+        this.path = path;
+        this.rowCount = footer.getInt();
+        this.minId = footer.getLong();
+        this.maxId = footer.getLong();
+        this.minDate = fromMicros(footer.getLong());
+        this.maxDate = fromMicros(footer.getLong());
+        this.upperBound = fromMicros(footer.getLong());
+        this.payloadLength = footer.getLong();
+        this.payloadChecksum = footer.getInt();
+        this.emailFilter = emailFilter;
+    }
+
+    public static PurchaseSegment open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE) throw corrupted(path, "tamaño " + size);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            channel.read(footer, size - FOOTER_SIZE);
+            footer.flip();
+            if (footer.getInt(FOOTER_SIZE - 4) != MAGIC) throw corrupted(path, "pie sin MAGIC");
+
+            int filterWords = footer.getInt();
+            long filterStart = size - FOOTER_SIZE - (long) filterWords * Long.BYTES;
+            if (filterWords <= 0 || filterStart < HEADER_SIZE) throw corrupted(path, "filtro de " + filterWords + " palabras");
+            ByteBuffer filter = ByteBuffer.allocate(filterWords * Long.BYTES);
+            channel.read(filter, filterStart);
+            filter.flip();
+
+            CRC32C checksum = new CRC32C();
+            checksum.update(filter.duplicate());
+            checksum.update(footer.array(), 0, FOOTER_SIZE - 8);
+            if ((int) checksum.getValue() != footer.getInt(FOOTER_SIZE - 8)) throw corrupted(path, "CRC del pie");
+
+            long[] emailFilter = new long[filterWords];
+            filter.asLongBuffer().get(emailFilter);
+            PurchaseSegment segment = new PurchaseSegment(path, footer, emailFilter);
+            if (HEADER_SIZE + segment.payloadLength != filterStart) throw corrupted(path, "longitud de las filas");
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el segmento " + path, e);
+        }
+    }
+
+    // Descomprime todas las filas comprobando antes el CRC32C
+    public List<ArchivedPurchase> read() {
+        byte[] payload;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) throw corrupted(path, "cabecera");
+
+            payload = new byte[Math.toIntExact(payloadLength)];
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, HEADER_SIZE + buffer.position()) < 0) throw corrupted(path, "fichero truncado");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el segmento " + path, e);
+        }
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(payload);
+        if ((int) checksum.getValue() != payloadChecksum) throw corrupted(path, "CRC de las filas");
+
+        List<ArchivedPurchase> rows = new ArrayList<>(rowCount);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(payload)), BUFFER_SIZE))) {
+            for (int i = 0; i < rowCount; i++) {
+                long id = in.readLong();
+                LocalDateTime purchaseDate = fromMicros(in.readLong());
+                String email = in.readUTF();
+                long productId = in.readLong();
+                int quantity = in.readInt();
+                Money totalPrice = Money.ofMinor(in.readLong());
+                rows.add(new ArchivedPurchase(id, email.isEmpty() ? null : email,
+                        productId == 0 ? null : productId, quantity, totalPrice, purchaseDate));
+            }
+        } catch (IOException e) {
+            throw corrupted(path, "filas comprimidas: " + e.getMessage());
+        }
+        return rows;
+    }
+
+    // false: el email seguro que no está en el segmento. true: puede estar (o es un falso positivo)
+    public boolean mightContainEmail(String email) {
+        long hash = HyperLogLog.hash(email);
+        int bits = emailFilter.length * Long.SIZE;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = bloomBit(hash, i, bits);
+            if ((emailFilter[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // Se solapa con [from, to)
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return rowCount > 0 && maxDate.compareTo(from) >= 0 && minDate.isBefore(to);
+    }
+
+    public boolean mightContainId(long id) {
+        return rowCount > 0 && id >= minId && id <= maxId;
+    }
+
+    // Doble hash (Kirsch-Mitzenmacher): las dos mitades del hash de 64 bits generan las k posiciones
+    private static int bloomBit(long hash, int i, int bits) {
+        return Math.floorMod((int) hash + i * (int) (hash >>> 32), bits);
+    }
+
+    static long toMicros(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + date.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static IllegalStateException corrupted(Path path, String detail) {
+        return new IllegalStateException("Segmento de archivo dañado " + path + " (" + detail + ")");
+    }
+
+    /*
+    Escribe un segmento en un fichero temporal y lo renombra al terminar (finish), después del fsync:
+    un segmento con el nombre definitivo siempre está completo. Las filas deben llegar ordenadas por (fecha, id).
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final Path target;
+        private final Path temp;
+        private final FileOutputStream file;
+        private final BufferedOutputStream buffered;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final DeflaterOutputStream deflated;
+        private final DataOutputStream rows;
+        private final CRC32C payloadChecksum = new CRC32C();
+
+        private int rowCount;
+        private long minId = Long.MAX_VALUE;
+        private long maxId = Long.MIN_VALUE;
+        private long minDate = Long.MAX_VALUE;
+        private long maxDate = Long.MIN_VALUE;
+        private long lastDate = Long.MIN_VALUE;
+        private long lastId = Long.MIN_VALUE;
+        private long[] emailHashes = new long[1024];
+        private boolean finished;
+
+        public Writer(Path target) {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+                this.file = new FileOutputStream(temp.toFile());
+                this.buffered = new BufferedOutputStream(file, BUFFER_SIZE);
+                buffered.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array());
+                this.deflated = new DeflaterOutputStream(
+                        new CheckedOutputStream(buffered, payloadChecksum), deflater, BUFFER_SIZE);
+                this.rows = new DataOutputStream(new BufferedOutputStream(deflated, BUFFER_SIZE));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo crear el segmento " + temp, e);
+            }
+        }
+
+        public void append(ArchivedPurchase purchase) {
+            long date = toMicros(purchase.purchaseDate());
+            if (date < lastDate || (date == lastDate && purchase.id() <= lastId)) {
+                throw new IllegalArgumentException("Las compras del segmento deben llegar ordenadas por (fecha, id).");
+            }
+            lastDate = date;
+            lastId = purchase.id();
+            try {
+                rows.writeLong(purchase.id());
+                rows.writeLong(date);
+                rows.writeUTF(purchase.email() != null ? purchase.email() : "");
+                rows.writeLong(purchase.productId() != null ? purchase.productId() : 0);
+                rows.writeInt(purchase.quantity());
+                rows.writeLong(purchase.totalPrice() != null ? purchase.totalPrice().minorUnits() : 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo escribir el segmento " + temp, e);
+            }
+            if (rowCount == emailHashes.length) emailHashes = Arrays.copyOf(emailHashes, rowCount * 2);
+            emailHashes[rowCount++] = purchase.email() != null ? HyperLogLog.hash(purchase.email()) : 0;
+            minId = Math.min(minId, purchase.id());
+            maxId = Math.max(maxId, purchase.id());
+            minDate = Math.min(minDate, date);
+            maxDate = Math.max(maxDate, date);
+        }
+
+        // Cierra las filas, escribe filtro y pie, fsync y renombrado atómico. Devuelve el segmento releído del disco
+        public PurchaseSegment finish(LocalDateTime upperBound) {
+            try {
+                rows.flush();
+                deflated.finish();
+
+                int filterWords = Math.max(1, (int) (((long) rowCount * BLOOM_BITS_PER_ROW + Long.SIZE - 1) / Long.SIZE));
+                int bits = filterWords * Long.SIZE;
+                long[] filter = new long[filterWords];
+                for (int i = 0; i < rowCount; i++) {
+                    for (int k = 0; k < BLOOM_HASHES; k++) {
+                        int bit = bloomBit(emailHashes[i], k, bits);
+                        filter[bit >>> 6] |= 1L << bit;
+                    }
+                }
+
+                ByteBuffer footer = ByteBuffer.allocate(filterWords * Long.BYTES + FOOTER_SIZE);
+                footer.asLongBuffer().put(filter);
+                footer.position(filterWords * Long.BYTES);
+                footer.putInt(filterWords)
+                        .putInt(rowCount)
+                        .putLong(rowCount > 0 ? minId : 0)
+                        .putLong(rowCount > 0 ? maxId : 0)
+                        .putLong(rowCount > 0 ? minDate : 0)
+                        .putLong(rowCount > 0 ? maxDate : 0)
+                        .putLong(toMicros(upperBound))
+                        .putLong(deflater.getBytesWritten())
+                        .putInt((int) payloadChecksum.getValue());
+                CRC32C checksum = new CRC32C();
+                checksum.update(footer.array(), 0, footer.position());
+                footer.putInt((int) checksum.getValue()).putInt(MAGIC);
+                buffered.write(footer.array());
+                buffered.flush();
+                file.getChannel().force(true);
+                file.close();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                finished = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo terminar el segmento " + target, e);
+            }
+            return open(target);
+        }
+
+        // Sin finish el temporal se borra: el segmento nunca llega a existir
+        @Override
+        public void close() {
+            try {
+                file.close();
+                deflater.end();
+                if (!finished) Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo cerrar el segmento " + temp, e);
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.certidevs.controller;
 
+import com.certidevs.dto.CustomerPurchaseSummaryDTO;
 import com.certidevs.model.Customer;
 import com.certidevs.repository.CustomerRepository;
+import com.certidevs.service.CustomerPurchaseSummaryService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.extern.java.Log;
@@ -20,6 +22,7 @@ public class CustomerController {
     public static final double IVA_21 = 1.21;
 
     private CustomerRepository customerRepository;
+    private CustomerPurchaseSummaryService purchaseSummaryService;
 
     // Métodos GET
     // Método que nos devuelva un saludo
@@ -52,6 +55,12 @@ public class CustomerController {
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
+    // Resumen de compras de un cliente (número de compras, gasto total y última compra)
+    @GetMapping("customers/purchase-summary") // localhost:8080/customers/purchase-summary?email=cliente@example.com
+    public ResponseEntity<CustomerPurchaseSummaryDTO> purchaseSummary(@RequestParam String email) {
+        return ResponseEntity.ok(purchaseSummaryService.getSummary(email));
+    }
+
     // Método POST
     // Método que nos permite crear un nuevo cliente
 
@@ -0,0 +1,57 @@
+package com.certidevs.controller;
+
+import com.certidevs.model.DiscountRule;
+import com.certidevs.repository.DiscountRuleRepository;
+import com.certidevs.service.DiscountEngine;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+// Gestión de las reglas de descuento. Cada cambio recompila las reglas del motor sin reiniciar
+@AllArgsConstructor
+@RestController
+public class DiscountRuleController {
+
+    private DiscountRuleRepository discountRuleRepository;
+    private DiscountEngine discountEngine;
+
+    @GetMapping("discount-rules") // localhost:8080/discount-rules
+    public ResponseEntity<List<DiscountRule>> findAll() {
+        return ResponseEntity.ok(discountRuleRepository.findAll());
+    }
+
+    @PostMapping("discount-rules")
+    public ResponseEntity<DiscountRule> create(@RequestBody DiscountRule rule) {
+        if (rule.getId() != null)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        if (rule.getActive() == null) rule.setActive(true);
+
+        try {
+            DiscountEngine.validate(rule);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        discountRuleRepository.save(rule);
+        discountEngine.reload();
+        return ResponseEntity.status(HttpStatus.CREATED).body(rule);
+    }
+
+    @DeleteMapping("discount-rules/{id}")
+    public ResponseEntity<Void> deleteById(@PathVariable Long id) {
+        discountRuleRepository.deleteById(id);
+        discountEngine.reload();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Recarga manual (por ejemplo tras cambiar reglas directamente en base de datos)
+    @PostMapping("discount-rules/reload")
+    public ResponseEntity<Void> reload() {
+        discountEngine.reload();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -50,7 +50,7 @@ public class ManufacturerController {
     //http://localhost:8080/fabricantes/edit/3
     @GetMapping("manufacturers/update/{id}")
     public String getFormToUpdate(@PathVariable Long id, Model model) {
-        manufacturerRepo.findById(id)
+        manufacturerRepo.findWithAddressById(id) // El formulario muestra la dirección (LAZY)
                 .ifPresentOrElse(
                         manufacturer -> {
                             if (manufacturer.getAddress() == null) { // Verifica si la dirección del fabricante es nula
@@ -0,0 +1,25 @@
+package com.certidevs.controller;
+
+import com.certidevs.model.Money;
+import org.springframework.format.Formatter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/*
+Conversión de Money en formularios y parámetros (Spring Boot registra los Formatter de la aplicación).
+Un campo vacío se queda en null, como pasaba con Double.
+ */
+@Component
+public class MoneyFormatter implements Formatter<Money> {
+
+    @Override
+    public Money parse(String text, Locale locale) {
+        return Money.valueOf(text);
+    }
+
+    @Override
+    public String print(Money money, Locale locale) {
+        return money.toString();
+    }
+}
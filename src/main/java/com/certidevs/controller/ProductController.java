@@ -1,14 +1,22 @@
 package com.certidevs.controller;
 
+import com.certidevs.dto.ProductCursor;
+import com.certidevs.dto.ProductPageDTO;
+import com.certidevs.dto.ProductSort;
 import com.certidevs.model.Manufacturer;
 import com.certidevs.model.Product;
 import com.certidevs.repository.ManufacturerRepository;
 import com.certidevs.repository.ProductRepository;
+import com.certidevs.repository.PurchaseRepository;
+import com.certidevs.service.PartitionedCheckoutEngine;
+import com.certidevs.service.ProductListService;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.BeanUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -20,19 +28,38 @@ public class ProductController {
 
     private ProductRepository productRepository; // Spring crea el objeto productRepository y lo inyecta aquí
     private ManufacturerRepository manufacturerRepository;
+    private PurchaseRepository purchaseRepository;
+    private ProductListService productListService;
+    private PartitionedCheckoutEngine checkoutEngine; // Tiene el stock de los productos cacheado en modo particionado
 
-    // http://localhost:8080/productos
+    // http://localhost:8080/productos?sort=price&dir=desc&size=20&after=57:1299
     @GetMapping("productos")
-    public String findAll(Model model) {
+    public String findAll(@RequestParam(defaultValue = "id") String sort,
+                          @RequestParam(defaultValue = "asc") String dir,
+                          @RequestParam(required = false) Integer size,
+                          @RequestParam(required = false) String after,
+                          @RequestParam(required = false) String before,
+                          Model model) {
+        ProductPageDTO page;
+        try {
+            if (!dir.equalsIgnoreCase("asc") && !dir.equalsIgnoreCase("desc"))
+                throw new IllegalArgumentException("El orden debe ser asc o desc.");
+            // Solo una página: la lista entera con findAll tardaba segundos con el catálogo completo
+            page = productListService.findPage(ProductSort.from(sort), dir.equalsIgnoreCase("desc"), size,
+                    ProductCursor.parse(after), ProductCursor.parse(before));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
         model.addAttribute("titulo", "Lista de productos");
-        model.addAttribute("productos", productRepository.findAll());
+        model.addAttribute("productos", page.products());
+        model.addAttribute("page", page);
         return "product-list"; // vista
     }
 
     // http://localhost:8080/productos/1
     @GetMapping("productos/{id}")
     public String findById(@PathVariable Long id, Model model) {
-        Optional<Product> productOptional = productRepository.findById(id);
+        Optional<Product> productOptional = productRepository.findWithManufacturerById(id); // Con su fabricante (LAZY)
         // Opción 1: sin lambda:
 //        if (productOptional.isPresent()) {
 //            Product product = productOptional.get();
@@ -44,7 +71,7 @@ public class ProductController {
     }
     @GetMapping("productos2/{id}")
     public String findById2(@PathVariable Long id, Model model) {
-        return productRepository.findById(id)
+        return productRepository.findWithManufacturerById(id)
                 .map(product -> {
                     model.addAttribute("product", product);
                     return "product-detail";
@@ -104,8 +131,9 @@ public class ProductController {
 //                productoDB.setPrice(product.getPrice());
 //                productoDB.setQuantity(product.getQuantity());
 //                productoDB.setActive(product.getActive());
-                BeanUtils.copyProperties(product, productoDB);
+                BeanUtils.copyProperties(product, productoDB, "version"); // La versión la gestiona Hibernate, el formulario no la envía
                 productRepository.save(productoDB);
+                checkoutEngine.invalidate(productoDB.getId()); // El stock puede haber cambiado en el formulario
             });
         }
 
@@ -118,6 +146,8 @@ public class ProductController {
     @GetMapping("productos/borrar/{id}")
     public String borrarProducto(@PathVariable Long id) {
         try {
+            if (purchaseRepository.existsByProductId(id)) // purchase está particionada y no tiene clave ajena
+                throw new IllegalStateException("El producto tiene compras y no se puede borrar.");
             productRepository.deleteById(id);
             return "redirect:/productos";
         } catch (Exception e) {
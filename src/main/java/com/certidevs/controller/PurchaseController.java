@@ -0,0 +1,82 @@
+package com.certidevs.controller;
+
+import com.certidevs.dto.CheckoutRequestDTO;
+import com.certidevs.dto.CheckoutStatusDTO;
+import com.certidevs.dto.PurchaseDTO;
+import com.certidevs.dto.PurchaseListItemDTO;
+import com.certidevs.service.AsyncCheckoutService;
+import com.certidevs.service.CheckoutExecutor;
+import com.certidevs.service.CheckoutRejectedException;
+import com.certidevs.service.PurchaseService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+Compras por API REST. La compra se ejecuta en CheckoutExecutor y se devuelve un CompletableFuture:
+el hilo de Tomcat queda libre mientras la compra espera conexión o se ejecuta.
+Si hay demasiadas compras en cola se responde 429 con la cabecera Retry-After.
+
+Compras asíncronas (AsyncCheckoutService): POST purchases/async valida y encola la compra y responde
+202 Accepted con la URL de su estado (cabecera Location). GET purchases/async/{id} devuelve el estado;
+mientras está pendiente incluye Retry-After con el intervalo recomendado entre consultas.
+ */
+@AllArgsConstructor
+@RestController
+public class PurchaseController {
+
+    private CheckoutExecutor checkoutExecutor;
+    private AsyncCheckoutService asyncCheckoutService;
+    private PurchaseService purchaseService;
+
+    // Compras de un cliente con el nombre del producto (proyección: una consulta, sin cargar productos ni fabricantes)
+    @GetMapping("purchases") // localhost:8080/purchases?email=cliente@example.com
+    public ResponseEntity<List<PurchaseListItemDTO>> findByEmail(@RequestParam String email) {
+        return ResponseEntity.ok(purchaseService.getPurchaseListByEmail(email));
+    }
+
+    @PostMapping("purchases") // localhost:8080/purchases {"email": "...", "productId": 1, "quantity": 2}
+    public CompletableFuture<ResponseEntity<PurchaseDTO>> checkout(
+            @RequestBody CheckoutRequestDTO request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return checkoutExecutor.makePurchase(idempotencyKey, request.email(), request.productId(), request.quantity())
+                .thenApply(purchase -> ResponseEntity.status(HttpStatus.CREATED).body(PurchaseDTO.from(purchase)));
+    }
+
+    @PostMapping("purchases/async") // localhost:8080/purchases/async {"email": "...", "productId": 1, "quantity": 2}
+    public ResponseEntity<CheckoutStatusDTO> checkoutAsync(@RequestBody CheckoutRequestDTO request) {
+        CheckoutStatusDTO status = asyncCheckoutService.submit(request.email(), request.productId(), request.quantity());
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(status.id()).toUri())
+                .body(status);
+    }
+
+    @GetMapping("purchases/async/{id}") // localhost:8080/purchases/async/2b1c...
+    public ResponseEntity<CheckoutStatusDTO> checkoutStatus(@PathVariable String id) {
+        CheckoutStatusDTO status = asyncCheckoutService.getStatus(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Compra asíncrona no encontrada."));
+        if (status.status() == CheckoutStatusDTO.Status.PENDING) {
+            return ResponseEntity.ok().header(HttpHeaders.RETRY_AFTER, "1").body(status);
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @ExceptionHandler(CheckoutRejectedException.class)
+    public ResponseEntity<String> rejected(CheckoutRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> invalid(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
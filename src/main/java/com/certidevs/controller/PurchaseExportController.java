@@ -0,0 +1,34 @@
+package com.certidevs.controller;
+
+import com.certidevs.dto.PurchaseExportDTO;
+import com.certidevs.export.PurchaseExportService;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+
+// Exportación de compras a fichero columnar para análisis (en lugar de paginar con findAll)
+@AllArgsConstructor
+@RestController
+public class PurchaseExportController {
+
+    private PurchaseExportService purchaseExportService;
+
+    @PostMapping("purchases/exports") // localhost:8080/purchases/exports?from=2024-01-01&to=2024-12-31
+    public ResponseEntity<PurchaseExportDTO> export(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(purchaseExportService.export(from, to));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.certidevs.controller;
+
+import com.certidevs.dto.BestsellerDTO;
+import com.certidevs.dto.CheckoutMetricsDTO;
+import com.certidevs.dto.DistinctBuyersDTO;
+import com.certidevs.dto.RelatedProductDTO;
+import com.certidevs.stats.BestsellerTracker;
+import com.certidevs.stats.BestsellerWindow;
+import com.certidevs.stats.CheckoutMetrics;
+import com.certidevs.stats.DistinctBuyersService;
+import com.certidevs.stats.FrequentlyBoughtTogetherService;
+import com.certidevs.stats.MetricsWindow;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Estadísticas de compras calculadas en memoria (sin consultas agregadas a la base de datos)
+@AllArgsConstructor
+@RestController
+public class PurchaseStatsController {
+
+    public static final int MAX_LIMIT = 100;
+
+    private BestsellerTracker bestsellerTracker;
+    private DistinctBuyersService distinctBuyersService;
+    private CheckoutMetrics checkoutMetrics;
+    private FrequentlyBoughtTogetherService frequentlyBoughtTogetherService;
+
+    // Los más vendidos de una ventana: 1h, 24h o 7d
+    @GetMapping("purchases/bestsellers") // localhost:8080/purchases/bestsellers?window=24h&limit=10
+    public ResponseEntity<List<BestsellerDTO>> bestsellers(@RequestParam(defaultValue = "24h") String window,
+                                                           @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El límite debe estar entre 1 y " + MAX_LIMIT);
+
+        try {
+            return ResponseEntity.ok(bestsellerTracker.getBestsellers(BestsellerWindow.fromCode(window), limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Compradores distintos (estimados) de varios productos en un rango de días
+    @GetMapping("purchases/distinct-buyers") // localhost:8080/purchases/distinct-buyers?productIds=1,2&from=2024-01-01&to=2024-01-31
+    public ResponseEntity<DistinctBuyersDTO> distinctBuyers(@RequestParam List<Long> productIds,
+                                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(distinctBuyersService.countDistinctBuyers(productIds, from, to));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Percentiles de latencia, unidades e importe de las compras e ingresos por minuto: 1m, 5m o 15m
+    @GetMapping("purchases/metrics") // localhost:8080/purchases/metrics?window=5m
+    public ResponseEntity<CheckoutMetricsDTO> metrics(@RequestParam(defaultValue = "1m") String window) {
+        try {
+            return ResponseEntity.ok(checkoutMetrics.getMetrics(MetricsWindow.fromCode(window)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Productos que más clientes han comprado junto con el producto indicado
+    @GetMapping("products/{id}/frequently-bought-together") // localhost:8080/products/1/frequently-bought-together?limit=5
+    public ResponseEntity<List<RelatedProductDTO>> frequentlyBoughtTogether(@PathVariable Long id,
+                                                                            @RequestParam(defaultValue = "5") int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El límite debe estar entre 1 y " + MAX_LIMIT);
+
+        return ResponseEntity.ok(frequentlyBoughtTogetherService.getRelated(id, limit));
+    }
+}
@@ -0,0 +1,61 @@
+package com.certidevs.controller;
+
+import com.certidevs.dto.DailyRevenueDTO;
+import com.certidevs.dto.ManufacturerRevenueDTO;
+import com.certidevs.dto.ProductRevenueDTO;
+import com.certidevs.service.RevenueRollupService;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Informes de ingresos leídos de los resúmenes diarios (RevenueRollupService). Rangos de días [from, to] inclusivos
+@AllArgsConstructor
+@RestController
+public class RevenueReportController {
+
+    public static final int MAX_LIMIT = 100;
+
+    private RevenueRollupService revenueRollupService;
+
+    @GetMapping("reports/revenue/daily") // localhost:8080/reports/revenue/daily?from=2024-01-01&to=2024-01-31
+    public ResponseEntity<List<DailyRevenueDTO>> daily(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(revenueRollupService.getDailyRevenue(from, to));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("reports/revenue/products") // localhost:8080/reports/revenue/products?from=2024-01-01&to=2024-01-31&limit=10
+    public ResponseEntity<List<ProductRevenueDTO>> products(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                            @RequestParam(defaultValue = "10") int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El límite debe estar entre 1 y " + MAX_LIMIT);
+
+        try {
+            return ResponseEntity.ok(revenueRollupService.getTopProducts(from, to, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("reports/revenue/manufacturers") // localhost:8080/reports/revenue/manufacturers?from=2024-01-01&to=2024-01-31
+    public ResponseEntity<List<ManufacturerRevenueDTO>> manufacturers(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(revenueRollupService.getManufacturerRevenue(from, to));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
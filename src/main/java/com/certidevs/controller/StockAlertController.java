@@ -0,0 +1,30 @@
+package com.certidevs.controller;
+
+import com.certidevs.dto.LowStockAlertDTO;
+import com.certidevs.service.LowStockAlertService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+// Alertas de stock bajo: panel actual y flujo en tiempo real (Server-Sent Events)
+@AllArgsConstructor
+@RestController
+public class StockAlertController {
+
+    private LowStockAlertService lowStockAlertService;
+
+    @GetMapping("stock-alerts") // localhost:8080/stock-alerts
+    public ResponseEntity<List<LowStockAlertDTO>> activeAlerts() {
+        return ResponseEntity.ok(lowStockAlertService.getActiveAlerts());
+    }
+
+    @GetMapping(value = "stock-alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE) // localhost:8080/stock-alerts/stream
+    public SseEmitter stream() {
+        return lowStockAlertService.subscribe();
+    }
+}
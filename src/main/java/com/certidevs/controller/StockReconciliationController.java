@@ -0,0 +1,28 @@
+package com.certidevs.controller;
+
+import com.certidevs.dto.StockReconciliationDTO;
+import com.certidevs.service.StockReconciliationService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+// Reconciliación de stock bajo demanda (además de la programada con purchase.reconciliation.enabled)
+@AllArgsConstructor
+@RestController
+public class StockReconciliationController {
+
+    private StockReconciliationService stockReconciliationService;
+
+    @PostMapping("stock/reconciliation") // localhost:8080/stock/reconciliation?correct=true
+    public ResponseEntity<StockReconciliationDTO> reconcile(@RequestParam(defaultValue = "false") boolean correct) {
+        try {
+            return ResponseEntity.ok(stockReconciliationService.reconcile(correct));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.certidevs.dto;
+
+/*
+Producto más vendido en una ventana de tiempo. unitsSold es una estimación por arriba:
+las unidades reales están entre unitsSold - maxError y unitsSold.
+ */
+public record BestsellerDTO(
+        Long productId,
+        long unitsSold,
+        long maxError) {
+
+}
@@ -0,0 +1,18 @@
+package com.certidevs.dto;
+
+/*
+Métricas de las compras en una ventana: latencia en microsegundos, unidades por compra e importe en céntimos.
+queueWaitMicros y executionMicros son de CheckoutExecutor: espera hasta tener conexión libre y duración
+de la compra. rejected son las compras rechazadas por cola llena o espera agotada.
+ */
+public record CheckoutMetricsDTO(
+        String window,
+        HistogramSummaryDTO latencyMicros,
+        HistogramSummaryDTO quantity,
+        HistogramSummaryDTO totalPriceCents,
+        double revenuePerMinute,
+        HistogramSummaryDTO queueWaitMicros,
+        HistogramSummaryDTO executionMicros,
+        long rejected) {
+
+}
@@ -0,0 +1,17 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Purchase;
+
+// Resultado de una compra de una tanda asíncrona: la compra guardada o el motivo del rechazo
+public record CheckoutOutcome(
+        Purchase purchase,
+        String error) {
+
+    public static CheckoutOutcome completed(Purchase purchase) {
+        return new CheckoutOutcome(purchase, null);
+    }
+
+    public static CheckoutOutcome failed(String error) {
+        return new CheckoutOutcome(null, error);
+    }
+}
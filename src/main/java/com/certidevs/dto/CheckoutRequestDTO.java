@@ -0,0 +1,9 @@
+package com.certidevs.dto;
+
+// Petición de compra de un producto (POST purchases)
+public record CheckoutRequestDTO(
+        String email,
+        Long productId,
+        Integer quantity) {
+
+}
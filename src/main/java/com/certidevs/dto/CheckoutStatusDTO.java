@@ -0,0 +1,16 @@
+package com.certidevs.dto;
+
+import java.time.LocalDateTime;
+
+// Estado de una compra asíncrona (POST purchases/async y GET purchases/async/{id})
+public record CheckoutStatusDTO(
+        String id,
+        Status status,
+        PurchaseDTO purchase, // Solo con status COMPLETED
+        String error, // Solo con status FAILED
+        LocalDateTime submittedAt) {
+
+    public enum Status {
+        PENDING, COMPLETED, FAILED
+    }
+}
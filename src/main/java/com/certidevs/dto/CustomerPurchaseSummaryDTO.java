@@ -0,0 +1,14 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+
+import java.time.LocalDateTime;
+
+// Resumen de compras de un cliente. lastPurchaseDate es null si no tiene compras
+public record CustomerPurchaseSummaryDTO(
+        String email,
+        long purchaseCount,
+        Money totalSpent,
+        LocalDateTime lastPurchaseDate) {
+
+}
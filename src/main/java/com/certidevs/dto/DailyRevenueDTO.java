@@ -0,0 +1,18 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+
+import java.time.LocalDate;
+
+// Ingresos, unidades y compras de un día (suma de daily_product_revenue)
+public record DailyRevenueDTO(
+        LocalDate day,
+        Money revenue,
+        Long units,
+        Long orderCount) {
+
+    // SUM(r.revenue) en JPQL suma la columna BIGINT y devuelve los céntimos
+    public DailyRevenueDTO(LocalDate day, Long revenueMinorUnits, Long units, Long orderCount) {
+        this(day, Money.ofMinor(revenueMinorUnits != null ? revenueMinorUnits : 0), units, orderCount);
+    }
+}
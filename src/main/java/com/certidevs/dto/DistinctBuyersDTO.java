@@ -0,0 +1,18 @@
+package com.certidevs.dto;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/*
+Compradores distintos estimados de un conjunto de productos en un rango de días.
+El valor real está dentro de distinctBuyers * (1 ± standardError) en el 68 % de los casos
+(dos errores estándar en el 95 %).
+ */
+public record DistinctBuyersDTO(
+        Collection<Long> productIds,
+        LocalDate from,
+        LocalDate to,
+        long distinctBuyers,
+        double standardError) {
+
+}
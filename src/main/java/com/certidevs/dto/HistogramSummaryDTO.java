@@ -0,0 +1,13 @@
+package com.certidevs.dto;
+
+// Percentiles de un histograma (error relativo < 1,6 %)
+public record HistogramSummaryDTO(
+        long count,
+        double mean,
+        long p50,
+        long p90,
+        long p99,
+        long p999,
+        long max) {
+
+}
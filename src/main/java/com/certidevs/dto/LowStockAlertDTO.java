@@ -0,0 +1,17 @@
+package com.certidevs.dto;
+
+import java.time.LocalDateTime;
+
+// Cambio de nivel de stock de un producto: LOW y OUT_OF_STOCK al bajar del umbral, OK al recuperarse
+public record LowStockAlertDTO(
+        Long productId,
+        String productName,
+        int quantity,
+        int threshold,
+        Level level,
+        LocalDateTime createdAt) {
+
+    public enum Level {
+        OK, LOW, OUT_OF_STOCK
+    }
+}
@@ -0,0 +1,19 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+
+// Ingresos, unidades y compras de los productos de un fabricante en un rango de días
+public record ManufacturerRevenueDTO(
+        Long manufacturerId,
+        String manufacturerName,
+        Money revenue,
+        Long units,
+        Long orderCount) {
+
+    // SUM(r.revenue) en JPQL suma la columna BIGINT y devuelve los céntimos
+    public ManufacturerRevenueDTO(Long manufacturerId, String manufacturerName, Long revenueMinorUnits, Long units,
+                                  Long orderCount) {
+        this(manufacturerId, manufacturerName, Money.ofMinor(revenueMinorUnits != null ? revenueMinorUnits : 0), units,
+                orderCount);
+    }
+}
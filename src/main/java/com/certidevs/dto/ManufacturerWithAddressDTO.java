@@ -1,10 +1,19 @@
 package com.certidevs.dto;
 
+import com.certidevs.model.Money;
+
 public record ManufacturerWithAddressDTO(
         Long manufacturerId,
         String manufacturerName,
         String city,
         Long productsCount,
-        Double totalProductPrice
+        Money totalProductPrice
 ) {
+
+    // SUM(p.price) en JPQL suma la columna BIGINT y devuelve los céntimos (null si no hay productos)
+    public ManufacturerWithAddressDTO(Long manufacturerId, String manufacturerName, String city, Long productsCount,
+                                      Long totalProductMinorUnits) {
+        this(manufacturerId, manufacturerName, city, productsCount,
+                Money.ofMinor(totalProductMinorUnits != null ? totalProductMinorUnits : 0));
+    }
 }
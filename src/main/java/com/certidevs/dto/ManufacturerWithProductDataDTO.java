@@ -1,9 +1,17 @@
 package com.certidevs.dto;
 
+import com.certidevs.model.Money;
+
 public record ManufacturerWithProductDataDTO(
         Long manufacturerId,
         String manufacturerName,
         Long productsCount,
-        Double productsSumTotalPrice) {
+        Money productsSumTotalPrice) {
 
+    // SUM(p.price) en JPQL suma la columna BIGINT y devuelve los céntimos (null si no hay productos)
+    public ManufacturerWithProductDataDTO(Long manufacturerId, String manufacturerName, Long productsCount,
+                                          Long productsSumMinorUnits) {
+        this(manufacturerId, manufacturerName, productsCount,
+                Money.ofMinor(productsSumMinorUnits != null ? productsSumMinorUnits : 0));
+    }
 }
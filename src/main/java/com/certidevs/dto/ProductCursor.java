@@ -0,0 +1,28 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Product;
+
+/*
+Posición en la lista de productos para la paginación por clave (keyset): (valor de la columna ordenada, id)
+del primer o último producto de la página. En la URL es "id" o "id:valor" (el id nunca lleva ':').
+ */
+public record ProductCursor(
+        Long id,
+        String value) {
+
+    public static ProductCursor of(ProductSort sort, Product product) {
+        return new ProductCursor(product.getId(), sort.valueOf(product));
+    }
+
+    // null si no hay cursor. IllegalArgumentException si el id no es un número
+    public static ProductCursor parse(String token) {
+        if (token == null || token.isBlank()) return null;
+        int separator = token.indexOf(':');
+        if (separator < 0) return new ProductCursor(Long.valueOf(token), null);
+        return new ProductCursor(Long.valueOf(token.substring(0, separator)), token.substring(separator + 1));
+    }
+
+    public String token() {
+        return value == null ? String.valueOf(id) : id + ":" + value;
+    }
+}
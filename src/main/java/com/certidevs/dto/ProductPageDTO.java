@@ -0,0 +1,16 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Product;
+
+import java.util.List;
+
+// Página de la lista de productos. previous y next son null en la primera y en la última página
+public record ProductPageDTO(
+        List<Product> products,
+        ProductSort sort,
+        boolean descending,
+        int size,
+        ProductCursor previous,
+        ProductCursor next) {
+
+}
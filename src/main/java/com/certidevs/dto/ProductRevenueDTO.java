@@ -0,0 +1,17 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+
+// Ingresos, unidades y compras de un producto en un rango de días
+public record ProductRevenueDTO(
+        Long productId,
+        String productName,
+        Money revenue,
+        Long units,
+        Long orderCount) {
+
+    // SUM(r.revenue) en JPQL suma la columna BIGINT y devuelve los céntimos
+    public ProductRevenueDTO(Long productId, String productName, Long revenueMinorUnits, Long units, Long orderCount) {
+        this(productId, productName, Money.ofMinor(revenueMinorUnits != null ? revenueMinorUnits : 0), units, orderCount);
+    }
+}
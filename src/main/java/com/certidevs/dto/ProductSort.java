@@ -0,0 +1,57 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+
+import java.util.Arrays;
+
+/*
+Columnas por las que se puede ordenar la lista de productos (/productos?sort=name).
+Cada una tiene un índice (columna, id) en product, así que cada página es un recorrido corto del índice.
+El valor de la columna viaja en el cursor como texto: el precio en céntimos.
+ */
+public enum ProductSort {
+
+    ID("id"),
+    NAME("name"),
+    PRICE("price"),
+    QUANTITY("quantity");
+
+    private final String property;
+
+    ProductSort(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public static ProductSort from(String property) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.property.equalsIgnoreCase(property))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No se puede ordenar por " + property + "."));
+    }
+
+    // Valor de la columna del producto para el cursor (null si la columna es null o se ordena por id)
+    public String valueOf(Product product) {
+        return switch (this) {
+            case ID -> null;
+            case NAME -> product.getName();
+            case PRICE -> product.getPrice() != null ? String.valueOf(product.getPrice().minorUnits()) : null;
+            case QUANTITY -> product.getQuantity() != null ? String.valueOf(product.getQuantity()) : null;
+        };
+    }
+
+    // Valor del cursor convertido al tipo de la columna. NumberFormatException (IllegalArgumentException) si no es válido
+    public Comparable<?> parse(String value) {
+        if (value == null) return null;
+        return switch (this) {
+            case ID -> null;
+            case NAME -> value;
+            case PRICE -> Money.ofMinor(Long.parseLong(value));
+            case QUANTITY -> Integer.valueOf(value);
+        };
+    }
+}
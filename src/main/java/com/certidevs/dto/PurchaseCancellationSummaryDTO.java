@@ -0,0 +1,11 @@
+package com.certidevs.dto;
+
+import java.util.Map;
+
+// Resultado de una cancelación masiva: compras eliminadas y unidades devueltas al stock por producto
+public record PurchaseCancellationSummaryDTO(
+        long cancelledPurchases,
+        long restoredUnits,
+        Map<Long, Long> restoredStockByProduct) {
+
+}
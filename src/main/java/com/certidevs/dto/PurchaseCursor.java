@@ -0,0 +1,10 @@
+package com.certidevs.dto;
+
+import java.time.LocalDateTime;
+
+// Posición en el historial de compras para la paginación por clave (keyset): última (fecha, id) leída
+public record PurchaseCursor(
+        LocalDateTime purchaseDate,
+        Long id) {
+
+}
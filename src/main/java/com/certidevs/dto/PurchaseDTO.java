@@ -0,0 +1,21 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+import com.certidevs.model.Purchase;
+
+import java.time.LocalDateTime;
+
+// Compra devuelta por la API REST (sin el producto completo ni su fabricante)
+public record PurchaseDTO(
+        Long id,
+        String email,
+        Long productId,
+        Integer quantity,
+        Money totalPrice,
+        LocalDateTime purchaseDate) {
+
+    public static PurchaseDTO from(Purchase purchase) {
+        return new PurchaseDTO(purchase.getId(), purchase.getEmail(), purchase.getProduct().getId(),
+                purchase.getQuantity(), purchase.getTotalPrice(), purchase.getPurchaseDate());
+    }
+}
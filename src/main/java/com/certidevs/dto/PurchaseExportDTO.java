@@ -0,0 +1,14 @@
+package com.certidevs.dto;
+
+/*
+Resultado de una exportación de compras: el fichero columnar escrito (ver PurchaseColumnFile),
+cuántas compras y grupos de filas contiene y su tamaño en bytes.
+ */
+public record PurchaseExportDTO(
+        String file,
+        long rows,
+        int rowGroups,
+        long bytes,
+        long elapsedMillis) {
+
+}
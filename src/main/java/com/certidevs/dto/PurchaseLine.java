@@ -0,0 +1,8 @@
+package com.certidevs.dto;
+
+// Línea de una cesta: producto y cantidad a comprar
+public record PurchaseLine(
+        Long productId,
+        Integer quantity) {
+
+}
@@ -0,0 +1,24 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+import com.certidevs.model.Purchase;
+
+import java.time.LocalDateTime;
+
+// Fila del listado de compras de un cliente: solo el nombre del producto, sin cargar el producto ni su fabricante
+public record PurchaseListItemDTO(
+        Long id,
+        Long productId,
+        String productName,
+        Integer quantity,
+        Money totalPrice,
+        LocalDateTime purchaseDate) {
+
+    // Compras archivadas (ya vienen con su producto)
+    public static PurchaseListItemDTO from(Purchase purchase) {
+        return new PurchaseListItemDTO(purchase.getId(),
+                purchase.getProduct() != null ? purchase.getProduct().getId() : null,
+                purchase.getProduct() != null ? purchase.getProduct().getName() : null,
+                purchase.getQuantity(), purchase.getTotalPrice(), purchase.getPurchaseDate());
+    }
+}
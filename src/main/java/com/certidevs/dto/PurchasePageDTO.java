@@ -0,0 +1,12 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Purchase;
+
+import java.util.List;
+
+// Página del historial de compras. next es null cuando no hay más páginas
+public record PurchasePageDTO(
+        List<Purchase> purchases,
+        PurchaseCursor next) {
+
+}
@@ -0,0 +1,15 @@
+package com.certidevs.dto;
+
+import com.certidevs.model.Money;
+
+import java.time.LocalDateTime;
+
+// Compra de una cancelación masiva leída antes de borrarla (bandeja de salida y resúmenes diarios de ingresos)
+public record PurchaseProductDTO(
+        Long purchaseId,
+        Long productId,
+        Integer quantity,
+        Money totalPrice,
+        LocalDateTime purchaseDate) {
+
+}
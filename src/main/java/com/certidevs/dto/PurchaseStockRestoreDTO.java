@@ -0,0 +1,9 @@
+package com.certidevs.dto;
+
+// Unidades a devolver al stock de un producto al cancelar un grupo de compras
+public record PurchaseStockRestoreDTO(
+        Long productId,
+        Long quantity,
+        Long purchasesCount) {
+
+}
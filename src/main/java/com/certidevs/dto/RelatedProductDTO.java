@@ -0,0 +1,12 @@
+package com.certidevs.dto;
+
+/*
+Producto comprado junto con otro: customers es el número de clientes que han comprado los dos y
+confidence la fracción de los compradores del producto consultado que también compraron este.
+ */
+public record RelatedProductDTO(
+        Long productId,
+        int customers,
+        double confidence) {
+
+}
@@ -0,0 +1,18 @@
+package com.certidevs.dto;
+
+/*
+Resultado de una reconciliación de stock. driftUnits es la suma de las diferencias en valor absoluto.
+completed es false si se agotó el tiempo antes de revisar todos los productos (el resto queda sin revisar).
+report es el fichero CSV con los productos descuadrados.
+ */
+public record StockReconciliationDTO(
+        long productsChecked,
+        long baselinesCreated,
+        long driftedProducts,
+        long driftUnits,
+        long corrected,
+        boolean completed,
+        String report,
+        long elapsedMillis) {
+
+}
@@ -0,0 +1,9 @@
+package com.certidevs.event;
+
+import com.certidevs.model.Purchase;
+
+// Evento publicado por PurchaseService cuando se cancela una compra (la entidad ya eliminada)
+public record PurchaseCancelledEvent(
+        Purchase purchase) {
+
+}
@@ -0,0 +1,9 @@
+package com.certidevs.event;
+
+import com.certidevs.model.Purchase;
+
+// Evento publicado por PurchaseService (o el motor particionado) cuando se guarda una compra
+public record PurchaseCreatedEvent(
+        Purchase purchase) {
+
+}
@@ -0,0 +1,26 @@
+package com.certidevs.event;
+
+import com.certidevs.dto.PurchaseCancellationSummaryDTO;
+import com.certidevs.dto.PurchaseProductDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Evento publicado por PurchaseService tras una cancelación masiva
+public record PurchasesCancelledEvent(
+        Collection<Long> purchaseIds,
+        Collection<String> emails, // Clientes afectados (para recalcular sus resúmenes)
+        List<PurchaseProductDTO> purchases, // Producto, unidades, importe y fecha de cada compra cancelada
+        PurchaseCancellationSummaryDTO summary) {
+
+    // Compras canceladas de cada producto (para la bandeja de salida)
+    public Map<Long, List<Long>> purchaseIdsByProduct() {
+        Map<Long, List<Long>> purchaseIdsByProduct = new LinkedHashMap<>();
+        purchases.forEach(purchase -> purchaseIdsByProduct
+                .computeIfAbsent(purchase.productId(), productId -> new ArrayList<>()).add(purchase.purchaseId()));
+        return purchaseIdsByProduct;
+    }
+}
@@ -0,0 +1,15 @@
+package com.certidevs.event;
+
+/*
+Evento publicado al cambiar el stock de un producto por una compra o una cancelación.
+Las cantidades salen del propio UPDATE (o de la entidad ya cargada), sin consultas adicionales.
+lowStockThreshold es el umbral del producto (null: umbral por defecto).
+ */
+public record StockLevelChangedEvent(
+        Long productId,
+        String productName,
+        int previousQuantity,
+        int newQuantity,
+        Integer lowStockThreshold) {
+
+}
@@ -0,0 +1,417 @@
+package com.certidevs.export;
+
+import com.certidevs.archive.ArchivedPurchase;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/*
+Fichero columnar de compras para análisis fuera de línea (purchases-....pcol).
+
+Las compras se agrupan en grupos de filas (row groups) de hasta row-group-size filas. Dentro de cada grupo cada columna
+se guarda por separado, comprimida con Deflater y con su CRC32C: leer una columna solo lee y descomprime sus bytes.
+- ID: diferencia con el id anterior (zigzag + varint).
+- PURCHASE_DATE: microsegundos, diferencia con la fecha anterior (zigzag + varint). Con las filas ordenadas por fecha
+  casi todas las diferencias ocupan 1-4 bytes en lugar de 8.
+- EMAIL: diccionario del grupo (emails distintos en orden de aparición) y el código de cada fila (varint, 0 = sin email).
+- PRODUCT_ID: varint (0 = sin producto).
+- QUANTITY: ancho fijo, 4 bytes.
+- TOTAL_PRICE: céntimos, ancho fijo, 8 bytes.
+
+Formato:
+- Cabecera: MAGIC (4) | VERSION (4)
+- Trozos de columna de cada grupo, uno tras otro
+- Índice, por grupo: filas (4) | fecha mínima y máxima (16) | por columna: posición (8) | bytes (4) | CRC32C (4)
+- Pie (FOOTER_SIZE): grupos (4) | filas (8) | posición del índice (8) | CRC32C del índice y del pie (4) | MAGIC (4)
+Al abrir solo se leen el pie y el índice.
+ */
+@Getter
+public final class PurchaseColumnFile {
+
+    static final int MAGIC = 0x50434F4C; // "PCOL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 28;
+    private static final int CHUNK_INDEX_SIZE = 16;
+    private static final int GROUP_INDEX_SIZE = 20 + Column.values().length * CHUNK_INDEX_SIZE;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public enum Column {
+        ID, PURCHASE_DATE, EMAIL, PRODUCT_ID, QUANTITY, TOTAL_PRICE
+    }
+
+    // Grupo de filas: las fechas permiten saltar grupos fuera de un rango sin leerlos
+    public record RowGroup(int rows, LocalDateTime minDate, LocalDateTime maxDate) {
+    }
+
+    // Columna EMAIL de un grupo: diccionario y código de cada fila (0 = sin email, i = dictionary.get(i - 1))
+    public record EmailColumn(List<String> dictionary, int[] codes) {
+
+        public String get(int row) {
+            return codes[row] == 0 ? null : dictionary.get(codes[row] - 1);
+        }
+    }
+
+    private record Chunk(long offset, int length, int checksum) {
+    }
+
+    private final Path path;
+    private final long rowCount;
+    private final List<RowGroup> rowGroups;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Chunk[][] chunks;
+
+    private PurchaseColumnFile(Path path, long rowCount, List<RowGroup> rowGroups, Chunk[][] chunks) {
+        this.path = path;
+        this.rowCount = rowCount;
+        this.rowGroups = rowGroups;
+        this.chunks = chunks;
+    }
+
+    public static PurchaseColumnFile open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE) throw corrupted(path, "tamaño " + size);
+
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            readFully(channel, footer, size - FOOTER_SIZE, path);
+            footer.flip();
+            if (footer.getInt(FOOTER_SIZE - 4) != MAGIC) throw corrupted(path, "pie sin MAGIC");
+            int groupCount = footer.getInt();
+            long rowCount = footer.getLong();
+            long indexStart = footer.getLong();
+            if (groupCount < 0 || indexStart < HEADER_SIZE
+                    || indexStart + (long) groupCount * GROUP_INDEX_SIZE != size - FOOTER_SIZE) {
+                throw corrupted(path, "índice de " + groupCount + " grupos");
+            }
+
+            ByteBuffer index = ByteBuffer.allocate(groupCount * GROUP_INDEX_SIZE);
+            readFully(channel, index, indexStart, path);
+            index.flip();
+            CRC32C checksum = new CRC32C();
+            checksum.update(index.duplicate());
+            checksum.update(footer.array(), 0, FOOTER_SIZE - 8);
+            if ((int) checksum.getValue() != footer.getInt(FOOTER_SIZE - 8)) throw corrupted(path, "CRC del índice");
+
+            List<RowGroup> rowGroups = new ArrayList<>(groupCount);
+            Chunk[][] chunks = new Chunk[groupCount][];
+            for (int group = 0; group < groupCount; group++) {
+                rowGroups.add(new RowGroup(index.getInt(), fromMicros(index.getLong()), fromMicros(index.getLong())));
+                chunks[group] = new Chunk[Column.values().length];
+                for (Column column : Column.values()) {
+                    chunks[group][column.ordinal()] = new Chunk(index.getLong(), index.getInt(), index.getInt());
+                }
+            }
+            return new PurchaseColumnFile(path, rowCount, List.copyOf(rowGroups), chunks);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el fichero de compras " + path, e);
+        }
+    }
+
+    // Columnas ID, PURCHASE_DATE (microsegundos UTC, ver fromMicros), PRODUCT_ID (0 = sin producto) y TOTAL_PRICE
+    public long[] readLongs(int group, Column column) {
+        int rows = rowGroups.get(group).rows();
+        long[] values = new long[rows];
+        try (DataInputStream in = chunk(group, column)) {
+            switch (column) {
+                case ID, PURCHASE_DATE -> {
+                    long previous = 0;
+                    for (int i = 0; i < rows; i++) {
+                        previous += unzigzag(readVarLong(in));
+                        values[i] = previous;
+                    }
+                }
+                case PRODUCT_ID -> {
+                    for (int i = 0; i < rows; i++) values[i] = readVarLong(in);
+                }
+                case TOTAL_PRICE -> {
+                    for (int i = 0; i < rows; i++) values[i] = in.readLong();
+                }
+                default -> throw new IllegalArgumentException("La columna " + column + " no es de enteros largos.");
+            }
+        } catch (IOException e) {
+            throw corrupted(path, "columna " + column + " del grupo " + group + ": " + e.getMessage());
+        }
+        return values;
+    }
+
+    public int[] readQuantities(int group) {
+        int rows = rowGroups.get(group).rows();
+        int[] values = new int[rows];
+        try (DataInputStream in = chunk(group, Column.QUANTITY)) {
+            for (int i = 0; i < rows; i++) values[i] = in.readInt();
+        } catch (IOException e) {
+            throw corrupted(path, "columna QUANTITY del grupo " + group + ": " + e.getMessage());
+        }
+        return values;
+    }
+
+    public EmailColumn readEmails(int group) {
+        int rows = rowGroups.get(group).rows();
+        try (DataInputStream in = chunk(group, Column.EMAIL)) {
+            int entries = (int) readVarLong(in);
+            List<String> dictionary = new ArrayList<>(entries);
+            for (int i = 0; i < entries; i++) dictionary.add(in.readUTF());
+            int[] codes = new int[rows];
+            for (int i = 0; i < rows; i++) codes[i] = (int) readVarLong(in);
+            return new EmailColumn(List.copyOf(dictionary), codes);
+        } catch (IOException e) {
+            throw corrupted(path, "columna EMAIL del grupo " + group + ": " + e.getMessage());
+        }
+    }
+
+    // Lee solo los bytes del trozo de la columna y comprueba su CRC32C antes de descomprimir
+    private DataInputStream chunk(int group, Column column) {
+        Chunk chunk = chunks[group][column.ordinal()];
+        byte[] bytes = new byte[chunk.length()];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readFully(channel, ByteBuffer.wrap(bytes), chunk.offset(), path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el fichero de compras " + path, e);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes);
+        if ((int) checksum.getValue() != chunk.checksum()) {
+            throw corrupted(path, "CRC de la columna " + column + " del grupo " + group);
+        }
+        return new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(bytes)), BUFFER_SIZE));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, Path path) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) throw corrupted(path, "fichero truncado");
+        }
+    }
+
+    public static long toMicros(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + date.getNano() / 1_000;
+    }
+
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    // Zigzag: los enteros negativos pequeños también ocupan pocos bytes en varint
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("varint demasiado largo");
+    }
+
+    private static IllegalStateException corrupted(Path path, String detail) {
+        return new IllegalStateException("Fichero de compras dañado " + path + " (" + detail + ")");
+    }
+
+    /*
+    Escribe el fichero en un temporal y lo renombra al terminar (finish), después del fsync.
+    Solo guarda en memoria el grupo en curso (row-group-size filas en arrays primitivos), no el fichero entero.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final Path target;
+        private final Path temp;
+        private final FileOutputStream file;
+        private final BufferedOutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        private final ByteArrayOutputStream chunkBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+
+        private final long[] ids;
+        private final long[] dates;
+        private final String[] emails;
+        private final long[] productIds;
+        private final int[] quantities;
+        private final long[] totals;
+        private int size;
+
+        private long position = HEADER_SIZE;
+        private int groupCount;
+        private long rowCount;
+        private boolean finished;
+
+        public Writer(Path target, int rowGroupSize) {
+            if (rowGroupSize < 1) throw new IllegalArgumentException("row-group-size debe ser al menos 1.");
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.ids = new long[rowGroupSize];
+            this.dates = new long[rowGroupSize];
+            this.emails = new String[rowGroupSize];
+            this.productIds = new long[rowGroupSize];
+            this.quantities = new int[rowGroupSize];
+            this.totals = new long[rowGroupSize];
+            try {
+                Files.createDirectories(target.toAbsolutePath().getParent());
+                this.file = new FileOutputStream(temp.toFile());
+                this.out = new BufferedOutputStream(file, BUFFER_SIZE);
+                out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array());
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo crear el fichero de compras " + temp, e);
+            }
+        }
+
+        public void append(ArchivedPurchase purchase) {
+            ids[size] = purchase.id();
+            dates[size] = toMicros(purchase.purchaseDate());
+            emails[size] = purchase.email();
+            productIds[size] = purchase.productId() != null ? purchase.productId() : 0;
+            quantities[size] = purchase.quantity();
+            totals[size] = purchase.totalPrice() != null ? purchase.totalPrice().minorUnits() : 0;
+            if (++size == ids.length) writeGroup();
+        }
+
+        public long getRowCount() {
+            return rowCount + size;
+        }
+
+        private void writeGroup() {
+            if (size == 0) return;
+            try {
+                long minDate = Long.MAX_VALUE;
+                long maxDate = Long.MIN_VALUE;
+                for (int i = 0; i < size; i++) {
+                    minDate = Math.min(minDate, dates[i]);
+                    maxDate = Math.max(maxDate, dates[i]);
+                }
+                DataOutputStream entry = new DataOutputStream(index);
+                entry.writeInt(size);
+                entry.writeLong(minDate);
+                entry.writeLong(maxDate);
+                for (Column column : Column.values()) {
+                    writeChunk(column, entry);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo escribir el fichero de compras " + temp, e);
+            }
+            groupCount++;
+            rowCount += size;
+            size = 0;
+            Arrays.fill(emails, null); // No retener los emails del grupo anterior
+        }
+
+        // Codifica y comprime la columna del grupo en curso, la escribe y anota su posición en el índice
+        private void writeChunk(Column column, DataOutputStream entry) throws IOException {
+            chunkBuffer.reset();
+            deflater.reset();
+            DeflaterOutputStream deflated = new DeflaterOutputStream(chunkBuffer, deflater, BUFFER_SIZE);
+            DataOutputStream values = new DataOutputStream(new BufferedOutputStream(deflated, BUFFER_SIZE));
+            switch (column) {
+                case ID -> writeDeltas(values, ids);
+                case PURCHASE_DATE -> writeDeltas(values, dates);
+                case EMAIL -> writeEmails(values);
+                case PRODUCT_ID -> {
+                    for (int i = 0; i < size; i++) writeVarLong(values, productIds[i]);
+                }
+                case QUANTITY -> {
+                    for (int i = 0; i < size; i++) values.writeInt(quantities[i]);
+                }
+                case TOTAL_PRICE -> {
+                    for (int i = 0; i < size; i++) values.writeLong(totals[i]);
+                }
+            }
+            values.flush();
+            deflated.finish();
+
+            byte[] bytes = chunkBuffer.toByteArray();
+            CRC32C checksum = new CRC32C();
+            checksum.update(bytes);
+            out.write(bytes);
+            entry.writeLong(position);
+            entry.writeInt(bytes.length);
+            entry.writeInt((int) checksum.getValue());
+            position += bytes.length;
+        }
+
+        private void writeDeltas(DataOutputStream values, long[] column) throws IOException {
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                writeVarLong(values, zigzag(column[i] - previous));
+                previous = column[i];
+            }
+        }
+
+        private void writeEmails(DataOutputStream values) throws IOException {
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            int[] codes = new int[size];
+            for (int i = 0; i < size; i++) {
+                if (emails[i] != null) codes[i] = dictionary.computeIfAbsent(emails[i], email -> dictionary.size() + 1);
+            }
+            writeVarLong(values, dictionary.size());
+            for (String email : dictionary.keySet()) values.writeUTF(email);
+            for (int code : codes) writeVarLong(values, code);
+        }
+
+        // Último grupo, índice y pie, fsync y renombrado atómico. Devuelve el fichero releído del disco
+        public PurchaseColumnFile finish() {
+            writeGroup();
+            try {
+                byte[] indexBytes = index.toByteArray();
+                ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE)
+                        .putInt(groupCount)
+                        .putLong(rowCount)
+                        .putLong(position);
+                CRC32C checksum = new CRC32C();
+                checksum.update(indexBytes);
+                checksum.update(footer.array(), 0, footer.position());
+                footer.putInt((int) checksum.getValue()).putInt(MAGIC);
+                out.write(indexBytes);
+                out.write(footer.array());
+                out.flush();
+                file.getChannel().force(true);
+                file.close();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                finished = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo terminar el fichero de compras " + target, e);
+            }
+            return open(target);
+        }
+
+        // Sin finish el temporal se borra: el fichero nunca llega a existir
+        @Override
+        public void close() {
+            try {
+                file.close();
+                deflater.end();
+                if (!finished) Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo cerrar el fichero de compras " + temp, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.certidevs.export;
+
+import com.certidevs.archive.ArchivedPurchase;
+import com.certidevs.archive.PurchaseArchive;
+import com.certidevs.dto.PurchaseExportDTO;
+import com.certidevs.model.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+Exportación de compras para análisis a un fichero columnar (PurchaseColumnFile) en directory.
+
+Las compras no se cargan como entidades ni se paginan: primero se recorren las archivadas (PurchaseArchive.forEachRow)
+y después las de MySQL con una sola consulta en streaming. El JdbcTemplate propio tiene fetch-size, y con
+useCursorFetch=true en la URL el driver trae las filas de fetch-size en fetch-size en lugar de cargar el resultado entero.
+En memoria solo está el grupo de filas en curso (row-group-size compras). Solo una exportación a la vez.
+ */
+@Slf4j
+@Service
+public class PurchaseExportService {
+
+    // Columnas de purchase sin JOIN: el producto se exporta por id
+    private static final String PURCHASES = """
+            SELECT id, purchase_date, email, product_id, quantity, total_price FROM purchase
+            WHERE purchase_date >= ? AND purchase_date < ?
+            ORDER BY purchase_date, id
+            """;
+
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PurchaseArchive purchaseArchive;
+    private final Path directory;
+    private final int rowGroupSize;
+    private final Clock clock;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public PurchaseExportService(DataSource dataSource,
+                                 PlatformTransactionManager transactionManager,
+                                 PurchaseArchive purchaseArchive,
+                                 @Value("${purchase.export.directory:exports}") String directory,
+                                 @Value("${purchase.export.fetch-size:1000}") int fetchSize,
+                                 @Value("${purchase.export.row-group-size:65536}") int rowGroupSize) {
+        this(streamingJdbcTemplate(dataSource, fetchSize), transactionManager, purchaseArchive, directory, rowGroupSize,
+                Clock.systemDefaultZone());
+    }
+
+    PurchaseExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                          PurchaseArchive purchaseArchive, String directory, int rowGroupSize, Clock clock) {
+        if (rowGroupSize < 1) throw new IllegalArgumentException("row-group-size debe ser al menos 1.");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.purchaseArchive = purchaseArchive;
+        this.directory = Path.of(directory);
+        this.rowGroupSize = rowGroupSize;
+        this.clock = clock;
+    }
+
+    // JdbcTemplate aparte: el compartido no debe leer por cursor en el resto de consultas
+    private static JdbcTemplate streamingJdbcTemplate(DataSource dataSource, int fetchSize) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        return jdbcTemplate;
+    }
+
+    // Exporta las compras de los días [from, to], ambos incluidos, ordenadas por fecha e id
+    public PurchaseExportDTO export(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) throw new IllegalArgumentException("La fecha final no puede ser anterior a la inicial.");
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay una exportación de compras en curso.");
+        }
+        try {
+            return run(from.atStartOfDay(), to.plusDays(1).atStartOfDay());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private PurchaseExportDTO run(LocalDateTime from, LocalDateTime to) {
+        long started = System.nanoTime();
+        Path file = directory.resolve("purchases-" + LocalDateTime.now(clock).format(FILE_NAME) + ".pcol");
+
+        PurchaseColumnFile exported;
+        try (PurchaseColumnFile.Writer writer = new PurchaseColumnFile.Writer(file, rowGroupSize)) {
+            purchaseArchive.forEachRow(from, to, writer::append);
+            // Las compras de MySQL son todas posteriores a las archivadas: el fichero queda ordenado
+            LocalDateTime hotFrom = max(from, purchaseArchive.getArchivedBefore());
+            if (hotFrom.isBefore(to)) {
+                RowCallbackHandler append = rs -> writer.append(toRow(rs));
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(PURCHASES, append,
+                        Timestamp.valueOf(hotFrom), Timestamp.valueOf(to)));
+            }
+            exported = writer.finish();
+        }
+
+        long bytes;
+        try {
+            bytes = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el fichero exportado " + file, e);
+        }
+        log.info("Exportadas {} compras a {} ({} bytes)", exported.getRowCount(), file, bytes);
+        return new PurchaseExportDTO(file.toString(), exported.getRowCount(), exported.getRowGroups().size(), bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return b != null && b.isAfter(a) ? b : a;
+    }
+
+    private static ArchivedPurchase toRow(ResultSet rs) throws SQLException {
+        long productId = rs.getLong("product_id");
+        boolean withoutProduct = rs.wasNull();
+        return new ArchivedPurchase(
+                rs.getLong("id"),
+                rs.getString("email"),
+                withoutProduct ? null : productId,
+                rs.getInt("quantity"),
+                Money.ofMinor(rs.getLong("total_price")),
+                rs.getTimestamp("purchase_date").toLocalDateTime());
+    }
+}
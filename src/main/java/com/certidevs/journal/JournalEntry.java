@@ -0,0 +1,77 @@
+package com.certidevs.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+Evento binario del diario de compras.
+
+Formato del payload (big endian):
+type (1) | timestamp (8) | purchaseId (8) | productId (8) | quantity (4) | totalPrice (8) | emailLength (2) | email (UTF-8)
+
+- PURCHASE: compra nueva, resta quantity al stock de productId.
+- CANCEL: compra cancelada. Si productId != 0 devuelve quantity al stock.
+- RESTOCK: unidades devueltas al stock sin compra asociada (cancelaciones masivas, purchaseId = 0).
+ */
+public record JournalEntry(
+        Type type,
+        long timestamp,
+        long purchaseId,
+        long productId,
+        int quantity,
+        double totalPrice,
+        String email) {
+
+    static final int FIXED_SIZE = 1 + 8 + 8 + 8 + 4 + 8 + 2;
+    static final int MAX_EMAIL_BYTES = 320;
+
+    public enum Type {
+        PURCHASE, CANCEL, RESTOCK
+    }
+
+    public static JournalEntry purchase(long timestamp, long purchaseId, long productId, int quantity,
+                                        double totalPrice, String email) {
+        return new JournalEntry(Type.PURCHASE, timestamp, purchaseId, productId, quantity, totalPrice, email);
+    }
+
+    public static JournalEntry cancel(long timestamp, long purchaseId, long productId, int quantity) {
+        return new JournalEntry(Type.CANCEL, timestamp, purchaseId, productId, quantity, 0, null);
+    }
+
+    public static JournalEntry restock(long timestamp, long productId, int quantity) {
+        return new JournalEntry(Type.RESTOCK, timestamp, 0, productId, quantity, 0, null);
+    }
+
+    byte[] emailBytes() {
+        if (email == null) return new byte[0];
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_EMAIL_BYTES) {
+            throw new IllegalArgumentException("Email demasiado largo para el diario.");
+        }
+        return bytes;
+    }
+
+    void writeTo(ByteBuffer buffer, byte[] emailBytes) {
+        buffer.put((byte) type.ordinal());
+        buffer.putLong(timestamp);
+        buffer.putLong(purchaseId);
+        buffer.putLong(productId);
+        buffer.putInt(quantity);
+        buffer.putDouble(totalPrice);
+        buffer.putShort((short) emailBytes.length);
+        buffer.put(emailBytes);
+    }
+
+    static JournalEntry readFrom(ByteBuffer buffer) {
+        Type type = Type.values()[buffer.get()];
+        long timestamp = buffer.getLong();
+        long purchaseId = buffer.getLong();
+        long productId = buffer.getLong();
+        int quantity = buffer.getInt();
+        double totalPrice = buffer.getDouble();
+        byte[] emailBytes = new byte[buffer.getShort()];
+        buffer.get(emailBytes);
+        String email = emailBytes.length == 0 ? null : new String(emailBytes, StandardCharsets.UTF_8);
+        return new JournalEntry(type, timestamp, purchaseId, productId, quantity, totalPrice, email);
+    }
+}
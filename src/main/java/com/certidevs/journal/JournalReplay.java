@@ -0,0 +1,75 @@
+package com.certidevs.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+Herramienta de recuperación: lee el diario de compras en orden y reconstruye
+- la variación de stock por producto (negativa = unidades vendidas y no devueltas)
+- las compras vivas (compradas y no canceladas) por id.
+Aplicando stockDeltas sobre un stock base conocido se obtiene el stock actual.
+ */
+public class JournalReplay {
+
+    private final Map<Long, Long> stockDeltas = new HashMap<>();
+    private final Map<Long, JournalEntry> purchases = new LinkedHashMap<>();
+    private long entries;
+
+    public static JournalReplay replay(Path directory) {
+        JournalReplay replay = new JournalReplay();
+        read(directory, replay::apply);
+        return replay;
+    }
+
+    // Recorre todos los registros válidos de todos los segmentos en orden
+    public static void read(Path directory, Consumer<JournalEntry> consumer) {
+        try {
+            for (Path segmentPath : PurchaseJournal.segments(directory)) {
+                try (FileChannel channel = FileChannel.open(segmentPath)) {
+                    MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    if (PurchaseJournal.scan(segment, consumer) >= 0) {
+                        return; // Segmento sin marca ROLL: es el último con datos
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el diario de compras en " + directory, e);
+        }
+    }
+
+    void apply(JournalEntry entry) {
+        entries++;
+        switch (entry.type()) {
+            case PURCHASE -> {
+                stockDeltas.merge(entry.productId(), (long) -entry.quantity(), Long::sum);
+                purchases.put(entry.purchaseId(), entry);
+            }
+            case CANCEL -> {
+                purchases.remove(entry.purchaseId());
+                if (entry.productId() != 0) {
+                    stockDeltas.merge(entry.productId(), (long) entry.quantity(), Long::sum);
+                }
+            }
+            case RESTOCK -> stockDeltas.merge(entry.productId(), (long) entry.quantity(), Long::sum);
+        }
+    }
+
+    public Map<Long, Long> getStockDeltas() {
+        return stockDeltas;
+    }
+
+    public Map<Long, JournalEntry> getPurchases() {
+        return purchases;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,335 @@
+package com.certidevs.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+Diario de compras de solo escritura al final (append-only) sobre ficheros mapeados en memoria.
+
+- El diario se divide en segmentos de tamaño fijo (journal-0000000000.log, journal-0000000001.log...).
+  Cada registro es: longitud del payload (4) | CRC32 del payload (4) | payload (ver JournalEntry).
+  Un registro nunca cruza de segmento: si no cabe se escribe la marca ROLL (-1) y se abre el siguiente.
+- Escribir es copiar bytes en el MappedByteBuffer. Lo caro es el fsync (force), y depende de FsyncPolicy:
+  EVERY_WRITE hace un force por registro, GROUP_COMMIT comparte un único force entre todos los escritores
+  que llegan en la misma ventana de group-commit, y ASYNC no espera (force periódico en segundo plano).
+- Al abrir se recorre el último segmento para continuar detrás del último registro válido (CRC correcto).
+- Si un force del hilo de group commit falla, el diario queda inservible (failed): los escritores que esperaban
+  y los siguientes reciben una excepción en lugar de esperar a un fsync que ya no va a llegar.
+ */
+@Slf4j
+public class PurchaseJournal implements AutoCloseable {
+
+    public enum FsyncPolicy {
+        EVERY_WRITE, GROUP_COMMIT, ASYNC
+    }
+
+    static final int HEADER_SIZE = 8;
+    static final int ROLL_MARKER = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final long groupCommitWindowNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition durableCondition = lock.newCondition();
+    private final Condition pendingCondition = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int offset;
+    private long writePosition; // Posición lógica global: segmentIndex * segmentSize + offset
+    private long durablePosition;
+    private volatile boolean closed;
+    private RuntimeException failed; // Error del hilo de group commit. Protegido por lock
+    private Thread flusher;
+
+    public PurchaseJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long groupCommitWindowMicros) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupCommitWindowNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitWindowMicros);
+    }
+
+    public PurchaseJournal open() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments(directory);
+            segmentIndex = segments.isEmpty() ? 0 : segments.size() - 1;
+            mapSegment(segmentIndex);
+            offset = recoverEndOffset();
+            writePosition = (long) segmentIndex * segmentSize + offset;
+            durablePosition = writePosition;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el diario de compras en " + directory, e);
+        }
+
+        if (fsyncPolicy != FsyncPolicy.EVERY_WRITE) {
+            flusher = new Thread(this::flushLoop, "purchase-journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        log.info("Diario de compras abierto en {} (segmento {}, offset {}, fsync {})",
+                directory, segmentIndex, offset, fsyncPolicy);
+        return this;
+    }
+
+    /*
+    Añade un registro y, según la política, espera a que sea duradero. Devuelve su posición lógica.
+     */
+    public long append(JournalEntry entry) {
+        return appendAll(List.of(entry));
+    }
+
+    // Añade varios registros y espera un único fsync para todos ellos
+    public long appendAll(List<JournalEntry> entries) {
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("El diario de compras está cerrado.");
+            if (failed != null) throw failure();
+
+            int startOffset = offset;
+            int startSegment = segmentIndex;
+            for (JournalEntry entry : entries) {
+                write(entry);
+            }
+            long position = writePosition;
+
+            switch (fsyncPolicy) {
+                case EVERY_WRITE -> {
+                    // Solo se sincronizan las páginas de los registros recién escritos
+                    int from = startSegment == segmentIndex ? startOffset : 0;
+                    segment.force(from, offset - from);
+                    durablePosition = position;
+                }
+                case GROUP_COMMIT -> {
+                    pendingCondition.signal();
+                    while (durablePosition < position && !closed) {
+                        if (failed != null) throw failure();
+                        durableCondition.awaitUninterruptibly();
+                    }
+                }
+                case ASYNC -> pendingCondition.signal();
+            }
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private IllegalStateException failure() {
+        return new IllegalStateException("El diario de compras no pudo sincronizar los registros.", failed);
+    }
+
+    private void write(JournalEntry entry) {
+        byte[] emailBytes = entry.emailBytes();
+        int payloadSize = JournalEntry.FIXED_SIZE + emailBytes.length;
+
+        // Se reservan 4 bytes extra para poder escribir siempre la marca ROLL
+        if (offset + HEADER_SIZE + payloadSize + 4 > segmentSize) {
+            roll();
+        }
+
+        segment.position(offset + HEADER_SIZE);
+        entry.writeTo(segment, emailBytes);
+        crc.reset();
+        crc.update(segment.slice(offset + HEADER_SIZE, payloadSize));
+        segment.putInt(offset + 4, (int) crc.getValue());
+        segment.putInt(offset, payloadSize); // La longitud se escribe la última: el registro queda completo
+
+        offset += HEADER_SIZE + payloadSize;
+        writePosition = (long) segmentIndex * segmentSize + offset;
+    }
+
+    // Hilo de group commit: un único force cubre todos los registros escritos desde el anterior
+    private void flushLoop() {
+        while (!closed) {
+            lock.lock();
+            try {
+                while (writePosition == durablePosition && !closed) {
+                    pendingCondition.awaitNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            // Ventana de agrupación: los escritores que lleguen ahora comparten el mismo fsync
+            if (groupCommitWindowNanos > 0) {
+                LockSupport.parkNanos(groupCommitWindowNanos);
+            }
+
+            MappedByteBuffer toForce;
+            long target;
+            int from;
+            int to;
+            lock.lock();
+            try {
+                toForce = segment;
+                target = writePosition;
+                long segmentStart = (long) segmentIndex * segmentSize;
+                from = (int) Math.max(0, durablePosition - segmentStart);
+                to = offset;
+            } finally {
+                lock.unlock();
+            }
+
+            // Fuera del lock: los escritores pueden seguir añadiendo registros mientras se sincroniza el rango
+            try {
+                force(toForce, from, to - from);
+            } catch (RuntimeException e) {
+                log.error("No se pudo sincronizar el diario de compras: se rechazan las escrituras", e);
+                lock.lock();
+                try {
+                    failed = e;
+                    durableCondition.signalAll(); // Los escritores en espera lanzan la excepción
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durablePosition = Math.max(durablePosition, target);
+                durableCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Sincroniza el rango del segmento con el disco (los tests simulan aquí un error de E/S)
+    void force(MappedByteBuffer toForce, int from, int length) {
+        toForce.force(from, length);
+    }
+
+    private void roll() throws UncheckedIOException {
+        segment.putInt(offset, ROLL_MARKER);
+        segment.force(); // El segmento completo es duradero antes de pasar al siguiente
+        try {
+            channel.close();
+            mapSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear un segmento nuevo del diario", e);
+        }
+        segmentIndex++;
+        offset = 0;
+        // Todo lo anterior al nuevo segmento ya es duradero
+        durablePosition = (long) segmentIndex * segmentSize;
+        durableCondition.signalAll();
+    }
+
+    private void mapSegment(int index) throws IOException {
+        channel = FileChannel.open(segmentPath(directory, index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    // Busca el final del último registro válido y pone a cero lo que haya detrás (escritura a medias)
+    private int recoverEndOffset() {
+        int end = scan(segment, entry -> { });
+        if (end < 0) {
+            // El segmento ya tiene marca ROLL: se continúa en uno nuevo
+            try {
+                channel.close();
+                mapSegment(++segmentIndex);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return 0;
+        }
+        for (int i = end; i < segmentSize && segment.get(i) != 0; i++) {
+            segment.put(i, (byte) 0);
+        }
+        return end;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            segment.force();
+            durablePosition = writePosition;
+            durableCondition.signalAll();
+            pendingCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (flusher != null) flusher.join(TimeUnit.SECONDS.toMillis(5));
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long writePosition() {
+        lock.lock();
+        try {
+            return writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+    Recorre los registros válidos de un segmento. Devuelve el offset del final de los datos,
+    o -1 si el segmento termina con la marca ROLL (los datos siguen en el siguiente segmento).
+     */
+    static int scan(ByteBuffer segment, Consumer<JournalEntry> consumer) {
+        CRC32 checksum = new CRC32();
+        int position = 0;
+        while (position + HEADER_SIZE <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length == ROLL_MARKER) return -1;
+            if (length <= 0 || position + HEADER_SIZE + length > segment.limit()) break;
+
+            ByteBuffer payload = segment.slice(position + HEADER_SIZE, length);
+            checksum.reset();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != segment.getInt(position + 4)) break; // Registro incompleto
+
+            consumer.accept(JournalEntry.readFrom(payload));
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("journal-\\d{10}\\.log"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve("journal-%010d.log".formatted(index));
+    }
+}
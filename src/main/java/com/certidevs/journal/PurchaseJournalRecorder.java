@@ -0,0 +1,77 @@
+package com.certidevs.journal;
+
+import com.certidevs.event.PurchaseCancelledEvent;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.model.Purchase;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Escribe en el diario de compras los eventos de PurchaseService una vez confirmada la transacción
+(así el diario no contiene compras que se deshicieron). No añade escrituras en MySQL.
+ */
+@Component
+public class PurchaseJournalRecorder {
+
+    private final PurchaseJournal journal; // null si el diario está desactivado
+
+    public PurchaseJournalRecorder(@Value("${purchase.journal.enabled:false}") boolean enabled,
+                                   @Value("${purchase.journal.directory:journal}") String directory,
+                                   @Value("${purchase.journal.segment-size:67108864}") int segmentSize,
+                                   @Value("${purchase.journal.fsync:GROUP_COMMIT}") PurchaseJournal.FsyncPolicy fsyncPolicy,
+                                   @Value("${purchase.journal.group-commit-window-micros:200}") long groupCommitWindowMicros) {
+        this.journal = enabled
+                ? new PurchaseJournal(Path.of(directory), segmentSize, fsyncPolicy, groupCommitWindowMicros).open()
+                : null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        if (journal == null) return;
+
+        Purchase purchase = event.purchase();
+        journal.append(JournalEntry.purchase(
+                purchase.getPurchaseDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                purchase.getId(),
+                purchase.getProduct().getId(),
+                purchase.getQuantity(),
+                purchase.getTotalPrice().toDouble(), // Formato del diario sin cambios: de céntimos a double es exacto al volver a redondear
+                purchase.getEmail()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPurchaseCancelled(PurchaseCancelledEvent event) {
+        if (journal == null) return;
+
+        Purchase purchase = event.purchase();
+        journal.append(JournalEntry.cancel(System.currentTimeMillis(),
+                purchase.getId(), purchase.getProduct().getId(), purchase.getQuantity()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPurchasesCancelled(PurchasesCancelledEvent event) {
+        if (journal == null) return;
+
+        // Las unidades se devuelven agregadas por producto y las compras se anulan por id
+        long now = System.currentTimeMillis();
+        List<JournalEntry> entries = new ArrayList<>();
+        event.summary().restoredStockByProduct().forEach((productId, quantity) ->
+                entries.add(JournalEntry.restock(now, productId, quantity.intValue())));
+        event.purchaseIds().forEach(purchaseId ->
+                entries.add(JournalEntry.cancel(now, purchaseId, 0, 0)));
+        journal.appendAll(entries); // Un único fsync para toda la cancelación
+    }
+
+    @PreDestroy
+    public void close() {
+        if (journal != null) journal.close();
+    }
+}
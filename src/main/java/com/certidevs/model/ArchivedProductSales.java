@@ -0,0 +1,29 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/*
+Unidades vendidas de un producto en un mes archivado (ver com.certidevs.archive.PurchasePartitionManager).
+Las compras archivadas salen de MySQL: la reconciliación de stock suma estas filas a las de las particiones activas.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "archived_product_sales", uniqueConstraints =
+        @UniqueConstraint(name = "uk_archived_product_sales", columnNames = {"product_id", "archive_month"}))
+public class ArchivedProductSales {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    @Column(name = "archive_month", nullable = false, length = 7) // "2024-01"
+    private String archiveMonth;
+    @Column(nullable = false)
+    private Long units;
+}
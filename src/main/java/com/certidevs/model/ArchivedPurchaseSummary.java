@@ -0,0 +1,33 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+Resumen de las compras archivadas de un cliente en un mes (ver com.certidevs.archive.PurchasePartitionManager).
+Al archivar una partición sus compras salen de MySQL: los resúmenes de customer_purchase_summary
+se siguen recalculando sumando estas filas a las compras de las particiones activas.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "archived_purchase_summary", uniqueConstraints =
+        @UniqueConstraint(name = "uk_archived_purchase_summary", columnNames = {"email", "archive_month"}))
+public class ArchivedPurchaseSummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private String email;
+    @Column(name = "archive_month", nullable = false, length = 7) // "2024-01"
+    private String archiveMonth;
+    private Long purchaseCount;
+    private Money totalSpent;
+    private LocalDateTime lastPurchaseDate;
+}
@@ -0,0 +1,53 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+
+/*
+Clave de idempotencia de una compra: los reintentos de un cliente con la misma clave
+devuelven la compra original en vez de crear otra.
+requestHash es la huella de la petición original (fingerprint): la misma clave con otra compra se rechaza.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "checkout_idempotency_key", indexes =
+        // Limpieza de las claves caducadas (IdempotentCheckoutService.deleteExpired)
+        @Index(name = "idx_idempotency_created_at", columnList = "created_at"))
+public class CheckoutIdempotencyKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false, unique = true, length = 100) // El índice único garantiza una sola compra por clave
+    private String idempotencyKey;
+    private Long purchaseId;
+    @Column(length = 64) // null en las claves guardadas antes de existir la huella
+    private String requestHash;
+    private LocalDateTime createdAt;
+
+    // SHA-256 en hexadecimal de email, producto y cantidad
+    public static String fingerprint(String email, Long productId, Integer quantity) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((email + "\n" + productId + "\n" + quantity).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e); // Obligatorio en toda JVM
+        }
+    }
+
+    // La petición coincide con la original (las claves antiguas sin huella se aceptan)
+    public boolean matches(String fingerprint) {
+        return requestHash == null || requestHash.equals(fingerprint);
+    }
+}
@@ -0,0 +1,28 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+Resumen de compras de un cliente (número de compras, gasto total y fecha de la última compra).
+Se mantiene en la misma transacción que las compras y cancelaciones para no tener que recorrer
+todas las compras del cliente en la página de su cuenta.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "customer_purchase_summary")
+public class CustomerPurchaseSummary {
+    @Id
+    @Column(length = 255)
+    private String email;
+    private Long purchaseCount;
+    private Money totalSpent;
+    private LocalDateTime lastPurchaseDate;
+}
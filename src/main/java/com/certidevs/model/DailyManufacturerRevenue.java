@@ -0,0 +1,35 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/*
+Resumen diario de ventas de un fabricante (suma de sus productos): ingresos, unidades y número de compras.
+Las compras de productos sin fabricante solo cuentan en daily_product_revenue.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "daily_manufacturer_revenue", uniqueConstraints =
+        @UniqueConstraint(name = "uk_daily_manufacturer_revenue", columnNames = {"day", "manufacturer_id"}))
+public class DailyManufacturerRevenue {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private LocalDate day;
+    @Column(name = "manufacturer_id", nullable = false)
+    private Long manufacturerId;
+    @Column(nullable = false)
+    private Money revenue;
+    @Column(nullable = false)
+    private Long units;
+    @Column(nullable = false)
+    private Long orderCount;
+}
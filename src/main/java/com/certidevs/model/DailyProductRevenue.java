@@ -0,0 +1,35 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/*
+Resumen diario de ventas de un producto: ingresos, unidades y número de compras.
+Lo mantiene RevenueRollupService de forma incremental; los informes de ingresos solo leen estas filas.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "daily_product_revenue", uniqueConstraints =
+        @UniqueConstraint(name = "uk_daily_product_revenue", columnNames = {"day", "product_id"}))
+public class DailyProductRevenue {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false)
+    private LocalDate day;
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    @Column(nullable = false)
+    private Money revenue;
+    @Column(nullable = false)
+    private Long units;
+    @Column(nullable = false)
+    private Long orderCount;
+}
@@ -0,0 +1,37 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/*
+Regla de descuento por tramos: a partir de minQuantity unidades se aplica percentage % de descuento.
+El ámbito indica a qué se aplica: todos los productos (GLOBAL), los de un fabricante o un producto concreto.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "discount_rule")
+public class DiscountRule {
+
+    public enum Scope {
+        GLOBAL, MANUFACTURER, PRODUCT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Scope scope;
+    private Long targetId; // Id del fabricante o del producto (null en GLOBAL)
+    @Column(nullable = false)
+    private Integer minQuantity;
+    @Column(nullable = false)
+    private Double percentage;
+    @Column(columnDefinition = "boolean default true")
+    private Boolean active;
+}
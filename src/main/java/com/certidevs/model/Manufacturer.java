@@ -11,7 +11,11 @@ import lombok.*;
 @NoArgsConstructor
 @ToString
 @Builder
+@NamedEntityGraph(name = Manufacturer.WITH_ADDRESS, attributeNodes = @NamedAttributeNode("address"))
 public class Manufacturer {
+
+    public static final String WITH_ADDRESS = "Manufacturer.withAddress";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -21,8 +25,10 @@ public class Manufacturer {
     @Column(name = "manufacturer_year")
     private Integer year;
 
-    @OneToOne(cascade = CascadeType.ALL) // Define una relación OneToOne con Address
+    // LAZY: la dirección solo se usa en el formulario de edición (findWithAddressById)
+    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY) // Define una relación OneToOne con Address
     @JoinColumn(name = "address_id", referencedColumnName = "id") // Especifica la columna de unión en la tabla manufacturer
+    @ToString.Exclude
     private Address address; // Dirección asociada al fabricante
 
 }
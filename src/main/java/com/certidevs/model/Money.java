@@ -0,0 +1,103 @@
+package com.certidevs.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/*
+Importe en coma fija: un long con los céntimos (unidades menores, 2 decimales).
+
+Con Double 0.1 + 0.2 no es 0.3 y cada operación crea un objeto nuevo. Aquí sumar y multiplicar
+son operaciones sobre long, exactas y sin redondeos acumulados. Los métodos estáticos (multiply,
+applyDiscount...) trabajan directamente con los céntimos y no reservan memoria: son los que usa
+la compra; el objeto Money solo se crea al guardar el resultado en la entidad.
+
+Se guarda en columnas BIGINT con MoneyConverter. En JSON y en los formularios es un decimal ("34.32").
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_UNIT = 100;
+    public static final Money ZERO = new Money(0);
+
+    // Descuentos en puntos básicos: 10000 = 100 %
+    public static final int BASIS_POINTS = 10_000;
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    // Importe entero: Money.of(30) = 30.00
+    public static Money of(long units) {
+        return ofMinor(Math.multiplyExact(units, MINOR_PER_UNIT));
+    }
+
+    // Redondeo al céntimo (HALF_UP), igual que las columnas que guardaban double
+    @JsonCreator
+    public static Money of(BigDecimal amount) {
+        return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    // Texto de los formularios: "34.32", "34,32" o "34". Spring lo usa para convertir los parámetros
+    public static Money valueOf(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("El importe es obligatorio.");
+        }
+        try {
+            return of(new BigDecimal(text.trim().replace(',', '.')));
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Importe no válido: " + text, e);
+        }
+    }
+
+    // Conversión de importes antiguos guardados como double
+    public static Money fromDouble(double amount) {
+        return ofMinor(Math.round(amount * MINOR_PER_UNIT));
+    }
+
+    // Aritmética sin reservar memoria: operan sobre céntimos y lanzan ArithmeticException si desbordan
+
+    public static long add(long minorUnits, long otherMinorUnits) {
+        return Math.addExact(minorUnits, otherMinorUnits);
+    }
+
+    public static long multiply(long minorUnits, long quantity) {
+        return Math.multiplyExact(minorUnits, quantity);
+    }
+
+    // Resta el descuento (en puntos básicos) redondeando al céntimo más cercano, las mitades hacia arriba
+    public static long applyDiscount(long minorUnits, int discountBasisPoints) {
+        if (discountBasisPoints == 0) return minorUnits;
+        long scaled = Math.multiplyExact(minorUnits, BASIS_POINTS - discountBasisPoints);
+        return Math.floorDiv(scaled + BASIS_POINTS / 2, BASIS_POINTS);
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(add(minorUnits, other.minorUnits));
+    }
+
+    public Money times(long quantity) {
+        return ofMinor(multiply(minorUnits, quantity));
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public double toDouble() {
+        return minorUnits / (double) MINOR_PER_UNIT;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+Fila de la bandeja de salida (transactional outbox): se inserta en la misma transacción que la compra
+o la cancelación, así que existe si y solo si el cambio se confirmó. OutboxRelay la entrega a los
+consumidores y después rellena publishedAt.
+
+El id es IDENTITY (AUTO_INCREMENT): se asigna al insertar, con el producto ya bloqueado por la
+transacción, por lo que los eventos de un mismo producto tienen ids crecientes en orden de commit.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "outbox_event", indexes =
+        // Pendientes en orden de id: el relay lee siempre desde la primera fila sin publicar
+        @Index(name = "idx_outbox_published_id", columnList = "published_at, id"))
+public class OutboxEvent {
+
+    public enum Type {
+        PURCHASE_CREATED,
+        PURCHASE_CANCELLED,
+        PURCHASES_CANCELLED // Cancelación masiva: una fila por producto
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Type type;
+    private Long aggregateId; // Id de la compra (null en las cancelaciones masivas)
+    private Long productId;
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload; // JSON
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+}
@@ -10,19 +10,38 @@ import lombok.*;
 @NoArgsConstructor
 @Getter
 @Setter
+@NamedEntityGraph(name = Product.WITH_MANUFACTURER, attributeNodes = @NamedAttributeNode("manufacturer"))
+@Table(indexes = {
+        // Índices para la lista de productos paginada por (columna ordenada, id), ver ProductListService
+        @Index(name = "idx_product_name_id", columnList = "name, id"),
+        @Index(name = "idx_product_price_id", columnList = "price, id"),
+        @Index(name = "idx_product_quantity_id", columnList = "quantity, id")
+})
 public class Product {
 
+    public static final String WITH_MANUFACTURER = "Product.withManufacturer";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String name;
-    private Double price;
+    // Céntimos en una columna BIGINT (MoneyConverter)
+    private Money price;
     private Integer quantity;
     @Column(columnDefinition = "boolean default true")
     private Boolean active;
+    // Umbral de stock bajo para las alertas (null: purchase.low-stock.default-threshold)
+    private Integer lowStockThreshold;
+
+    // Bloqueo optimista: Hibernate incrementa la versión en cada UPDATE y falla si otra transacción la cambió antes
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
 
     //asociación
-    @ManyToOne
+    // LAZY: la compra solo necesita el id del fabricante (descuentos, resúmenes de ingresos) y el proxy ya lo tiene
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
     private Manufacturer manufacturer;
 
 }
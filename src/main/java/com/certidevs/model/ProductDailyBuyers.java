@@ -0,0 +1,34 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/*
+Compradores distintos de un producto en un día, guardados como sketch HyperLogLog serializado
+(ver com.certidevs.stats.HyperLogLog). Con pocos compradores ocupa 3 bytes por comprador y nunca más de 4 KB.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "product_daily_buyers", uniqueConstraints =
+        @UniqueConstraint(name = "uk_product_daily_buyers", columnNames = {"product_id", "day"}))
+public class ProductDailyBuyers {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    @Column(nullable = false)
+    private LocalDate day;
+    @Column(nullable = false, columnDefinition = "varbinary(4097)")
+    @ToString.Exclude
+    private byte[] sketch;
+    @Version // Varias instancias pueden fusionar el mismo sketch a la vez
+    private Long version;
+}
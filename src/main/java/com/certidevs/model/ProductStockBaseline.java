@@ -0,0 +1,29 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+Stock recibido de un producto: el stock que tendría si no se hubiera vendido nada.
+Las compras y las cancelaciones no lo cambian, así que el stock esperado es
+recibido - unidades de las compras (activas y archivadas) - unidades reservadas en carritos.
+Lo crea y lo corrige la reconciliación de stock (ver com.certidevs.service.StockReconciliationService).
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "product_stock_baseline")
+public class ProductStockBaseline {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+    @Column(nullable = false)
+    private Long receivedQuantity;
+    private LocalDateTime updatedAt;
+}
@@ -12,15 +12,36 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @ToString
 @Builder
+// Compra con su producto y el fabricante del producto en una sola consulta (LEFT JOIN)
+@NamedEntityGraph(name = Purchase.WITH_PRODUCT,
+        attributeNodes = @NamedAttributeNode(value = "product", subgraph = "product"),
+        subgraphs = @NamedSubgraph(name = "product", attributeNodes = @NamedAttributeNode("manufacturer")))
+@Table(indexes = {
+        // Índices para el historial paginado por (purchaseDate, id), global y por email
+        @Index(name = "idx_purchase_date_id", columnList = "purchase_date, id"),
+        @Index(name = "idx_purchase_email_date_id", columnList = "email, purchase_date, id"),
+        @Index(name = "idx_purchase_product", columnList = "product_id")
+})
 public class Purchase {
+
+    public static final String WITH_PRODUCT = "Purchase.withProduct";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Secuencia con optimizador pooled: Hibernate reserva 50 ids por consulta y puede agrupar los INSERT en lotes JDBC
+    // (con IDENTITY necesita ejecutar cada INSERT por separado para conocer el id generado)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_seq")
+    @SequenceGenerator(name = "purchase_seq", sequenceName = "purchase_seq", allocationSize = 50)
     private Long id;
     private String email;
     private Integer quantity;
-    private Double totalPrice;
+    private Money totalPrice;
     private LocalDateTime purchaseDate;
 
-    @ManyToOne
+    // Sin clave ajena: MySQL no las admite en tablas particionadas (ver PurchasePartitionManager)
+    // LAZY: las consultas que necesitan el producto lo piden con el grafo WITH_PRODUCT o una proyección.
+    // getProduct().getId() no carga el producto (el proxy ya conoce su id)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
+    @JoinColumn(foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Product product;
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.certidevs.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+Marca de agua de un resumen incremental: la última compra (purchase.id) ya sumada.
+La fila también sirve de lock: quien escribe en los resúmenes la bloquea antes (ver RevenueRollupService).
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+@Table(name = "rollup_watermark")
+public class RollupWatermark {
+    @Id
+    @Column(length = 50)
+    private String name;
+    @Column(nullable = false)
+    private Long lastPurchaseId;
+    private LocalDateTime updatedAt;
+}
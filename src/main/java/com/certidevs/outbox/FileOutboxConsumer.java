@@ -0,0 +1,57 @@
+package com.certidevs.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+Consumidor que añade cada evento como una línea JSON a un fichero (purchase.outbox.file.path).
+Escribe en un buffer y al final de cada lote lo vacía y hace fsync: un evento solo cuenta como
+entregado cuando está en disco.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.outbox.file.path")
+public class FileOutboxConsumer implements OutboxConsumer {
+
+    private final ObjectMapper objectMapper;
+    private final FileOutputStream file;
+    private final BufferedOutputStream output;
+
+    public FileOutboxConsumer(ObjectMapper objectMapper,
+                              @Value("${purchase.outbox.file.path}") Path path) throws IOException {
+        this.objectMapper = objectMapper;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.file = new FileOutputStream(path.toFile(), true);
+        this.output = new BufferedOutputStream(file, 64 * 1024);
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public void accept(OutboxMessage message, boolean endOfBatch) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(OutboxEnvelope.of(message)));
+        output.write('\n');
+        if (endOfBatch) {
+            output.flush();
+            file.getChannel().force(false);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.certidevs.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Consumidor que envía los eventos por HTTP (purchase.outbox.http.url), por ejemplo a un servicio local
+que hace de sistema externo. Agrupa los eventos de cada lote en un único POST con un array JSON.
+La cabecera Idempotency-Key (primer y último id del lote) permite al receptor descartar reenvíos.
+Una respuesta que no sea 2xx lanza IOException y el lote se reintenta.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.outbox.http.url")
+public class HttpOutboxConsumer implements OutboxConsumer {
+
+    private final ObjectMapper objectMapper;
+    private final URI url;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final List<OutboxEnvelope> pending = new ArrayList<>(); // Solo lo usa el hilo del consumidor
+
+    public HttpOutboxConsumer(ObjectMapper objectMapper,
+                              @Value("${purchase.outbox.http.url}") URI url,
+                              @Value("${purchase.outbox.http.timeout:PT5S}") Duration timeout) {
+        this.objectMapper = objectMapper;
+        this.url = url;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public String getName() {
+        return "http";
+    }
+
+    @Override
+    public void accept(OutboxMessage message, boolean endOfBatch) throws IOException, InterruptedException {
+        // Un reintento del último evento del lote no lo vuelve a añadir
+        if (pending.isEmpty() || pending.get(pending.size() - 1).eventId() != message.getEventId()) {
+            pending.add(OutboxEnvelope.of(message));
+        }
+        if (!endOfBatch) return;
+
+        HttpRequest request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", pending.get(0).eventId() + "-" + pending.get(pending.size() - 1).eventId())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(pending)))
+                .build();
+        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("El destino " + url + " respondió " + response.statusCode());
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,17 @@
+package com.certidevs.outbox;
+
+/*
+Consumidor de la bandeja de salida. Cada consumidor recibe todos los eventos, en orden de id, desde su propio hilo.
+
+- Entrega al menos una vez: tras un error o un reinicio se repiten eventos ya recibidos,
+  hay que descartar duplicados por getEventId().
+- Si accept lanza una excepción se reintenta el mismo evento (sin saltarlo, para no desordenar).
+- endOfBatch indica el último evento disponible por ahora: es el momento de vaciar buffers.
+  El evento se da por entregado cuando accept de ese último evento termina sin error.
+ */
+public interface OutboxConsumer {
+
+    String getName();
+
+    void accept(OutboxMessage message, boolean endOfBatch) throws Exception;
+}
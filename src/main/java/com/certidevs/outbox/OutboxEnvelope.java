@@ -0,0 +1,21 @@
+package com.certidevs.outbox;
+
+import com.certidevs.model.OutboxEvent;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.LocalDateTime;
+
+// Formato JSON con el que los consumidores envían cada evento (el payload ya es JSON y se copia tal cual)
+public record OutboxEnvelope(
+        long eventId,
+        OutboxEvent.Type type,
+        Long aggregateId,
+        Long productId,
+        @JsonRawValue String payload,
+        LocalDateTime createdAt) {
+
+    public static OutboxEnvelope of(OutboxMessage message) {
+        return new OutboxEnvelope(message.getEventId(), message.getType(), message.getAggregateId(),
+                message.getProductId(), message.getPayload(), message.getCreatedAt());
+    }
+}
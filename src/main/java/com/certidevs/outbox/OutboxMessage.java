@@ -0,0 +1,32 @@
+package com.certidevs.outbox;
+
+import com.certidevs.model.OutboxEvent;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/*
+Casilla del anillo de OutboxRingBuffer. Las casillas se crean una vez y se reutilizan (como en Disruptor):
+un consumidor solo puede usar el mensaje durante accept, después la casilla se rellena con otro evento.
+ */
+@Getter
+@ToString
+public final class OutboxMessage {
+
+    private long eventId; // Id de outbox_event: los consumidores lo usan para descartar duplicados
+    private OutboxEvent.Type type;
+    private Long aggregateId;
+    private Long productId;
+    private String payload;
+    private LocalDateTime createdAt;
+
+    void set(OutboxEvent event) {
+        this.eventId = event.getId();
+        this.type = event.getType();
+        this.aggregateId = event.getAggregateId();
+        this.productId = event.getProductId();
+        this.payload = event.getPayload();
+        this.createdAt = event.getCreatedAt();
+    }
+}
@@ -0,0 +1,135 @@
+package com.certidevs.outbox;
+
+import com.certidevs.model.OutboxEvent;
+import com.certidevs.repository.OutboxEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+Relay de la bandeja de salida: lleva las filas de outbox_event a los consumidores (OutboxConsumer).
+
+Cada poll-interval, mientras haya filas pendientes:
+1. Lee las primeras batch-size filas sin publicar en orden de id.
+2. Las publica en el anillo (OutboxRingBuffer), que las reparte a todos los consumidores en paralelo.
+3. Espera a que todos los consumidores las entreguen y las marca como publicadas con un único UPDATE.
+
+- Al menos una vez: una fila solo se marca cuando todos la han entregado. Si la aplicación se para
+  antes, el siguiente arranque vuelve a enviar el lote entero.
+- Orden por producto: cada lote empieza en la primera fila pendiente, así que una transacción que
+  confirma tarde con un id menor se envía en el siguiente lote, antes que los eventos posteriores
+  de su producto (que tienen ids mayores, ver OutboxEvent).
+Sin consumidores configurados el relay no arranca y las filas se quedan para los sistemas que consultan la tabla.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final List<OutboxConsumer> consumers;
+    private final int batchSize;
+    private final int ringSize;
+    private final Duration pollInterval;
+    private final Duration retryBackoff;
+    private final Duration retention;
+
+    private OutboxRingBuffer ringBuffer;
+    private ScheduledExecutorService poller;
+
+    public OutboxRelay(OutboxEventRepository outboxRepository,
+                       PlatformTransactionManager transactionManager,
+                       List<OutboxConsumer> consumers,
+                       @Value("${purchase.outbox.batch-size:500}") int batchSize,
+                       @Value("${purchase.outbox.ring-size:4096}") int ringSize,
+                       @Value("${purchase.outbox.poll-interval:PT0.5S}") Duration pollInterval,
+                       @Value("${purchase.outbox.retry-backoff:PT1S}") Duration retryBackoff,
+                       @Value("${purchase.outbox.retention:P7D}") Duration retention) {
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.consumers = consumers;
+        this.batchSize = batchSize;
+        this.ringSize = ringSize;
+        this.pollInterval = pollInterval;
+        this.retryBackoff = retryBackoff;
+        this.retention = retention;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (consumers.isEmpty()) {
+            log.info("Bandeja de salida sin consumidores: el relay no se inicia");
+            return;
+        }
+        ringBuffer = new OutboxRingBuffer(ringSize, consumers, retryBackoff).start();
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                relay();
+            } catch (RuntimeException e) {
+                log.error("Error al enviar la bandeja de salida, se reintentará", e);
+            }
+        }, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                deletePublished();
+            } catch (RuntimeException e) {
+                log.error("Error al limpiar la bandeja de salida", e);
+            }
+        }, 1, 1, TimeUnit.HOURS);
+    }
+
+    // Envía lotes hasta vaciar la bandeja. Devuelve los eventos entregados
+    int relay() {
+        int delivered = 0;
+        while (true) {
+            List<OutboxEvent> batch = transactionTemplate.execute(status ->
+                    outboxRepository.findUnpublished(PageRequest.of(0, batchSize)));
+            if (batch == null || batch.isEmpty()) return delivered;
+
+            long last = -1;
+            List<Long> ids = new ArrayList<>(batch.size());
+            for (OutboxEvent event : batch) {
+                last = ringBuffer.next();
+                ringBuffer.get(last).set(event);
+                ringBuffer.publish(last);
+                ids.add(event.getId());
+            }
+            if (!ringBuffer.awaitDelivered(last)) return delivered; // Parando: el lote se repetirá al arrancar
+
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.markPublished(ids, now));
+            delivered += batch.size();
+            if (batch.size() < batchSize) return delivered;
+        }
+    }
+
+    int deletePublished() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        Integer deleted = transactionTemplate.execute(status -> outboxRepository.deletePublishedBefore(before));
+        return deleted != null ? deleted : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (poller != null) poller.shutdownNow();
+        if (ringBuffer != null) ringBuffer.stop();
+    }
+}
@@ -0,0 +1,140 @@
+package com.certidevs.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Anillo en memoria al estilo Disruptor entre OutboxRelay (un único productor) y los consumidores.
+
+- Las casillas (OutboxMessage) se crean al arrancar y se reutilizan: publicar no reserva memoria.
+- Cada consumidor tiene su hilo y su secuencia (último evento procesado). Todos reciben todos los eventos
+  en orden, así que el orden por producto se mantiene en cada consumidor.
+- El productor no sobrescribe una casilla hasta que el consumidor más lento la ha procesado (contrapresión).
+- Las esperas son cortas con parkNanos: no hay locks ni colas intermedias.
+
+La secuencia del consumidor solo avanza al terminar un lote sin errores: un evento cuenta como
+entregado cuando el consumidor ha vaciado sus buffers (endOfBatch).
+ */
+@Slf4j
+public class OutboxRingBuffer {
+
+    private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final OutboxMessage[] slots;
+    private final int mask;
+    private final long retryBackoffNanos;
+    private final List<Worker> workers = new ArrayList<>();
+
+    private volatile long cursor = -1; // Último evento publicado (escritura volatile = publicación de la casilla)
+    private long nextSequence; // Solo lo usa el productor
+    private volatile boolean running = true;
+
+    public OutboxRingBuffer(int capacity, List<OutboxConsumer> consumers, Duration retryBackoff) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacidad del anillo debe ser potencia de 2.");
+        }
+        this.slots = new OutboxMessage[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new OutboxMessage();
+        }
+        this.mask = capacity - 1;
+        this.retryBackoffNanos = retryBackoff.toNanos();
+        consumers.forEach(consumer -> workers.add(new Worker(consumer)));
+    }
+
+    public OutboxRingBuffer start() {
+        for (Worker worker : workers) {
+            Thread thread = new Thread(worker, "outbox-consumer-" + worker.consumer.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    // Siguiente secuencia libre. Espera a que el consumidor más lento libere la casilla
+    public long next() {
+        long sequence = nextSequence;
+        long wrapPoint = sequence - slots.length;
+        while (wrapPoint > minimumSequence()) {
+            if (!running) throw new IllegalStateException("El anillo de la bandeja de salida está parado.");
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        nextSequence++;
+        return sequence;
+    }
+
+    public OutboxMessage get(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    public void publish(long sequence) {
+        cursor = sequence;
+    }
+
+    // Espera a que todos los consumidores hayan procesado hasta sequence. false si se para antes
+    public boolean awaitDelivered(long sequence) {
+        while (minimumSequence() < sequence) {
+            if (!running) return false;
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        return true;
+    }
+
+    // Secuencia del consumidor más lento (sin consumidores, la del productor)
+    long minimumSequence() {
+        long minimum = cursor;
+        for (Worker worker : workers) {
+            minimum = Math.min(minimum, worker.sequence);
+        }
+        return minimum;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    private final class Worker implements Runnable {
+
+        private final OutboxConsumer consumer;
+        private volatile long sequence = -1; // Último evento entregado
+
+        private Worker(OutboxConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                long available = cursor;
+                if (available <= sequence) {
+                    LockSupport.parkNanos(WAIT_NANOS);
+                    continue;
+                }
+                for (long next = sequence + 1; next <= available; next++) {
+                    if (!deliver(get(next), next == available)) return;
+                }
+                sequence = available;
+            }
+        }
+
+        // Reintenta el mismo evento hasta que se entregue: saltarlo desordenaría los eventos del producto
+        private boolean deliver(OutboxMessage message, boolean endOfBatch) {
+            while (running) {
+                try {
+                    consumer.accept(message, endOfBatch);
+                    return true;
+                } catch (Exception e) {
+                    log.warn("El consumidor {} no pudo procesar el evento {}, se reintentará",
+                            consumer.getName(), message.getEventId(), e);
+                    LockSupport.parkNanos(retryBackoffNanos);
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.certidevs.outbox;
+
+import com.certidevs.event.PurchaseCancelledEvent;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.model.Money;
+import com.certidevs.model.OutboxEvent;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/*
+Escribe las filas de la bandeja de salida (outbox_event) para los sistemas externos.
+
+Los listeners son síncronos (@EventListener): se ejecutan dentro de la transacción de PurchaseService,
+así que la fila se guarda o se deshace junto con la compra o la cancelación.
+ */
+@AllArgsConstructor
+@Component
+public class OutboxWriter {
+
+    private OutboxEventRepository outboxRepository;
+    private EntityManager entityManager;
+    private ObjectMapper objectMapper;
+
+    @EventListener
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        Purchase purchase = event.purchase();
+        save(OutboxEvent.Type.PURCHASE_CREATED, purchase.getId(), purchase.getProduct().getId(), PurchasePayload.of(purchase));
+    }
+
+    @EventListener
+    public void onPurchaseCancelled(PurchaseCancelledEvent event) {
+        Purchase purchase = event.purchase();
+        save(OutboxEvent.Type.PURCHASE_CANCELLED, purchase.getId(), purchase.getProduct().getId(), PurchasePayload.of(purchase));
+    }
+
+    // Cancelación masiva: una fila por producto con sus compras y las unidades devueltas
+    @EventListener
+    public void onPurchasesCancelled(PurchasesCancelledEvent event) {
+        event.purchaseIdsByProduct().forEach((productId, purchaseIds) -> save(OutboxEvent.Type.PURCHASES_CANCELLED,
+                null, productId, new ProductCancellationPayload(productId, purchaseIds,
+                        event.summary().restoredStockByProduct().getOrDefault(productId, 0L))));
+    }
+
+    private void save(OutboxEvent.Type type, Long aggregateId, Long productId, Object payload) {
+        // Enviar antes los cambios pendientes (UPDATE de stock): el producto queda bloqueado antes de numerar el evento
+        if (entityManager.isJoinedToTransaction()) {
+            entityManager.flush();
+        }
+        outboxRepository.save(OutboxEvent.builder()
+                .type(type)
+                .aggregateId(aggregateId)
+                .productId(productId)
+                .payload(toJson(payload))
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento de la bandeja de salida.", e);
+        }
+    }
+
+    record PurchasePayload(Long purchaseId, Long productId, String email, Integer quantity, Money totalPrice,
+                           LocalDateTime purchaseDate) {
+
+        static PurchasePayload of(Purchase purchase) {
+            return new PurchasePayload(purchase.getId(), purchase.getProduct().getId(), purchase.getEmail(),
+                    purchase.getQuantity(), purchase.getTotalPrice(), purchase.getPurchaseDate());
+        }
+    }
+
+    record ProductCancellationPayload(Long productId, List<Long> purchaseIds, Long restoredUnits) {
+    }
+}
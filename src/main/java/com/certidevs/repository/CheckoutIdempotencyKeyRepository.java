@@ -0,0 +1,20 @@
+package com.certidevs.repository;
+
+import com.certidevs.model.CheckoutIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface CheckoutIdempotencyKeyRepository extends JpaRepository<CheckoutIdempotencyKey, Long> {
+
+    Optional<CheckoutIdempotencyKey> findByIdempotencyKey(String idempotencyKey);
+
+    // Limpieza por lotes de las claves caducadas (índice idx_idempotency_created_at)
+    @Modifying
+    @Query(value = "DELETE FROM checkout_idempotency_key WHERE created_at < :before LIMIT :limit", nativeQuery = true)
+    int deleteCreatedBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
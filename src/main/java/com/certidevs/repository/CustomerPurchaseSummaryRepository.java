@@ -0,0 +1,109 @@
+package com.certidevs.repository;
+
+import com.certidevs.archive.PurchasePartition;
+import com.certidevs.model.CustomerPurchaseSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface CustomerPurchaseSummaryRepository extends JpaRepository<CustomerPurchaseSummary, String> {
+
+    /*
+    Suma una compra al resumen del cliente con un único upsert atómico:
+    no hay lectura previa y dos compras simultáneas del mismo cliente no se pisan.
+    Los importes van en céntimos, como las columnas total_price y total_spent (MoneyConverter).
+     */
+    @Modifying
+    @Query(value = """
+    INSERT INTO customer_purchase_summary (email, purchase_count, total_spent, last_purchase_date)
+    VALUES (:email, 1, :totalPrice, :purchaseDate)
+    ON DUPLICATE KEY UPDATE
+        purchase_count = purchase_count + 1,
+        total_spent = total_spent + VALUES(total_spent),
+        last_purchase_date = GREATEST(last_purchase_date, VALUES(last_purchase_date))
+    """, nativeQuery = true)
+    int addPurchase(@Param("email") String email,
+                    @Param("totalPrice") long totalPriceMinorUnits,
+                    @Param("purchaseDate") LocalDateTime purchaseDate);
+
+    /*
+    Recalcula los resúmenes de los emails indicados desde la tabla purchase (índice idx_purchase_email_date_id).
+    Se usa tras las cancelaciones: la última fecha de compra no se puede restar, hay que volver a calcularla.
+    Los emails sin compras se quedan sin fila (deleteByEmailIn).
+    Las compras de meses archivados cuentan con sus resúmenes mensuales (archived_purchase_summary), solo
+    cuando su partición ya se borró (ver PurchasePartition.ARCHIVED_MONTH_WITHOUT_PARTITION).
+     */
+    @Modifying
+    @Query(value = "DELETE FROM customer_purchase_summary WHERE email IN :emails", nativeQuery = true)
+    int deleteByEmailIn(@Param("emails") Collection<String> emails);
+
+    @Modifying
+    @Query(value = """
+    INSERT INTO customer_purchase_summary (email, purchase_count, total_spent, last_purchase_date)
+    SELECT s.email, SUM(s.purchase_count), SUM(s.total_spent), MAX(s.last_purchase_date)
+    FROM (
+        SELECT p.email, COUNT(*) AS purchase_count, COALESCE(SUM(p.total_price), 0) AS total_spent,
+               MAX(p.purchase_date) AS last_purchase_date
+        FROM purchase p
+        WHERE p.email IN :emails
+        GROUP BY p.email
+        UNION ALL
+        SELECT a.email, a.purchase_count, a.total_spent, a.last_purchase_date
+        FROM archived_purchase_summary a
+        WHERE a.email IN :emails AND\s
+    """ + PurchasePartition.ARCHIVED_MONTH_WITHOUT_PARTITION + """
+    ) s
+    GROUP BY s.email
+    """, nativeQuery = true)
+    int insertFromPurchases(@Param("emails") Collection<String> emails);
+
+    // Reconstrucción: recalcula los emails del rango [fromEmail, toEmail] sobrescribiendo los valores actuales
+    @Modifying
+    @Query(value = """
+    INSERT INTO customer_purchase_summary (email, purchase_count, total_spent, last_purchase_date)
+    SELECT s.email, SUM(s.purchase_count), SUM(s.total_spent), MAX(s.last_purchase_date)
+    FROM (
+        SELECT p.email, COUNT(*) AS purchase_count, COALESCE(SUM(p.total_price), 0) AS total_spent,
+               MAX(p.purchase_date) AS last_purchase_date
+        FROM purchase p
+        WHERE p.email BETWEEN :fromEmail AND :toEmail
+        GROUP BY p.email
+        UNION ALL
+        SELECT a.email, a.purchase_count, a.total_spent, a.last_purchase_date
+        FROM archived_purchase_summary a
+        WHERE a.email BETWEEN :fromEmail AND :toEmail AND\s
+    """ + PurchasePartition.ARCHIVED_MONTH_WITHOUT_PARTITION + """
+    ) s
+    GROUP BY s.email
+    ON DUPLICATE KEY UPDATE
+        purchase_count = VALUES(purchase_count),
+        total_spent = VALUES(total_spent),
+        last_purchase_date = VALUES(last_purchase_date)
+    """, nativeQuery = true)
+    int rebuildRange(@Param("fromEmail") String fromEmail, @Param("toEmail") String toEmail);
+
+    // Siguiente bloque de emails distintos (paginación por clave sobre el índice de email).
+    // Cada rama lee como mucho limit emails del índice; la UNION solo ordena y recorta esas 2 * limit filas
+    @Query(value = """
+    (SELECT DISTINCT p.email FROM purchase p WHERE p.email > :afterEmail ORDER BY p.email LIMIT :limit)
+    UNION
+    (SELECT DISTINCT a.email FROM archived_purchase_summary a WHERE a.email > :afterEmail ORDER BY a.email LIMIT :limit)
+    ORDER BY email
+    LIMIT :limit
+    """, nativeQuery = true)
+    List<String> findDistinctEmailsAfter(@Param("afterEmail") String afterEmail, @Param("limit") int limit);
+
+    // Reconstrucción: borra los resúmenes de clientes que ya no tienen compras
+    @Modifying
+    @Query(value = """
+    DELETE FROM customer_purchase_summary
+    WHERE NOT EXISTS (SELECT 1 FROM purchase p WHERE p.email = customer_purchase_summary.email)
+    AND NOT EXISTS (SELECT 1 FROM archived_purchase_summary a WHERE a.email = customer_purchase_summary.email)
+    """, nativeQuery = true)
+    int deleteWithoutPurchases();
+}
@@ -0,0 +1,22 @@
+package com.certidevs.repository;
+
+import com.certidevs.dto.ManufacturerRevenueDTO;
+import com.certidevs.model.DailyManufacturerRevenue;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyManufacturerRevenueRepository extends JpaRepository<DailyManufacturerRevenue, Long> {
+
+    @Query("""
+    select new com.certidevs.dto.ManufacturerRevenueDTO(m.id, m.name, sum(r.revenue), sum(r.units), sum(r.orderCount))
+    from DailyManufacturerRevenue r join Manufacturer m on m.id = r.manufacturerId
+    where r.day between :from and :to
+    group by m.id, m.name
+    order by sum(r.revenue) desc, m.id
+    """)
+    List<ManufacturerRevenueDTO> findManufacturerRevenue(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,36 @@
+package com.certidevs.repository;
+
+import com.certidevs.dto.DailyRevenueDTO;
+import com.certidevs.dto.ProductRevenueDTO;
+import com.certidevs.model.DailyProductRevenue;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Informes de ingresos: solo leen los resúmenes diarios, nunca la tabla purchase
+public interface DailyProductRevenueRepository extends JpaRepository<DailyProductRevenue, Long> {
+
+    @Query("""
+    select new com.certidevs.dto.DailyRevenueDTO(r.day, sum(r.revenue), sum(r.units), sum(r.orderCount))
+    from DailyProductRevenue r
+    where r.day between :from and :to
+    group by r.day
+    order by r.day
+    """)
+    List<DailyRevenueDTO> findDailyRevenue(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Productos con más ingresos del rango. El número de productos se pasa con Pageable (PageRequest.ofSize)
+    @Query("""
+    select new com.certidevs.dto.ProductRevenueDTO(p.id, p.name, sum(r.revenue), sum(r.units), sum(r.orderCount))
+    from DailyProductRevenue r join Product p on p.id = r.productId
+    where r.day between :from and :to
+    group by p.id, p.name
+    order by sum(r.revenue) desc, p.id
+    """)
+    List<ProductRevenueDTO> findTopProducts(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                            Pageable pageable);
+}
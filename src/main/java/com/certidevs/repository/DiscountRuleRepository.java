@@ -0,0 +1,11 @@
+package com.certidevs.repository;
+
+import com.certidevs.model.DiscountRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface DiscountRuleRepository extends JpaRepository<DiscountRule, Long> {
+
+    List<DiscountRule> findByActiveTrue();
+}
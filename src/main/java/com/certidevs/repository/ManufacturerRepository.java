@@ -4,11 +4,13 @@ import com.certidevs.dto.ManufacturerWithAddressDTO;
 import com.certidevs.dto.ManufacturerWithProductDataDTO;
 import com.certidevs.model.Manufacturer;
 import com.certidevs.model.Purchase;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ManufacturerRepository extends JpaRepository<Manufacturer, Long> {
     // métodos derivados
@@ -18,6 +20,10 @@ public interface ManufacturerRepository extends JpaRepository<Manufacturer, Long
 
     boolean existsByName(String name);
 
+    // Formulario de edición: el fabricante con su dirección en una consulta (Manufacturer.address es LAZY)
+    @EntityGraph(Manufacturer.WITH_ADDRESS)
+    Optional<Manufacturer> findWithAddressById(Long id);
+
     // consultas JPQL
     // https://docs.spring.io/spring-data/jpa/reference/jpa/query-methods.html
 
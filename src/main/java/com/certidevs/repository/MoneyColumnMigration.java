@@ -0,0 +1,86 @@
+package com.certidevs.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/*
+Los importes pasaron de DOUBLE (euros) a BIGINT (céntimos, Money + MoneyConverter).
+ddl-auto=update no cambia el tipo de una columna existente, así que al arrancar se migran las que sigan en DOUBLE:
+
+1. Se añade la columna <columna>_minor BIGINT (si no existe de un intento anterior).
+2. Se rellena con ROUND(<columna> * 100): la columna original no cambia, repetir este paso es seguro.
+3. Se comprueba que la copia no tiene NULL donde la original tiene importe.
+4. Se borra la columna original y se renombra la nueva en un único ALTER TABLE.
+
+Los pasos de cada columna van en una transacción sobre la misma conexión (el pool usa auto-commit=false):
+el ALTER TABLE final confirma implícitamente el UPDATE. Sin transacción el UPDATE se desharía al devolver
+la conexión al pool y el ALTER dejaría la columna entera a NULL.
+
+Si la aplicación se para a mitad, el siguiente arranque continúa sin multiplicar dos veces por 100.
+Se ejecuta antes que el resto de ApplicationRunner para que nadie lea importes sin migrar.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MoneyColumnMigration implements ApplicationRunner {
+
+    private static final List<MoneyColumn> COLUMNS = List.of(
+            new MoneyColumn("product", "price"),
+            new MoneyColumn("purchase", "total_price"),
+            new MoneyColumn("customer_purchase_summary", "total_spent"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MoneyColumnMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        COLUMNS.forEach(column -> transactionTemplate.executeWithoutResult(status -> migrate(column)));
+    }
+
+    private void migrate(MoneyColumn column) {
+        String type = columnType(column.table(), column.name());
+        if (type == null || type.equals("bigint")) return; // Tabla nueva o ya migrada
+
+        String minorColumn = column.name() + "_minor";
+        log.info("Migrando {}.{} de {} a céntimos (BIGINT)", column.table(), column.name(), type);
+        if (columnType(column.table(), minorColumn) == null) {
+            jdbcTemplate.execute("ALTER TABLE " + column.table() + " ADD COLUMN " + minorColumn + " BIGINT");
+        }
+        jdbcTemplate.update("UPDATE " + column.table() + " SET " + minorColumn + " = ROUND(" + column.name() + " * 100)");
+        Long missing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + column.table()
+                + " WHERE " + minorColumn + " IS NULL AND " + column.name() + " IS NOT NULL", Long.class);
+        if (missing != null && missing > 0) {
+            // La columna original se conserva: el siguiente arranque repite la copia
+            throw new IllegalStateException(missing + " filas de " + column.table() + "." + column.name()
+                    + " sin copiar a " + minorColumn + ", no se borra la columna original.");
+        }
+        jdbcTemplate.execute("ALTER TABLE " + column.table()
+                + " DROP COLUMN " + column.name()
+                + ", RENAME COLUMN " + minorColumn + " TO " + column.name());
+    }
+
+    private String columnType(String table, String column) {
+        List<String> types = jdbcTemplate.queryForList("""
+        SELECT DATA_TYPE FROM information_schema.COLUMNS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?
+        """, String.class, table, column);
+        return types.isEmpty() ? null : types.get(0).toLowerCase();
+    }
+
+    private record MoneyColumn(String table, String name) {
+    }
+}
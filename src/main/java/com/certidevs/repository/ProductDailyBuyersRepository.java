@@ -0,0 +1,14 @@
+package com.certidevs.repository;
+
+import com.certidevs.model.ProductDailyBuyers;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductDailyBuyersRepository extends JpaRepository<ProductDailyBuyers, Long> {
+
+    // Usa el índice único (product_id, day)
+    List<ProductDailyBuyers> findByProductIdInAndDayBetween(Collection<Long> productIds, LocalDate from, LocalDate to);
+}
@@ -1,12 +1,60 @@
 package com.certidevs.repository;
 
 import com.certidevs.model.Product;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 /*
 Vamos a declarar métodos para interactuar con la base de datos
 y Spring JPA se encarga de traducir esos métodos a consultas SQL en base de datos.
  */
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
-}
\ No newline at end of file
+// JpaSpecificationExecutor: páginas de la lista de productos por clave, con el orden elegido (ProductListService)
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+
+    // Listado y detalle de productos: con el nombre del fabricante en la misma consulta (Product.manufacturer es LAZY)
+    @Override
+    @EntityGraph(Product.WITH_MANUFACTURER)
+    List<Product> findAll();
+
+    @EntityGraph(Product.WITH_MANUFACTURER)
+    Optional<Product> findWithManufacturerById(Long id);
+
+    /*
+    Reserva de stock atómica: un único UPDATE condicionado que solo resta la cantidad
+    si hay stock suficiente. Devuelve el número de filas actualizadas (1 = reservado, 0 = sin stock o no existe).
+    También incrementa la versión para que las transacciones con bloqueo optimista detecten el cambio.
+     */
+    @Modifying
+    @Query("""
+    UPDATE Product p
+    SET p.quantity = p.quantity - :quantity, p.version = p.version + 1
+    WHERE p.id = :id AND p.quantity >= :quantity
+    """)
+    int decrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    // Descuenta stock sin comprobar que alcance: solo para compras ya confirmadas (PartitionedCheckoutEngine)
+    @Modifying
+    @Query("""
+    UPDATE Product p
+    SET p.quantity = p.quantity - :quantity, p.version = p.version + 1
+    WHERE p.id = :id
+    """)
+    int forceDecrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    // Devuelve unidades al stock con un único UPDATE (cancelaciones)
+    @Modifying
+    @Query("""
+    UPDATE Product p
+    SET p.quantity = p.quantity + :quantity, p.version = p.version + 1
+    WHERE p.id = :id
+    """)
+    int incrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+}
@@ -1,16 +1,131 @@
 package com.certidevs.repository;
 
+import com.certidevs.dto.PurchaseListItemDTO;
+import com.certidevs.dto.PurchaseProductDTO;
+import com.certidevs.dto.PurchaseStockRestoreDTO;
 import com.certidevs.model.Purchase;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+/*
+Purchase.product es LAZY. Planes de carga por caso de uso (las pruebas fijan cuántas sentencias ejecuta cada uno):
+- findById, páginas del historial y streaming: solo la compra (una sentencia). El id del producto está en el proxy.
+- findAll, findByEmail y findWithProductById: compra con producto y fabricante (grafo Purchase.WITH_PRODUCT, una sentencia).
+- findListItemsByEmail: listado con el nombre del producto, proyección sin entidades (una sentencia).
+ */
 public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
 
+    @Override
+    @EntityGraph(Purchase.WITH_PRODUCT)
+    List<Purchase> findAll();
+
+    @EntityGraph(Purchase.WITH_PRODUCT)
     List<Purchase> findByEmail(String email);
 
+    @EntityGraph(Purchase.WITH_PRODUCT)
+    Optional<Purchase> findWithProductById(Long id);
+
+    @Query("""
+    SELECT new com.certidevs.dto.PurchaseListItemDTO(p.id, pr.id, pr.name, p.quantity, p.totalPrice, p.purchaseDate)
+    FROM Purchase p LEFT JOIN p.product pr
+    WHERE p.email = :email
+    ORDER BY p.purchaseDate, p.id
+    """)
+    List<PurchaseListItemDTO> findListItemsByEmail(@Param("email") String email);
+
+    // Sustituye a la clave ajena product_id: un producto con compras no se puede borrar
+    boolean existsByProductId(Long productId);
+
 //    List<Purchase> findByPurchaseDateBetween(LocalDateTime dateStart, LocalDateTime dateEnd);
 
+    /*
+    Historial por rango de fechas [from, to) con paginación por clave (keyset) sobre (purchaseDate, id):
+    la página siguiente empieza justo después de la última fila leída, usando el índice idx_purchase_date_id.
+    A diferencia de OFFSET, el coste no crece con la profundidad de la página.
+    El tamaño de página se pasa con Pageable (PageRequest.ofSize), sin consulta COUNT.
+     */
+    @Query("""
+    SELECT p FROM Purchase p
+    WHERE p.purchaseDate >= :from AND p.purchaseDate < :to
+    AND (p.purchaseDate > :afterDate OR (p.purchaseDate = :afterDate AND p.id > :afterId))
+    ORDER BY p.purchaseDate, p.id
+    """)
+    List<Purchase> findPageByPurchaseDate(@Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to,
+                                          @Param("afterDate") LocalDateTime afterDate,
+                                          @Param("afterId") Long afterId,
+                                          Pageable pageable);
+
+    // Igual que findPageByPurchaseDate pero de un email (índice idx_purchase_email_date_id)
+    @Query("""
+    SELECT p FROM Purchase p
+    WHERE p.email = :email
+    AND p.purchaseDate >= :from AND p.purchaseDate < :to
+    AND (p.purchaseDate > :afterDate OR (p.purchaseDate = :afterDate AND p.id > :afterId))
+    ORDER BY p.purchaseDate, p.id
+    """)
+    List<Purchase> findPageByEmailAndPurchaseDate(@Param("email") String email,
+                                                  @Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to,
+                                                  @Param("afterDate") LocalDateTime afterDate,
+                                                  @Param("afterId") Long afterId,
+                                                  Pageable pageable);
+
+    /*
+    Recorrido completo de un rango para exportaciones. Con useCursorFetch=true en la URL, MySQL envía las filas
+    en bloques de HINT_FETCH_SIZE en vez de cargar todo el resultado en memoria.
+    Debe consumirse dentro de una transacción y cerrarse (try-with-resources).
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+    SELECT p FROM Purchase p
+    WHERE p.purchaseDate >= :from AND p.purchaseDate < :to
+    ORDER BY p.purchaseDate, p.id
+    """)
+    Stream<Purchase> streamByPurchaseDate(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Unidades compradas agrupadas por producto para un conjunto de compras (una sola consulta)
+    @Query("""
+    SELECT new com.certidevs.dto.PurchaseStockRestoreDTO(
+        p.product.id,
+        SUM(p.quantity),
+        COUNT(p)
+    ) FROM Purchase p
+    WHERE p.id IN :ids
+    GROUP BY p.product.id
+    """)
+    List<PurchaseStockRestoreDTO> sumQuantitiesByProduct(@Param("ids") Collection<Long> ids);
+
+    // Producto, unidades, importe y fecha de cada compra de un conjunto (antes de borrarlas)
+    @Query("""
+    SELECT new com.certidevs.dto.PurchaseProductDTO(p.id, p.product.id, p.quantity, p.totalPrice, p.purchaseDate)
+    FROM Purchase p
+    WHERE p.id IN :ids
+    ORDER BY p.id
+    """)
+    List<PurchaseProductDTO> findProductsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Clientes de un conjunto de compras (antes de borrarlas)
+    @Query("SELECT DISTINCT p.email FROM Purchase p WHERE p.id IN :ids")
+    List<String> findDistinctEmailsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Borrado en una única sentencia DELETE ... WHERE id IN (...). Devuelve las filas borradas
+    @Modifying
+    @Query("DELETE FROM Purchase p WHERE p.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
 
 }
@@ -0,0 +1,32 @@
+package com.certidevs.repository;
+
+import lombok.AllArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/*
+Purchase usaba IDENTITY y ahora usa la secuencia purchase_seq (en MySQL Hibernate la emula con una tabla).
+Al arrancar se adelanta la secuencia por encima del mayor id existente para que los ids nuevos no choquen
+con las compras creadas antes del cambio. El optimizador pooled reparte los ids (valor - 50, valor],
+por eso se suma el tamaño del bloque.
+ */
+@AllArgsConstructor
+@Component
+public class PurchaseSequenceInitializer implements ApplicationRunner {
+
+    private static final int ALLOCATION_SIZE = 50; // Debe coincidir con @SequenceGenerator de Purchase
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        jdbcTemplate.update("""
+        UPDATE purchase_seq
+        SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + ? + 1 FROM purchase))
+        """, ALLOCATION_SIZE);
+    }
+}
@@ -0,0 +1,189 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.CheckoutOutcome;
+import com.certidevs.dto.CheckoutRequestDTO;
+import com.certidevs.dto.CheckoutStatusDTO;
+import com.certidevs.dto.CheckoutStatusDTO.Status;
+import com.certidevs.dto.PurchaseDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+Compras asíncronas: la petición se valida, se encola y se responde 202 Accepted al momento con el id
+para consultar su estado. Un pico de compras espera en la cola sin ocupar hilos de Tomcat ni conexiones.
+
+- La cola está acotada (queue-capacity). Con la cola llena se rechaza al momento (CheckoutRejectedException).
+- workers hilos vacían la cola por tandas de hasta batch-size compras. Cada tanda se guarda en una sola
+  transacción (PurchaseService.makePurchaseBatch). Si la tanda falla entera se repiten sus compras una a una.
+- El estado de las últimas status-cache-size compras se guarda en memoria (LRU por orden de llegada).
+  Debe ser mayor que la cola para que ninguna compra pendiente se descarte.
+El estado solo lo conoce la instancia que recibió la compra: con varias instancias el balanceador debe
+enviar las consultas de estado a la misma instancia. Si la aplicación se para, las compras encoladas se pierden
+(se quedan PENDING para el cliente, que puede repetirlas con la API síncrona e Idempotency-Key).
+ */
+@Slf4j
+@Service
+public class AsyncCheckoutService {
+
+    private final PurchaseService purchaseService;
+    private final int workerCount;
+    private final int batchSize;
+    private final Duration retryAfter;
+
+    private final BlockingQueue<CheckoutJob> queue;
+    private final Map<String, CheckoutJob> jobs; // Protegido por synchronized(jobs)
+    private final List<Thread> workers = new ArrayList<>();
+
+    public AsyncCheckoutService(PurchaseService purchaseService,
+                                @Value("${purchase.checkout.async.queue-capacity:10000}") int queueCapacity,
+                                @Value("${purchase.checkout.async.workers:2}") int workerCount,
+                                @Value("${purchase.checkout.async.batch-size:50}") int batchSize,
+                                @Value("${purchase.checkout.async.status-cache-size:100000}") int statusCacheSize,
+                                @Value("${purchase.checkout.retry-after:PT1S}") Duration retryAfter) {
+        if (statusCacheSize <= queueCapacity) {
+            throw new IllegalArgumentException("status-cache-size debe ser mayor que queue-capacity.");
+        }
+        this.purchaseService = purchaseService;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.retryAfter = retryAfter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // LinkedHashMap en orden de inserción: al superar el tamaño se descarta la compra más antigua
+        this.jobs = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CheckoutJob> eldest) {
+                return size() > statusCacheSize;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "async-checkout-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    // Valida y encola la compra. Lanza CheckoutRejectedException al momento si la cola está llena
+    public CheckoutStatusDTO submit(String email, Long productId, Integer quantity) {
+        purchaseService.validateCheckout(productId, quantity);
+
+        CheckoutJob job = new CheckoutJob(UUID.randomUUID().toString(),
+                new CheckoutRequestDTO(email, productId, quantity), LocalDateTime.now());
+        synchronized (jobs) {
+            jobs.put(job.id, job); // Antes de encolar: un worker puede terminarla antes de que volvamos
+        }
+        if (!queue.offer(job)) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            throw new CheckoutRejectedException("Demasiadas compras en cola, inténtalo de nuevo en unos segundos.", retryAfter);
+        }
+        return job.toStatus();
+    }
+
+    public Optional<CheckoutStatusDTO> getStatus(String id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id)).map(CheckoutJob::toStatus);
+        }
+    }
+
+    // Compras esperando en la cola (para las pruebas y el diagnóstico)
+    public int getQueued() {
+        return queue.size();
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                process(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Error inesperado en la cola de compras asíncronas", e);
+            }
+        }
+    }
+
+    // Procesa la siguiente tanda sin esperar (para las pruebas). Devuelve el número de compras procesadas
+    int processQueued() {
+        CheckoutJob first = queue.poll();
+        return first == null ? 0 : process(first);
+    }
+
+    // Tanda: la primera compra y las que ya estén en cola, hasta batch-size
+    private int process(CheckoutJob first) {
+        List<CheckoutJob> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+
+        List<CheckoutOutcome> outcomes;
+        try {
+            outcomes = purchaseService.makePurchaseBatch(batch.stream().map(CheckoutJob::getRequest).toList());
+        } catch (RuntimeException e) {
+            log.warn("Tanda de {} compras deshecha, se repiten una a una", batch.size(), e);
+            outcomes = batch.stream().map(job -> executeAlone(job.request)).toList();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(outcomes.get(i));
+        }
+        return batch.size();
+    }
+
+    private CheckoutOutcome executeAlone(CheckoutRequestDTO request) {
+        try {
+            return CheckoutOutcome.completed(purchaseService.makePurchase(request.email(), request.productId(), request.quantity()));
+        } catch (IllegalArgumentException e) {
+            return CheckoutOutcome.failed(e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Error al procesar la compra asíncrona {}", request, e);
+            return CheckoutOutcome.failed("No se pudo completar la compra, inténtalo de nuevo.");
+        }
+    }
+
+    // Compra encolada. El resultado lo escribe un worker y lo leen las consultas de estado
+    private static final class CheckoutJob {
+        private final String id;
+        private final CheckoutRequestDTO request;
+        private final LocalDateTime submittedAt;
+        private volatile CheckoutStatusDTO result;
+
+        private CheckoutJob(String id, CheckoutRequestDTO request, LocalDateTime submittedAt) {
+            this.id = id;
+            this.request = request;
+            this.submittedAt = submittedAt;
+        }
+
+        private CheckoutRequestDTO getRequest() {
+            return request;
+        }
+
+        private void complete(CheckoutOutcome outcome) {
+            result = outcome.purchase() != null
+                    ? new CheckoutStatusDTO(id, Status.COMPLETED, PurchaseDTO.from(outcome.purchase()), null, submittedAt)
+                    : new CheckoutStatusDTO(id, Status.FAILED, null, outcome.error(), submittedAt);
+        }
+
+        private CheckoutStatusDTO toStatus() {
+            CheckoutStatusDTO current = result;
+            return current != null ? current : new CheckoutStatusDTO(id, Status.PENDING, null, null, submittedAt);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.certidevs.service;
+
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Reservas temporales de stock para los carritos.
+
+- reserve: resta el stock con el mismo UPDATE condicionado que makePurchase y guarda la reserva en memoria.
+- La caducidad la gestiona una HierarchicalTimingWheel: programar y cancelar son O(1), sin consultar
+  la base de datos periódicamente.
+- Las reservas caducadas devuelven su stock agrupadas: un lote JDBC con un UPDATE por producto.
+  Si el lote falla, las reservas vuelven al mapa y a la rueda y se reintentan pasado RESTOCK_RETRY_DELAY:
+  mientras tanto siguen contando como stock reservado.
+- convertToPurchase: crea la compra reutilizando el stock ya reservado, sin volver a comprobarlo.
+
+Las reservas solo viven en memoria: al parar la aplicación se liberan todas. Si la aplicación se cae
+sin parar de forma ordenada, el stock reservado queda descontado hasta la siguiente reconciliación.
+ */
+@Slf4j
+@Service
+public class CartReservationService {
+
+    static final Duration RESTOCK_RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final ProductRepository productRepository;
+    private final PurchaseService purchaseService;
+    private final PartitionedCheckoutEngine checkoutEngine;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration holdDuration;
+
+    private final HierarchicalTimingWheel<Long> timingWheel;
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong holdIds = new AtomicLong();
+    private final ScheduledExecutorService ticker;
+
+    public CartReservationService(ProductRepository productRepository,
+                                  PurchaseService purchaseService,
+                                  PartitionedCheckoutEngine checkoutEngine,
+                                  JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${purchase.reservation.hold-duration:PT15M}") Duration holdDuration,
+                                  @Value("${purchase.reservation.tick:PT1S}") Duration tick) {
+        this.productRepository = productRepository;
+        this.purchaseService = purchaseService;
+        this.checkoutEngine = checkoutEngine;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.holdDuration = holdDuration;
+        this.timingWheel = new HierarchicalTimingWheel<>(tick.toNanos(), TimeUnit.NANOSECONDS, System.nanoTime());
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-reservation-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                expire(System.nanoTime());
+            } catch (RuntimeException e) {
+                log.error("Error al liberar reservas caducadas", e);
+            }
+        }, tick.toNanos(), tick.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    // Reserva stock durante holdDuration y devuelve el id de la reserva
+    public Hold reserve(String email, Long productId, Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor que cero.");
+        }
+
+        // decrementStock es @Modifying: necesita transacción propia fuera de PurchaseService.
+        // En modo particionado las unidades se apartan antes en el motor para no llevarse stock que ya prometió
+        Integer updated = transactionTemplate.execute(status -> {
+            checkoutEngine.reserveExternal(productId, quantity);
+            return productRepository.decrementStock(productId, quantity);
+        });
+        if (updated == null || updated == 0) {
+            if (!productRepository.existsById(productId)) {
+                throw new IllegalArgumentException("Producto no encontrado.");
+            }
+            throw new IllegalArgumentException("Stock insuficiente para el producto seleccionado.");
+        }
+
+        Hold hold = new Hold(holdIds.incrementAndGet(), email, productId, quantity);
+        holds.put(hold.getId(), hold); // Antes de programarla: si vence, ya está en el mapa para devolver el stock
+        hold.timeout = timingWheel.schedule(hold.getId(), holdDuration.toNanos(), TimeUnit.NANOSECONDS);
+        return hold;
+    }
+
+    // Libera una reserva antes de que caduque (el usuario vacía el carrito)
+    public void release(Long holdId) {
+        Hold hold = claim(holdId);
+        restockOrRetry(List.of(hold));
+    }
+
+    // Convierte la reserva en compra sin volver a comprobar el stock (ya está descontado)
+    public Purchase convertToPurchase(Long holdId) {
+        Hold hold = claim(holdId);
+        try {
+            return purchaseService.makeReservedPurchase(hold.getEmail(), hold.getProductId(), hold.getQuantity());
+        } catch (RuntimeException e) {
+            try {
+                restockOrRetry(List.of(hold)); // La compra no se guardó: devolver el stock reservado
+            } catch (RuntimeException restockError) {
+                e.addSuppressed(restockError);
+            }
+            throw e;
+        }
+    }
+
+    public Optional<Hold> findHold(Long holdId) {
+        return Optional.ofNullable(holds.get(holdId));
+    }
+
+    // Unidades reservadas ahora mismo por producto (la reconciliación de stock las descuenta del stock esperado)
+    public Map<Long, Long> getReservedQuantities() {
+        Map<Long, Long> reserved = new HashMap<>();
+        holds.values().forEach(hold -> reserved.merge(hold.getProductId(), (long) hold.getQuantity(), Long::sum));
+        return reserved;
+    }
+
+    // Quita la reserva del mapa: solo uno de caducar / liberar / convertir puede ganar
+    private Hold claim(Long holdId) {
+        Hold hold = holds.remove(holdId);
+        if (hold == null) {
+            throw new IllegalArgumentException("Reserva no encontrada o caducada.");
+        }
+        if (hold.timeout != null) {
+            hold.timeout.cancel(); // O(1). Si aún no estaba programada, al vencer ya no estará en el mapa
+        }
+        return hold;
+    }
+
+    void expire(long nowNanos) {
+        List<Hold> expired = new ArrayList<>();
+        for (Long holdId : timingWheel.advance(nowNanos)) {
+            Hold hold = holds.remove(holdId);
+            if (hold != null) expired.add(hold);
+        }
+        if (!expired.isEmpty()) {
+            restockOrRetry(expired);
+        }
+    }
+
+    // Las reservas solo se dan por liberadas si el UPDATE se confirma; si no, se vuelven a programar
+    private void restockOrRetry(Collection<Hold> released) {
+        try {
+            restock(released);
+        } catch (RuntimeException e) {
+            for (Hold hold : released) {
+                holds.put(hold.getId(), hold);
+                hold.timeout = timingWheel.schedule(hold.getId(), RESTOCK_RETRY_DELAY.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            throw e;
+        }
+    }
+
+    // Devuelve el stock de varias reservas: se agrupa por producto y se envía en un único lote JDBC
+    private void restock(Collection<Hold> released) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        released.forEach(hold -> quantities.merge(hold.getProductId(), hold.getQuantity(), Integer::sum));
+
+        List<Object[]> batch = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> batch.add(new Object[]{quantity, productId}));
+
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                "UPDATE product SET quantity = quantity + ?, version = version + 1 WHERE id = ?", batch));
+        quantities.keySet().forEach(checkoutEngine::invalidate);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        // Las reservas no sobreviven al reinicio: se devuelve todo el stock reservado
+        List<Hold> active = new ArrayList<>();
+        for (Long holdId : List.copyOf(holds.keySet())) {
+            Hold hold = holds.remove(holdId);
+            if (hold != null) active.add(hold);
+        }
+        if (!active.isEmpty()) {
+            restock(active);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Hold {
+        private final Long id;
+        private final String email;
+        private final Long productId;
+        private final Integer quantity;
+        @Getter(AccessLevel.NONE)
+        private volatile HierarchicalTimingWheel.Timeout<Long> timeout;
+    }
+}
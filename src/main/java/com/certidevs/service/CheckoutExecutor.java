@@ -0,0 +1,127 @@
+package com.certidevs.service;
+
+import com.certidevs.model.Purchase;
+import com.certidevs.stats.CheckoutMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+Ejecuta las compras en hilos virtuales con concurrencia acotada.
+
+- Un semáforo con tantos permisos como conexiones tiene el pool (max-concurrency) limita las compras
+  en curso: ninguna compra espera una conexión de Hikari, la espera se hace aquí, sin ocupar hilos de Tomcat.
+- Como mucho queue-capacity compras esperan permiso. Con la cola llena la compra se rechaza al momento
+  (CheckoutRejectedException con retryAfter) en lugar de acumular peticiones durante un pico.
+- Una compra que espera más de max-queue-wait también se rechaza: el cliente ya habrá abandonado.
+Se registran por separado la espera en cola y la ejecución (CheckoutMetrics).
+
+Los hilos virtuales que quedan fijados a su hilo portador (synchronized en el driver JDBC) nunca son más
+que los permisos del semáforo.
+ */
+@Service
+public class CheckoutExecutor {
+
+    private final PurchaseService purchaseService;
+    private final IdempotentCheckoutService idempotentCheckoutService;
+    private final CheckoutMetrics checkoutMetrics;
+    private final int queueCapacity;
+    private final long maxQueueWaitNanos;
+    private final Duration retryAfter;
+
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public CheckoutExecutor(PurchaseService purchaseService,
+                            IdempotentCheckoutService idempotentCheckoutService,
+                            CheckoutMetrics checkoutMetrics,
+                            @Value("${purchase.checkout.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+                            @Value("${purchase.checkout.queue-capacity:200}") int queueCapacity,
+                            @Value("${purchase.checkout.max-queue-wait:PT2S}") Duration maxQueueWait,
+                            @Value("${purchase.checkout.retry-after:PT1S}") Duration retryAfter) {
+        this.purchaseService = purchaseService;
+        this.idempotentCheckoutService = idempotentCheckoutService;
+        this.checkoutMetrics = checkoutMetrics;
+        this.queueCapacity = queueCapacity;
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        this.retryAfter = retryAfter;
+        this.permits = new Semaphore(maxConcurrency, true); // Justo: por orden de llegada
+    }
+
+    // Compra de un producto (con clave de idempotencia si el cliente la envía)
+    public CompletableFuture<Purchase> makePurchase(String idempotencyKey, String email, Long productId, Integer quantity) {
+        return submit(() -> idempotencyKey == null || idempotencyKey.isBlank()
+                ? purchaseService.makePurchase(email, productId, quantity)
+                : idempotentCheckoutService.makePurchase(idempotencyKey, email, productId, quantity));
+    }
+
+    // Lanza CheckoutRejectedException al momento si la cola está llena
+    public <T> CompletableFuture<T> submit(Supplier<T> checkout) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            checkoutMetrics.recordRejected(0);
+            throw new CheckoutRejectedException("Demasiadas compras en curso, inténtalo de nuevo en unos segundos.", retryAfter);
+        }
+
+        long enqueuedAt = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            boolean acquired = false;
+            try {
+                acquired = permits.tryAcquire(maxQueueWaitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                queued.decrementAndGet();
+            }
+
+            long waited = System.nanoTime() - enqueuedAt;
+            if (!acquired) {
+                checkoutMetrics.recordRejected(waited);
+                result.completeExceptionally(new CheckoutRejectedException(
+                        "La compra ha esperado demasiado, inténtalo de nuevo en unos segundos.", retryAfter));
+                return;
+            }
+
+            checkoutMetrics.recordQueueWait(waited);
+            long start = System.nanoTime();
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = checkout.get();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                // Liberar el permiso antes de avisar al llamador: la siguiente compra no espera a la respuesta HTTP
+                permits.release();
+                checkoutMetrics.recordExecution(System.nanoTime() - start);
+            }
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    // Compras esperando permiso (para las pruebas y el diagnóstico)
+    public int getQueued() {
+        return queued.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
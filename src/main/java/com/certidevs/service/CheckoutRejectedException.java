@@ -0,0 +1,17 @@
+package com.certidevs.service;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+// Compra rechazada por CheckoutExecutor (cola llena o espera agotada): el cliente puede reintentar tras retryAfter
+@Getter
+public class CheckoutRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public CheckoutRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
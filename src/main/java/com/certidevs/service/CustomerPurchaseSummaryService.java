@@ -0,0 +1,132 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.CustomerPurchaseSummaryDTO;
+import com.certidevs.event.PurchaseCancelledEvent;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.model.Money;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.CustomerPurchaseSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Resúmenes de compras por cliente (tabla customer_purchase_summary).
+
+- Compras: @EventListener síncrono, se ejecuta dentro de la transacción que guarda la compra
+  (si la compra se deshace, el resumen también). Un upsert atómico por compra.
+- Cancelaciones: se recalculan los resúmenes de los clientes afectados desde la tabla purchase,
+  porque la fecha de la última compra no se puede deshacer restando.
+- rebuild: recalcula todo por bloques de emails en paralelo, cada bloque en su propia transacción.
+ */
+@Slf4j
+@Service
+public class CustomerPurchaseSummaryService {
+
+    private final CustomerPurchaseSummaryRepository summaryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildThreads;
+    private final int rebuildChunkSize;
+    private final boolean rebuildOnStartup;
+
+    public CustomerPurchaseSummaryService(CustomerPurchaseSummaryRepository summaryRepository,
+                                          PlatformTransactionManager transactionManager,
+                                          @Value("${purchase.summary.rebuild-threads:4}") int rebuildThreads,
+                                          @Value("${purchase.summary.rebuild-chunk-size:1000}") int rebuildChunkSize,
+                                          @Value("${purchase.summary.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.summaryRepository = summaryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildThreads = rebuildThreads;
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    // Lectura por clave primaria: una fila, sin cargar las compras ni los productos del cliente
+    public CustomerPurchaseSummaryDTO getSummary(String email) {
+        return summaryRepository.findById(email)
+                .map(summary -> new CustomerPurchaseSummaryDTO(summary.getEmail(), summary.getPurchaseCount(),
+                        summary.getTotalSpent(), summary.getLastPurchaseDate()))
+                .orElseGet(() -> new CustomerPurchaseSummaryDTO(email, 0, Money.ZERO, null));
+    }
+
+    @EventListener
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        Purchase purchase = event.purchase();
+        summaryRepository.addPurchase(purchase.getEmail(), purchase.getTotalPrice().minorUnits(),
+                purchase.getPurchaseDate());
+    }
+
+    @EventListener
+    public void onPurchaseCancelled(PurchaseCancelledEvent event) {
+        refresh(List.of(event.purchase().getEmail()));
+    }
+
+    @EventListener
+    public void onPurchasesCancelled(PurchasesCancelledEvent event) {
+        refresh(event.emails());
+    }
+
+    private void refresh(Collection<String> emails) {
+        if (emails.isEmpty()) return;
+        summaryRepository.flush(); // Aplicar antes los DELETE de compras pendientes en el contexto de persistencia
+        summaryRepository.deleteByEmailIn(emails);
+        summaryRepository.insertFromPurchases(emails);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            log.info("Resúmenes de compras por cliente reconstruidos: {} clientes", rebuild());
+        }
+    }
+
+    /*
+    Reconstruye todos los resúmenes. Los emails distintos se leen por bloques (paginación por clave)
+    y cada bloque se recalcula con un INSERT ... SELECT ... ON DUPLICATE KEY UPDATE en un hilo del pool.
+    Los resúmenes existentes se sobrescriben en lugar de vaciar la tabla, así la lectura nunca ve la tabla vacía.
+    Devuelve el número de clientes recalculados.
+     */
+    public long rebuild() {
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads);
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            long emails = 0;
+            String after = "";
+            List<String> chunk;
+            while (!(chunk = summaryRepository.findDistinctEmailsAfter(after, rebuildChunkSize)).isEmpty()) {
+                String fromEmail = chunk.get(0);
+                String toEmail = chunk.get(chunk.size() - 1);
+                chunks.add(executor.submit(() ->
+                        transactionTemplate.execute(status -> summaryRepository.rebuildRange(fromEmail, toEmail))));
+                emails += chunk.size();
+                after = toEmail;
+            }
+            for (Future<Integer> future : chunks) {
+                future.get();
+            }
+            transactionTemplate.executeWithoutResult(status -> summaryRepository.deleteWithoutPurchases());
+            return emails;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconstrucción de resúmenes interrumpida.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
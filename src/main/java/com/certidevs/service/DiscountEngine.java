@@ -0,0 +1,192 @@
+package com.certidevs.service;
+
+import com.certidevs.model.DiscountRule;
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.repository.DiscountRuleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+Motor de descuentos precompilado.
+
+Las reglas activas (tabla discount_rule) se leen una vez y se compilan en una estructura inmutable:
+- Por ámbito, un array ordenado de ids (producto o fabricante) con sus tramos.
+- Cada tramo es un array ordenado de cantidades mínimas con su descuento en puntos básicos (1000 = 10 %).
+  El descuento es entero para aplicarlo sobre los céntimos de Money sin pasar por double.
+Evaluar son dos o tres búsquedas binarias sobre arrays primitivos: O(log n), sin reservar memoria
+y sin consultas a base de datos durante la compra.
+
+Gana el ámbito más específico con un tramo aplicable: producto, después fabricante y por último global.
+Si la tabla está vacía se aplica la regla histórica: 10 % a partir de 10 unidades.
+
+reload() compila las reglas nuevas y las publica con una única escritura volatile: cada compra ve
+las reglas anteriores o las nuevas completas, nunca una mezcla. Se recargan cada refresh-interval
+(para varias instancias) y al modificar reglas desde DiscountRuleController.
+ */
+@Slf4j
+@Component
+public class DiscountEngine {
+
+    static final CompiledRules LEGACY_RULES = compile(List.of(DiscountRule.builder()
+            .scope(DiscountRule.Scope.GLOBAL).minQuantity(10).percentage(10.0).active(true).build()));
+
+    private final DiscountRuleRepository discountRuleRepository;
+    private final Duration refreshInterval;
+    private volatile CompiledRules rules = LEGACY_RULES;
+    private ScheduledExecutorService refresher;
+
+    public DiscountEngine(DiscountRuleRepository discountRuleRepository,
+                          @Value("${purchase.discounts.refresh-interval:PT1M}") Duration refreshInterval) {
+        this.discountRuleRepository = discountRuleRepository;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        reload();
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "discount-rules-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                log.error("Error al recargar las reglas de descuento, se mantienen las anteriores", e);
+            }
+        }, refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void reload() {
+        List<DiscountRule> activeRules = discountRuleRepository.findByActiveTrue();
+        rules = activeRules.isEmpty() ? LEGACY_RULES : compile(activeRules);
+    }
+
+    // Descuento en puntos básicos (1000 = 10 %) para comprar quantity unidades del producto
+    public int discountBasisPoints(Product product, int quantity) {
+        long manufacturerId = product.getManufacturer() != null && product.getManufacturer().getId() != null
+                ? product.getManufacturer().getId() : Long.MIN_VALUE;
+        return rules.discountBasisPoints(product.getId() != null ? product.getId() : Long.MIN_VALUE, manufacturerId, quantity);
+    }
+
+    static CompiledRules compile(Collection<DiscountRule> discountRules) {
+        // Agrupar por ámbito y destino, ordenados por cantidad mínima
+        Map<DiscountRule.Scope, SortedMap<Long, SortedMap<Integer, Double>>> grouped = new EnumMap<>(DiscountRule.Scope.class);
+        for (DiscountRule rule : discountRules) {
+            validate(rule);
+            long target = rule.getScope() == DiscountRule.Scope.GLOBAL ? 0 : rule.getTargetId();
+            grouped.computeIfAbsent(rule.getScope(), scope -> new TreeMap<>())
+                    .computeIfAbsent(target, id -> new TreeMap<>())
+                    .merge(rule.getMinQuantity(), rule.getPercentage(), Math::max); // Tramo repetido: el mayor descuento
+        }
+
+        return new CompiledRules(
+                new TargetIndex(tiers(grouped.get(DiscountRule.Scope.PRODUCT))),
+                new TargetIndex(tiers(grouped.get(DiscountRule.Scope.MANUFACTURER))),
+                tiers(grouped.get(DiscountRule.Scope.GLOBAL)).getOrDefault(0L, Tiers.NONE));
+    }
+
+    public static void validate(DiscountRule rule) {
+        if (rule.getScope() == null) {
+            throw new IllegalArgumentException("La regla de descuento necesita un ámbito.");
+        }
+        if (rule.getScope() != DiscountRule.Scope.GLOBAL && rule.getTargetId() == null) {
+            throw new IllegalArgumentException("La regla de descuento necesita el id del producto o fabricante.");
+        }
+        if (rule.getMinQuantity() == null || rule.getMinQuantity() < 1) {
+            throw new IllegalArgumentException("La cantidad mínima debe ser mayor que cero.");
+        }
+        if (rule.getPercentage() == null || rule.getPercentage() < 0 || rule.getPercentage() > 100) {
+            throw new IllegalArgumentException("El porcentaje de descuento debe estar entre 0 y 100.");
+        }
+    }
+
+    private static Map<Long, Tiers> tiers(SortedMap<Long, SortedMap<Integer, Double>> byTarget) {
+        Map<Long, Tiers> result = new LinkedHashMap<>();
+        if (byTarget == null) return result;
+        byTarget.forEach((target, byQuantity) -> {
+            int[] minQuantities = new int[byQuantity.size()];
+            int[] discounts = new int[byQuantity.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Double> tier : byQuantity.entrySet()) {
+                minQuantities[i] = tier.getKey();
+                discounts[i] = (int) Math.round(tier.getValue() * Money.BASIS_POINTS / 100);
+                i++;
+            }
+            result.put(target, new Tiers(minQuantities, discounts));
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refresher != null) refresher.shutdownNow();
+    }
+
+    // Reglas compiladas e inmutables
+    record CompiledRules(TargetIndex byProduct, TargetIndex byManufacturer, Tiers global) {
+
+        int discountBasisPoints(long productId, long manufacturerId, int quantity) {
+            Tiers productTiers = byProduct.tiers(productId);
+            int tier = productTiers.find(quantity);
+            if (tier >= 0) return productTiers.discounts[tier];
+            Tiers manufacturerTiers = byManufacturer.tiers(manufacturerId);
+            tier = manufacturerTiers.find(quantity);
+            if (tier >= 0) return manufacturerTiers.discounts[tier];
+            tier = global.find(quantity);
+            return tier >= 0 ? global.discounts[tier] : 0;
+        }
+    }
+
+    // Ids ordenados (búsqueda binaria sobre long[], sin autoboxing) con los tramos de cada uno
+    static final class TargetIndex {
+        private final long[] ids;
+        private final Tiers[] tiers;
+
+        TargetIndex(Map<Long, Tiers> byId) {
+            this.ids = new long[byId.size()];
+            this.tiers = new Tiers[byId.size()];
+            int i = 0;
+            for (Map.Entry<Long, Tiers> entry : new TreeMap<>(byId).entrySet()) {
+                ids[i] = entry.getKey();
+                tiers[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        Tiers tiers(long id) {
+            int index = Arrays.binarySearch(ids, id);
+            return index >= 0 ? tiers[index] : Tiers.NONE;
+        }
+    }
+
+    // Tramos de un destino: cantidades mínimas ordenadas y su descuento en puntos básicos
+    static final class Tiers {
+        static final Tiers NONE = new Tiers(new int[0], new int[0]);
+
+        private final int[] minQuantities;
+        private final int[] discounts;
+
+        Tiers(int[] minQuantities, int[] discounts) {
+            this.minQuantities = minQuantities;
+            this.discounts = discounts;
+        }
+
+        // Índice del tramo con la mayor cantidad mínima <= quantity, o -1 si no hay ninguno
+        int find(int quantity) {
+            int index = Arrays.binarySearch(minQuantities, quantity);
+            return index >= 0 ? index : -index - 2;
+        }
+    }
+}
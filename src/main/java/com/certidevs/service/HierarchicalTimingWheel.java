@@ -0,0 +1,145 @@
+package com.certidevs.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Rueda de temporizadores jerárquica (hierarchical timing wheel).
+
+Hay LEVELS ruedas de 64 casillas. En el nivel 0 cada casilla es un tick, en el nivel 1 son 64 ticks,
+en el nivel 2 son 64*64 ticks... Un temporizador se guarda en la casilla de su fecha de vencimiento
+en el nivel más bajo que la alcanza. Cuando una rueda da la vuelta, la casilla correspondiente del nivel
+superior se reparte (cascade) en los niveles inferiores.
+
+- schedule y cancel son O(1): insertar o quitar un nodo de una lista doblemente enlazada.
+- advance solo recorre las casillas que vencen, nunca todos los temporizadores.
+Con 4 niveles y ticks de 1 s cubre 64^4 s (unos 194 días).
+
+Las operaciones están sincronizadas: son O(1) y muy cortas, un único lock es suficiente.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout<T>[][] heads; // Primer nodo de cada casilla
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(long tickDuration, TimeUnit unit, long startNanos) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startNanos = startNanos;
+        this.heads = new Timeout[LEVELS][WHEEL_SIZE];
+    }
+
+    // Programa payload para que venza tras delay (redondeado hacia arriba al siguiente tick)
+    public synchronized Timeout<T> schedule(T payload, long delay, TimeUnit unit) {
+        long delayTicks = Math.max(1, (unit.toNanos(delay) + tickNanos - 1) / tickNanos);
+        Timeout<T> timeout = new Timeout<>(this, payload, currentTick + delayTicks);
+        place(timeout);
+        return timeout;
+    }
+
+    // Avanza la rueda hasta nowNanos y devuelve los payloads vencidos
+    public synchronized List<T> advance(long nowNanos) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        List<T> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // Repartir las casillas de los niveles superiores cuando la rueda inferior da la vuelta
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) break;
+                cascade(level, (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+            }
+
+            // Vencer la casilla actual del nivel 0
+            int index = (int) (currentTick & WHEEL_MASK);
+            Timeout<T> node = heads[0][index];
+            heads[0][index] = null;
+            while (node != null) {
+                Timeout<T> next = node.next;
+                node.detach();
+                if (node.deadlineTick <= currentTick) {
+                    expired.add(node.payload);
+                } else {
+                    place(node);
+                }
+                node = next;
+            }
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int index) {
+        Timeout<T> node = heads[level][index];
+        heads[level][index] = null;
+        while (node != null) {
+            Timeout<T> next = node.next;
+            node.detach();
+            place(node);
+            node = next;
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long delta = Math.max(0, timeout.deadlineTick - currentTick);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        long deadline = Math.min(timeout.deadlineTick,
+                currentTick + (1L << (WHEEL_BITS * LEVELS)) - 1); // Más allá del último nivel: se recoloca al llegar
+        int index = (int) ((deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+
+        timeout.level = level;
+        timeout.index = index;
+        timeout.next = heads[level][index];
+        if (timeout.next != null) timeout.next.previous = timeout;
+        heads[level][index] = timeout;
+    }
+
+    private synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.level < 0) return false; // Ya vencido o cancelado
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            heads[timeout.level][timeout.index] = timeout.next;
+        }
+        if (timeout.next != null) timeout.next.previous = timeout.previous;
+        timeout.detach();
+        return true;
+    }
+
+    public static final class Timeout<T> {
+        private final HierarchicalTimingWheel<T> wheel;
+        private final T payload;
+        private final long deadlineTick;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+        private int level = -1;
+        private int index;
+
+        private Timeout(HierarchicalTimingWheel<T> wheel, T payload, long deadlineTick) {
+            this.wheel = wheel;
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        // Quita el temporizador de su casilla en O(1). Devuelve false si ya había vencido
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+
+        private void detach() {
+            previous = null;
+            next = null;
+            level = -1;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.certidevs.service;
+
+import com.certidevs.model.CheckoutIdempotencyKey;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.CheckoutIdempotencyKeyRepository;
+import com.certidevs.repository.PurchaseRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/*
+Compras con clave de idempotencia para los reintentos de los clientes móviles.
+
+1. Caché en memoria acotada (LRU con caducidad TTL): clave -> id de la compra original.
+2. Peticiones concurrentes con la misma clave: solo una se ejecuta, el resto espera su resultado.
+3. Tabla checkout_idempotency_key con índice único: la clave sobrevive a reinicios y a varias instancias.
+Una clave repetida devuelve la compra original sin volver a tocar el stock del producto.
+La misma clave con otra compra (otro email, producto o cantidad) se rechaza: se compara la huella de la petición.
+Las claves de la tabla se borran pasado retention (cada cleanup-interval, por lotes de CLEANUP_BATCH_SIZE filas);
+retention no puede ser menor que ttl para que una clave de la caché siga estando en la tabla.
+ */
+@Slf4j
+@Service
+public class IdempotentCheckoutService {
+
+    static final int CLEANUP_BATCH_SIZE = 1000;
+
+    private final PurchaseService purchaseService;
+    private final PurchaseRepository purchaseRepository;
+    private final CheckoutIdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int cacheSize;
+    private final long ttlNanos;
+    private final Duration retention;
+    private final Duration cleanupInterval;
+
+    private final Map<String, CachedKey> cache; // Protegido por synchronized(cache)
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService cleaner;
+
+    public IdempotentCheckoutService(PurchaseService purchaseService,
+                                     PurchaseRepository purchaseRepository,
+                                     CheckoutIdempotencyKeyRepository idempotencyKeyRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${purchase.idempotency.cache-size:10000}") int cacheSize,
+                                     @Value("${purchase.idempotency.ttl:PT1H}") Duration ttl,
+                                     @Value("${purchase.idempotency.retention:P7D}") Duration retention,
+                                     @Value("${purchase.idempotency.cleanup-interval:PT1H}") Duration cleanupInterval) {
+        if (retention.compareTo(ttl) < 0) {
+            throw new IllegalArgumentException("purchase.idempotency.retention no puede ser menor que ttl.");
+        }
+        this.purchaseService = purchaseService;
+        this.purchaseRepository = purchaseRepository;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheSize = cacheSize;
+        this.ttlNanos = ttl.toNanos();
+        this.retention = retention;
+        this.cleanupInterval = cleanupInterval;
+        // LinkedHashMap en orden de acceso: al superar el tamaño se descarta la clave usada hace más tiempo
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > IdempotentCheckoutService.this.cacheSize;
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(() -> {
+            try {
+                deleteExpired();
+            } catch (RuntimeException e) {
+                log.error("Error al borrar las claves de idempotencia caducadas", e);
+            }
+        }, cleanupInterval.toMillis(), cleanupInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleaner != null) cleaner.shutdownNow();
+    }
+
+    public Purchase makePurchase(String idempotencyKey, String email, Long productId, Integer quantity) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("La clave de idempotencia es obligatoria.");
+        }
+        String fingerprint = CheckoutIdempotencyKey.fingerprint(email, productId, quantity);
+
+        // 1. Clave ya vista recientemente
+        CachedKey cached = getCached(idempotencyKey);
+        if (cached != null) {
+            requireSameRequest(cached.fingerprint(), fingerprint);
+            return findPurchase(cached.purchaseId());
+        }
+
+        // 2. Otra petición con la misma clave en curso: esperar su resultado
+        InFlight execution = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(idempotencyKey, execution);
+        if (running != null) {
+            requireSameRequest(running.fingerprint(), fingerprint);
+            try {
+                return findPurchase(running.result().join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+
+        // 3. Esta petición ejecuta la compra
+        try {
+            Purchase purchase = execute(idempotencyKey, fingerprint, email, productId, quantity);
+            putCached(idempotencyKey, purchase.getId(), fingerprint);
+            execution.result().complete(purchase.getId());
+            return purchase;
+        } catch (RuntimeException e) {
+            execution.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, execution);
+        }
+    }
+
+    private Purchase execute(String idempotencyKey, String fingerprint, String email, Long productId, Integer quantity) {
+        // Clave guardada en base de datos (reinicio o caducada de la caché)
+        var existing = idempotencyKeyRepository.findByIdempotencyKey(idempotencyKey);
+        if (existing.isPresent()) {
+            return findOriginal(existing.get(), fingerprint);
+        }
+
+        try {
+            return purchaseService.makePurchase(email, productId, quantity, idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia confirmó la misma clave a la vez: su compra es la buena y la nuestra se deshizo
+            return idempotencyKeyRepository.findByIdempotencyKey(idempotencyKey)
+                    .map(winner -> findOriginal(winner, fingerprint))
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    // Borra por lotes las claves más antiguas que retention. Devuelve cuántas ha borrado
+    int deleteExpired() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        int deleted = 0;
+        while (true) {
+            Integer batch = transactionTemplate.execute(status ->
+                    idempotencyKeyRepository.deleteCreatedBefore(before, CLEANUP_BATCH_SIZE));
+            deleted += batch != null ? batch : 0;
+            if (batch == null || batch < CLEANUP_BATCH_SIZE) return deleted;
+        }
+    }
+
+    private Purchase findOriginal(CheckoutIdempotencyKey key, String fingerprint) {
+        if (!key.matches(fingerprint)) throw reusedKey();
+        return findPurchase(key.getPurchaseId());
+    }
+
+    private static void requireSameRequest(String original, String fingerprint) {
+        if (!original.equals(fingerprint)) throw reusedKey();
+    }
+
+    private static IllegalArgumentException reusedKey() {
+        return new IllegalArgumentException("La clave de idempotencia ya se usó con otra compra.");
+    }
+
+    private Purchase findPurchase(Long purchaseId) {
+        return purchaseRepository.findById(purchaseId)
+                .orElseThrow(() -> new IllegalArgumentException("Compra no encontrada."));
+    }
+
+    private CachedKey getCached(String idempotencyKey) {
+        synchronized (cache) {
+            CachedKey cached = cache.get(idempotencyKey);
+            if (cached == null) return null;
+            if (System.nanoTime() - cached.cachedAtNanos() > ttlNanos) {
+                cache.remove(idempotencyKey); // Caducada
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private void putCached(String idempotencyKey, Long purchaseId, String fingerprint) {
+        synchronized (cache) {
+            cache.put(idempotencyKey, new CachedKey(purchaseId, fingerprint, System.nanoTime()));
+        }
+    }
+
+    private record CachedKey(Long purchaseId, String fingerprint, long cachedAtNanos) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<Long> result) {
+    }
+}
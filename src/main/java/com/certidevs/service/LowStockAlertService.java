@@ -0,0 +1,161 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.LowStockAlertDTO;
+import com.certidevs.event.StockLevelChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/*
+Alertas de stock bajo.
+
+PurchaseService publica el stock anterior y el nuevo de cada producto que cambia (StockLevelChangedEvent).
+Aquí solo se compara con el umbral del producto: si el nivel no cambia (OK, LOW u OUT_OF_STOCK) no se hace nada.
+
+- Panel de alertas: productos por debajo del umbral, actualizado al momento.
+- Suscriptores SSE: se envía como mucho una alerta por producto cada debounce. Durante una venta flash
+  los cambios de un producto se agrupan y se envía solo el último estado (y nada si vuelve al ya enviado).
+  Los envíos se hacen desde un hilo propio para no retrasar las compras con clientes lentos.
+ */
+@Slf4j
+@Service
+public class LowStockAlertService {
+
+    private final int defaultThreshold;
+    private final long debounceNanos;
+    private final long sseTimeoutMillis;
+
+    private final Map<Long, LowStockAlertDTO> board = new ConcurrentHashMap<>();
+    private final Map<Long, Debounce> debounces = new ConcurrentHashMap<>();
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService dispatcher;
+
+    public LowStockAlertService(@Value("${purchase.low-stock.default-threshold:5}") int defaultThreshold,
+                                @Value("${purchase.low-stock.debounce:PT30S}") Duration debounce,
+                                @Value("${purchase.low-stock.sse-timeout:PT30M}") Duration sseTimeout) {
+        this.defaultThreshold = defaultThreshold;
+        this.debounceNanos = debounce.toNanos();
+        this.sseTimeoutMillis = sseTimeout.toMillis();
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "low-stock-alerts");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockLevelChanged(StockLevelChangedEvent event) {
+        int threshold = event.lowStockThreshold() != null ? event.lowStockThreshold() : defaultThreshold;
+        LowStockAlertDTO.Level previous = level(event.previousQuantity(), threshold);
+        LowStockAlertDTO.Level current = level(event.newQuantity(), threshold);
+        if (previous == current) return; // Sin cruce de umbral
+
+        LowStockAlertDTO alert = new LowStockAlertDTO(event.productId(), event.productName(), event.newQuantity(),
+                threshold, current, LocalDateTime.now());
+        if (current == LowStockAlertDTO.Level.OK) {
+            board.remove(event.productId());
+        } else {
+            board.put(event.productId(), alert);
+        }
+        debounce(alert);
+    }
+
+    // Productos con stock bajo o agotado, de menos a más stock
+    public List<LowStockAlertDTO> getActiveAlerts() {
+        return board.values().stream()
+                .sorted(Comparator.comparingInt(LowStockAlertDTO::quantity).thenComparing(LowStockAlertDTO::productId))
+                .toList();
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        register(emitter);
+        return emitter;
+    }
+
+    void register(SseEmitter emitter) {
+        subscribers.add(emitter);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(error -> subscribers.remove(emitter));
+        // El nuevo suscriptor recibe primero el panel actual
+        List<LowStockAlertDTO> active = getActiveAlerts();
+        dispatcher.execute(() -> active.forEach(alert -> send(emitter, alert)));
+    }
+
+    private void debounce(LowStockAlertDTO alert) {
+        Debounce debounce = debounces.computeIfAbsent(alert.productId(), id -> new Debounce());
+        synchronized (debounce) {
+            long now = System.nanoTime();
+            if (!debounce.scheduled && now - debounce.lastSentNanos >= debounceNanos) {
+                debounce.lastSentNanos = now;
+                debounce.lastSentLevel = alert.level();
+                dispatcher.execute(() -> broadcast(alert));
+                return;
+            }
+            debounce.pending = alert; // Se queda solo el último estado
+            if (!debounce.scheduled) {
+                debounce.scheduled = true;
+                dispatcher.schedule(() -> flush(debounce), debounce.lastSentNanos + debounceNanos - now, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void flush(Debounce debounce) {
+        LowStockAlertDTO alert;
+        synchronized (debounce) {
+            alert = debounce.pending;
+            debounce.pending = null;
+            debounce.scheduled = false;
+            if (alert == null || alert.level() == debounce.lastSentLevel) return; // Volvió al estado ya enviado
+            debounce.lastSentNanos = System.nanoTime();
+            debounce.lastSentLevel = alert.level();
+        }
+        broadcast(alert);
+    }
+
+    private void broadcast(LowStockAlertDTO alert) {
+        for (SseEmitter emitter : subscribers) {
+            send(emitter, alert);
+        }
+    }
+
+    private void send(SseEmitter emitter, LowStockAlertDTO alert) {
+        try {
+            emitter.send(SseEmitter.event().name("low-stock").id(alert.productId().toString()).data(alert));
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(emitter); // Cliente desconectado
+            log.debug("Suscriptor de alertas de stock desconectado", e);
+        }
+    }
+
+    private static LowStockAlertDTO.Level level(int quantity, int threshold) {
+        if (quantity <= 0) return LowStockAlertDTO.Level.OUT_OF_STOCK;
+        if (quantity <= threshold) return LowStockAlertDTO.Level.LOW;
+        return LowStockAlertDTO.Level.OK;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(SseEmitter::complete);
+    }
+
+    private static final class Debounce {
+        private long lastSentNanos = Long.MIN_VALUE / 2; // Sin envíos: el primero sale al momento
+        private LowStockAlertDTO.Level lastSentLevel;
+        private LowStockAlertDTO pending;
+        private boolean scheduled;
+    }
+}
@@ -0,0 +1,361 @@
+package com.certidevs.service;
+
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.event.StockLevelChangedEvent;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.ProductRepository;
+import com.certidevs.repository.PurchaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Motor de compras particionado para productos muy demandados (flash sales).
+
+Cada producto se asigna por hash a una partición fija. Cada partición tiene un único hilo escritor
+que mantiene en memoria el stock disponible de sus productos, de modo que las compras del mismo
+producto no compiten por el bloqueo de fila en base de datos. Las compras aceptadas se acumulan y se
+escriben en grupo (INSERT de Purchase + un UPDATE de stock agregado por producto) cada flush-interval-ms
+o al llegar a batch-size compras.
+
+Recuperación: el stock en memoria es solo una caché de la base de datos. Al arrancar no hay nada en
+memoria y cada producto se carga desde la base de datos la primera vez que se compra. Al parar la
+aplicación se vuelcan todas las compras pendientes. Si la aplicación se cae sin parar de forma ordenada
+se pierden como mucho las compras aceptadas en el último intervalo de volcado.
+
+Las compras aceptadas ya están confirmadas al cliente y nunca se descartan:
+- Quien descuente stock fuera del motor lo reserva antes en la partición (reserveExternal), así que el motor no
+  vende unidades que otro ya se ha llevado y otro no se lleva las que el motor ya prometió.
+- Si aun así el UPDATE de stock de un volcado no cambia ninguna fila (stock editado a mano por debajo de lo
+  pendiente), las compras se guardan igualmente, el stock queda en negativo y se informa la sobreventa.
+- Cada producto se vuelca en su propia transacción. Si falla por otro motivo se reintenta con espera creciente
+  (hasta MAX_RETRY_DELAY_MS) sin bloquear al resto de productos de la partición.
+
+Se activa con purchase.checkout.mode=partitioned. Quien solo aumente el stock fuera del motor llama a invalidate.
+ */
+@Slf4j
+@Component
+public class PartitionedCheckoutEngine {
+
+    static final long MAX_RETRY_DELAY_MS = 60_000;
+
+    private final ProductRepository productRepository;
+    private final PurchaseRepository purchaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DiscountEngine discountEngine;
+    private final boolean enabled;
+    private final int partitionCount;
+    private final long flushIntervalMs;
+    private final int batchSize;
+
+    private Partition[] partitions = new Partition[0];
+    private final AtomicLong oversoldPurchases = new AtomicLong();
+
+    public PartitionedCheckoutEngine(ProductRepository productRepository,
+                                     PurchaseRepository purchaseRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     ApplicationEventPublisher eventPublisher,
+                                     DiscountEngine discountEngine,
+                                     @Value("${purchase.checkout.mode:transactional}") String mode,
+                                     @Value("${purchase.checkout.partitions:8}") int partitionCount,
+                                     @Value("${purchase.checkout.flush-interval-ms:20}") long flushIntervalMs,
+                                     @Value("${purchase.checkout.batch-size:256}") int batchSize) {
+        this.productRepository = productRepository;
+        this.purchaseRepository = purchaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.discountEngine = discountEngine;
+        this.enabled = "partitioned".equalsIgnoreCase(mode);
+        this.partitionCount = partitionCount;
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i);
+        }
+        log.info("Motor de compras particionado arrancado con {} particiones", partitionCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Volcar las compras pendientes de cada partición antes de parar sus hilos
+        for (Partition partition : partitions) {
+            partition.executor.execute(partition::flushOnStop);
+            partition.executor.shutdown();
+        }
+        for (Partition partition : partitions) {
+            try {
+                if (!partition.executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.error("La partición {} no terminó de volcar sus compras a tiempo", partition.index);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Compras aceptadas que se guardaron sin stock suficiente (stock editado fuera del motor sin reserveExternal)
+    public long getOversoldPurchases() {
+        return oversoldPurchases.get();
+    }
+
+    /*
+    Reserva el stock en la partición del producto y devuelve la compra aceptada, todavía sin id.
+    La compra se guarda en base de datos en el siguiente volcado de la partición. Se devuelve una copia:
+    el hilo de la partición asigna el id a su propia instancia al volcarla.
+     */
+    public Purchase checkout(String email, Long productId, Integer quantity) {
+        Partition partition = partitionFor(productId);
+        return await(partition.executor.submit(() -> partition.reserve(email, productId, quantity)));
+    }
+
+    /*
+    Reserva en la partición las unidades que el llamador va a descontar de la base de datos fuera del motor
+    (cestas, compras idempotentes u optimistas, reservas de carrito, correcciones de stock).
+    Se llama dentro de la transacción del llamador y antes de escribir en product: desde ese momento el motor no
+    vende esas unidades. Al terminar la transacción, con commit o rollback, el producto se recarga de la base de datos.
+    Lanza IllegalArgumentException si las unidades ya están prometidas a compras del motor. No hace nada si el
+    motor está desactivado.
+     */
+    public void reserveExternal(Long productId, int quantity) {
+        if (!enabled) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("reserveExternal necesita una transacción activa.");
+        }
+
+        Partition partition = partitionFor(productId);
+        await(partition.executor.submit(() -> partition.reserveExternal(productId, quantity)));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                partition.executor.execute(() -> partition.releaseExternal(productId, quantity));
+            }
+        });
+    }
+
+    private static <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Compra interrumpida.", e);
+        }
+    }
+
+    /*
+    Descarta el stock en memoria de un producto cuando aumenta fuera del motor (por ejemplo al cancelar
+    una compra). Si hay una transacción activa se espera a su commit para no recargar el valor antiguo.
+     */
+    public void invalidate(Long productId) {
+        if (!enabled) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(productId);
+                }
+            });
+            return;
+        }
+        Partition partition = partitionFor(productId);
+        partition.executor.execute(() -> partition.slots.remove(productId));
+    }
+
+    private Partition partitionFor(Long productId) {
+        if (!enabled) {
+            throw new IllegalStateException("El motor de compras particionado no está activado.");
+        }
+        return partitions[Math.floorMod(Long.hashCode(productId), partitions.length)];
+    }
+
+    // Producto cacheado y su stock disponible en memoria (descontadas ya las compras pendientes)
+    private static final class Slot {
+        private final Product product;
+        private int available;
+
+        private Slot(Product product, int available) {
+            this.product = product;
+            this.available = available;
+        }
+    }
+
+    // Compras pendientes de volcar de un producto y las unidades que restan de su stock
+    private static final class Pending {
+        private final List<Purchase> purchases = new ArrayList<>();
+        private int units;
+        private int failures;
+        private long retryAtNanos; // Tras un error no se vuelve a intentar hasta entonces
+    }
+
+    /*
+    Todos los campos de una partición solo se leen y escriben desde su propio hilo, por eso no hay bloqueos.
+     */
+    private final class Partition {
+        private final int index;
+        private final ScheduledExecutorService executor;
+        private final Map<Long, Slot> slots = new HashMap<>();
+        private final Map<Long, Pending> pending = new LinkedHashMap<>(); // En orden de la primera compra
+        private final Map<Long, Integer> external = new HashMap<>(); // Unidades de reserveExternal sin confirmar
+        private int pendingCount;
+
+        private Partition(int index) {
+            this.index = index;
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkout-partition-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        private Purchase reserve(String email, Long productId, Integer quantity) {
+            Slot slot = slots.computeIfAbsent(productId, this::load);
+
+            if (slot.available < quantity) {
+                throw new IllegalArgumentException("Stock insuficiente para el producto seleccionado.");
+            }
+            slot.available -= quantity;
+
+            Purchase purchase = PurchaseService.buildPurchase(email, slot.product, quantity,
+                    discountEngine.discountBasisPoints(slot.product, quantity));
+            Pending productPending = pending.computeIfAbsent(productId, id -> new Pending());
+            productPending.purchases.add(purchase);
+            productPending.units += quantity;
+            pendingCount++;
+
+            Purchase accepted = copyOf(purchase); // Antes del volcado: la copia no comparte nada que se modifique después
+            if (pendingCount >= batchSize) {
+                flush();
+            }
+            return accepted;
+        }
+
+        private Void reserveExternal(Long productId, int quantity) {
+            Slot slot = slots.computeIfAbsent(productId, this::load);
+            if (slot.available < quantity) {
+                throw new IllegalArgumentException("Stock insuficiente para el producto seleccionado.");
+            }
+            slot.available -= quantity;
+            external.merge(productId, quantity, Integer::sum);
+            return null;
+        }
+
+        // La transacción del llamador terminó: sus unidades ya están (o ya no están) en la base de datos
+        private void releaseExternal(Long productId, int quantity) {
+            external.computeIfPresent(productId, (id, units) -> units == quantity ? null : units - quantity);
+            slots.remove(productId);
+        }
+
+        private Slot load(Long productId) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado."));
+            // Las compras pendientes de volcar y las reservas externas sin confirmar aún no están restadas en base de datos
+            Pending productPending = pending.get(productId);
+            int units = (productPending != null ? productPending.units : 0) + external.getOrDefault(productId, 0);
+            return new Slot(product, product.getQuantity() - units);
+        }
+
+        private void flush() {
+            flush(false);
+        }
+
+        // Último volcado sin esperas. Lo que no se pueda guardar ahora se pierde: se deja en el log para recuperarlo
+        private void flushOnStop() {
+            flush(true);
+            pending.forEach((productId, productPending) -> productPending.purchases.forEach(purchase ->
+                    log.error("Compra aceptada sin guardar al parar: email={}, producto={}, cantidad={}, total={}, fecha={}",
+                            purchase.getEmail(), productId, purchase.getQuantity(), purchase.getTotalPrice(),
+                            purchase.getPurchaseDate())));
+        }
+
+        private void flush(boolean ignoreBackoff) {
+            long now = System.nanoTime();
+            Iterator<Map.Entry<Long, Pending>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, Pending> entry = iterator.next();
+                if (!ignoreBackoff && now - entry.getValue().retryAtNanos < 0) continue;
+                if (flush(entry.getKey(), entry.getValue())) {
+                    pendingCount -= entry.getValue().purchases.size();
+                    iterator.remove();
+                }
+            }
+        }
+
+        // Vuelca las compras de un producto en su transacción. Devuelve false si hay que reintentarlas
+        private boolean flush(Long productId, Pending productPending) {
+            try {
+                Boolean enough = transactionTemplate.execute(status -> {
+                    boolean decremented = productRepository.decrementStock(productId, productPending.units) != 0;
+                    if (!decremented) {
+                        // Las compras ya están confirmadas: se guardan aunque el stock no alcance
+                        productRepository.forceDecrementStock(productId, productPending.units);
+                    }
+                    purchaseRepository.saveAll(List.copyOf(productPending.purchases));
+                    // El stock en memoria del slot ya es el que queda en base de datos tras el volcado
+                    Slot slot = slots.get(productId);
+                    if (decremented && slot != null) {
+                        eventPublisher.publishEvent(new StockLevelChangedEvent(productId, slot.product.getName(),
+                                slot.available + productPending.units, slot.available, slot.product.getLowStockThreshold()));
+                    }
+                    // Los eventos se publican ya con id y con el producto bloqueado por el UPDATE de stock
+                    // (la bandeja de salida numera así los eventos de cada producto en orden de commit)
+                    productPending.purchases.forEach(purchase -> eventPublisher.publishEvent(new PurchaseCreatedEvent(purchase)));
+                    return decremented;
+                });
+                if (Boolean.FALSE.equals(enough)) {
+                    slots.remove(productId); // El stock en memoria no coincide con la base de datos
+                    oversoldPurchases.addAndGet(productPending.purchases.size());
+                    log.error("Sobreventa del producto {}: {} compras confirmadas ({} unidades) guardadas sin stock suficiente, "
+                            + "el stock se modificó fuera del motor", productId, productPending.purchases.size(), productPending.units);
+                }
+                return true;
+            } catch (RuntimeException e) {
+                productPending.failures++;
+                long delayMs = Math.min(MAX_RETRY_DELAY_MS, flushIntervalMs << Math.min(productPending.failures, 20));
+                log.error("Error al volcar {} compras del producto {} en la partición {} (intento {}), se reintentará en {} ms",
+                        productPending.purchases.size(), productId, index, productPending.failures, delayMs, e);
+                productPending.purchases.forEach(purchase -> purchase.setId(null)); // Los ids del INSERT deshecho no son válidos
+                productPending.retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+                slots.remove(productId);
+                return false;
+            }
+        }
+    }
+
+    private static Purchase copyOf(Purchase purchase) {
+        return Purchase.builder()
+                .email(purchase.getEmail())
+                .product(purchase.getProduct())
+                .quantity(purchase.getQuantity())
+                .totalPrice(purchase.getTotalPrice())
+                .purchaseDate(purchase.getPurchaseDate())
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.ProductCursor;
+import com.certidevs.dto.ProductPageDTO;
+import com.certidevs.dto.ProductSort;
+import com.certidevs.model.Product;
+import com.certidevs.repository.ProductRepository;
+import jakarta.persistence.criteria.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+Lista de productos paginada en el servidor (/productos).
+
+Las páginas se piden por clave (keyset) y no por número: "los size productos siguientes a (valor, id)" en el orden
+de la columna elegida, con id como desempate. Con los índices (columna, id) de product cada página lee size + 1 filas
+del índice, sea la primera o la diez mil; con OFFSET MySQL tendría que recorrer y descartar todas las anteriores.
+- after: página siguiente al cursor. before: página anterior (se lee en orden inverso y se da la vuelta).
+- La fila de más (size + 1) indica si hay otra página en esa dirección sin hacer un COUNT.
+- Los NULL van primero en orden ascendente y al final en descendente, como los ordena MySQL.
+ */
+@Service
+public class ProductListService {
+
+    private final ProductRepository productRepository;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public ProductListService(ProductRepository productRepository,
+                              @Value("${product.list.default-page-size:20}") int defaultPageSize,
+                              @Value("${product.list.max-page-size:100}") int maxPageSize) {
+        this.productRepository = productRepository;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    // size null: tamaño por defecto. after y before no pueden ir juntos
+    public ProductPageDTO findPage(ProductSort sort, boolean descending, Integer size,
+                                   ProductCursor after, ProductCursor before) {
+        if (after != null && before != null) {
+            throw new IllegalArgumentException("No se puede pedir la página siguiente y la anterior a la vez.");
+        }
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        sort.parse(after != null ? after.value() : before != null ? before.value() : null); // Valida el cursor antes de consultar
+
+        boolean backwards = before != null;
+        List<Product> rows = new ArrayList<>(productRepository.findBy(
+                page(sort, descending != backwards, backwards ? before : after),
+                query -> query.sortBy(order(sort, descending != backwards)).limit(pageSize + 1).all()));
+        boolean more = rows.size() > pageSize;
+        if (more) rows = rows.subList(0, pageSize);
+        if (backwards) Collections.reverse(rows);
+        if (rows.isEmpty()) return new ProductPageDTO(rows, sort, descending, pageSize, null, null);
+
+        // Hacia delante hay página anterior si se llegó con un cursor; hacia atrás siempre hay siguiente
+        ProductCursor first = ProductCursor.of(sort, rows.get(0));
+        ProductCursor last = ProductCursor.of(sort, rows.get(rows.size() - 1));
+        return backwards
+                ? new ProductPageDTO(rows, sort, descending, pageSize, more ? first : null, last)
+                : new ProductPageDTO(rows, sort, descending, pageSize, after != null ? first : null, more ? last : null);
+    }
+
+    private static Sort order(ProductSort sort, boolean descending) {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        return sort == ProductSort.ID
+                ? Sort.by(direction, "id")
+                : Sort.by(direction, sort.getProperty()).and(Sort.by(direction, "id"));
+    }
+
+    // Productos posteriores al cursor en el orden indicado, con el fabricante en la misma consulta (LEFT JOIN FETCH)
+    private static Specification<Product> page(ProductSort sort, boolean descending, ProductCursor cursor) {
+        return (root, query, cb) -> {
+            if (query.getResultType() == Product.class) root.fetch("manufacturer", JoinType.LEFT);
+            return cursor == null ? cb.conjunction() : after(root, cb, sort, descending, cursor);
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate after(Root<Product> root, CriteriaBuilder cb, ProductSort sort, boolean descending,
+                                   ProductCursor cursor) {
+        Path<Long> id = root.get("id");
+        Predicate nextId = descending ? cb.lessThan(id, cursor.id()) : cb.greaterThan(id, cursor.id());
+        if (sort == ProductSort.ID) return nextId;
+
+        Path column = root.get(sort.getProperty());
+        Comparable value = sort.parse(cursor.value());
+        if (value == null) {
+            // El cursor está entre los NULL: primeros en ascendente, últimos en descendente
+            return descending
+                    ? cb.and(cb.isNull(column), nextId)
+                    : cb.or(cb.isNotNull(column), cb.and(cb.isNull(column), nextId));
+        }
+        Predicate beyond = descending
+                ? cb.or(cb.lessThan(column, value), cb.isNull(column))
+                : cb.greaterThan(column, value);
+        return cb.or(beyond, cb.and(cb.equal(column, value), nextId));
+    }
+}
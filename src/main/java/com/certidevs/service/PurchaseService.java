@@ -1,15 +1,44 @@
 package com.certidevs.service;
 
+import com.certidevs.archive.PurchaseArchive;
+import com.certidevs.dto.CheckoutOutcome;
+import com.certidevs.dto.CheckoutRequestDTO;
+import com.certidevs.dto.PurchaseCancellationSummaryDTO;
+import com.certidevs.dto.PurchaseCursor;
+import com.certidevs.dto.PurchaseLine;
+import com.certidevs.dto.PurchaseListItemDTO;
+import com.certidevs.dto.PurchasePageDTO;
+import com.certidevs.dto.PurchaseProductDTO;
+import com.certidevs.dto.PurchaseStockRestoreDTO;
+import com.certidevs.event.PurchaseCancelledEvent;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.event.StockLevelChangedEvent;
+import com.certidevs.model.CheckoutIdempotencyKey;
+import com.certidevs.model.Money;
 import com.certidevs.model.Product;
 import com.certidevs.model.Purchase;
+import com.certidevs.repository.CheckoutIdempotencyKeyRepository;
 import com.certidevs.repository.ProductRepository;
 import com.certidevs.repository.PurchaseRepository;
+import com.certidevs.stats.CheckoutMetrics;
+import jakarta.persistence.EntityManager;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @AllArgsConstructor
 @Service
@@ -17,6 +46,13 @@ public class PurchaseService {
 
     private PurchaseRepository purchaseRepository; // Repositorio para operaciones CRUD de Purchase
     private ProductRepository productRepository; // Repositorio para operaciones CRUD de Product
+    private PartitionedCheckoutEngine checkoutEngine; // Motor de compras particionado (opcional, purchase.checkout.mode)
+    private ApplicationEventPublisher eventPublisher; // Publica los eventos de compra (diario, estadísticas...)
+    private CheckoutIdempotencyKeyRepository idempotencyKeyRepository; // Claves de idempotencia de las compras
+    private EntityManager entityManager; // Desasociar las compras recorridas en streaming y los productos de una tanda
+    private CheckoutMetrics checkoutMetrics; // Latencia, unidades e importe de las compras (ventanas de 1, 5 y 15 min)
+    private DiscountEngine discountEngine; // Reglas de descuento precompiladas
+    private PurchaseArchive purchaseArchive; // Compras de las particiones archivadas (segmentos comprimidos en disco)
 
     // Constructor manual (sin el @RequiredArgsConstructor)
     /*public PurchaseService(PurchaseRepository purchaseRepository, ProductRepository) {
@@ -25,20 +61,163 @@ public class PurchaseService {
     }*/
 
     public Purchase getPurchaseById(Long id) {
-        return purchaseRepository.findById(id) // Busca la compra por ID
+        return purchaseRepository.findWithProductById(id) // Busca la compra por ID, con su producto y fabricante
+                .or(() -> purchaseArchive.findById(id)) // Si no está en MySQL puede estar archivada
                 .orElseThrow(() -> new IllegalArgumentException("Compra no encontrada."));
     }
 
     public List<Purchase> getAllPurchases() {
-        return purchaseRepository.findAll(); // Devuelve todas las compras
+        List<Purchase> purchases = new ArrayList<>(purchaseArchive.findAll()); // Primero las archivadas (más antiguas)
+        purchases.addAll(purchaseRepository.findAll()); // Devuelve todas las compras
+        return purchases;
     }
 
     public List<Purchase> getPurchasesByEmail(String email) {
-        return purchaseRepository.findByEmail(email); // Devuelve compras filtradas por email
+        List<Purchase> purchases = new ArrayList<>(purchaseArchive.findByEmail(email));
+        purchases.addAll(purchaseRepository.findByEmail(email)); // Devuelve compras filtradas por email
+        return purchases;
+    }
+
+    // Listado de compras de un cliente con el nombre de cada producto: una consulta sin cargar entidades
+    public List<PurchaseListItemDTO> getPurchaseListByEmail(String email) {
+        List<PurchaseListItemDTO> purchases = new ArrayList<>(purchaseArchive.findByEmail(email).stream()
+                .map(PurchaseListItemDTO::from)
+                .toList());
+        purchases.addAll(purchaseRepository.findListItemsByEmail(email));
+        return purchases;
     }
 
     @Transactional // Asegura que todas las operaciones se completan exitosamente o ninguna de ellas se aplique
     public Purchase makePurchase(String email, Long productId, Integer quantity) {
+        return checkout(email, productId, quantity);
+    }
+
+    /*
+    Tanda de compras de la cola asíncrona (AsyncCheckoutService) en una sola transacción: un único commit
+    para toda la tanda en lugar de uno por compra.
+    Una compra rechazada (sin stock, producto inexistente) no ha escrito nada, porque el UPDATE condicionado
+    no cambió ninguna fila, así que no deshace las demás: se devuelve su error en su posición.
+    Cualquier otra excepción deshace la tanda entera y el llamador repite las compras una a una.
+     */
+    @Transactional
+    public List<CheckoutOutcome> makePurchaseBatch(List<CheckoutRequestDTO> requests) {
+        List<CheckoutOutcome> outcomes = new ArrayList<>(requests.size());
+        for (CheckoutRequestDTO request : requests) {
+            try {
+                Purchase purchase = checkout(request.email(), request.productId(), request.quantity());
+                // El UPDATE masivo de la siguiente compra no cambia el producto ya cargado: se desasocia para que
+                // findById vuelva a leer la fila y el stock publicado sea el real
+                entityManager.detach(purchase.getProduct());
+                outcomes.add(CheckoutOutcome.completed(purchase));
+            } catch (IllegalArgumentException e) {
+                outcomes.add(CheckoutOutcome.failed(e.getMessage()));
+            }
+        }
+        return outcomes;
+    }
+
+    // Validación común de las compras síncronas y de las asíncronas (antes de encolarlas)
+    public void validateCheckout(Long productId, Integer quantity) {
+        if (productId == null) {
+            throw new IllegalArgumentException("El producto es obligatorio.");
+        }
+        // Validar que la cantidad sea positiva
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor que cero.");
+        }
+    }
+
+    private Purchase checkout(String email, Long productId, Integer quantity) {
+        long start = System.nanoTime(); // Latencia de la compra (también de las fallidas)
+        try {
+            validateCheckout(productId, quantity);
+
+            // En modo particionado la reserva se hace en memoria y la compra se guarda en el siguiente volcado del motor
+            Purchase purchase = checkoutEngine.isEnabled()
+                    ? checkoutEngine.checkout(email, productId, quantity)
+                    : reserveAndSave(email, productId, quantity);
+            checkoutMetrics.recordOrder(purchase.getQuantity(), purchase.getTotalPrice());
+            return purchase;
+        } finally {
+            checkoutMetrics.recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    /*
+    Compra idempotente: guarda la clave de idempotencia junto con la compra en la misma transacción.
+    La clave es única en base de datos; si otra petición con la misma clave se confirmó antes,
+    el INSERT falla (DataIntegrityViolationException) y se deshace también esta compra.
+    Siempre usa la ruta transaccional porque necesita el id de la compra para guardar la clave; en modo particionado
+    reserva antes las unidades en el motor (reserveExternal) para no llevarse stock que el motor ya prometió.
+    La deduplicación en memoria la hace IdempotentCheckoutService.
+     */
+    @Transactional
+    public Purchase makePurchase(String email, Long productId, Integer quantity, String idempotencyKey) {
+        long start = System.nanoTime();
+        try {
+            validateCheckout(productId, quantity);
+
+            checkoutEngine.reserveExternal(productId, quantity); // Antes de descontar el stock en base de datos
+            Purchase savedPurchase = reserveAndSave(email, productId, quantity);
+
+            // saveAndFlush para que una clave duplicada falle aquí y no al hacer commit
+            idempotencyKeyRepository.saveAndFlush(CheckoutIdempotencyKey.builder()
+                    .idempotencyKey(idempotencyKey)
+                    .purchaseId(savedPurchase.getId())
+                    .requestHash(CheckoutIdempotencyKey.fingerprint(email, productId, quantity))
+                    .createdAt(LocalDateTime.now())
+                    .build());
+            checkoutMetrics.recordOrder(savedPurchase.getQuantity(), savedPurchase.getTotalPrice());
+            return savedPurchase;
+        } finally {
+            checkoutMetrics.recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    /*
+    Compra de stock ya reservado (CartReservationService): no descuenta ni comprueba el stock de nuevo.
+     */
+    @Transactional
+    public Purchase makeReservedPurchase(String email, Long productId, Integer quantity) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado."));
+
+        Purchase savedPurchase = purchaseRepository.save(newPurchase(email, product, quantity));
+
+        eventPublisher.publishEvent(new PurchaseCreatedEvent(savedPurchase));
+        return savedPurchase;
+    }
+
+    private Purchase reserveAndSave(String email, Long productId, Integer quantity) {
+        // Reservar el stock con un único UPDATE condicionado (quantity >= cantidad pedida).
+        // Evita el patrón leer-modificar-guardar, que bajo compras concurrentes pierde actualizaciones.
+        if (productRepository.decrementStock(productId, quantity) == 0) {
+            // No se actualizó ninguna fila: o el producto no existe o no hay stock suficiente
+            if (!productRepository.existsById(productId)) {
+                throw new IllegalArgumentException("Producto no encontrado.");
+            }
+            throw new IllegalArgumentException("Stock insuficiente para el producto seleccionado.");
+        }
+
+        // Buscar el producto por ID (ya con el stock descontado dentro de esta transacción)
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado."));
+
+        // Crear y guardar la compra
+        Purchase savedPurchase = purchaseRepository.save(newPurchase(email, product, quantity)); // Guarda la compra
+
+        eventPublisher.publishEvent(new PurchaseCreatedEvent(savedPurchase));
+        publishStockLevel(product, product.getQuantity() + quantity); // El stock leído ya es el del UPDATE
+        return savedPurchase; // Devuelve la compra guardada
+    }
+
+    /*
+    Alternativa con bloqueo optimista (@Version en Product): lee el producto, comprueba el stock en Java
+    y lo guarda. Si otra transacción modificó el producto entretanto, el commit lanza
+    ObjectOptimisticLockingFailureException y el llamador puede reintentar la compra.
+     */
+    @Transactional
+    public Purchase makePurchaseOptimistic(String email, Long productId, Integer quantity) {
         // Validar que la cantidad sea positiva
         if (quantity <= 0) {
             throw new IllegalArgumentException("La cantidad debe ser mayor que cero.");
@@ -52,39 +231,111 @@ public class PurchaseService {
         if (product.getQuantity() < quantity) {
             throw new IllegalArgumentException("Stock insuficiente para el producto seleccionado.");
         }
+        checkoutEngine.reserveExternal(productId, quantity); // Stock descontado fuera del motor particionado
+
+        // Guardar la compra en base de datos
+        Purchase savedPurchase = purchaseRepository.save(newPurchase(email, product, quantity));
+
+        // Actualizar el stock del producto restando la cantidad comprada (UPDATE ... WHERE version = ?)
+        product.setQuantity(product.getQuantity() - quantity);
+        productRepository.save(product);
+
+        eventPublisher.publishEvent(new PurchaseCreatedEvent(savedPurchase));
+        publishStockLevel(product, product.getQuantity() + quantity);
+        return savedPurchase;
+    }
+
+    /*
+    Compra de una cesta completa en una sola transacción:
+    - Una única consulta (findAllById) para cargar todos los productos de la cesta.
+    - Se valida el stock de toda la cesta antes de escribir nada.
+    - Los INSERT de Purchase y los UPDATE de stock se envían en lotes JDBC (hibernate.jdbc.batch_size).
+      Los UPDATE llevan la comprobación de @Version: si otra transacción cambia un producto a la vez,
+      se deshace la cesta entera.
+     */
+    @Transactional
+    public List<Purchase> makePurchases(String email, List<PurchaseLine> lines) {
+        long start = System.nanoTime(); // Latencia de la cesta (también de las fallidas)
+        try {
+            if (lines == null || lines.isEmpty()) {
+                throw new IllegalArgumentException("La cesta está vacía.");
+            }
+
+            // Agrupar las cantidades por producto (la misma línea puede repetirse en la cesta)
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            for (PurchaseLine line : lines) {
+                if (line.quantity() == null || line.quantity() <= 0) {
+                    throw new IllegalArgumentException("La cantidad debe ser mayor que cero.");
+                }
+                quantities.merge(line.productId(), line.quantity(), Integer::sum);
+            }
 
-        // Calcular el precio total sin descuento
-        Double totalPrice = product.getPrice() * quantity;
+            // Cargar todos los productos con una sola consulta
+            Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
 
-        // Aplicar el descuento del 10% si la cantidad es mayor o igual a 10
-        if (quantity >= 10) {
-            // totalPrice = totalPrice * 0.9;
-            totalPrice *= 0.9;
+            // Validar la cesta completa antes de modificar nada
+            quantities.forEach((productId, quantity) -> {
+                Product product = products.get(productId);
+                if (product == null) {
+                    throw new IllegalArgumentException("Producto no encontrado.");
+                }
+                if (product.getQuantity() < quantity) {
+                    throw new IllegalArgumentException("Stock insuficiente para el producto seleccionado.");
+                }
+            });
+
+            // En modo particionado, apartar las unidades en el motor para no llevarse stock que ya prometió
+            quantities.forEach(checkoutEngine::reserveExternal);
+
+            // Crear una compra por línea y descontar el stock en las entidades gestionadas
+            List<Purchase> purchases = new ArrayList<>(lines.size());
+            for (PurchaseLine line : lines) {
+                purchases.add(newPurchase(email, products.get(line.productId()), line.quantity()));
+            }
+            quantities.forEach((productId, quantity) -> {
+                Product product = products.get(productId);
+                product.setQuantity(product.getQuantity() - quantity);
+                publishStockLevel(product, product.getQuantity() + quantity);
+            });
+
+            // saveAll + flush al hacer commit: INSERT y UPDATE agrupados en lotes
+            List<Purchase> savedPurchases = purchaseRepository.saveAll(purchases);
+            savedPurchases.forEach(purchase -> eventPublisher.publishEvent(new PurchaseCreatedEvent(purchase)));
+
+            savedPurchases.forEach(purchase -> checkoutMetrics.recordOrder(purchase.getQuantity(), purchase.getTotalPrice()));
+            return savedPurchases;
+        } finally {
+            checkoutMetrics.recordLatency(System.nanoTime() - start);
         }
+    }
+
+    // Compra con el descuento que corresponda según las reglas compiladas de DiscountEngine
+    private Purchase newPurchase(String email, Product product, Integer quantity) {
+        return buildPurchase(email, product, quantity, discountEngine.discountBasisPoints(product, quantity));
+    }
+
+    static Purchase buildPurchase(String email, Product product, Integer quantity, int discountBasisPoints) {
+        // Calcular el precio total sin descuento (en céntimos, sin redondeos)
+        long totalPrice = Money.multiply(product.getPrice().minorUnits(), quantity);
+
+        // Aplicar el descuento (1000 puntos básicos = 10%), redondeado al céntimo
+        totalPrice = Money.applyDiscount(totalPrice, discountBasisPoints);
 
         // Crear la compra
-        Purchase purchase = Purchase.builder()
+        return Purchase.builder()
                 .email(email)
                 .product(product)
                 .quantity(quantity)
-                .totalPrice(totalPrice)
+                .totalPrice(Money.ofMinor(totalPrice))
                 .purchaseDate(LocalDateTime.now())
                 .build();
-
-        // Guardar la compra en base de datos
-        Purchase savedPurchase = purchaseRepository.save(purchase); // Guarda y devuelve la compra guardada
-
-        // Actualizar el stock del producto restando la cantidad comprada
-        product.setQuantity(product.getQuantity() - quantity); // Actualiza el stock del producto
-        productRepository.save(product); // Guarda los cambios en el producto
-
-        return savedPurchase; // Devuelve la compra realizada
     }
 
     @Transactional
     public void cancelPurchase(Long purchaseId) {
         // Buscar la compra por ID
-        Purchase purchase = purchaseRepository.findById(purchaseId)
+        Purchase purchase = purchaseRepository.findWithProductById(purchaseId) // Con el producto en la misma consulta
                 .orElseThrow(() -> new IllegalArgumentException("Compra no encontrada.")); // Lanza una excepción si no existe
 
         // Obtener el product asociado a la compra
@@ -96,9 +347,143 @@ public class PurchaseService {
 
         // Eliminar la compra de la base de datos
         purchaseRepository.delete(purchase); // Elimina la compra
+
+        // El stock cacheado por el motor particionado ya no es válido para este producto
+        checkoutEngine.invalidate(product.getId());
+
+        eventPublisher.publishEvent(new PurchaseCancelledEvent(purchase));
+        publishStockLevel(product, product.getQuantity() - purchase.getQuantity());
     }
 
-//    public List<Purchase> getPurchasesBetweenDates(LocalDateTime startDate, LocalDateTime endDate) {
-//        return purchaseRepository.findByPurchaseDateBetween(startDate, endDate);
-//    }
+    // Aviso del nuevo nivel de stock para las alertas de stock bajo (LowStockAlertService)
+    private void publishStockLevel(Product product, int previousQuantity) {
+        eventPublisher.publishEvent(new StockLevelChangedEvent(product.getId(), product.getName(),
+                previousQuantity, product.getQuantity(), product.getLowStockThreshold()));
+    }
+
+    /*
+    Cancelación masiva (un pedido completo o una tanda de devoluciones) en una sola transacción:
+    - Una consulta agrupada calcula las unidades a devolver por producto.
+    - Un único DELETE ... WHERE id IN (...) elimina las compras.
+    - Un UPDATE quantity = quantity + suma por producto restaura el stock.
+    Si otra transacción cancela alguna de estas compras a la vez, el DELETE borra menos filas de las esperadas
+    y se deshace todo para no devolver el stock dos veces.
+     */
+    @Transactional
+    public PurchaseCancellationSummaryDTO cancelPurchases(Collection<Long> purchaseIds) {
+        if (purchaseIds == null || purchaseIds.isEmpty()) {
+            return new PurchaseCancellationSummaryDTO(0, 0, Map.of());
+        }
+
+        // Unidades por producto de las compras que existen
+        List<PurchaseStockRestoreDTO> restores = purchaseRepository.sumQuantitiesByProduct(purchaseIds);
+        long expectedPurchases = restores.stream().mapToLong(PurchaseStockRestoreDTO::purchasesCount).sum();
+        List<String> emails = purchaseRepository.findDistinctEmailsByIdIn(purchaseIds);
+        List<PurchaseProductDTO> purchases = purchaseRepository.findProductsByIdIn(purchaseIds);
+
+        // Borrar las compras con una sola sentencia
+        int deleted = purchaseRepository.deleteByIdIn(purchaseIds);
+        if (deleted != expectedPurchases) {
+            throw new IllegalStateException("Algunas compras se han cancelado a la vez desde otra operación.");
+        }
+
+        // Restaurar el stock con un UPDATE agregado por producto
+        Map<Long, Long> restoredStock = new LinkedHashMap<>();
+        for (PurchaseStockRestoreDTO restore : restores) {
+            productRepository.incrementStock(restore.productId(), restore.quantity().intValue());
+            checkoutEngine.invalidate(restore.productId());
+            restoredStock.put(restore.productId(), restore.quantity());
+        }
+
+        long restoredUnits = restoredStock.values().stream().mapToLong(Long::longValue).sum();
+        PurchaseCancellationSummaryDTO summary = new PurchaseCancellationSummaryDTO(deleted, restoredUnits, restoredStock);
+
+        eventPublisher.publishEvent(new PurchasesCancelledEvent(purchaseIds, emails, purchases, summary));
+        return summary;
+    }
+
+    /*
+    Historial de compras en [from, to) paginado por clave: se pasa el cursor de la página anterior
+    (null para la primera) y se lee una fila de más para saber si hay página siguiente.
+     */
+    public PurchasePageDTO getPurchasesBetweenDates(LocalDateTime from, LocalDateTime to, PurchaseCursor cursor, int size) {
+        return getPage(null, from, to, cursor, size);
+    }
+
+    public PurchasePageDTO getPurchasesByEmailBetweenDates(String email, LocalDateTime from, LocalDateTime to,
+                                                           PurchaseCursor cursor, int size) {
+        return getPage(email, from, to, cursor, size);
+    }
+
+    /*
+    Las compras anteriores a archivedBefore están en el archivo y las posteriores en MySQL, así que la página
+    se completa leyendo primero el archivo y después las particiones activas (solo las del rango: la consulta
+    empieza en archivedBefore como muy pronto). Si el rango está entero en uno de los dos, el otro no se consulta.
+     */
+    private PurchasePageDTO getPage(String email, LocalDateTime from, LocalDateTime to, PurchaseCursor cursor, int size) {
+        validateHistoryRange(from, to, size);
+        PurchaseCursor after = cursor != null ? cursor : new PurchaseCursor(from, 0L);
+        List<Purchase> rows = new ArrayList<>(size + 1);
+
+        LocalDateTime hotFrom = from;
+        LocalDateTime archivedBefore = purchaseArchive.getArchivedBefore();
+        if (archivedBefore != null && from.isBefore(archivedBefore)) {
+            LocalDateTime archivedTo = to.isBefore(archivedBefore) ? to : archivedBefore;
+            rows.addAll(purchaseArchive.findPage(email, from, archivedTo, after, size + 1));
+            hotFrom = archivedBefore;
+        }
+        if (rows.size() <= size && hotFrom.isBefore(to)) {
+            PageRequest page = PageRequest.ofSize(size + 1 - rows.size());
+            rows.addAll(email == null
+                    ? purchaseRepository.findPageByPurchaseDate(hotFrom, to, after.purchaseDate(), after.id(), page)
+                    : purchaseRepository.findPageByEmailAndPurchaseDate(
+                            email, hotFrom, to, after.purchaseDate(), after.id(), page));
+        }
+        return toPage(rows, size);
+    }
+
+    /*
+    Recorre todas las compras de [from, to) sin cargarlas a la vez en memoria (exportaciones, informes).
+    Primero las archivadas, segmento a segmento, y después las de MySQL en streaming.
+    Cada compra de MySQL se desasocia del contexto de persistencia después de procesarla para que no crezca.
+     */
+    @Transactional(readOnly = true)
+    public long forEachPurchaseBetweenDates(LocalDateTime from, LocalDateTime to, Consumer<Purchase> action) {
+        validateHistoryRange(from, to, 1);
+        long count = 0;
+        LocalDateTime hotFrom = from;
+        LocalDateTime archivedBefore = purchaseArchive.getArchivedBefore();
+        if (archivedBefore != null && from.isBefore(archivedBefore)) {
+            count += purchaseArchive.forEach(from, to.isBefore(archivedBefore) ? to : archivedBefore, action);
+            hotFrom = archivedBefore;
+        }
+        if (!hotFrom.isBefore(to)) return count;
+
+        try (Stream<Purchase> purchases = purchaseRepository.streamByPurchaseDate(hotFrom, to)) {
+            for (Purchase purchase : (Iterable<Purchase>) purchases::iterator) {
+                action.accept(purchase);
+                entityManager.detach(purchase);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void validateHistoryRange(LocalDateTime from, LocalDateTime to, int size) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("El rango de fechas no es válido.");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser mayor que cero.");
+        }
+    }
+
+    private static PurchasePageDTO toPage(List<Purchase> rows, int size) {
+        if (rows.size() <= size) {
+            return new PurchasePageDTO(rows, null);
+        }
+        List<Purchase> page = rows.subList(0, size);
+        Purchase last = page.get(size - 1);
+        return new PurchasePageDTO(List.copyOf(page), new PurchaseCursor(last.getPurchaseDate(), last.getId()));
+    }
 }
@@ -0,0 +1,367 @@
+package com.certidevs.service;
+
+import com.certidevs.archive.PurchaseArchive;
+import com.certidevs.dto.DailyRevenueDTO;
+import com.certidevs.dto.ManufacturerRevenueDTO;
+import com.certidevs.dto.ProductRevenueDTO;
+import com.certidevs.dto.PurchaseProductDTO;
+import com.certidevs.event.PurchaseCancelledEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.DailyManufacturerRevenueRepository;
+import com.certidevs.repository.DailyProductRevenueRepository;
+import com.certidevs.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+Resúmenes diarios de ingresos por producto (daily_product_revenue) y por fabricante (daily_manufacturer_revenue).
+Los informes de ingresos solo leen estos resúmenes.
+
+- Cada interval se suman las compras nuevas por bloques de ids (batch-size) desde la marca de agua
+  (rollup_watermark.last_purchase_id). Solo se suman las compras con más de settle-delay de antigüedad:
+  los ids se asignan antes del commit, así que una compra reciente con id menor puede no haberse confirmado aún.
+- Cancelaciones: @EventListener síncrono, dentro de la transacción que borra las compras. Se restan
+  (delta negativo) solo las compras ya sumadas, id <= marca de agua.
+- backfill: recalcula por meses en paralelo, cada mes en su propia transacción. Los días de meses
+  archivados (PurchaseArchive) ya no están en purchase y se conservan tal cual.
+
+La fila de rollup_watermark hace de lock: la suma periódica y las cancelaciones la bloquean (FOR UPDATE)
+antes de escribir y el backfill la comparte (FOR SHARE). La suma lee purchase después de obtener el lock,
+así que una cancelación que espera el lock aún no está confirmada: la suma ve la compra, la cuenta
+y la cancelación la resta al ver la nueva marca de agua. Nunca se cuenta dos veces ni se pierde.
+Con varias instancias, cada una reserva bloques de ids de la secuencia y los ids no siguen el orden
+de las fechas: una compra con id menor que la marca de agua confirmada después de settle-delay no se suma
+hasta el siguiente backfill.
+ */
+@Slf4j
+@Service
+public class RevenueRollupService {
+
+    static final String WATERMARK = "daily_revenue";
+
+    // Compras de (id_desde, id_hasta] agrupadas por día, producto y fabricante. Lectura sin locks
+    private static final String AGGREGATE = """
+            SELECT DATE(p.purchase_date) AS day, p.product_id, pr.manufacturer_id,
+                   SUM(p.total_price) AS revenue, SUM(p.quantity) AS units, COUNT(*) AS order_count
+            FROM purchase p LEFT JOIN product pr ON pr.id = p.product_id
+            WHERE p.product_id IS NOT NULL AND %s
+            GROUP BY DATE(p.purchase_date), p.product_id, pr.manufacturer_id
+            """;
+
+    private static final String UPSERT_PRODUCT = """
+            INSERT INTO daily_product_revenue (day, product_id, revenue, units, order_count) VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                revenue = revenue + VALUES(revenue),
+                units = units + VALUES(units),
+                order_count = order_count + VALUES(order_count)
+            """;
+
+    private static final String UPSERT_MANUFACTURER = """
+            INSERT INTO daily_manufacturer_revenue (day, manufacturer_id, revenue, units, order_count) VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                revenue = revenue + VALUES(revenue),
+                units = units + VALUES(units),
+                order_count = order_count + VALUES(order_count)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductRepository productRepository;
+    private final PurchaseArchive purchaseArchive;
+    private final DailyProductRevenueRepository productRevenueRepository;
+    private final DailyManufacturerRevenueRepository manufacturerRevenueRepository;
+    private final boolean enabled;
+    private final Duration interval;
+    private final Duration settleDelay;
+    private final int batchSize;
+    private final int backfillThreads;
+    private final boolean backfillOnStartup;
+    private final Clock clock;
+
+    private ScheduledExecutorService scheduler;
+
+    public RevenueRollupService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ProductRepository productRepository,
+                                PurchaseArchive purchaseArchive,
+                                DailyProductRevenueRepository productRevenueRepository,
+                                DailyManufacturerRevenueRepository manufacturerRevenueRepository,
+                                @Value("${purchase.rollups.enabled:false}") boolean enabled,
+                                @Value("${purchase.rollups.interval:PT1M}") Duration interval,
+                                @Value("${purchase.rollups.settle-delay:PT1M}") Duration settleDelay,
+                                @Value("${purchase.rollups.batch-size:10000}") int batchSize,
+                                @Value("${purchase.rollups.backfill-threads:4}") int backfillThreads,
+                                @Value("${purchase.rollups.backfill-on-startup:false}") boolean backfillOnStartup) {
+        this(jdbcTemplate, transactionManager, productRepository, purchaseArchive, productRevenueRepository,
+                manufacturerRevenueRepository, enabled, interval, settleDelay, batchSize, backfillThreads,
+                backfillOnStartup, Clock.systemDefaultZone());
+    }
+
+    RevenueRollupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         ProductRepository productRepository, PurchaseArchive purchaseArchive,
+                         DailyProductRevenueRepository productRevenueRepository,
+                         DailyManufacturerRevenueRepository manufacturerRevenueRepository, boolean enabled,
+                         Duration interval, Duration settleDelay, int batchSize, int backfillThreads,
+                         boolean backfillOnStartup, Clock clock) {
+        if (batchSize < 1) throw new IllegalArgumentException("batch-size debe ser al menos 1.");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.productRepository = productRepository;
+        this.purchaseArchive = purchaseArchive;
+        this.productRevenueRepository = productRevenueRepository;
+        this.manufacturerRevenueRepository = manufacturerRevenueRepository;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.settleDelay = settleDelay;
+        this.batchSize = batchSize;
+        this.backfillThreads = backfillThreads;
+        this.backfillOnStartup = backfillOnStartup;
+        this.clock = clock;
+    }
+
+    public List<DailyRevenueDTO> getDailyRevenue(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return productRevenueRepository.findDailyRevenue(from, to);
+    }
+
+    public List<ProductRevenueDTO> getTopProducts(LocalDate from, LocalDate to, int limit) {
+        checkRange(from, to);
+        return productRevenueRepository.findTopProducts(from, to, PageRequest.ofSize(limit));
+    }
+
+    public List<ManufacturerRevenueDTO> getManufacturerRevenue(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return manufacturerRevenueRepository.findManufacturerRevenue(from, to);
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) throw new IllegalArgumentException("La fecha inicial debe ser anterior o igual a la final.");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "INSERT IGNORE INTO rollup_watermark (name, last_purchase_id, updated_at) VALUES (?, 0, ?)",
+                WATERMARK, LocalDateTime.now(clock)));
+        if (backfillOnStartup) {
+            log.info("Resúmenes diarios de ingresos reconstruidos: {} compras", backfill());
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "revenue-rollups");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rollUp();
+            } catch (RuntimeException e) {
+                log.error("Error al actualizar los resúmenes diarios de ingresos, se reintentará", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Suma las compras asentadas posteriores a la marca de agua, un bloque por transacción. Devuelve cuántas
+    public long rollUp() {
+        long total = 0;
+        long added;
+        while ((added = transactionTemplate.execute(status -> rollUpBatch())) > 0) {
+            total += added;
+        }
+        return total;
+    }
+
+    long rollUpBatch() {
+        long watermark = lockWatermark();
+        LocalDateTime settledBefore = LocalDateTime.now(clock).minus(settleDelay);
+        // Las compras desde la primera sin asentar esperan a la siguiente pasada (índice idx_purchase_date_id)
+        Long firstUnsettled = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM purchase WHERE purchase_date >= ? AND id > ?", Long.class, settledBefore, watermark);
+        Long upTo = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM (SELECT id FROM purchase WHERE id > ? AND id < ? ORDER BY id LIMIT ?) batch",
+                Long.class, watermark, firstUnsettled != null ? firstUnsettled : Long.MAX_VALUE, batchSize);
+        if (upTo == null) return 0;
+
+        List<RevenueDelta> deltas = jdbcTemplate.query(AGGREGATE.formatted("p.id > ? AND p.id <= ?"),
+                RevenueRollupService::toDelta,
+                watermark, upTo);
+        apply(deltas);
+        jdbcTemplate.update("UPDATE rollup_watermark SET last_purchase_id = ?, updated_at = ? WHERE name = ?",
+                upTo, LocalDateTime.now(clock), WATERMARK);
+        return deltas.stream().mapToLong(RevenueDelta::orderCount).sum();
+    }
+
+    @EventListener
+    public void onPurchaseCancelled(PurchaseCancelledEvent event) {
+        if (!enabled) return;
+        Purchase purchase = event.purchase();
+        if (purchase.getProduct() == null || purchase.getId() > lockWatermark()) return;
+
+        Manufacturer manufacturer = purchase.getProduct().getManufacturer();
+        apply(List.of(new RevenueDelta(purchase.getPurchaseDate().toLocalDate(), purchase.getProduct().getId(),
+                manufacturer != null ? manufacturer.getId() : null, -purchase.getTotalPrice().minorUnits(),
+                -purchase.getQuantity(), -1)));
+    }
+
+    @EventListener
+    public void onPurchasesCancelled(PurchasesCancelledEvent event) {
+        if (!enabled || event.purchases().isEmpty()) return;
+        long watermark = lockWatermark();
+        List<PurchaseProductDTO> rolledUp = event.purchases().stream()
+                .filter(purchase -> purchase.productId() != null && purchase.purchaseId() <= watermark)
+                .toList();
+        if (rolledUp.isEmpty()) return;
+
+        Set<Long> productIds = rolledUp.stream().map(PurchaseProductDTO::productId).collect(Collectors.toSet());
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<DayKey, RevenueDelta> deltas = new LinkedHashMap<>();
+        for (PurchaseProductDTO purchase : rolledUp) {
+            Product product = products.get(purchase.productId());
+            Long manufacturerId = product != null && product.getManufacturer() != null
+                    ? product.getManufacturer().getId() : null;
+            RevenueDelta delta = new RevenueDelta(purchase.purchaseDate().toLocalDate(), purchase.productId(),
+                    manufacturerId, -purchase.totalPrice().minorUnits(), -purchase.quantity(), -1);
+            deltas.merge(new DayKey(delta.day(), delta.productId()), delta, RevenueDelta::plus);
+        }
+        apply(List.copyOf(deltas.values()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    /*
+    Recalcula los resúmenes de todos los días con compras en MySQL. Primero se suman las compras asentadas
+    (la marca de agua llega al final) y después cada mes se borra y se vuelve a calcular desde purchase
+    en un hilo del pool, con ids <= marca de agua. Devuelve el número de compras sumadas.
+     */
+    public long backfill() {
+        rollUp();
+        LocalDateTime oldest = jdbcTemplate.queryForObject("SELECT MIN(purchase_date) FROM purchase", LocalDateTime.class);
+        if (oldest == null) return 0;
+
+        LocalDate from = oldest.toLocalDate();
+        LocalDateTime archivedBefore = purchaseArchive.getArchivedBefore();
+        if (archivedBefore != null && archivedBefore.toLocalDate().isAfter(from)) {
+            from = archivedBefore.toLocalDate();
+        }
+        LocalDate to = LocalDate.now(clock);
+
+        ExecutorService executor = Executors.newFixedThreadPool(backfillThreads);
+        try {
+            List<Future<Long>> months = new ArrayList<>();
+            for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+                LocalDate first = month.atDay(1).isBefore(from) ? from : month.atDay(1);
+                LocalDate last = month.atEndOfMonth().isAfter(to) ? to : month.atEndOfMonth();
+                months.add(executor.submit(() -> transactionTemplate.execute(status -> rebuildDays(first, last))));
+            }
+            long purchases = 0;
+            for (Future<Long> future : months) {
+                purchases += future.get();
+            }
+            return purchases;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconstrucción de los resúmenes de ingresos interrumpida.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Recalcula los días [first, last]. La marca de agua queda bloqueada en modo compartido hasta el commit
+    long rebuildDays(LocalDate first, LocalDate last) {
+        long watermark = jdbcTemplate.queryForObject(
+                "SELECT last_purchase_id FROM rollup_watermark WHERE name = ? FOR SHARE", Long.class, WATERMARK);
+        jdbcTemplate.update("DELETE FROM daily_product_revenue WHERE day BETWEEN ? AND ?", first, last);
+        jdbcTemplate.update("DELETE FROM daily_manufacturer_revenue WHERE day BETWEEN ? AND ?", first, last);
+
+        List<RevenueDelta> rows = jdbcTemplate.query(
+                AGGREGATE.formatted("p.purchase_date >= ? AND p.purchase_date < ? AND p.id <= ?"),
+                RevenueRollupService::toDelta,
+                first.atStartOfDay(), last.plusDays(1).atStartOfDay(), watermark);
+        apply(rows);
+        return rows.stream().mapToLong(RevenueDelta::orderCount).sum();
+    }
+
+    private static RevenueDelta toDelta(ResultSet row, int rowNum) throws SQLException {
+        return new RevenueDelta(
+                row.getObject("day", LocalDate.class),
+                row.getLong("product_id"),
+                row.getObject("manufacturer_id", Long.class),
+                row.getLong("revenue"),
+                row.getLong("units"),
+                row.getLong("order_count"));
+    }
+
+    // Bloquea la marca de agua hasta el final de la transacción y devuelve el último id sumado
+    private long lockWatermark() {
+        List<Long> watermark = jdbcTemplate.queryForList(
+                "SELECT last_purchase_id FROM rollup_watermark WHERE name = ? FOR UPDATE", Long.class, WATERMARK);
+        return watermark.isEmpty() ? 0 : watermark.get(0);
+    }
+
+    // Suma los deltas a los resúmenes por producto y, agrupados por fabricante, a los resúmenes por fabricante
+    private void apply(List<RevenueDelta> deltas) {
+        if (deltas.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(UPSERT_PRODUCT, deltas.stream()
+                .map(delta -> new Object[]{delta.day(), delta.productId(), delta.revenue(), delta.units(), delta.orderCount()})
+                .toList());
+
+        Map<DayKey, RevenueDelta> byManufacturer = new LinkedHashMap<>();
+        for (RevenueDelta delta : deltas) {
+            if (delta.manufacturerId() == null) continue;
+            byManufacturer.merge(new DayKey(delta.day(), delta.manufacturerId()), delta, RevenueDelta::plus);
+        }
+        if (byManufacturer.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPSERT_MANUFACTURER, byManufacturer.values().stream()
+                .map(delta -> new Object[]{delta.day(), delta.manufacturerId(), delta.revenue(), delta.units(), delta.orderCount()})
+                .toList());
+    }
+
+    // Cambio en los resúmenes de un producto en un día (importes en céntimos, negativos para cancelaciones)
+    record RevenueDelta(LocalDate day, Long productId, Long manufacturerId, long revenue, long units, long orderCount) {
+
+        RevenueDelta plus(RevenueDelta other) {
+            return new RevenueDelta(day, productId, manufacturerId, revenue + other.revenue, units + other.units,
+                    orderCount + other.orderCount);
+        }
+    }
+
+    private record DayKey(LocalDate day, Long id) {
+    }
+}
@@ -0,0 +1,336 @@
+package com.certidevs.service;
+
+import com.certidevs.archive.PurchasePartition;
+import com.certidevs.dto.StockReconciliationDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Reconciliación de stock: compara el stock de cada producto con el esperado,
+stock recibido (product_stock_baseline) - unidades compradas (purchase y archived_product_sales de los meses
+cuya partición ya se borró) - unidades reservadas en carritos, y escribe un informe CSV con los productos descuadrados
+(ediciones manuales del stock, cancelaciones a medias...).
+
+- El rango de ids de producto se reparte en un ForkJoinPool de parallelism hilos: cada tarea parte su rango
+  por la mitad hasta chunk-size ids y cada trozo se revisa con una sola consulta agregada (índice idx_purchase_product).
+  En memoria solo están las filas de los trozos en curso: el informe se escribe según se revisan.
+- Con correct=true el descuadre se corrige en la misma transacción del trozo con un lote de
+  UPDATE quantity = quantity + diferencia: una compra simultánea resta del stock y suma a las compras
+  a la vez, así que la diferencia sigue siendo válida. Nunca deja stock negativo.
+- Los productos con reservas en carritos se informan pero no se corrigen: la reserva puede haber cambiado
+  entre la consulta y la lectura de las reservas.
+- Los productos sin stock recibido (nuevos o de antes de la reconciliación) toman como recibido su stock
+  actual más lo vendido: se dan por buenos la primera vez.
+- Los trozos que empiezan después de time-budget no se revisan y el resultado queda como incompleto.
+Las reservas solo se conocen en esta instancia: con varias instancias conviene ejecutarla sin corrección.
+ */
+@Slf4j
+@Service
+public class StockReconciliationService {
+
+    // Stock, stock recibido y unidades vendidas de los productos de un rango de ids (una sola lectura consistente)
+    // Solo cuentan los meses archivados cuya partición ya se borró: los demás siguen en purchase
+    private static final String CHUNK = """
+            SELECT pr.id, pr.name, COALESCE(pr.quantity, 0) AS quantity, b.received_quantity,
+                   COALESCE(s.units, 0) + COALESCE(a.units, 0) AS sold
+            FROM product pr
+            LEFT JOIN product_stock_baseline b ON b.product_id = pr.id
+            LEFT JOIN (SELECT product_id, SUM(quantity) AS units FROM purchase
+                       WHERE product_id BETWEEN ? AND ? GROUP BY product_id) s ON s.product_id = pr.id
+            LEFT JOIN (SELECT product_id, SUM(units) AS units FROM archived_product_sales
+                       WHERE product_id BETWEEN ? AND ? AND\s
+            """ + PurchasePartition.ARCHIVED_MONTH_WITHOUT_PARTITION + """
+                       GROUP BY product_id) a ON a.product_id = pr.id
+            WHERE pr.id BETWEEN ? AND ?
+            """;
+
+    private static final DateTimeFormatter REPORT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CartReservationService cartReservationService;
+    private final PartitionedCheckoutEngine checkoutEngine;
+    private final int parallelism;
+    private final int chunkSize;
+    private final Duration timeBudget;
+    private final Path reportDirectory;
+    private final boolean enabled;
+    private final Duration interval;
+    private final boolean correctOnSchedule;
+    private final Clock clock;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+
+    public StockReconciliationService(JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      CartReservationService cartReservationService,
+                                      PartitionedCheckoutEngine checkoutEngine,
+                                      @Value("${purchase.reconciliation.parallelism:4}") int parallelism,
+                                      @Value("${purchase.reconciliation.chunk-size:5000}") int chunkSize,
+                                      @Value("${purchase.reconciliation.time-budget:PT10M}") Duration timeBudget,
+                                      @Value("${purchase.reconciliation.report-directory:reports}") String reportDirectory,
+                                      @Value("${purchase.reconciliation.enabled:false}") boolean enabled,
+                                      @Value("${purchase.reconciliation.interval:P1D}") Duration interval,
+                                      @Value("${purchase.reconciliation.correct:false}") boolean correctOnSchedule) {
+        this(jdbcTemplate, transactionManager, cartReservationService, checkoutEngine, parallelism, chunkSize,
+                timeBudget, reportDirectory, enabled, interval, correctOnSchedule, Clock.systemDefaultZone());
+    }
+
+    StockReconciliationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               CartReservationService cartReservationService, PartitionedCheckoutEngine checkoutEngine,
+                               int parallelism, int chunkSize, Duration timeBudget, String reportDirectory,
+                               boolean enabled, Duration interval, boolean correctOnSchedule, Clock clock) {
+        if (chunkSize < 1) throw new IllegalArgumentException("chunk-size debe ser al menos 1.");
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cartReservationService = cartReservationService;
+        this.checkoutEngine = checkoutEngine;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.timeBudget = timeBudget;
+        this.reportDirectory = Path.of(reportDirectory);
+        this.enabled = enabled;
+        this.interval = interval;
+        this.correctOnSchedule = correctOnSchedule;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                StockReconciliationDTO result = reconcile(correctOnSchedule);
+                log.info("Reconciliación de stock: {}", result);
+            } catch (RuntimeException e) {
+                log.error("Error en la reconciliación de stock, se reintentará", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    // Revisa todos los productos (y corrige los descuadres si correct). Solo una reconciliación a la vez
+    public StockReconciliationDTO reconcile(boolean correct) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay una reconciliación de stock en curso.");
+        }
+        try {
+            return run(correct);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private StockReconciliationDTO run(boolean correct) {
+        long started = System.nanoTime();
+        Path report = reportDirectory.resolve("stock-drift-" + LocalDateTime.now(clock).format(REPORT_NAME) + ".csv");
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM product");
+
+        Run run = new Run(correct, started + timeBudget.toNanos());
+        try {
+            Files.createDirectories(reportDirectory);
+            try (BufferedWriter writer = Files.newBufferedWriter(report)) {
+                run.writer = writer;
+                writer.write("product_id,name,quantity,expected,drift,corrected");
+                writer.newLine();
+                if (range.get("min_id") != null) {
+                    ForkJoinPool pool = new ForkJoinPool(parallelism);
+                    try {
+                        pool.invoke(new RangeTask(run, ((Number) range.get("min_id")).longValue(),
+                                ((Number) range.get("max_id")).longValue()));
+                    } finally {
+                        pool.shutdownNow();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el informe de stock " + report, e);
+        }
+
+        return new StockReconciliationDTO(run.checked.sum(), run.adopted.sum(), run.drifted.sum(), run.driftUnits.sum(),
+                run.corrected.sum(), run.skippedChunks.sum() == 0, report.toString(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    // Revisa los productos con id en [from, to] en una transacción
+    private void reconcileChunk(Run run, long from, long to) {
+        if (System.nanoTime() > run.deadline) {
+            run.skippedChunks.increment();
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Long> reservedBefore = cartReservationService.getReservedQuantities();
+            List<StockRow> rows = jdbcTemplate.query(CHUNK, StockReconciliationService::toRow, from, to, from, to, from, to);
+            Map<Long, Long> reservedAfter = cartReservationService.getReservedQuantities();
+
+            List<Object[]> baselines = new ArrayList<>();
+            List<StockRow> drifted = new ArrayList<>();
+            List<Object[]> corrections = new ArrayList<>();
+            for (StockRow row : rows) {
+                long reserved = reservedBefore.getOrDefault(row.id(), 0L);
+                if (row.received() == null) {
+                    baselines.add(new Object[]{row.id(), row.quantity() + row.sold() + reserved, LocalDateTime.now(clock)});
+                    continue;
+                }
+                long expected = row.received() - row.sold() - reserved;
+                if (row.quantity() == expected) continue;
+
+                drifted.add(row.withExpected(expected));
+                boolean hasHolds = reservedBefore.containsKey(row.id()) || reservedAfter.containsKey(row.id());
+                if (run.correct && !hasHolds && expected >= 0) {
+                    long adjustment = expected - row.quantity();
+                    if (adjustment < 0 && !reserveInEngine(row.id(), adjustment)) continue;
+                    corrections.add(new Object[]{adjustment, row.id(), adjustment});
+                }
+            }
+
+            if (!baselines.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT IGNORE INTO product_stock_baseline (product_id, received_quantity, updated_at) VALUES (?, ?, ?)",
+                        baselines);
+            }
+            Set<Long> corrected = new HashSet<>();
+            if (!corrections.isEmpty()) {
+                int[] updated = jdbcTemplate.batchUpdate(
+                        "UPDATE product SET quantity = quantity + ?, version = version + 1 WHERE id = ? AND quantity + ? >= 0",
+                        corrections);
+                for (int i = 0; i < updated.length; i++) {
+                    // Con rewriteBatchedStatements el driver puede devolver SUCCESS_NO_INFO (-2) en lugar de 1
+                    if (updated[i] != 0) {
+                        Long productId = (Long) corrections.get(i)[1];
+                        corrected.add(productId);
+                        // El motor particionado tiene el stock cacheado (las bajadas ya lo recargan al terminar)
+                        if ((Long) corrections.get(i)[0] > 0) checkoutEngine.invalidate(productId);
+                    }
+                }
+            }
+
+            run.checked.add(rows.size());
+            run.adopted.add(baselines.size());
+            run.drifted.add(drifted.size());
+            run.corrected.add(corrected.size());
+            drifted.forEach(row -> run.driftUnits.add(Math.abs(row.quantity() - row.expected())));
+            run.write(drifted, corrected);
+        });
+    }
+
+    // Aparta en el motor particionado las unidades que quita la corrección; si ya las prometió, solo se informa
+    private boolean reserveInEngine(long productId, long adjustment) {
+        try {
+            checkoutEngine.reserveExternal(productId, Math.toIntExact(-adjustment));
+            return true;
+        } catch (IllegalArgumentException e) {
+            log.warn("No se corrige el stock del producto {}: el motor de compras ya tiene esas unidades comprometidas", productId);
+            return false;
+        }
+    }
+
+    private static StockRow toRow(ResultSet row, int rowNum) throws SQLException {
+        return new StockRow(
+                row.getLong("id"),
+                row.getString("name"),
+                row.getLong("quantity"),
+                row.getObject("received_quantity", Long.class),
+                row.getLong("sold"),
+                0);
+    }
+
+    // Fila de la consulta de un trozo. expected solo se rellena en los productos descuadrados
+    record StockRow(long id, String name, long quantity, Long received, long sold, long expected) {
+
+        StockRow withExpected(long expected) {
+            return new StockRow(id, name, quantity, received, sold, expected);
+        }
+    }
+
+    // Estado compartido por las tareas de una reconciliación
+    private static final class Run {
+        private final boolean correct;
+        private final long deadline;
+        private final LongAdder checked = new LongAdder();
+        private final LongAdder adopted = new LongAdder();
+        private final LongAdder drifted = new LongAdder();
+        private final LongAdder driftUnits = new LongAdder();
+        private final LongAdder corrected = new LongAdder();
+        private final LongAdder skippedChunks = new LongAdder();
+        private BufferedWriter writer; // Protegido por synchronized(this)
+
+        private Run(boolean correct, long deadline) {
+            this.correct = correct;
+            this.deadline = deadline;
+        }
+
+        private synchronized void write(List<StockRow> rows, Set<Long> corrected) {
+            try {
+                for (StockRow row : rows) {
+                    writer.write(row.id() + "," + csv(row.name()) + "," + row.quantity() + "," + row.expected() + ","
+                            + (row.quantity() - row.expected()) + "," + corrected.contains(row.id()));
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static String csv(String value) {
+            if (value == null) return "";
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+    // Parte el rango de ids por la mitad hasta chunk-size ids por tarea
+    private final class RangeTask extends RecursiveAction {
+        private final Run run;
+        private final long from;
+        private final long to;
+
+        private RangeTask(Run run, long from, long to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < chunkSize) {
+                reconcileChunk(run, from, to);
+                return;
+            }
+            long middle = from + (to - from) / 2;
+            invokeAll(new RangeTask(run, from, middle), new RangeTask(run, middle + 1, to));
+        }
+    }
+}
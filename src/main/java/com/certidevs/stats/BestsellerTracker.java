@@ -0,0 +1,58 @@
+package com.certidevs.stats;
+
+import com.certidevs.dto.BestsellerDTO;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.model.Purchase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Los más vendidos "ahora mismo" (última hora, últimas 24 horas y últimos 7 días) sin GROUP BY sobre purchase.
+
+Cada compra confirmada suma sus unidades en un SlidingTopK por ventana. Registrar cuesta un lock por
+franja y ventana (sin acceso a base de datos), y la memoria no depende del tamaño del catálogo.
+Las cancelaciones no se restan: Space-Saving solo admite incrementos.
+Los datos están en memoria: tras un reinicio la lista empieza vacía y se llena con las compras nuevas.
+ */
+@Component
+public class BestsellerTracker {
+
+    private final Map<BestsellerWindow, SlidingTopK> windows = new EnumMap<>(BestsellerWindow.class);
+
+    public BestsellerTracker(@Value("${purchase.bestsellers.stripes:16}") int stripes,
+                             @Value("${purchase.bestsellers.capacity:64}") int capacity) {
+        for (BestsellerWindow window : BestsellerWindow.values()) {
+            windows.put(window, new SlidingTopK(window.getBucketMillis(), window.getBuckets(), stripes, capacity));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        Purchase purchase = event.purchase();
+        record(purchase.getProduct().getId(), purchase.getQuantity(), System.currentTimeMillis());
+    }
+
+    void record(long productId, long quantity, long nowMillis) {
+        for (SlidingTopK topK : windows.values()) {
+            topK.record(productId, quantity, nowMillis);
+        }
+    }
+
+    public List<BestsellerDTO> getBestsellers(BestsellerWindow window, int limit) {
+        return getBestsellers(window, limit, System.currentTimeMillis());
+    }
+
+    List<BestsellerDTO> getBestsellers(BestsellerWindow window, int limit, long nowMillis) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("El límite debe ser mayor que cero.");
+        }
+        return windows.get(window).top(limit, nowMillis).stream()
+                .map(entry -> new BestsellerDTO(entry.key(), entry.count(), entry.error()))
+                .toList();
+    }
+}
@@ -0,0 +1,39 @@
+package com.certidevs.stats;
+
+import java.util.Arrays;
+
+// Ventanas de los más vendidos: duración de cada cubo y número de cubos
+public enum BestsellerWindow {
+    LAST_HOUR("1h", 5 * 60_000L, 12),
+    LAST_DAY("24h", 60 * 60_000L, 24),
+    LAST_WEEK("7d", 6 * 60 * 60_000L, 28);
+
+    private final String code;
+    private final long bucketMillis;
+    private final int buckets;
+
+    BestsellerWindow(String code, long bucketMillis, int buckets) {
+        this.code = code;
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    int getBuckets() {
+        return buckets;
+    }
+
+    public static BestsellerWindow fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(window -> window.code.equals(code))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Ventana no válida: " + code));
+    }
+}
@@ -0,0 +1,104 @@
+package com.certidevs.stats;
+
+import com.certidevs.dto.CheckoutMetricsDTO;
+import com.certidevs.dto.HistogramSummaryDTO;
+import com.certidevs.model.Money;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+Métricas de las compras de PurchaseService: latencia, unidades por compra e importe, con ventanas
+deslizantes de 1, 5 y 15 minutos (RollingHistogram con slots de 15 s).
+
+Registrar es sin locks y sin reservar memoria. La latencia se mide dentro del método de PurchaseService,
+sin incluir el commit; el pedido se registra al terminar el método, antes del commit.
+CheckoutExecutor registra además la espera en cola, la ejecución completa (con commit) y los rechazos.
+ */
+@Component
+public class CheckoutMetrics {
+
+    static final long SLOT_MILLIS = 15_000;
+    private static final int WINDOW_SLOTS = 60; // 15 minutos
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final long MAX_QUANTITY = 1_000_000;
+    private static final long MAX_PRICE_CENTS = 100_000_000_00L; // 100 millones
+
+    private final RollingHistogram latency = new RollingHistogram(SLOT_MILLIS, WINDOW_SLOTS, MAX_LATENCY_MICROS);
+    private final RollingHistogram quantity = new RollingHistogram(SLOT_MILLIS, WINDOW_SLOTS, MAX_QUANTITY);
+    private final RollingHistogram totalPrice = new RollingHistogram(SLOT_MILLIS, WINDOW_SLOTS, MAX_PRICE_CENTS);
+    private final RollingHistogram queueWait = new RollingHistogram(SLOT_MILLIS, WINDOW_SLOTS, MAX_LATENCY_MICROS);
+    private final RollingHistogram execution = new RollingHistogram(SLOT_MILLIS, WINDOW_SLOTS, MAX_LATENCY_MICROS);
+    private final RollingHistogram rejected = new RollingHistogram(SLOT_MILLIS, WINDOW_SLOTS, MAX_LATENCY_MICROS); // Espera hasta el rechazo
+    private final ScheduledExecutorService ticker;
+
+    public CheckoutMetrics() {
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkout-metrics-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Vaciar el slot siguiente a mitad del actual, fuera del camino de las compras
+        ticker.scheduleAtFixedRate(() -> {
+            long now = System.currentTimeMillis();
+            latency.prepareNext(now);
+            quantity.prepareNext(now);
+            totalPrice.prepareNext(now);
+            queueWait.prepareNext(now);
+            execution.prepareNext(now);
+            rejected.prepareNext(now);
+        }, 0, SLOT_MILLIS / 2, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordLatency(long nanos) {
+        latency.record(TimeUnit.NANOSECONDS.toMicros(nanos), System.currentTimeMillis());
+    }
+
+    public void recordOrder(int units, Money price) {
+        long now = System.currentTimeMillis();
+        quantity.record(units, now);
+        totalPrice.record(price.minorUnits(), now);
+    }
+
+    public void recordQueueWait(long nanos) {
+        queueWait.record(TimeUnit.NANOSECONDS.toMicros(nanos), System.currentTimeMillis());
+    }
+
+    public void recordExecution(long nanos) {
+        execution.record(TimeUnit.NANOSECONDS.toMicros(nanos), System.currentTimeMillis());
+    }
+
+    public void recordRejected(long waitedNanos) {
+        rejected.record(TimeUnit.NANOSECONDS.toMicros(waitedNanos), System.currentTimeMillis());
+    }
+
+    public CheckoutMetricsDTO getMetrics(MetricsWindow window) {
+        return getMetrics(window, System.currentTimeMillis());
+    }
+
+    CheckoutMetricsDTO getMetrics(MetricsWindow window, long nowMillis) {
+        RollingHistogram.Snapshot prices = totalPrice.snapshot(window.getSlots(), nowMillis);
+        return new CheckoutMetricsDTO(window.getCode(),
+                summary(latency.snapshot(window.getSlots(), nowMillis)),
+                summary(quantity.snapshot(window.getSlots(), nowMillis)),
+                summary(prices),
+                prices.sum() / 100.0 / window.getMinutes(),
+                summary(queueWait.snapshot(window.getSlots(), nowMillis)),
+                summary(execution.snapshot(window.getSlots(), nowMillis)),
+                rejected.snapshot(window.getSlots(), nowMillis).count());
+    }
+
+    private static HistogramSummaryDTO summary(RollingHistogram.Snapshot snapshot) {
+        return new HistogramSummaryDTO(snapshot.count(), snapshot.mean(),
+                snapshot.percentile(50), snapshot.percentile(90), snapshot.percentile(99),
+                snapshot.percentile(99.9), snapshot.max());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
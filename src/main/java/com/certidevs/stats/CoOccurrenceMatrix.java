@@ -0,0 +1,185 @@
+package com.certidevs.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Matriz dispersa de co-ocurrencias entre productos: cuántos clientes han comprado cada par de productos
+y cuántos clientes ha tenido cada producto.
+
+Cada fila es un LongIntHashMap (arrays primitivos, sin Long/Integer por celda). La matriz es simétrica y se guardan
+las dos mitades, así servir los relacionados de un producto solo recorre su fila.
+Las filas se reparten en franjas por id de producto, cada una con su lock: las compras de productos distintos
+no compiten entre sí y leer una fila solo bloquea su franja. Nunca se bloquean dos franjas a la vez.
+Cada fila guarda su último top-K hasta que cambia: las consultas repetidas de un producto no recorren la fila.
+ */
+public class CoOccurrenceMatrix {
+
+    private static final int INITIAL_ROW_SIZE = 8;
+
+    private final Stripe[] stripes;
+
+    public CoOccurrenceMatrix(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("El número de franjas debe ser una potencia de dos.");
+        }
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    // Un cliente más ha comprado el producto
+    public void addBuyer(long productId) {
+        Stripe stripe = stripe(productId);
+        synchronized (stripe) {
+            Row row = stripe.row(productId);
+            row.buyers++;
+            row.top = null;
+        }
+    }
+
+    // Un cliente más ha comprado los dos productos (se suma en las dos filas, una franja cada vez)
+    public void addPair(long productId, long otherProductId) {
+        if (productId == otherProductId) {
+            throw new IllegalArgumentException("Un producto no forma pareja consigo mismo.");
+        }
+        increment(productId, otherProductId);
+        increment(otherProductId, productId);
+    }
+
+    private void increment(long rowId, long columnId) {
+        Stripe stripe = stripe(rowId);
+        synchronized (stripe) {
+            Row row = stripe.row(rowId);
+            row.counts.addTo(columnId, 1);
+            row.top = null;
+        }
+    }
+
+    public int getBuyers(long productId) {
+        Stripe stripe = stripe(productId);
+        synchronized (stripe) {
+            Row row = stripe.find(productId);
+            return row == null ? 0 : row.buyers;
+        }
+    }
+
+    public int getCount(long productId, long otherProductId) {
+        Stripe stripe = stripe(productId);
+        synchronized (stripe) {
+            Row row = stripe.find(productId);
+            return row == null ? 0 : row.counts.get(otherProductId);
+        }
+    }
+
+    /*
+    Los k productos comprados por más clientes junto con productId (a igualdad, el id menor primero).
+    Selección parcial sobre la fila: O(tamaño de la fila * k) sin ordenar la fila entera ni crear objetos por celda.
+    El resultado se guarda en la fila y sirve para cualquier k menor mientras la fila no cambie.
+     */
+    public RelatedProducts topK(long productId, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k debe ser mayor que cero.");
+        }
+        Stripe stripe = stripe(productId);
+        synchronized (stripe) {
+            Row row = stripe.find(productId);
+            if (row == null) return new RelatedProducts(0, List.of());
+            RelatedProducts top = row.top;
+            // Un top-K más corto que su k ya es la fila entera y sirve también para un k mayor
+            if (top == null || (row.topK < k && top.related().size() == row.topK)) {
+                top = select(row, k);
+                row.top = top;
+                row.topK = k;
+            }
+            return top.related().size() <= k ? top
+                    : new RelatedProducts(top.buyers(), top.related().subList(0, k));
+        }
+    }
+
+    private static RelatedProducts select(Row row, int k) {
+        long[] products = new long[k];
+        int[] counts = new int[k];
+        int found = 0;
+        LongIntHashMap cells = row.counts;
+        for (int slot = 0; slot < cells.capacity(); slot++) {
+            long other = cells.keyAt(slot);
+            if (other == 0) continue;
+            int count = cells.valueAt(slot);
+            if (found == k && !ranksBefore(count, other, counts[k - 1], products[k - 1])) continue;
+
+            // Inserción ordenada en los k mejores, descartando el último si ya estaban llenos
+            int position = found < k ? found++ : k - 1;
+            while (position > 0 && ranksBefore(count, other, counts[position - 1], products[position - 1])) {
+                products[position] = products[position - 1];
+                counts[position] = counts[position - 1];
+                position--;
+            }
+            products[position] = other;
+            counts[position] = count;
+        }
+
+        List<Related> related = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            related.add(new Related(products[i], counts[i]));
+        }
+        return new RelatedProducts(row.buyers, List.copyOf(related));
+    }
+
+    // Productos con al menos un comprador
+    public int getProductCount() {
+        int products = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                products += stripe.size;
+            }
+        }
+        return products;
+    }
+
+    private static boolean ranksBefore(int count, long productId, int otherCount, long otherProductId) {
+        return count > otherCount || (count == otherCount && productId < otherProductId);
+    }
+
+    private Stripe stripe(long productId) {
+        long hash = productId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (stripes.length - 1)];
+    }
+
+    public record Related(long productId, int count) {
+    }
+
+    public record RelatedProducts(int buyers, List<Related> related) {
+    }
+
+    private static final class Row {
+        private int buyers;
+        private final LongIntHashMap counts = new LongIntHashMap(INITIAL_ROW_SIZE);
+        private RelatedProducts top; // Último top-K calculado, null si la fila ha cambiado
+        private int topK;
+    }
+
+    // Índice primitivo id de producto -> posición de la fila (más uno, 0 es "no está")
+    private static final class Stripe {
+        private final LongIntHashMap index = new LongIntHashMap(64);
+        private Row[] rows = new Row[64];
+        private int size;
+
+        private Row find(long productId) {
+            int position = index.get(productId);
+            return position == 0 ? null : rows[position - 1];
+        }
+
+        private Row row(long productId) {
+            Row row = find(productId);
+            if (row != null) return row;
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            row = new Row();
+            rows[size++] = row;
+            index.addTo(productId, size);
+            return row;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.certidevs.stats;
+
+import com.certidevs.dto.RelatedProductDTO;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.model.Purchase;
+import com.certidevs.stats.CoOccurrenceMatrix.RelatedProducts;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+"Comprados juntos con frecuencia": dos productos están relacionados por cada cliente (email) que ha comprado los dos.
+Las cuentas están en una CoOccurrenceMatrix en memoria y servir los relacionados de un producto no consulta la base de datos.
+
+- Cada compra confirmada se encola para un hilo propio (el checkout no espera). Ese hilo lee la primera compra de
+  cada producto del cliente: si esta compra es la primera del producto, el producto gana un comprador y una pareja
+  con cada producto que el cliente compró antes. Así un cliente cuenta una sola vez por pareja aunque repita compras.
+- Cada rebuild-interval la matriz se reconstruye desde cero en paralelo (bloques de emails, como los resúmenes de clientes)
+  con las compras hasta la mayor id al empezar, y se sustituye de golpe. Las compras que llegan durante la reconstrucción
+  se vuelven a aplicar sobre la nueva matriz antes de sustituirla.
+- Las cancelaciones, las compras de meses archivados y las compras que se confirman fuera de orden no se tienen en cuenta
+  hasta la siguiente reconstrucción: entre reconstrucciones las cuentas son aproximadas.
+- Los clientes con más de max-basket-products productos distintos (revendedores, cuentas de pruebas) cuentan como
+  compradores pero no forman parejas: sus n² parejas llenarían la matriz sin decir nada de lo que se compra junto.
+ */
+@Slf4j
+@Service
+public class FrequentlyBoughtTogetherService {
+
+    private static final String FIRST_PURCHASES = """
+            SELECT product_id, MIN(id) AS first_id FROM purchase
+            WHERE email = ? AND product_id IS NOT NULL GROUP BY product_id
+            """;
+    private static final String EMAIL_PRODUCTS = """
+            SELECT DISTINCT email, product_id FROM purchase
+            WHERE email BETWEEN ? AND ? AND id <= ? AND product_id IS NOT NULL ORDER BY email
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int stripes;
+    private final int maxBasketProducts;
+    private final int rebuildThreads;
+    private final int rebuildChunkSize;
+    private final Duration rebuildInterval;
+    private final boolean enabled;
+
+    private volatile CoOccurrenceMatrix matrix;
+    private final Object lock = new Object(); // Aplicar una compra frente a sustituir la matriz
+    private List<PendingUpdate> pending; // Compras aplicadas durante una reconstrucción, protegido por lock
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final ThreadPoolExecutor updater;
+    private ScheduledExecutorService scheduler;
+
+    public FrequentlyBoughtTogetherService(JdbcTemplate jdbcTemplate,
+                                           @Value("${purchase.recommendations.stripes:16}") int stripes,
+                                           @Value("${purchase.recommendations.max-basket-products:200}") int maxBasketProducts,
+                                           @Value("${purchase.recommendations.update-queue-capacity:10000}") int updateQueueCapacity,
+                                           @Value("${purchase.recommendations.rebuild-threads:4}") int rebuildThreads,
+                                           @Value("${purchase.recommendations.rebuild-chunk-size:1000}") int rebuildChunkSize,
+                                           @Value("${purchase.recommendations.rebuild-interval:PT1H}") Duration rebuildInterval,
+                                           @Value("${purchase.recommendations.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.stripes = stripes;
+        this.maxBasketProducts = maxBasketProducts;
+        this.rebuildThreads = rebuildThreads;
+        this.rebuildChunkSize = rebuildChunkSize;
+        this.rebuildInterval = rebuildInterval;
+        this.enabled = enabled;
+        this.matrix = new CoOccurrenceMatrix(stripes);
+        // Cola acotada: si se llena las compras se descartan (DiscardPolicy) y las recupera la siguiente reconstrucción
+        this.updater = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(updateQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "frequently-bought-together");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frequently-bought-together-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // La primera reconstrucción al arrancar: hasta entonces no hay relacionados
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                log.info("Matriz de productos comprados juntos reconstruida: {} clientes", rebuild());
+            } catch (RuntimeException e) {
+                log.error("Error al reconstruir la matriz de productos comprados juntos, se reintentará", e);
+            }
+        }, 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updater.shutdownNow();
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPurchaseCreated(PurchaseCreatedEvent event) {
+        if (!enabled) return;
+        Purchase purchase = event.purchase();
+        if (purchase.getEmail() == null || purchase.getProduct() == null) return;
+        String email = purchase.getEmail();
+        long productId = purchase.getProduct().getId();
+        long purchaseId = purchase.getId();
+        updater.execute(() -> {
+            try {
+                update(email, productId, purchaseId);
+            } catch (RuntimeException e) {
+                log.warn("No se pudo actualizar la matriz con la compra {}, se recuperará al reconstruirla", purchaseId, e);
+            }
+        });
+    }
+
+    // Aplica la compra purchaseId si es la primera del producto para el cliente
+    void update(String email, long productId, long purchaseId) {
+        List<long[]> firsts = jdbcTemplate.query(FIRST_PURCHASES,
+                (rs, rowNum) -> new long[]{rs.getLong("product_id"), rs.getLong("first_id")}, email);
+
+        boolean first = false;
+        List<Long> earlier = new ArrayList<>();
+        for (long[] row : firsts) {
+            if (row[0] == productId) first = row[1] == purchaseId;
+            else if (row[1] < purchaseId) earlier.add(row[0]);
+        }
+        if (!first) return;
+
+        long[] others = firsts.size() > maxBasketProducts ? new long[0]
+                : earlier.stream().mapToLong(Long::longValue).toArray();
+        PendingUpdate update = new PendingUpdate(purchaseId, productId, others);
+        synchronized (lock) {
+            update.applyTo(matrix);
+            if (pending != null) pending.add(update);
+        }
+    }
+
+    /*
+    Reconstruye la matriz con las compras hasta la mayor id actual: bloques de rebuild-chunk-size emails
+    (paginación por clave) en rebuild-threads hilos, todos sobre la misma matriz nueva (los locks son por franja).
+    Devuelve el número de clientes recorridos.
+     */
+    public long rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Ya hay una reconstrucción en curso.");
+        }
+        synchronized (lock) {
+            pending = new ArrayList<>();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads);
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM purchase", Long.class);
+            long watermark = maxId == null ? 0 : maxId;
+            CoOccurrenceMatrix rebuilt = new CoOccurrenceMatrix(stripes);
+
+            List<Future<?>> chunks = new ArrayList<>();
+            long emails = 0;
+            String after = "";
+            List<String> chunk;
+            while (!(chunk = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT email FROM purchase WHERE email > ? ORDER BY email LIMIT ?",
+                    String.class, after, rebuildChunkSize)).isEmpty()) {
+                String fromEmail = chunk.get(0);
+                String toEmail = chunk.get(chunk.size() - 1);
+                chunks.add(executor.submit(() -> rebuildRange(rebuilt, fromEmail, toEmail, watermark)));
+                emails += chunk.size();
+                after = toEmail;
+            }
+            for (Future<?> future : chunks) {
+                future.get();
+            }
+
+            synchronized (lock) {
+                for (PendingUpdate update : pending) {
+                    if (update.purchaseId > watermark) update.applyTo(rebuilt);
+                }
+                matrix = rebuilt;
+            }
+            return emails;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reconstrucción de la matriz interrumpida.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            synchronized (lock) {
+                pending = null;
+            }
+            executor.shutdownNow();
+            rebuilding.set(false);
+        }
+    }
+
+    // Productos distintos de cada email del bloque (vienen ordenados por email)
+    private void rebuildRange(CoOccurrenceMatrix target, String fromEmail, String toEmail, long watermark) {
+        List<EmailProduct> rows = jdbcTemplate.query(EMAIL_PRODUCTS,
+                (rs, rowNum) -> new EmailProduct(rs.getString("email"), rs.getLong("product_id")),
+                fromEmail, toEmail, watermark);
+
+        List<Long> basket = new ArrayList<>();
+        String email = null;
+        for (EmailProduct row : rows) {
+            if (!row.email().equals(email)) {
+                addBasket(target, basket);
+                basket.clear();
+                email = row.email();
+            }
+            basket.add(row.productId());
+        }
+        addBasket(target, basket);
+    }
+
+    private void addBasket(CoOccurrenceMatrix target, List<Long> basket) {
+        for (Long productId : basket) {
+            target.addBuyer(productId);
+        }
+        if (basket.size() > maxBasketProducts) return;
+        for (int i = 0; i < basket.size(); i++) {
+            for (int j = i + 1; j < basket.size(); j++) {
+                target.addPair(basket.get(i), basket.get(j));
+            }
+        }
+    }
+
+    // Los productos comprados por más clientes junto con productId. Solo memoria: sin consultas
+    public List<RelatedProductDTO> getRelated(long productId, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("El límite debe ser mayor que cero.");
+        }
+        RelatedProducts related = matrix.topK(productId, limit);
+        // Entre reconstrucciones puede faltar el comprador de una compra anterior al arranque: la confianza no pasa de 1
+        return related.related().stream()
+                .map(entry -> new RelatedProductDTO(entry.productId(), entry.count(),
+                        (double) entry.count() / Math.max(related.buyers(), entry.count())))
+                .toList();
+    }
+
+    record EmailProduct(String email, long productId) {
+    }
+
+    // Primera compra de un producto por un cliente: un comprador más y una pareja con cada producto anterior
+    private record PendingUpdate(long purchaseId, long productId, long[] others) {
+
+        private void applyTo(CoOccurrenceMatrix target) {
+            target.addBuyer(productId);
+            for (long other : others) {
+                target.addPair(productId, other);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.certidevs.stats;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+HyperLogLog (Flajolet et al.) para contar elementos distintos con memoria fija.
+
+Precisión 12: 4096 registros de un byte y un error estándar de 1,04 / sqrt(4096) ~ 1,6 %.
+Dos sketches se combinan con el máximo de cada registro, así que la unión de días y productos
+se calcula sin volver a leer las compras. Con pocos elementos se usa la corrección de linear counting.
+
+Formato serializado (toBytes): un byte de tipo seguido de
+- EMPTY: nada.
+- SPARSE: pares (índice u16, valor u8) de los registros no vacíos. Es el caso habitual de un producto en un día.
+- DENSE: los 4096 registros.
+
+No es thread-safe.
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+
+    private static final byte EMPTY = 0;
+    private static final byte SPARSE = 1;
+    private static final byte DENSE = 2;
+
+    private byte[] registers; // null mientras está vacío
+
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Posición del primer 1 en los bits restantes (el bit centinela limita el rango a 64 - PRECISION + 1)
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        byte[] registers = registers();
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.registers == null) return;
+        byte[] registers = registers();
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        if (registers == null) return 0;
+
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros); // Linear counting
+        }
+        return Math.round(estimate);
+    }
+
+    public boolean isEmpty() {
+        return registers == null;
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog();
+        if (registers != null) copy.registers = registers.clone();
+        return copy;
+    }
+
+    public byte[] toBytes() {
+        if (registers == null) return new byte[]{EMPTY};
+
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) nonZero++;
+        }
+        if (nonZero * 3 >= REGISTERS) {
+            byte[] bytes = new byte[1 + REGISTERS];
+            bytes[0] = DENSE;
+            System.arraycopy(registers, 0, bytes, 1, REGISTERS);
+            return bytes;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + nonZero * 3).put(SPARSE);
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] != 0) {
+                buffer.putShort((short) i).put(registers[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes == null || bytes.length == 0 || bytes[0] == EMPTY) return sketch;
+
+        if (bytes[0] == DENSE) {
+            if (bytes.length != 1 + REGISTERS) {
+                throw new IllegalArgumentException("Sketch HyperLogLog con tamaño incorrecto.");
+            }
+            sketch.registers = Arrays.copyOfRange(bytes, 1, bytes.length);
+        } else if (bytes[0] == SPARSE) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+            byte[] registers = sketch.registers();
+            while (buffer.remaining() >= 3) {
+                registers[Short.toUnsignedInt(buffer.getShort())] = buffer.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Formato de sketch HyperLogLog desconocido: " + bytes[0]);
+        }
+        return sketch;
+    }
+
+    // FNV-1a de 64 bits sobre UTF-8 con el mezclador final de MurmurHash3 para repartir bien los bits altos
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private byte[] registers() {
+        if (registers == null) registers = new byte[REGISTERS];
+        return registers;
+    }
+}
@@ -0,0 +1,90 @@
+package com.certidevs.stats;
+
+/*
+Mapa long -> int con direccionamiento abierto (sondeo lineal) sobre dos arrays primitivos:
+sin objetos Long, Integer ni Map.Entry por entrada (unos 12 bytes por entrada frente a más de 60 de un HashMap).
+La clave 0 marca las celdas vacías: los ids de producto empiezan en 1.
+Solo admite sumar (no borra entradas). No es thread-safe: CoOccurrenceMatrix lo protege con un lock por franja.
+ */
+public class LongIntHashMap {
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    // Valor de la clave, 0 si no está
+    public int get(long key) {
+        checkKey(key);
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return values[slot];
+            if (keys[slot] == 0) return 0;
+        }
+    }
+
+    // Suma delta al valor de la clave (la crea con delta si no estaba) y devuelve el nuevo valor
+    public int addTo(long key, int delta) {
+        checkKey(key);
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return values[slot] += delta;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size >= resizeAt) resize();
+        return delta;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Recorrido sin iteradores: las posiciones [0, capacity()) con keyAt != 0 son entradas
+    int capacity() {
+        return keys.length;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing: ids consecutivos quedan repartidos
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = slot(oldKeys[i]);
+            while (keys[slot] != 0) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity * 2 / 3; // Con sondeo lineal las búsquedas se alargan mucho por encima de 2/3 de ocupación
+    }
+
+    private static void checkKey(long key) {
+        if (key == 0) throw new IllegalArgumentException("La clave 0 está reservada.");
+    }
+}
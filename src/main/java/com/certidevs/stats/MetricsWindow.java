@@ -0,0 +1,37 @@
+package com.certidevs.stats;
+
+import java.util.Arrays;
+
+// Ventanas de las métricas de compra, en slots de CheckoutMetrics.SLOT_MILLIS (15 s)
+public enum MetricsWindow {
+    LAST_MINUTE("1m", 4),
+    LAST_5_MINUTES("5m", 20),
+    LAST_15_MINUTES("15m", 60);
+
+    private final String code;
+    private final int slots;
+
+    MetricsWindow(String code, int slots) {
+        this.code = code;
+        this.slots = slots;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    int getSlots() {
+        return slots;
+    }
+
+    double getMinutes() {
+        return slots * CheckoutMetrics.SLOT_MILLIS / 60_000.0;
+    }
+
+    public static MetricsWindow fromCode(String code) {
+        return Arrays.stream(values())
+                .filter(window -> window.code.equals(code))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Ventana no válida: " + code));
+    }
+}
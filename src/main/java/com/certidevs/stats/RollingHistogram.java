@@ -0,0 +1,162 @@
+package com.certidevs.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+Histograma con ventana deslizante al estilo de HdrHistogram.
+
+Cubetas log-lineales: los valores menores que 128 tienen cubeta propia y, a partir de ahí, cada potencia de dos
+se divide en 64 cubetas. El error relativo de cualquier percentil es menor del 1,6 % y el número de cubetas
+solo crece con log2(maxValue).
+
+El tiempo se divide en slots de slotMillis. Registrar es sin locks y sin reservar memoria: incrementos atómicos
+sobre los arrays del slot actual. El slot siguiente se vacía por adelantado (prepareNext, desde un hilo
+temporizador). Si ese hilo se retrasa, el primer registro que encuentra el slot desactualizado lo vacía él.
+Nadie espera a ese vaciado: mientras el slot está marcado como RESETTING, los demás registros van al slot
+anterior, que sigue vivo (o se descartan si ya no lo está).
+Un snapshot suma los últimos N slots.
+ */
+public class RollingHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // 128
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2; // 64
+    private static final long RESETTING = Long.MIN_VALUE + 1; // Época de un slot que se está vaciando
+
+    private final long slotMillis;
+    private final long maxValue;
+    private final int bucketCount;
+    private final Slot[] slots;
+
+    public RollingHistogram(long slotMillis, int windowSlots, long maxValue) {
+        this.slotMillis = slotMillis;
+        this.maxValue = maxValue;
+        this.bucketCount = bucketIndex(maxValue) + 1;
+        this.slots = new Slot[windowSlots + 2]; // Ventana + slot que se está preparando + margen
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(bucketCount);
+        }
+    }
+
+    public void record(long value, long nowMillis) {
+        Slot slot = liveSlot(nowMillis / slotMillis);
+        if (slot == null) return;
+
+        long clamped = Math.max(0, Math.min(value, maxValue));
+        slot.counts.incrementAndGet(bucketIndex(clamped));
+        slot.count.incrementAndGet();
+        slot.sum.addAndGet(clamped);
+        long max;
+        while (clamped > (max = slot.max.get()) && !slot.max.compareAndSet(max, clamped)) {
+            // Reintentar: otro hilo ha subido el máximo a la vez
+        }
+    }
+
+    // Slot donde registrar en la época indicada, vaciándolo si aún tiene una anterior. null: registro descartado
+    private Slot liveSlot(long epoch) {
+        Slot slot = slotFor(epoch);
+        while (true) {
+            long slotEpoch = slot.epoch.get();
+            if (slotEpoch == epoch) return slot;
+            if (slotEpoch == RESETTING) {
+                // Otro hilo lo está vaciando: el registro cuenta en el slot anterior en vez de esperar
+                Slot previous = slotFor(epoch - 1);
+                return previous.epoch.get() == epoch - 1 ? previous : null;
+            }
+            if (slotEpoch > epoch) return null; // Registro muy atrasado: su slot ya se reutilizó
+            slot.reset(slotEpoch, epoch);
+        }
+    }
+
+    private Slot slotFor(long epoch) {
+        return slots[(int) Math.floorMod(epoch, (long) slots.length)];
+    }
+
+    // Vacía el slot del siguiente intervalo antes de que empiece a usarse
+    public void prepareNext(long nowMillis) {
+        long next = nowMillis / slotMillis + 1;
+        Slot slot = slotFor(next);
+        long slotEpoch = slot.epoch.get();
+        if (slotEpoch < next && slotEpoch != RESETTING) {
+            slot.reset(slotEpoch, next);
+        }
+    }
+
+    // Suma de los últimos windowSlots slots (incluido el actual, que está a medias)
+    public Snapshot snapshot(int windowSlots, long nowMillis) {
+        long currentEpoch = nowMillis / slotMillis;
+        long[] counts = new long[bucketCount];
+        long count = 0, sum = 0, max = 0;
+        for (Slot slot : slots) {
+            long epoch = slot.epoch.get();
+            if (epoch > currentEpoch || epoch <= currentEpoch - windowSlots) continue;
+            for (int i = 0; i < bucketCount; i++) {
+                counts[i] += slot.counts.get(i);
+            }
+            count += slot.count.get();
+            sum += slot.sum.get();
+            max = Math.max(max, slot.max.get());
+        }
+        return new Snapshot(counts, count, sum, max);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) ((value >>> shift) - HALF_SUB_BUCKETS);
+    }
+
+    // Mayor valor que cae en la cubeta (los percentiles se redondean hacia arriba, como HdrHistogram)
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int offset = index - SUB_BUCKETS;
+        int shift = offset / HALF_SUB_BUCKETS + 1;
+        long subBucket = offset % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public record Snapshot(long[] counts, long count, long sum, long max) {
+
+        public long percentile(double percentile) {
+            if (count == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+
+    private static final class Slot {
+        private final AtomicLongArray counts;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLong epoch = new AtomicLong(Long.MIN_VALUE);
+
+        private Slot(int buckets) {
+            this.counts = new AtomicLongArray(buckets);
+        }
+
+        // Solo el hilo que gana el CAS vacía el slot. La nueva época se publica cuando ya está vacío
+        private void reset(long expectedEpoch, long newEpoch) {
+            if (!epoch.compareAndSet(expectedEpoch, RESETTING)) return;
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+            epoch.set(newEpoch);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.certidevs.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Top-N aproximado sobre una ventana deslizante de tiempo.
+
+La ventana se divide en bucketCount cubos de bucketMillis. Cada cubo tiene stripes sketches Space-Saving:
+la franja se elige por el hash del producto, así cada producto vive siempre en la misma franja y los
+registros de productos distintos casi nunca compiten por el mismo lock.
+Cada sketch guarda la época (número de cubo absoluto) a la que pertenece: al escribir en un cubo de una
+época anterior se vacía, sin hilo de rotación.
+
+Memoria acotada: bucketCount * stripes * capacity contadores, sea cual sea el tamaño del catálogo.
+ */
+public class SlidingTopK {
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int stripeMask;
+    private final Slot[][] slots; // [cubo][franja]
+
+    public SlidingTopK(long bucketMillis, int bucketCount, int stripes, int capacity) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("El número de franjas debe ser potencia de dos.");
+        }
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.stripeMask = stripes - 1;
+        this.slots = new Slot[bucketCount][stripes];
+        for (Slot[] bucket : slots) {
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                bucket[stripe] = new Slot(new SpaceSavingSketch(capacity));
+            }
+        }
+    }
+
+    public void record(long productId, long weight, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        Slot slot = slots[(int) Math.floorMod(epoch, (long) bucketCount)][stripe(productId)];
+        synchronized (slot) {
+            if (slot.epoch != epoch) {
+                slot.sketch.clear(); // Cubo de una vuelta anterior de la ventana
+                slot.epoch = epoch;
+            }
+            slot.sketch.add(productId, weight);
+        }
+    }
+
+    // Los limit productos con más unidades en la ventana que termina en nowMillis
+    public List<TopEntry> top(int limit, long nowMillis) {
+        long currentEpoch = nowMillis / bucketMillis;
+        Map<Long, long[]> merged = new HashMap<>();
+        for (Slot[] bucket : slots) {
+            for (Slot slot : bucket) {
+                synchronized (slot) {
+                    if (slot.epoch <= currentEpoch - bucketCount || slot.epoch > currentEpoch) continue;
+                    slot.sketch.forEach((key, counter) -> {
+                        long[] total = merged.computeIfAbsent(key, k -> new long[2]);
+                        total[0] += counter[0];
+                        total[1] += counter[1];
+                    });
+                }
+            }
+        }
+
+        List<TopEntry> entries = new ArrayList<>(merged.size());
+        merged.forEach((key, total) -> entries.add(new TopEntry(key, total[0], total[1])));
+        entries.sort(Comparator.comparingLong(TopEntry::count).reversed().thenComparing(TopEntry::key));
+        return entries.size() > limit ? List.copyOf(entries.subList(0, limit)) : entries;
+    }
+
+    private int stripe(long productId) {
+        long hash = productId * 0x9E3779B97F4A7C15L; // Mezcla de Fibonacci: ids consecutivos en franjas distintas
+        return (int) (hash >>> 32) & stripeMask;
+    }
+
+    // count es una cota superior de las unidades reales; count - error es una cota inferior
+    public record TopEntry(long key, long count, long error) {
+    }
+
+    private static final class Slot {
+        private final SpaceSavingSketch sketch;
+        private long epoch = Long.MIN_VALUE;
+
+        private Slot(SpaceSavingSketch sketch) {
+            this.sketch = sketch;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.certidevs.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/*
+Sketch Space-Saving (Metwally et al.) para los elementos más frecuentes de un flujo.
+
+Guarda como mucho capacity contadores. Si llega un elemento nuevo con el sketch lleno, sustituye al
+contador con el valor mínimo y hereda ese valor como error. Cualquier elemento con frecuencia real
+mayor que total / capacity está garantizado entre los contadores, y su estimación nunca se queda corta
+(como mucho se pasa en error).
+
+No es thread-safe: SlidingTopK lo protege con un lock por franja.
+ */
+public class SpaceSavingSketch {
+
+    private final int capacity;
+    private final Map<Long, long[]> counters; // clave -> {cuenta estimada, error}
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser mayor que cero.");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void add(long key, long weight) {
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0] += weight;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{weight, 0});
+            return;
+        }
+
+        // Lleno: el nuevo elemento sustituye al de menor cuenta. O(capacity), solo con claves nuevas
+        Long minKey = null;
+        long[] min = null;
+        for (Map.Entry<Long, long[]> entry : counters.entrySet()) {
+            if (min == null || entry.getValue()[0] < min[0]) {
+                minKey = entry.getKey();
+                min = entry.getValue();
+            }
+        }
+        counters.remove(minKey);
+        counters.put(key, new long[]{min[0] + weight, min[0]});
+    }
+
+    // Recorre los contadores: (clave, {cuenta estimada, error})
+    public void forEach(BiConsumer<Long, long[]> action) {
+        counters.forEach(action);
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+}
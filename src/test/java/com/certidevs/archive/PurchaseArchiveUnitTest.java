@@ -0,0 +1,154 @@
+package com.certidevs.archive;
+
+import com.certidevs.dto.PurchaseCursor;
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PurchaseArchiveUnitTest {
+
+    @TempDir
+    private Path directory;
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private PurchaseArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Product> products = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                products.add(Product.builder().id(id).name("Producto " + id).build());
+            }
+            return products;
+        });
+        archive = new PurchaseArchive(productRepository, directory.toString(), 2);
+        // Tres meses: diez compras por mes, un día de diferencia entre ellas
+        long id = 1;
+        for (YearMonth month = YearMonth.of(2023, 1); month.isBefore(YearMonth.of(2023, 4)); month = month.plusMonths(1)) {
+            try (PurchaseSegment.Writer writer = archive.newSegment(month)) {
+                for (int day = 1; day <= 10; day++) {
+                    writer.append(new ArchivedPurchase(id, "customer-" + month.getMonthValue() + "@example.com",
+                            id % 2 + 1, 1, Money.of(10), month.atDay(day).atTime(12, 0)));
+                    id++;
+                }
+                archive.register(writer.finish(new PurchasePartition(month).upperBound()));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Las compras archivadas son anteriores al límite superior del último segmento")
+    void archivedBefore() {
+        assertEquals(LocalDateTime.of(2023, 4, 1, 0, 0), archive.getArchivedBefore());
+        assertNull(new PurchaseArchive(productRepository, directory.resolve("empty").toString(), 2).getArchivedBefore());
+    }
+
+    @Test
+    @DisplayName("Paginación por clave entre segmentos: las páginas siguen el cursor y no se repiten compras")
+    void pagesAcrossSegments() {
+        LocalDateTime from = LocalDateTime.of(2023, 1, 5, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2023, 3, 3, 0, 0);
+        List<Long> ids = new ArrayList<>();
+        PurchaseCursor cursor = new PurchaseCursor(from, 0L);
+        List<Purchase> page;
+        while (!(page = archive.findPage(null, from, to, cursor, 4)).isEmpty()) {
+            page.forEach(purchase -> ids.add(purchase.getId()));
+            Purchase last = page.get(page.size() - 1);
+            cursor = new PurchaseCursor(last.getPurchaseDate(), last.getId());
+        }
+
+        // Enero del 5 al 10 (ids 5-10), febrero entero (11-20) y marzo del 1 al 2 (21-22)
+        assertEquals(18, ids.size());
+        assertEquals(5L, ids.get(0));
+        assertEquals(22L, ids.get(17));
+        assertEquals(ids.stream().sorted().toList(), ids);
+    }
+
+    @Test
+    @DisplayName("Las compras archivadas se devuelven con su producto")
+    void loadsProducts() {
+        Purchase purchase = archive.findById(12L).orElseThrow();
+
+        assertEquals("customer-2@example.com", purchase.getEmail());
+        assertEquals(1L, purchase.getProduct().getId());
+        assertEquals(Money.of(10), purchase.getTotalPrice());
+        assertTrue(archive.findById(999L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Por email solo se leen los segmentos cuyo filtro de Bloom puede contenerlo")
+    void findsByEmail() {
+        List<Purchase> purchases = archive.findByEmail("customer-3@example.com");
+
+        assertEquals(10, purchases.size());
+        assertTrue(purchases.stream().allMatch(purchase -> purchase.getPurchaseDate().getMonthValue() == 3));
+        assertEquals(List.of(), archive.findByEmail("nadie@example.com"));
+        assertEquals(List.of(), archive.findPage("customer-3@example.com",
+                LocalDateTime.of(2023, 1, 1, 0, 0), LocalDateTime.of(2023, 3, 1, 0, 0),
+                new PurchaseCursor(LocalDateTime.of(2023, 1, 1, 0, 0), 0L), 10));
+    }
+
+    @Test
+    @DisplayName("Recorrido por rango: solo las compras del rango, en orden")
+    void forEachInRange() {
+        List<Long> ids = new ArrayList<>();
+        long count = archive.forEach(LocalDateTime.of(2023, 2, 9, 0, 0), LocalDateTime.of(2023, 3, 2, 0, 0),
+                purchase -> ids.add(purchase.getId()));
+
+        assertEquals(3, count);
+        assertEquals(List.of(19L, 20L, 21L), ids);
+    }
+
+    @Test
+    @DisplayName("Recorrido de filas para exportar: mismo rango y orden, sin consultar los productos")
+    void forEachRowInRange() {
+        List<Long> ids = new ArrayList<>();
+        long count = archive.forEachRow(LocalDateTime.of(2023, 2, 9, 0, 0), LocalDateTime.of(2023, 3, 2, 0, 0),
+                row -> ids.add(row.id()));
+
+        assertEquals(3, count);
+        assertEquals(List.of(19L, 20L, 21L), ids);
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Al arrancar se cargan los segmentos del directorio")
+    void loadsFromDisk() {
+        PurchaseArchive reopened = new PurchaseArchive(productRepository, directory.toString(), 2);
+        reopened.load();
+
+        assertEquals(3, reopened.getSegments().size());
+        assertEquals(archive.getArchivedBefore(), reopened.getArchivedBefore());
+        assertEquals(30, reopened.findAll().size());
+    }
+
+    @Test
+    @DisplayName("Nombres y límites de las particiones mensuales")
+    void partitionNames() {
+        PurchasePartition january = new PurchasePartition(YearMonth.of(2024, 1));
+
+        assertEquals("p202401", january.name());
+        assertEquals(LocalDateTime.of(2024, 2, 1, 0, 0), january.upperBound());
+        assertEquals("PARTITION p202401 VALUES LESS THAN ('2024-02-01 00:00:00')", january.definition());
+        assertEquals(january, PurchasePartition.fromName("p202401"));
+        assertNull(PurchasePartition.fromName(PurchasePartition.MAX_PARTITION));
+    }
+}
@@ -0,0 +1,141 @@
+package com.certidevs.archive;
+
+import com.certidevs.model.Money;
+import com.certidevs.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PurchasePartitionManagerUnitTest {
+
+    // Hoy es el 15 de marzo de 2025: con 12 meses activos se archivan las particiones anteriores a marzo de 2024
+    private static final Clock CLOCK = Clock.fixed(
+            LocalDateTime.of(2025, 3, 15, 10, 0).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private PurchaseArchive archive;
+    private PurchasePartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        archive = new PurchaseArchive(productRepository, directory.toString(), 2);
+        manager = new PurchasePartitionManager(jdbcTemplate, transactionManager, archive, true, 3, 12,
+                Duration.ofDays(1), CLOCK);
+    }
+
+    @Test
+    @DisplayName("Tabla sin particionar: se quitan las claves ajenas y se crea una partición por mes")
+    void partitionsTable() {
+        when(jdbcTemplate.queryForList(contains("information_schema.PARTITIONS"), eq(String.class))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(anyString(), eq(LocalDateTime.class)))
+                .thenReturn(LocalDateTime.of(2025, 1, 20, 9, 30));
+        when(jdbcTemplate.queryForList(contains("FOREIGN KEY"), eq(String.class))).thenReturn(List.of("fk_product"));
+
+        manager.partitionTable();
+
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).execute("ALTER TABLE purchase DROP FOREIGN KEY fk_product");
+        order.verify(jdbcTemplate).execute("ALTER TABLE purchase DROP PRIMARY KEY, ADD PRIMARY KEY (id, purchase_date)");
+        // De enero (compra más antigua) a junio (marzo + 3 meses) y pmax
+        order.verify(jdbcTemplate).execute("ALTER TABLE purchase PARTITION BY RANGE COLUMNS(purchase_date) ("
+                + "PARTITION p202501 VALUES LESS THAN ('2025-02-01 00:00:00'), "
+                + "PARTITION p202502 VALUES LESS THAN ('2025-03-01 00:00:00'), "
+                + "PARTITION p202503 VALUES LESS THAN ('2025-04-01 00:00:00'), "
+                + "PARTITION p202504 VALUES LESS THAN ('2025-05-01 00:00:00'), "
+                + "PARTITION p202505 VALUES LESS THAN ('2025-06-01 00:00:00'), "
+                + "PARTITION p202506 VALUES LESS THAN ('2025-07-01 00:00:00'), "
+                + "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+    }
+
+    @Test
+    @DisplayName("Mantenimiento: se crean los meses siguientes partiendo pmax")
+    void createsPartitionsAhead() {
+        when(jdbcTemplate.queryForList(contains("information_schema.PARTITIONS"), eq(String.class)))
+                .thenReturn(List.of("p202503", "p202504", "pmax"));
+
+        assertEquals(0, manager.maintain());
+
+        verify(jdbcTemplate).execute("ALTER TABLE purchase REORGANIZE PARTITION pmax INTO ("
+                + "PARTITION p202505 VALUES LESS THAN ('2025-06-01 00:00:00'), "
+                + "PARTITION p202506 VALUES LESS THAN ('2025-07-01 00:00:00'), "
+                + "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+    }
+
+    @Test
+    @DisplayName("Mantenimiento: la partición antigua se copia al archivo, se resume y se borra")
+    void archivesOldPartitions() throws Exception {
+        when(jdbcTemplate.queryForList(contains("information_schema.PARTITIONS"), eq(String.class)))
+                .thenReturn(List.of("p202402", "p202403", "p202506", "pmax"));
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("id")).thenReturn(7L);
+        when(row.getString("email")).thenReturn("a@example.com");
+        when(row.getObject("product_id", Long.class)).thenReturn(3L);
+        when(row.getInt("quantity")).thenReturn(2);
+        when(row.getLong("total_price")).thenReturn(4_000L);
+        when(row.getObject("purchase_date", LocalDateTime.class)).thenReturn(LocalDateTime.of(2024, 2, 10, 8, 0));
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        when(jdbcTemplate.queryForMap(contains("PARTITION (p202402)")))
+                .thenReturn(Map.of("row_count", 1L, "min_id", 7L, "max_id", 7L));
+
+        assertEquals(1, manager.maintain());
+
+        verify(jdbcTemplate).update(contains("INSERT INTO archived_purchase_summary"), eq("2024-02"));
+        verify(jdbcTemplate).update(contains("INSERT INTO archived_product_sales"), eq("2024-02"));
+        verify(jdbcTemplate).execute("ALTER TABLE purchase DROP PARTITION p202402");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE purchase DROP PARTITION p202403"); // Marzo de 2024 sigue activo
+        assertEquals(LocalDateTime.of(2024, 3, 1, 0, 0), archive.getArchivedBefore());
+        assertEquals(List.of(new ArchivedPurchase(7L, "a@example.com", 3L, 2, Money.of(40),
+                LocalDateTime.of(2024, 2, 10, 8, 0))), archive.getSegments().get(0).read());
+    }
+
+    @Test
+    @DisplayName("Si la partición cambia durante la copia no se borra ni se publica el segmento")
+    void keepsPartitionWhenChanged() {
+        when(jdbcTemplate.queryForList(contains("information_schema.PARTITIONS"), eq(String.class)))
+                .thenReturn(List.of("p202402", "p202506", "pmax"));
+        when(jdbcTemplate.queryForMap(contains("PARTITION (p202402)")))
+                .thenReturn(Map.of("row_count", 1L, "min_id", 7L, "max_id", 7L)); // El segmento salió vacío
+
+        assertThrows(IllegalStateException.class, () -> manager.maintain());
+
+        verify(jdbcTemplate, never()).execute("ALTER TABLE purchase DROP PARTITION p202402");
+        assertNull(archive.getArchivedBefore());
+    }
+}
@@ -0,0 +1,140 @@
+package com.certidevs.archive;
+
+import com.certidevs.model.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseSegmentUnitTest {
+
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime FEBRUARY = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("Las compras escritas se leen igual, en orden y con los metadatos del pie")
+    void writeAndRead() {
+        List<ArchivedPurchase> purchases = purchases(1_000);
+
+        PurchaseSegment segment = write(directory.resolve("purchase-2024-01.seg"), purchases);
+
+        assertEquals(purchases, segment.read());
+        assertEquals(1_000, segment.getRowCount());
+        assertEquals(1, segment.getMinId());
+        assertEquals(1_000, segment.getMaxId());
+        assertEquals(purchases.get(0).purchaseDate(), segment.getMinDate());
+        assertEquals(purchases.get(999).purchaseDate(), segment.getMaxDate());
+        assertEquals(FEBRUARY, segment.getUpperBound());
+        assertEquals(purchases, PurchaseSegment.open(segment.getPath()).read(), "Reabierto desde el disco");
+        assertFalse(Files.exists(directory.resolve("purchase-2024-01.seg.tmp")));
+    }
+
+    @Test
+    @DisplayName("Los emails repetidos se comprimen: el segmento ocupa mucho menos que las filas")
+    void compresses() throws IOException {
+        PurchaseSegment segment = write(directory.resolve("purchase-2024-01.seg"), purchases(10_000));
+
+        long rawSize = 10_000L * (8 + 8 + 2 + "customer-00@example.com".length() + 8 + 4 + 8);
+        assertTrue(Files.size(segment.getPath()) < rawSize / 3,
+                "Segmento de " + Files.size(segment.getPath()) + " bytes para " + rawSize + " bytes de filas");
+    }
+
+    @Test
+    @DisplayName("El filtro de Bloom descarta los emails que no están en el segmento")
+    void emailFilter() {
+        PurchaseSegment segment = write(directory.resolve("purchase-2024-01.seg"), purchases(1_000));
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(segment.mightContainEmail("customer-%02d@example.com".formatted(i)));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (segment.mightContainEmail("other-" + i + "@example.com")) falsePositives++;
+        }
+        assertTrue(falsePositives < 20, falsePositives + " falsos positivos de 1000");
+    }
+
+    @Test
+    @DisplayName("Un byte cambiado en las filas o en el pie se detecta con el CRC")
+    void detectsCorruption() throws IOException {
+        PurchaseSegment segment = write(directory.resolve("purchase-2024-01.seg"), purchases(100));
+        flipByte(segment.getPath(), PurchaseSegment.HEADER_SIZE + 10);
+
+        IllegalStateException rows = assertThrows(IllegalStateException.class, segment::read);
+        assertTrue(rows.getMessage().contains("CRC de las filas"));
+
+        PurchaseSegment other = write(directory.resolve("purchase-2024-02.seg"), purchases(100));
+        flipByte(other.getPath(), Files.size(other.getPath()) - 20);
+        assertThrows(IllegalStateException.class, () -> PurchaseSegment.open(other.getPath()));
+    }
+
+    @Test
+    @DisplayName("Segmento vacío: válido, sin filas y fuera de cualquier rango")
+    void emptySegment() {
+        PurchaseSegment segment = write(directory.resolve("purchase-2024-01.seg"), List.of());
+
+        assertEquals(List.of(), segment.read());
+        assertFalse(segment.overlaps(JANUARY, FEBRUARY));
+        assertFalse(segment.mightContainId(1));
+        assertEquals(FEBRUARY, segment.getUpperBound());
+    }
+
+    @Test
+    @DisplayName("Filas desordenadas: se rechazan y sin finish no queda ningún fichero")
+    void rejectsUnorderedRows() throws IOException {
+        Path target = directory.resolve("purchase-2024-01.seg");
+        try (PurchaseSegment.Writer writer = new PurchaseSegment.Writer(target)) {
+            writer.append(purchase(2, JANUARY.plusHours(2)));
+            assertThrows(IllegalArgumentException.class, () -> writer.append(purchase(1, JANUARY.plusHours(1))));
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static PurchaseSegment write(Path target, List<ArchivedPurchase> purchases) {
+        try (PurchaseSegment.Writer writer = new PurchaseSegment.Writer(target)) {
+            purchases.forEach(writer::append);
+            return writer.finish(FEBRUARY);
+        }
+    }
+
+    // Compras de enero cada 30 segundos de 50 clientes y 5 productos
+    static List<ArchivedPurchase> purchases(int count) {
+        List<ArchivedPurchase> purchases = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            purchases.add(new ArchivedPurchase(i, "customer-%02d@example.com".formatted(i % 50), (long) (i % 5) + 1,
+                    i % 3 + 1, Money.ofMinor(1_000L * (i % 7 + 1)), JANUARY.plusSeconds(30L * i).plusNanos(123_000)));
+        }
+        return purchases;
+    }
+
+    private static ArchivedPurchase purchase(long id, LocalDateTime date) {
+        return new ArchivedPurchase(id, "a@example.com", 1L, 1, Money.of(10), date);
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0x5a));
+            buffer.rewind();
+            channel.write(buffer, position);
+        }
+    }
+}
@@ -85,7 +85,7 @@ public class ManufacturerControllerPartialIntegrationTest {
 
     @Test
     void getFormToUpdate_Empty() throws Exception {
-        when(manufacturerRepository.findById(1L))
+        when(manufacturerRepository.findWithAddressById(1L))
                 .thenReturn(Optional.empty());
 
         //El Error Controller es un Advice que captura los errores y los devuelve como status 400
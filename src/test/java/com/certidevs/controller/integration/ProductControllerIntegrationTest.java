@@ -1,6 +1,7 @@
 package com.certidevs.controller.integration;
 
 import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Money;
 import com.certidevs.model.Product;
 import com.certidevs.repository.ManufacturerRepository;
 import com.certidevs.repository.ProductRepository;
@@ -50,8 +51,8 @@ class ProductControllerIntegrationTest {
     void findAll() throws Exception {
 
         productRepository.saveAll(List.of(
-                Product.builder().name("Microfono").price(30d).build(),
-                Product.builder().name("Mesa").price(15d).build()
+                Product.builder().name("Microfono").price(Money.of(30)).build(),
+                Product.builder().name("Mesa").price(Money.of(15)).build()
         ));
         System.out.println("findAll products: " + productRepository.count());
         mockMvc.perform(get("/productos"))
@@ -63,7 +64,7 @@ class ProductControllerIntegrationTest {
 
     @Test
     void findById() throws Exception {
-        var product = productRepository.save(Product.builder().name("Microfono").price(30d).build());
+        var product = productRepository.save(Product.builder().name("Microfono").price(Money.of(30)).build());
 
         System.out.println("findById products: " + productRepository.count());
         System.out.println("findById producto guardado: " + product.getId());
@@ -187,7 +188,7 @@ class ProductControllerIntegrationTest {
 
         assertEquals(product.getId(), savedProduct.getId());
         assertEquals("Ratón Logitech Modificado", savedProduct.getName());
-        assertEquals(34.32, savedProduct.getPrice());
+        assertEquals(Money.valueOf("34.32"), savedProduct.getPrice());
         assertEquals(manufacturer.getId(), savedProduct.getManufacturer().getId());
         assertEquals(manufacturer.getName(), savedProduct.getManufacturer().getName());
     }
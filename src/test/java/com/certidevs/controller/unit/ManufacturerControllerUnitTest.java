@@ -110,21 +110,21 @@ class ManufacturerControllerUnitTest {
         Manufacturer adidas = Manufacturer.builder().id(1L).name("Adidas").build();
         Optional<Manufacturer> adidasOpt = Optional.of(adidas);
 
-        when(manufacturerRepository.findById(1L)).thenReturn(adidasOpt);
+        when(manufacturerRepository.findWithAddressById(1L)).thenReturn(adidasOpt);
 
         //2. ejecutar método a testear
         String view = manufacturerController.getFormToUpdate(1L, model);
 
         //3. assert y verify
         assertEquals("manufacturer-form", view);
-        verify(manufacturerRepository).findById(1L);
+        verify(manufacturerRepository).findWithAddressById(1L);
         verify(model).addAttribute("manufacturer", adidas);
     }
 
     @Test
     void getFormToUpdate_NotExists() {
         //1. configurar respuestas mocks
-        when(manufacturerRepository.findById(1L)).thenReturn(Optional.empty());
+        when(manufacturerRepository.findWithAddressById(1L)).thenReturn(Optional.empty());
 
         //2. ejecutar método a testear
         //CÓDIGO ACTUALIZADO PORQUE AHORA EL CONTROLADOR LANZA EXCEPCIÓN
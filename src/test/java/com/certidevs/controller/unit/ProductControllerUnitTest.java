@@ -1,10 +1,16 @@
 package com.certidevs.controller.unit;
 
 import com.certidevs.controller.ProductController;
+import com.certidevs.dto.ProductCursor;
+import com.certidevs.dto.ProductPageDTO;
+import com.certidevs.dto.ProductSort;
 import com.certidevs.model.Manufacturer;
 import com.certidevs.model.Product;
 import com.certidevs.repository.ManufacturerRepository;
 import com.certidevs.repository.ProductRepository;
+import com.certidevs.repository.PurchaseRepository;
+import com.certidevs.service.PartitionedCheckoutEngine;
+import com.certidevs.service.ProductListService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +18,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ui.Model;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -37,25 +44,56 @@ class ProductControllerUnitTest {
     @Mock
     private ManufacturerRepository manufacturerRepository;
     @Mock
+    private PurchaseRepository purchaseRepository;
+    @Mock
+    private ProductListService productListService;
+    @Mock
+    private PartitionedCheckoutEngine checkoutEngine;
+    @Mock
     private Model model;
 
     @Test
     void findAll() {
         // 1. configurar mocks
-        when(productRepository.findAll()).thenReturn(List.of(
+        List<Product> products = List.of(
                 Product.builder().id(1L).build(),
                 Product.builder().id(2L).build(),
                 Product.builder().id(3L).build()
-        ));
+        );
+        ProductPageDTO page = new ProductPageDTO(products, ProductSort.ID, false, 20, null, null);
+        when(productListService.findPage(ProductSort.ID, false, null, null, null)).thenReturn(page);
 
         // 2. invocar metodo a testear
-        String view = productController.findAll(model);
+        String view = productController.findAll("id", "asc", null, null, null, model);
 
         // 3. verificaciones
-        verify(productRepository).findAll();
+        verify(productRepository, never()).findAll(); // Solo una página, no el catálogo entero
+        verify(model).addAttribute("productos", products);
+        verify(model).addAttribute("page", page);
         assertEquals("product-list", view);
     }
 
+    @Test
+    @DisplayName("Página siguiente ordenada por precio descendente: el cursor se pasa al servicio")
+    void findAll_NextPage() {
+        ProductPageDTO page = new ProductPageDTO(List.of(), ProductSort.PRICE, true, 10, null, null);
+        when(productListService.findPage(ProductSort.PRICE, true, 10, new ProductCursor(57L, "1299"), null)).thenReturn(page);
+
+        String view = productController.findAll("price", "DESC", 10, "57:1299", null, model);
+
+        assertEquals("product-list", view);
+        verify(model).addAttribute("page", page);
+    }
+
+    @Test
+    @DisplayName("Columna, orden o cursor no válidos: 400 sin consultar")
+    void findAll_BadRequest() {
+        assertThrows(ResponseStatusException.class, () -> productController.findAll("manufacturer", "asc", null, null, null, model));
+        assertThrows(ResponseStatusException.class, () -> productController.findAll("id", "up", null, null, null, model));
+        assertThrows(ResponseStatusException.class, () -> productController.findAll("id", "asc", null, "abc", null, model));
+        verifyNoInteractions(productListService);
+    }
+
     /*
         @GetMapping("productos/{id}")
     public String findById(@PathVariable Long id, Model model) {
@@ -68,12 +106,12 @@ class ProductControllerUnitTest {
     @DisplayName("Caso en el que el producto sí existe")
     void findById_ProductExists() {
         Product producto = Product.builder().id(1L).name("Producto 1").build();
-        when(productRepository.findById(1L)).thenReturn(Optional.of(producto));
+        when(productRepository.findWithManufacturerById(1L)).thenReturn(Optional.of(producto));
 
         String view = productController.findById(1L, model);
 
         assertEquals("product-detail", view);
-        verify(productRepository).findById(1L);
+        verify(productRepository).findWithManufacturerById(1L);
         verify(productRepository, never()).findAll();
         verify(model).addAttribute("product", producto);
     }
@@ -82,19 +120,19 @@ class ProductControllerUnitTest {
     @DisplayName("Caso en el que el producto NO existe")
     void findById_ProductNotExists() {
 
-        when(productRepository.findById(1L)).thenReturn(Optional.empty());
+        when(productRepository.findWithManufacturerById(1L)).thenReturn(Optional.empty());
 
         String view = productController.findById(1L, model);
 
         assertEquals("product-detail", view);
-        verify(productRepository).findById(1L);
+        verify(productRepository).findWithManufacturerById(1L);
         verify(model, never()).addAttribute(anyString(), any());
     }
 
     @Test
     void findById2_notExist() {
 
-        when(productRepository.findById(1L))
+        when(productRepository.findWithManufacturerById(1L))
                 .thenReturn(Optional.empty());
 
         assertThrows(NoSuchElementException.class,
@@ -178,6 +216,19 @@ class ProductControllerUnitTest {
     void guardarProducto_EditarProductoExistente() {
 
         Product product = Product.builder()
-                .id(1L).name("Xiaomi 13").build();
+                .id(1L).name("Xiaomi 13").quantity(50).build();
+        Product productoDB = Product.builder()
+                .id(1L).name("Xiaomi 12").quantity(10).version(3L).build();
+        when(productRepository.existsById(1L)).thenReturn(true);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(productoDB));
+
+        String view = productController.guardarProducto(product);
+
+        assertEquals("redirect:/productos", view);
+        assertEquals("Xiaomi 13", productoDB.getName());
+        assertEquals(50, productoDB.getQuantity());
+        assertEquals(3L, productoDB.getVersion());
+        verify(productRepository).save(productoDB);
+        verify(checkoutEngine).invalidate(1L); // El motor particionado recarga el stock editado
     }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.certidevs.export;
+
+import com.certidevs.archive.ArchivedPurchase;
+import com.certidevs.export.PurchaseColumnFile.Column;
+import com.certidevs.export.PurchaseColumnFile.EmailColumn;
+import com.certidevs.model.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseColumnFileUnitTest {
+
+    private static final LocalDateTime JANUARY = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("Las compras se leen igual columna a columna, repartidas en grupos de row-group-size filas")
+    void writeAndRead() {
+        List<ArchivedPurchase> purchases = purchases(2_500);
+        purchases.set(10, new ArchivedPurchase(11, null, null, 1, Money.ZERO, JANUARY.plusMinutes(5))); // Sin email ni producto
+
+        PurchaseColumnFile file = write(directory.resolve("purchases.pcol"), purchases, 1_000);
+
+        assertEquals(2_500, file.getRowCount());
+        assertEquals(List.of(1_000, 1_000, 500), file.getRowGroups().stream().map(PurchaseColumnFile.RowGroup::rows).toList());
+        assertEquals(purchases.get(1_000).purchaseDate(), file.getRowGroups().get(1).minDate());
+        assertEquals(purchases.get(1_999).purchaseDate(), file.getRowGroups().get(1).maxDate());
+        assertEquals(purchases, readAll(PurchaseColumnFile.open(file.getPath())), "Reabierto desde el disco");
+        assertFalse(Files.exists(directory.resolve("purchases.pcol.tmp")));
+    }
+
+    @Test
+    @DisplayName("Diccionario de emails por grupo: cada email distinto se guarda una vez")
+    void emailDictionary() {
+        PurchaseColumnFile file = write(directory.resolve("purchases.pcol"), purchases(1_000), 1_000);
+
+        EmailColumn emails = file.readEmails(0);
+
+        assertEquals(50, emails.dictionary().size());
+        assertEquals("customer-01@example.com", emails.dictionary().get(0)); // En orden de aparición
+        assertEquals("customer-01@example.com", emails.get(50));
+        assertEquals(emails.codes()[0], emails.codes()[50]);
+    }
+
+    @Test
+    @DisplayName("Fechas y ids en diferencias y emails en diccionario: el fichero ocupa mucho menos que las filas")
+    void compresses() throws IOException {
+        PurchaseColumnFile file = write(directory.resolve("purchases.pcol"), purchases(100_000), 65_536);
+
+        long rawSize = 100_000L * (8 + 8 + "customer-00@example.com".length() + 8 + 4 + 8);
+        assertTrue(Files.size(file.getPath()) < rawSize / 10,
+                "Fichero de " + Files.size(file.getPath()) + " bytes para " + rawSize + " bytes de filas");
+    }
+
+    @Test
+    @DisplayName("Leer una columna no decodifica las demás: un trozo dañado solo afecta a su columna")
+    void readsSingleColumn() throws IOException {
+        List<ArchivedPurchase> purchases = purchases(100);
+        PurchaseColumnFile file = write(directory.resolve("purchases.pcol"), purchases, 1_000);
+        flipByte(file.getPath(), PurchaseColumnFile.HEADER_SIZE + 2); // Primer trozo: ID del grupo 0
+
+        IllegalStateException ids = assertThrows(IllegalStateException.class, () -> file.readLongs(0, Column.ID));
+        assertTrue(ids.getMessage().contains("CRC de la columna ID"));
+        assertEquals(purchases.stream().map(ArchivedPurchase::quantity).toList(),
+                Arrays.stream(file.readQuantities(0)).boxed().toList());
+        assertEquals(purchases.get(99).totalPrice().minorUnits(), file.readLongs(0, Column.TOTAL_PRICE)[99]);
+        assertThrows(IllegalArgumentException.class, () -> file.readLongs(0, Column.QUANTITY));
+    }
+
+    @Test
+    @DisplayName("Fichero vacío válido; sin finish no queda ningún fichero")
+    void emptyAndUnfinished() throws IOException {
+        PurchaseColumnFile empty = write(directory.resolve("empty.pcol"), List.of(), 10);
+        assertEquals(0, empty.getRowCount());
+        assertEquals(List.of(), empty.getRowGroups());
+
+        try (PurchaseColumnFile.Writer writer = new PurchaseColumnFile.Writer(directory.resolve("unfinished.pcol"), 10)) {
+            purchases(25).forEach(writer::append);
+        }
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(directory.resolve("empty.pcol")), files.toList());
+        }
+    }
+
+    private static PurchaseColumnFile write(Path target, List<ArchivedPurchase> purchases, int rowGroupSize) {
+        try (PurchaseColumnFile.Writer writer = new PurchaseColumnFile.Writer(target, rowGroupSize)) {
+            purchases.forEach(writer::append);
+            return writer.finish();
+        }
+    }
+
+    // Reconstruye las filas a partir de las columnas de cada grupo
+    private static List<ArchivedPurchase> readAll(PurchaseColumnFile file) {
+        List<ArchivedPurchase> rows = new ArrayList<>();
+        for (int group = 0; group < file.getRowGroups().size(); group++) {
+            long[] ids = file.readLongs(group, Column.ID);
+            long[] dates = file.readLongs(group, Column.PURCHASE_DATE);
+            EmailColumn emails = file.readEmails(group);
+            long[] productIds = file.readLongs(group, Column.PRODUCT_ID);
+            int[] quantities = file.readQuantities(group);
+            long[] totals = file.readLongs(group, Column.TOTAL_PRICE);
+            for (int i = 0; i < ids.length; i++) {
+                rows.add(new ArchivedPurchase(ids[i], emails.get(i), productIds[i] == 0 ? null : productIds[i],
+                        quantities[i], Money.ofMinor(totals[i]), PurchaseColumnFile.fromMicros(dates[i])));
+            }
+        }
+        return rows;
+    }
+
+    // Compras cada 30 segundos de 50 clientes y 5 productos
+    static List<ArchivedPurchase> purchases(int count) {
+        List<ArchivedPurchase> purchases = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            purchases.add(new ArchivedPurchase(i, "customer-%02d@example.com".formatted(i % 50), (long) (i % 5) + 1,
+                    i % 3 + 1, Money.ofMinor(1_000L * (i % 7 + 1)), JANUARY.plusSeconds(30L * i).plusNanos(123_000)));
+        }
+        return purchases;
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0x5a));
+            buffer.rewind();
+            channel.write(buffer, position);
+        }
+    }
+}
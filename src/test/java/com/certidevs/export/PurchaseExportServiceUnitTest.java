@@ -0,0 +1,135 @@
+package com.certidevs.export;
+
+import com.certidevs.archive.ArchivedPurchase;
+import com.certidevs.archive.PurchaseArchive;
+import com.certidevs.dto.PurchaseExportDTO;
+import com.certidevs.export.PurchaseColumnFile.Column;
+import com.certidevs.model.Money;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PurchaseExportServiceUnitTest {
+
+    private static final LocalDateTime FEBRUARY = LocalDateTime.of(2024, 2, 1, 0, 0);
+    private static final Clock CLOCK = Clock.fixed(
+            LocalDateTime.of(2024, 3, 15, 10, 0).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PurchaseArchive purchaseArchive;
+
+    private PurchaseExportService service() {
+        return new PurchaseExportService(jdbcTemplate, transactionManager, purchaseArchive, directory.toString(), 2, CLOCK);
+    }
+
+    @Test
+    @DisplayName("Primero las compras archivadas y después las de MySQL en streaming, en un solo fichero ordenado")
+    void exportsArchivedAndHotPurchases() throws Exception {
+        List<ArchivedPurchase> archived = List.of(
+                purchase(1, "a@example.com", 1L, FEBRUARY.minusDays(10)),
+                purchase(2, "b@example.com", 2L, FEBRUARY.minusDays(5)));
+        List<ArchivedPurchase> hot = List.of(
+                purchase(3, "a@example.com", 2L, FEBRUARY.plusDays(1)),
+                purchase(4, "c@example.com", null, FEBRUARY.plusDays(2)),
+                purchase(5, "a@example.com", 1L, FEBRUARY.plusDays(3)));
+        when(purchaseArchive.getArchivedBefore()).thenReturn(FEBRUARY);
+        doAnswer(invocation -> {
+            Consumer<ArchivedPurchase> action = invocation.getArgument(2);
+            archived.forEach(action);
+            return (long) archived.size();
+        }).when(purchaseArchive).forEachRow(any(), any(), any());
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (ArchivedPurchase row : hot) handler.processRow(resultSet(row));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+
+        PurchaseExportDTO result = service().export(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 10));
+
+        assertEquals(directory.resolve("purchases-20240315-100000.pcol").toString(), result.file());
+        assertEquals(5, result.rows());
+        assertEquals(3, result.rowGroups());
+        assertEquals(Files.size(Path.of(result.file())), result.bytes());
+        verify(purchaseArchive).forEachRow(eq(LocalDateTime.of(2024, 1, 1, 0, 0)), eq(LocalDateTime.of(2024, 2, 11, 0, 0)), any());
+        // MySQL solo desde el límite del archivo
+        verify(jdbcTemplate).query(contains("FROM purchase"), any(RowCallbackHandler.class),
+                eq(Timestamp.valueOf(FEBRUARY)), eq(Timestamp.valueOf(LocalDateTime.of(2024, 2, 11, 0, 0))));
+
+        PurchaseColumnFile file = PurchaseColumnFile.open(Path.of(result.file()));
+        assertArrayEquals(new long[]{1, 2}, file.readLongs(0, Column.ID));
+        assertArrayEquals(new long[]{3, 4}, file.readLongs(1, Column.ID));
+        assertEquals(List.of("a@example.com", "c@example.com"), file.readEmails(1).dictionary());
+        assertArrayEquals(new long[]{2, 0}, file.readLongs(1, Column.PRODUCT_ID)); // 0 = sin producto
+        assertEquals(FEBRUARY.plusDays(3), file.getRowGroups().get(2).maxDate());
+    }
+
+    @Test
+    @DisplayName("Rango completamente archivado: no se consulta MySQL")
+    void archivedRangeSkipsDatabase() {
+        when(purchaseArchive.getArchivedBefore()).thenReturn(FEBRUARY);
+
+        PurchaseExportDTO result = service().export(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+
+        assertEquals(0, result.rows());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Fecha final anterior a la inicial: IllegalArgumentException y ningún fichero")
+    void rejectsInvalidRange() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> service().export(LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1)));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static ArchivedPurchase purchase(long id, String email, Long productId, LocalDateTime date) {
+        return new ArchivedPurchase(id, email, productId, 1, Money.of(10), date);
+    }
+
+    private static ResultSet resultSet(ArchivedPurchase row) throws SQLException {
+        ResultSet rs = mock(ResultSet.class, withSettings().strictness(Strictness.LENIENT));
+        when(rs.getLong("id")).thenReturn(row.id());
+        when(rs.getString("email")).thenReturn(row.email());
+        when(rs.getLong("product_id")).thenReturn(row.productId() != null ? row.productId() : 0);
+        when(rs.wasNull()).thenReturn(row.productId() == null);
+        when(rs.getInt("quantity")).thenReturn(row.quantity());
+        when(rs.getLong("total_price")).thenReturn(row.totalPrice().minorUnits());
+        when(rs.getTimestamp("purchase_date")).thenReturn(Timestamp.valueOf(row.purchaseDate()));
+        return rs;
+    }
+}
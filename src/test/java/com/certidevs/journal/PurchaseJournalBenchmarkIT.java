@@ -0,0 +1,58 @@
+package com.certidevs.journal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Benchmark de escrituras por segundo del diario de compras con cada política de fsync.
+Se ejecuta con las pruebas de integración (failsafe) porque depende del disco de la máquina.
+ */
+class PurchaseJournalBenchmarkIT {
+
+    private static final int THREADS = 16;
+    private static final int APPENDS_PER_THREAD = 2_000;
+
+    @TempDir
+    private Path directory;
+
+    @ParameterizedTest
+    @EnumSource(PurchaseJournal.FsyncPolicy.class)
+    @DisplayName("Escrituras por segundo por política de fsync")
+    void appendsPerSecond(PurchaseJournal.FsyncPolicy policy) throws InterruptedException {
+        try (PurchaseJournal journal = new PurchaseJournal(directory.resolve(policy.name()), 64 << 20, policy, 0).open()) {
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            for (int t = 0; t < THREADS; t++) {
+                long base = (long) t * APPENDS_PER_THREAD;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < APPENDS_PER_THREAD; i++) {
+                        journal.append(JournalEntry.purchase(System.currentTimeMillis(), base + i, i % 100, 1, 9.99,
+                                "benchmark@example.com"));
+                    }
+                    return null;
+                });
+            }
+
+            long startNanos = System.nanoTime();
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.MINUTES));
+            double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+
+            System.out.printf("Diario %s: %.0f escrituras/s%n", policy, THREADS * APPENDS_PER_THREAD / seconds);
+        }
+
+        assertEquals(THREADS * APPENDS_PER_THREAD, JournalReplay.replay(directory.resolve(policy.name())).getEntries());
+    }
+}
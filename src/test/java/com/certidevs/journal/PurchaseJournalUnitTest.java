@@ -0,0 +1,129 @@
+package com.certidevs.journal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseJournalUnitTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("Los registros escritos se recuperan en orden al reproducir el diario")
+    void appendAndReplay() {
+        try (PurchaseJournal journal = new PurchaseJournal(directory, 4096, PurchaseJournal.FsyncPolicy.EVERY_WRITE, 0).open()) {
+            journal.append(JournalEntry.purchase(1L, 10L, 1L, 3, 30.0, "a@example.com"));
+            journal.append(JournalEntry.purchase(2L, 11L, 1L, 2, 20.0, "b@example.com"));
+            journal.append(JournalEntry.purchase(3L, 12L, 2L, 5, 50.0, "a@example.com"));
+            journal.append(JournalEntry.cancel(4L, 10L, 1L, 3));
+            journal.append(JournalEntry.restock(5L, 2L, 1));
+        }
+
+        JournalReplay replay = JournalReplay.replay(directory);
+
+        assertEquals(5, replay.getEntries());
+        assertEquals(-2L, replay.getStockDeltas().get(1L), "3 vendidas - 2 vendidas + 3 devueltas");
+        assertEquals(-4L, replay.getStockDeltas().get(2L));
+        assertEquals(List.of(11L, 12L), new ArrayList<>(replay.getPurchases().keySet()));
+        assertEquals("b@example.com", replay.getPurchases().get(11L).email());
+    }
+
+    @Test
+    @DisplayName("El diario cambia de segmento y continúa tras reabrirlo")
+    void rollsSegmentsAndReopens() {
+        // Segmentos pequeños para forzar varios cambios de segmento
+        try (PurchaseJournal journal = new PurchaseJournal(directory, 256, PurchaseJournal.FsyncPolicy.ASYNC, 0).open()) {
+            for (int i = 1; i <= 20; i++) {
+                journal.append(JournalEntry.purchase(i, i, 1L, 1, 1.0, "a@example.com"));
+            }
+        }
+        try (PurchaseJournal journal = new PurchaseJournal(directory, 256, PurchaseJournal.FsyncPolicy.ASYNC, 0).open()) {
+            journal.append(JournalEntry.purchase(21, 21, 1L, 1, 1.0, "a@example.com"));
+        }
+
+        JournalReplay replay = JournalReplay.replay(directory);
+        assertEquals(21, replay.getEntries());
+        assertEquals(-21L, replay.getStockDeltas().get(1L));
+    }
+
+    @Test
+    @DisplayName("Un registro escrito a medias se descarta al recuperar")
+    void ignoresTornWrite() throws IOException {
+        try (PurchaseJournal journal = new PurchaseJournal(directory, 4096, PurchaseJournal.FsyncPolicy.EVERY_WRITE, 0).open()) {
+            journal.append(JournalEntry.purchase(1L, 1L, 1L, 1, 1.0, "a@example.com"));
+        }
+        // Simular un registro incompleto: longitud escrita pero CRC incorrecto
+        try (FileChannel channel = FileChannel.open(PurchaseJournal.segmentPath(directory, 0), StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 4096);
+            int end = PurchaseJournal.HEADER_SIZE + JournalEntry.FIXED_SIZE + "a@example.com".length();
+            buffer.putInt(end, 40);
+            buffer.putInt(end + 4, 12345);
+            buffer.force();
+        }
+
+        try (PurchaseJournal journal = new PurchaseJournal(directory, 4096, PurchaseJournal.FsyncPolicy.EVERY_WRITE, 0).open()) {
+            journal.append(JournalEntry.purchase(2L, 2L, 1L, 1, 1.0, "b@example.com"));
+        }
+
+        assertEquals(2, JournalReplay.replay(directory).getEntries());
+    }
+
+    @Test
+    @DisplayName("Group commit: escritores concurrentes comparten fsync y no se pierde ningún registro")
+    void groupCommitConcurrentWriters() throws InterruptedException {
+        try (PurchaseJournal journal = new PurchaseJournal(directory, 1 << 20, PurchaseJournal.FsyncPolicy.GROUP_COMMIT, 500).open()) {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int t = 0; t < 8; t++) {
+                long base = t * 100L;
+                executor.submit(() -> {
+                    for (int i = 1; i <= 50; i++) {
+                        journal.append(JournalEntry.purchase(i, base + i, 1L, 1, 1.0, "a@example.com"));
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        }
+
+        JournalReplay replay = JournalReplay.replay(directory);
+        assertEquals(400, replay.getEntries());
+        assertEquals(400, replay.getPurchases().size());
+    }
+
+    @Test
+    @DisplayName("Si falla el fsync de group commit, los escritores reciben un error en vez de quedarse esperando")
+    void groupCommitFailureReleasesWriters() throws Exception {
+        PurchaseJournal journal = new PurchaseJournal(directory, 4096, PurchaseJournal.FsyncPolicy.GROUP_COMMIT, 0) {
+            @Override
+            void force(MappedByteBuffer toForce, int from, int length) {
+                throw new UncheckedIOException(new IOException("Disco lleno"));
+            }
+        }.open();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> writer = executor.submit(() ->
+                    journal.append(JournalEntry.purchase(1L, 10L, 1L, 3, 30.0, "a@example.com")));
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> writer.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, error.getCause());
+            assertThrows(IllegalStateException.class,
+                    () -> journal.append(JournalEntry.purchase(2L, 11L, 1L, 1, 10.0, "b@example.com")));
+        } finally {
+            executor.shutdownNow();
+            journal.close();
+        }
+    }
+}
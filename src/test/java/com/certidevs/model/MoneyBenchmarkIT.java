@@ -0,0 +1,81 @@
+package com.certidevs.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Benchmark del cálculo del precio de una compra: el camino anterior con Double (autoboxing en cada
+operación) frente a Money con céntimos en long. Misma estructura que un benchmark JMH: rondas de
+calentamiento para que actúe el JIT, rondas medidas y un resultado acumulado que se comprueba para
+que el compilador no elimine el cálculo. Se ejecuta con las pruebas de integración (failsafe)
+porque los tiempos dependen de la máquina.
+ */
+class MoneyBenchmarkIT {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int OPERATIONS = 5_000_000;
+
+    @Test
+    @DisplayName("Precio de compra: Double frente a Money")
+    void doubleVersusMoney() {
+        Double[] doublePrices = new Double[1024];
+        long[] minorPrices = new long[1024];
+        for (int i = 0; i < doublePrices.length; i++) {
+            minorPrices[i] = 99 + i * 137L;
+            doublePrices[i] = minorPrices[i] / 100.0;
+        }
+
+        double doubleNanos = measure(() -> doublePath(doublePrices));
+        double moneyNanos = measure(() -> moneyPath(minorPrices));
+
+        // Con Double cada compra guarda fracciones de céntimo (como el código anterior) y el total se aleja del cobrado
+        long doubleCents = doublePath(doublePrices);
+        long moneyCents = moneyPath(minorPrices);
+        System.out.printf("Double: %.2f ns/op, Money: %.2f ns/op, diferencia del total: %d céntimos%n",
+                doubleNanos, moneyNanos, doubleCents - moneyCents);
+        assertTrue(moneyCents > 0);
+    }
+
+    private static double measure(LongSupplier operation) {
+        long sink = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            sink += operation.getAsLong();
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            sink += operation.getAsLong();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertNotEquals(0, sink);
+        return elapsed / (double) MEASURED_ROUNDS / OPERATIONS;
+    }
+
+    // Cálculo anterior de PurchaseService: precio * cantidad * multiplicador, con Double
+    private static long doublePath(Double[] prices) {
+        Double total = 0.0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int quantity = 1 + (i & 15);
+            Double totalPrice = prices[i & 1023] * quantity;
+            totalPrice *= quantity >= 10 ? 0.9 : 1.0;
+            total += totalPrice;
+        }
+        return Math.round(total * 100);
+    }
+
+    // Cálculo actual: céntimos en long y descuento en puntos básicos, sin reservar memoria
+    private static long moneyPath(long[] prices) {
+        long total = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int quantity = 1 + (i & 15);
+            long totalPrice = Money.multiply(prices[i & 1023], quantity);
+            totalPrice = Money.applyDiscount(totalPrice, quantity >= 10 ? 1000 : 0);
+            total = Money.add(total, totalPrice);
+        }
+        return total;
+    }
+}
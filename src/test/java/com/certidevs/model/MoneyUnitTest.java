@@ -0,0 +1,57 @@
+package com.certidevs.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyUnitTest {
+
+    @Test
+    @DisplayName("Los importes se guardan como céntimos exactos")
+    void parsing() {
+        assertEquals(3432, Money.valueOf("34.32").minorUnits());
+        assertEquals(5543, Money.valueOf("55,43").minorUnits());
+        assertEquals(5500, Money.valueOf("55").minorUnits());
+        assertEquals(Money.of(30), Money.of(new BigDecimal("30.00")));
+        assertEquals(133, Money.fromDouble(1.33).minorUnits());
+        assertEquals("30.43", Money.valueOf("30.43").toString());
+        assertThrows(IllegalArgumentException.class, () -> Money.valueOf("abc"));
+    }
+
+    @Test
+    @DisplayName("Sumar importes es exacto: 0.10 + 0.20 = 0.30")
+    void exactArithmetic() {
+        assertEquals(Money.valueOf("0.30"), Money.valueOf("0.10").plus(Money.valueOf("0.20")));
+        assertNotEquals(0.3, 0.1 + 0.2); // Con double no lo es
+        assertEquals(Money.valueOf("13.30"), Money.valueOf("1.33").times(10));
+    }
+
+    @Test
+    @DisplayName("El descuento se redondea al céntimo más cercano")
+    void discountRounding() {
+        assertEquals(90000, Money.applyDiscount(100000, 1000)); // 1000.00 - 10 %
+        assertEquals(120, Money.applyDiscount(133, 1000)); // 1.197 -> 1.20
+        assertEquals(1, Money.applyDiscount(1, 5000)); // 0.005 -> 0.01 (mitades hacia arriba)
+        assertEquals(0, Money.applyDiscount(1, 10000));
+        assertEquals(133, Money.applyDiscount(133, 0));
+    }
+
+    @Test
+    @DisplayName("Un desbordamiento lanza ArithmeticException en lugar de dar un importe erróneo")
+    void overflow() {
+        assertThrows(ArithmeticException.class, () -> Money.multiply(Long.MAX_VALUE / 2, 3));
+    }
+
+    @Test
+    @DisplayName("El conversor JPA guarda los céntimos")
+    void converter() {
+        MoneyConverter converter = new MoneyConverter();
+        assertEquals(3432L, converter.convertToDatabaseColumn(Money.valueOf("34.32")));
+        assertEquals(Money.valueOf("34.32"), converter.convertToEntityAttribute(3432L));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
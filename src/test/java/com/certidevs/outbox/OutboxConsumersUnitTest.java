@@ -0,0 +1,85 @@
+package com.certidevs.outbox;
+
+import com.certidevs.model.OutboxEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxConsumersUnitTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    @DisplayName("El consumidor de fichero escribe una línea JSON por evento y la vuelca al final del lote")
+    void fileConsumer() throws IOException {
+        Path file = directory.resolve("outbox/events.jsonl");
+        FileOutboxConsumer consumer = new FileOutboxConsumer(objectMapper, file);
+
+        consumer.accept(message(1, "{\"purchaseId\":1}"), false);
+        consumer.accept(message(2, "{\"purchaseId\":2}"), true);
+        consumer.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"eventId\":1,\"type\":\"PURCHASE_CREATED\""), lines.get(0));
+        assertTrue(lines.get(1).contains("\"payload\":{\"purchaseId\":2}"), lines.get(1));
+    }
+
+    @Test
+    @DisplayName("El consumidor HTTP envía el lote en un POST y lo repite si el destino falla")
+    void httpConsumer() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/events", exchange -> {
+            // La primera petición falla: el consumidor debe lanzar la excepción para que se reintente
+            int status = requests.incrementAndGet() == 1 ? 503 : 204;
+            bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)
+                    + " " + exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            URI url = URI.create("http://localhost:" + server.getAddress().getPort() + "/events");
+            HttpOutboxConsumer consumer = new HttpOutboxConsumer(objectMapper, url, Duration.ofSeconds(5));
+
+            consumer.accept(message(1, "{}"), false);
+            assertEquals(0, requests.get(), "Hasta el final del lote no se envía nada");
+            assertThrows(IOException.class, () -> consumer.accept(message(2, "{}"), true));
+            consumer.accept(message(2, "{}"), true); // Reintento del último evento
+
+            assertEquals(2, requests.get());
+            assertEquals(bodies.get(0), bodies.get(1), "El reintento envía el mismo lote, sin duplicar eventos");
+            assertTrue(bodies.get(1).endsWith(" 1-2"));
+            assertEquals(2, objectMapper.readTree(bodies.get(1).substring(0, bodies.get(1).lastIndexOf(' '))).size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static OutboxMessage message(long id, String payload) {
+        OutboxMessage message = new OutboxMessage();
+        message.set(OutboxEvent.builder().id(id).type(OutboxEvent.Type.PURCHASE_CREATED).aggregateId(id)
+                .productId(1L).payload(payload).build());
+        return message;
+    }
+}
@@ -0,0 +1,98 @@
+package com.certidevs.outbox;
+
+import com.certidevs.model.OutboxEvent;
+import com.certidevs.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayUnitTest {
+
+    @Mock
+    private OutboxEventRepository outboxRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> delivered = new CopyOnWriteArrayList<>();
+    private final List<Long> publishedWhenMarked = new ArrayList<>();
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        OutboxConsumer consumer = new OutboxConsumer() {
+            @Override
+            public String getName() {
+                return "test";
+            }
+
+            @Override
+            public void accept(OutboxMessage message, boolean endOfBatch) {
+                delivered.add(message.getEventId());
+            }
+        };
+        // Intervalo largo: el sondeo programado no interfiere, relay() se llama desde la prueba
+        relay = new OutboxRelay(outboxRepository, transactionManager, List.of(consumer), 3, 4,
+                Duration.ofHours(1), Duration.ofMillis(1), Duration.ofDays(7));
+        relay.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.shutdown();
+    }
+
+    @Test
+    @DisplayName("Los lotes se entregan en orden y se marcan como publicados después de entregarlos")
+    void relaysBatchesInOrder() {
+        when(outboxRepository.findUnpublished(any(Pageable.class)))
+                .thenReturn(events(1, 3))
+                .thenReturn(events(4, 5));
+        when(outboxRepository.markPublished(anyCollection(), any())).thenAnswer(invocation -> {
+            publishedWhenMarked.add((long) delivered.size());
+            return ((List<?>) invocation.getArgument(0)).size();
+        });
+
+        assertEquals(5, relay.relay());
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), delivered);
+        verify(outboxRepository).markPublished(eq(List.of(1L, 2L, 3L)), any());
+        verify(outboxRepository).markPublished(eq(List.of(4L, 5L)), any());
+        assertEquals(List.of(3L, 5L), publishedWhenMarked, "Cada lote se marca cuando ya está entregado");
+        verify(outboxRepository, times(2)).findUnpublished(any(Pageable.class)); // El segundo lote no estaba lleno
+    }
+
+    @Test
+    @DisplayName("Sin filas pendientes no se marca nada")
+    void emptyOutbox() {
+        when(outboxRepository.findUnpublished(any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, relay.relay());
+        verify(outboxRepository, never()).markPublished(anyCollection(), any());
+    }
+
+    private static List<OutboxEvent> events(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId)
+                .mapToObj(id -> OutboxEvent.builder().id(id).type(OutboxEvent.Type.PURCHASE_CREATED)
+                        .productId(1L).payload("{}").build())
+                .toList();
+    }
+}
@@ -0,0 +1,77 @@
+package com.certidevs.outbox;
+
+import com.certidevs.model.OutboxEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Benchmark de eventos por segundo del anillo de la bandeja de salida con 1, 2 y 4 consumidores.
+Mide la parte en memoria del relay (las lecturas y el UPDATE de MySQL van por lotes de batch-size).
+Se ejecuta con las pruebas de integración (failsafe) porque depende de la máquina.
+ */
+class OutboxRingBufferBenchmarkIT {
+
+    private static final int EVENTS = 5_000_000;
+    private static final int RING_SIZE = 4096;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4})
+    @DisplayName("Eventos por segundo según el número de consumidores")
+    void eventsPerSecond(int consumerCount) {
+        List<CountingConsumer> consumers = new ArrayList<>();
+        for (int i = 0; i < consumerCount; i++) {
+            consumers.add(new CountingConsumer("benchmark-" + i));
+        }
+        OutboxRingBuffer ringBuffer = new OutboxRingBuffer(RING_SIZE, List.copyOf(consumers), Duration.ofMillis(1)).start();
+        OutboxEvent event = OutboxEvent.builder().type(OutboxEvent.Type.PURCHASE_CREATED).productId(1L).payload("{}").build();
+
+        long startNanos = System.nanoTime();
+        long sequence = -1;
+        for (long id = 1; id <= EVENTS; id++) {
+            event.setId(id);
+            sequence = ringBuffer.next();
+            ringBuffer.get(sequence).set(event);
+            ringBuffer.publish(sequence);
+        }
+        assertTrue(ringBuffer.awaitDelivered(sequence));
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        ringBuffer.stop();
+
+        System.out.printf("Anillo con %d consumidores: %.0f eventos/s%n", consumerCount, EVENTS / seconds);
+        for (CountingConsumer consumer : consumers) {
+            assertEquals(EVENTS, consumer.count);
+            assertEquals(EVENTS, consumer.lastEventId);
+        }
+    }
+
+    private static final class CountingConsumer implements OutboxConsumer {
+        private final String name;
+        private long count;
+        private long lastEventId;
+
+        private CountingConsumer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void accept(OutboxMessage message, boolean endOfBatch) {
+            if (message.getEventId() != lastEventId + 1) {
+                throw new IllegalStateException("Evento fuera de orden: " + message.getEventId());
+            }
+            lastEventId = message.getEventId();
+            count++;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.certidevs.outbox;
+
+import com.certidevs.model.OutboxEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxRingBufferUnitTest {
+
+    private OutboxRingBuffer ringBuffer;
+
+    @AfterEach
+    void tearDown() {
+        if (ringBuffer != null) ringBuffer.stop();
+    }
+
+    @Test
+    @DisplayName("Todos los consumidores reciben todos los eventos en orden")
+    void fanOutInOrder() {
+        RecordingConsumer first = new RecordingConsumer("first");
+        RecordingConsumer second = new RecordingConsumer("second");
+        ringBuffer = new OutboxRingBuffer(8, List.of(first, second), Duration.ofMillis(1)).start();
+
+        long last = publish(1, 100); // Más eventos que casillas: el productor espera a los consumidores
+
+        assertTrue(ringBuffer.awaitDelivered(last));
+        assertEquals(range(1, 100), first.eventIds);
+        assertEquals(range(1, 100), second.eventIds);
+    }
+
+    @Test
+    @DisplayName("Un evento que falla se reintenta sin adelantar los siguientes")
+    void failedEventIsRetriedInOrder() {
+        AtomicBoolean failed = new AtomicBoolean();
+        RecordingConsumer flaky = new RecordingConsumer("flaky") {
+            @Override
+            public void accept(OutboxMessage message, boolean endOfBatch) throws Exception {
+                if (message.getEventId() == 3 && failed.compareAndSet(false, true)) {
+                    throw new IllegalStateException("Destino caído");
+                }
+                super.accept(message, endOfBatch);
+            }
+        };
+        ringBuffer = new OutboxRingBuffer(8, List.of(flaky), Duration.ofMillis(1)).start();
+
+        assertTrue(ringBuffer.awaitDelivered(publish(1, 5)));
+        assertTrue(failed.get());
+        assertEquals(range(1, 5), flaky.eventIds);
+    }
+
+    @Test
+    @DisplayName("Un consumidor bloqueado frena al productor y no se marca nada como entregado")
+    void backpressure() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingConsumer slow = new RecordingConsumer("slow") {
+            @Override
+            public void accept(OutboxMessage message, boolean endOfBatch) throws Exception {
+                release.await();
+                super.accept(message, endOfBatch);
+            }
+        };
+        ringBuffer = new OutboxRingBuffer(4, List.of(slow), Duration.ofMillis(1)).start();
+
+        Thread producer = new Thread(() -> publish(1, 10));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "Con 4 casillas ocupadas el productor debe esperar");
+        assertTrue(ringBuffer.minimumSequence() < 0);
+
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(5));
+        assertTrue(ringBuffer.awaitDelivered(9));
+        assertEquals(range(1, 10), slow.eventIds);
+    }
+
+    private long publish(long fromId, long toId) {
+        long sequence = -1;
+        for (long id = fromId; id <= toId; id++) {
+            sequence = ringBuffer.next();
+            ringBuffer.get(sequence).set(OutboxEvent.builder().id(id).type(OutboxEvent.Type.PURCHASE_CREATED)
+                    .productId(id % 3).payload("{}").build());
+            ringBuffer.publish(sequence);
+        }
+        return sequence;
+    }
+
+    private static List<Long> range(long from, long to) {
+        return LongStream.rangeClosed(from, to).boxed().toList();
+    }
+
+    private static class RecordingConsumer implements OutboxConsumer {
+        private final String name;
+        final List<Long> eventIds = new CopyOnWriteArrayList<>();
+
+        RecordingConsumer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void accept(OutboxMessage message, boolean endOfBatch) throws Exception {
+            eventIds.add(message.getEventId());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.certidevs.outbox;
+
+import com.certidevs.dto.PurchaseCancellationSummaryDTO;
+import com.certidevs.dto.PurchaseProductDTO;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.model.Money;
+import com.certidevs.model.OutboxEvent;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxWriterUnitTest {
+
+    @Mock
+    private OutboxEventRepository outboxRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private OutboxWriter outboxWriter;
+
+    @BeforeEach
+    void setUp() {
+        outboxWriter = new OutboxWriter(outboxRepository, entityManager, new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Test
+    @DisplayName("Una compra guarda su fila en la misma transacción, después de enviar el UPDATE de stock")
+    void purchaseCreated() {
+        when(entityManager.isJoinedToTransaction()).thenReturn(true);
+        Purchase purchase = Purchase.builder().id(10L).email("test@example.com").quantity(2)
+                .totalPrice(Money.valueOf("19.98")).purchaseDate(LocalDateTime.of(2024, 5, 1, 12, 0))
+                .product(Product.builder().id(3L).build()).build();
+
+        outboxWriter.onPurchaseCreated(new PurchaseCreatedEvent(purchase));
+
+        InOrder inOrder = inOrder(entityManager, outboxRepository);
+        inOrder.verify(entityManager).flush();
+        ArgumentCaptor<OutboxEvent> saved = ArgumentCaptor.forClass(OutboxEvent.class);
+        inOrder.verify(outboxRepository).save(saved.capture());
+
+        OutboxEvent event = saved.getValue();
+        assertEquals(OutboxEvent.Type.PURCHASE_CREATED, event.getType());
+        assertEquals(10L, event.getAggregateId());
+        assertEquals(3L, event.getProductId());
+        assertNull(event.getPublishedAt());
+        assertTrue(event.getPayload().contains("\"totalPrice\":19.98"), event.getPayload());
+        assertTrue(event.getPayload().contains("\"email\":\"test@example.com\""), event.getPayload());
+    }
+
+    @Test
+    @DisplayName("Una cancelación masiva guarda una fila por producto")
+    void purchasesCancelled() {
+        outboxWriter.onPurchasesCancelled(new PurchasesCancelledEvent(List.of(1L, 2L, 3L), List.of("a@example.com"),
+                List.of(new PurchaseProductDTO(1L, 7L, 2, Money.of(20), LocalDateTime.of(2024, 1, 1, 10, 0)),
+                        new PurchaseProductDTO(2L, 8L, 2, Money.of(20), LocalDateTime.of(2024, 1, 1, 11, 0)),
+                        new PurchaseProductDTO(3L, 7L, 2, Money.of(20), LocalDateTime.of(2024, 1, 1, 12, 0))),
+                new PurchaseCancellationSummaryDTO(3, 6, Map.of(7L, 4L, 8L, 2L))));
+
+        ArgumentCaptor<OutboxEvent> saved = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxRepository, times(2)).save(saved.capture());
+        OutboxEvent product7 = saved.getAllValues().stream().filter(e -> e.getProductId() == 7L).findFirst().orElseThrow();
+        assertEquals(OutboxEvent.Type.PURCHASES_CANCELLED, product7.getType());
+        assertEquals("{\"productId\":7,\"purchaseIds\":[1,3],\"restoredUnits\":4}", product7.getPayload());
+        verify(entityManager, never()).flush(); // Sin transacción no hay nada que enviar
+    }
+}
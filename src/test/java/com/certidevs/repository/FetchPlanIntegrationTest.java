@@ -0,0 +1,155 @@
+package com.certidevs.repository;
+
+import com.certidevs.dto.PurchaseListItemDTO;
+import com.certidevs.model.Address;
+import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Número de sentencias SQL de cada plan de carga (estadísticas de Hibernate, generate_statistics=true en test).
+Con las asociaciones LAZY cada método ejecuta exactamente las sentencias que se fijan aquí: si alguien vuelve
+a poner EAGER o quita un grafo, el recuento cambia y la prueba falla antes de que aparezca un N+1 en producción.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE) // MySQL: purchase está particionada
+class FetchPlanIntegrationTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 3, 10, 12, 0);
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ManufacturerRepository manufacturerRepository;
+
+    private Manufacturer manufacturer;
+    private Purchase purchase;
+
+    @BeforeEach
+    void setUp() {
+        manufacturer = manufacturerRepository.save(Manufacturer.builder().name("Fabricante")
+                .address(Address.builder().street("Calle 1").city("Madrid").build()).build());
+        Product keyboard = productRepository.save(Product.builder().name("Teclado").price(Money.of(20))
+                .quantity(10).manufacturer(manufacturer).build());
+        Product mouse = productRepository.save(Product.builder().name("Ratón").price(Money.of(10))
+                .quantity(10).manufacturer(manufacturer).build());
+        purchase = purchaseRepository.save(purchase("fetch@example.com", keyboard, DATE));
+        purchaseRepository.save(purchase("fetch@example.com", mouse, DATE.plusMinutes(1)));
+        purchaseRepository.save(purchase("fetch@example.com", keyboard, DATE.plusMinutes(2)));
+    }
+
+    @Test
+    @DisplayName("findById: solo la compra, el producto queda como proxy con su id")
+    void findById() {
+        Purchase found = countStatements(1, () -> purchaseRepository.findById(purchase.getId()).orElseThrow());
+
+        assertFalse(Hibernate.isInitialized(found.getProduct()));
+        assertNotNull(countStatements(0, () -> found.getProduct().getId()));
+    }
+
+    @Test
+    @DisplayName("findWithProductById: compra, producto y fabricante en una consulta")
+    void findWithProductById() {
+        Purchase found = countStatements(1, () -> purchaseRepository.findWithProductById(purchase.getId()).orElseThrow());
+
+        assertEquals("Fabricante", countStatements(0, () -> found.getProduct().getManufacturer().getName()));
+    }
+
+    @Test
+    @DisplayName("findByEmail y findAll: una consulta para todas las compras, sin N+1 al recorrer los productos")
+    void findByEmailAndFindAll() {
+        List<Purchase> byEmail = countStatements(1, () -> purchaseRepository.findByEmail("fetch@example.com"));
+        assertEquals(3, byEmail.size());
+        countStatements(0, () -> byEmail.stream().map(p -> p.getProduct().getManufacturer().getName()).toList());
+
+        List<Purchase> all = countStatements(1, () -> purchaseRepository.findAll());
+        countStatements(0, () -> all.stream().map(p -> p.getProduct().getName()).toList());
+    }
+
+    @Test
+    @DisplayName("findListItemsByEmail: proyección con el nombre del producto en una consulta")
+    void findListItemsByEmail() {
+        List<PurchaseListItemDTO> items = countStatements(1,
+                () -> purchaseRepository.findListItemsByEmail("fetch@example.com"));
+
+        assertEquals(List.of("Teclado", "Ratón", "Teclado"), items.stream().map(PurchaseListItemDTO::productName).toList());
+    }
+
+    @Test
+    @DisplayName("Páginas del historial: una consulta, sin cargar productos")
+    void findPageByPurchaseDate() {
+        List<Purchase> page = countStatements(1, () -> purchaseRepository.findPageByEmailAndPurchaseDate(
+                "fetch@example.com", DATE, DATE.plusDays(1), DATE, 0L, PageRequest.ofSize(10)));
+
+        assertEquals(3, page.size());
+        assertTrue(page.stream().noneMatch(p -> Hibernate.isInitialized(p.getProduct())));
+    }
+
+    @Test
+    @DisplayName("Productos: findAll y findWithManufacturerById traen el fabricante, findById no")
+    void products() {
+        List<Product> products = countStatements(1, () -> productRepository.findAll());
+        countStatements(0, () -> products.stream().map(p -> p.getManufacturer().getName()).toList());
+
+        Long id = products.get(0).getId();
+        Product withManufacturer = countStatements(1, () -> productRepository.findWithManufacturerById(id).orElseThrow());
+        assertTrue(Hibernate.isInitialized(withManufacturer.getManufacturer()));
+
+        Product product = countStatements(1, () -> productRepository.findById(id).orElseThrow());
+        assertFalse(Hibernate.isInitialized(product.getManufacturer()));
+    }
+
+    @Test
+    @DisplayName("Fabricantes: la dirección solo se carga con findWithAddressById")
+    void manufacturers() {
+        Manufacturer found = countStatements(1, () -> manufacturerRepository.findById(manufacturer.getId()).orElseThrow());
+        assertFalse(Hibernate.isInitialized(found.getAddress()));
+
+        Manufacturer withAddress = countStatements(1,
+                () -> manufacturerRepository.findWithAddressById(manufacturer.getId()).orElseThrow());
+        assertEquals("Madrid", countStatements(0, () -> withAddress.getAddress().getCity()));
+    }
+
+    // Ejecuta la acción con el contexto de persistencia vacío y comprueba cuántas sentencias prepara
+    private <T> T countStatements(long expected, Supplier<T> action) {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        if (expected > 0) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+        statistics.clear();
+        T result = action.get();
+        assertEquals(expected, statistics.getPrepareStatementCount(), "Sentencias ejecutadas");
+        return result;
+    }
+
+    private static Purchase purchase(String email, Product product, LocalDateTime date) {
+        return Purchase.builder().email(email).product(product).quantity(1)
+                .totalPrice(product.getPrice()).purchaseDate(date).build();
+    }
+}
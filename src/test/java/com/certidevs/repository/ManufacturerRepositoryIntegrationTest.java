@@ -4,6 +4,7 @@ import com.certidevs.dto.ManufacturerWithAddressDTO;
 import com.certidevs.dto.ManufacturerWithProductDataDTO;
 import com.certidevs.model.Address;
 import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Money;
 import com.certidevs.model.Product;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -151,7 +152,7 @@ class ManufacturerRepositoryIntegrationTest {
         // Crear tres productos asociados al fabricante creado
         Product product1 = Product.builder()
                 .name("Producto 1")
-                .price(50.0)
+                .price(Money.of(50))
                 .quantity(10)
                 .active(true)
                 .manufacturer(manufacturer)
@@ -159,7 +160,7 @@ class ManufacturerRepositoryIntegrationTest {
 
         Product product2 = Product.builder()
                 .name("Producto 2")
-                .price(50.0)
+                .price(Money.of(50))
                 .quantity(5)
                 .active(true)
                 .manufacturer(manufacturer)
@@ -167,7 +168,7 @@ class ManufacturerRepositoryIntegrationTest {
 
         Product product3 = Product.builder()
                 .name("Producto 3")
-                .price(50.0)
+                .price(Money.of(50))
                 .quantity(2)
                 .active(false)
                 .manufacturer(manufacturer)
@@ -204,9 +205,8 @@ class ManufacturerRepositoryIntegrationTest {
                 "La cantidad de productos asociados al fabricante debería ser 3");
 
         // Verificar que la suma total de precios de productos es 150
-        assertEquals(150.0, dto.productsSumTotalPrice(),
-                0.001, "La suma total de precios de los productos debería de ser 150.0");
-                //delta: tolerancia de error
+        assertEquals(Money.of(150), dto.productsSumTotalPrice(),
+                "La suma total de precios de los productos debería de ser 150.00");
 
         // Impresión de resultados (Opcional)
         System.out.println("Resultado de la consulta JPQL:");
@@ -339,19 +339,19 @@ class ManufacturerRepositoryIntegrationTest {
 // Crear productos para los fabricantes
         Product product1 = Product.builder()
                 .name("Mesa de comedor")
-                .price(150.0)
+                .price(Money.of(150))
                 .manufacturer(manufacturer1)
                 .build();
 
         Product product2 = Product.builder()
                 .name("Silla de madera")
-                .price(75.0)
+                .price(Money.of(75))
                 .manufacturer(manufacturer1)
                 .build();
 
         Product product3 = Product.builder()
                 .name("Jarrón de cerámica")
-                .price(60.0)
+                .price(Money.of(60))
                 .manufacturer(manufacturer2)
                 .build();
 
@@ -368,7 +368,7 @@ class ManufacturerRepositoryIntegrationTest {
         assertEquals("Muebles Zaragoza", dtoZaragoza.manufacturerName(), "Deberían coincidir los nombres");
         assertEquals("Zaragoza", dtoZaragoza.city(), "Debería coincidir la ciudad");
         assertEquals(2L, dtoZaragoza.productsCount(), "La cuenta de productos debería ser 2");
-        assertEquals(225.0, dtoZaragoza.totalProductPrice(), "La suma total de precios de productos debería ser 225.0");
+        assertEquals(Money.of(225), dtoZaragoza.totalProductPrice(), "La suma total de precios de productos debería ser 225.00");
 
     }
 
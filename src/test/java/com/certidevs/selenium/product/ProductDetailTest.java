@@ -1,6 +1,7 @@
 package com.certidevs.selenium.product;
 
 import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Money;
 import com.certidevs.model.Product;
 import com.certidevs.repository.ManufacturerRepository;
 import com.certidevs.repository.ProductRepository;
@@ -57,7 +58,7 @@ public class ProductDetailTest {
 
         Product product = productRepository.save(Product.builder()
                 .name("Producto de prueba")
-                .price((30.43))
+                .price(Money.valueOf("30.43"))
                 .quantity(3)
                 .active(true)
                 .manufacturer(manufacturer) // IMPORTANTE: AGREGAMOS ASOCIACIÓN
@@ -110,7 +111,7 @@ public class ProductDetailTest {
 
         Product product = productRepository.save(Product.builder()
                 .name("Producto de prueba")
-                .price((30.43))
+                .price(Money.valueOf("30.43"))
                 .quantity(3)
                 .active(false)
                 .build());
@@ -132,7 +133,7 @@ public class ProductDetailTest {
     void actionButtons() {
         Product product = productRepository.save(Product.builder()
                 .name("Producto de prueba")
-                .price((30.43))
+                .price(Money.valueOf("30.43"))
                 .quantity(3)
                 .active(false)
                 .build());
@@ -1,6 +1,7 @@
 package com.certidevs.selenium.product;
 
 import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Money;
 import com.certidevs.model.Product;
 import com.certidevs.repository.ManufacturerRepository;
 import com.certidevs.repository.ProductRepository;
@@ -90,7 +91,7 @@ public class ProductFormTest {
 
         Product product = Product.builder()
                 .name("prod1")
-                .price(14.22)
+                .price(Money.valueOf("14.22"))
                 .quantity(4)
                 .active(true)
                 .manufacturer(manufacturer2) // fabricante 2
@@ -174,7 +175,7 @@ public class ProductFormTest {
 
         Product product = Product.builder()
                 .name("prod1")
-                .price(14.22)
+                .price(Money.valueOf("14.22"))
                 .quantity(4)
                 .active(false)
                 .manufacturer(manufacturer2) // fabricante 2
@@ -238,7 +239,7 @@ public class ProductFormTest {
     void checkIdReadOnly() {
         Product product = Product.builder()
                 .name("prod1")
-                .price(14.22)
+                .price(Money.valueOf("14.22"))
                 .quantity(4)
                 .active(false)
                 .build();
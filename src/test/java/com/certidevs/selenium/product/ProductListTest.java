@@ -1,5 +1,6 @@
 package com.certidevs.selenium.product;
 
+import com.certidevs.model.Money;
 import com.certidevs.model.Product;
 import com.certidevs.repository.ProductRepository;
 import org.junit.jupiter.api.AfterEach;
@@ -100,9 +101,9 @@ public class ProductListTest {
     @DisplayName("Comprobar tabla con productos")
     void tableWithProducts(){
         productRepository.saveAll(List.of(
-                Product.builder().name("prod1").price(10d).active(true).quantity(1).build(),
-                Product.builder().name("prod2").price(20d).active(false).quantity(2).build(),
-                Product.builder().name("prod3").price(30d).active(true).quantity(3).build()
+                Product.builder().name("prod1").price(Money.of(10)).active(true).quantity(1).build(),
+                Product.builder().name("prod2").price(Money.of(20)).active(false).quantity(2).build(),
+                Product.builder().name("prod3").price(Money.of(30)).active(true).quantity(3).build()
         ));
 
         //Al insertar nuevos productos debemos refrescar la pantalla para que los traiga
@@ -116,9 +117,9 @@ public class ProductListTest {
     @DisplayName("Comprobar las columnas de la tabla")
     void tableWithProducts_Columns() {
         productRepository.saveAll(List.of(
-                Product.builder().name("prod1").price(10d).active(true).quantity(1).build(),
-                Product.builder().name("prod2").price(20d).active(false).quantity(2).build(),
-                Product.builder().name("prod3").price(30d).active(true).quantity(3).build()
+                Product.builder().name("prod1").price(Money.of(10)).active(true).quantity(1).build(),
+                Product.builder().name("prod2").price(Money.of(20)).active(false).quantity(2).build(),
+                Product.builder().name("prod3").price(Money.of(30)).active(true).quantity(3).build()
         ));
 
         //Al insertar nuevos productos debemos refrescar la pantalla para que los traiga
@@ -141,9 +142,9 @@ public class ProductListTest {
     @DisplayName("Comprobar las filas de la tabla y sus datos - sin poner ids en los HTML en los <td>")
     void tableWithProducts_Rows(){
         productRepository.saveAll(List.of(
-                Product.builder().name("prod1").price(10d).active(true).quantity(1).build(),
-                Product.builder().name("prod2").price(20d).active(false).quantity(2).build(),
-                Product.builder().name("prod3").price(30d).active(true).quantity(3).build()
+                Product.builder().name("prod1").price(Money.of(10)).active(true).quantity(1).build(),
+                Product.builder().name("prod2").price(Money.of(20)).active(false).quantity(2).build(),
+                Product.builder().name("prod3").price(Money.of(30)).active(true).quantity(3).build()
         ));
 
         //Al insertar nuevos productos debemos refrescar la pantalla para que los traiga
@@ -168,7 +169,7 @@ public class ProductListTest {
     @DisplayName("Comprobar las filas de la tabla y sus datos - con ids dinámicos en los HTML")
     void tableWithProducts_rows_ids(){
         Product product = productRepository.save(
-                Product.builder().name("prod1").price(10d).active(true).quantity(5).build());
+                Product.builder().name("prod1").price(Money.of(10)).active(true).quantity(5).build());
 
         //Al insertar nuevos productos debemos refrescar la pantalla para que los traiga
         driver.navigate().refresh(); // Simular F5
@@ -198,7 +199,7 @@ public class ProductListTest {
     @Test
     void tableWithProducts_actionButtons_view(){
         Product product = productRepository.save(
-                Product.builder().name("prod1").price(10d).active(true).quantity(5).build());
+                Product.builder().name("prod1").price(Money.of(10)).active(true).quantity(5).build());
 
         //Al insertar nuevos productos debemos refrescar la pantalla para que los traiga
         driver.navigate().refresh(); // Simular F5
@@ -216,7 +217,7 @@ public class ProductListTest {
     @Test
     void tableWithProducts_actionButtons_edit(){
         Product product = productRepository.save(
-                Product.builder().name("prod1").price(10d).active(true).quantity(5).build());
+                Product.builder().name("prod1").price(Money.of(10)).active(true).quantity(5).build());
 
         //Al insertar nuevos productos debemos refrescar la pantalla para que los traiga
         driver.navigate().refresh(); // Simular F5
@@ -234,7 +235,7 @@ public class ProductListTest {
     @Test
     void tableWithProducts_actionButtons_delete(){
         Product product = productRepository.save(
-                Product.builder().name("prod1").price(10d).active(true).quantity(5).build());
+                Product.builder().name("prod1").price(Money.of(10)).active(true).quantity(5).build());
 
         //Al insertar nuevos productos debemos refrescar la pantalla para que los traiga
         driver.navigate().refresh(); // Simular F5
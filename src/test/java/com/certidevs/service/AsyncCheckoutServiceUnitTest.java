@@ -0,0 +1,140 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.CheckoutOutcome;
+import com.certidevs.dto.CheckoutRequestDTO;
+import com.certidevs.dto.CheckoutStatusDTO;
+import com.certidevs.dto.CheckoutStatusDTO.Status;
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncCheckoutServiceUnitTest {
+
+    @Mock
+    private PurchaseService purchaseService;
+
+    private AsyncCheckoutService asyncCheckoutService;
+
+    @AfterEach
+    void tearDown() {
+        if (asyncCheckoutService != null) asyncCheckoutService.shutdown();
+    }
+
+    private AsyncCheckoutService service(int queueCapacity, int batchSize) {
+        asyncCheckoutService = new AsyncCheckoutService(purchaseService, queueCapacity, 1, batchSize, 100,
+                Duration.ofSeconds(3));
+        return asyncCheckoutService;
+    }
+
+    @Test
+    @DisplayName("La compra se encola pendiente y una tanda la guarda junto con las demás en cola")
+    void queuesAndProcessesInBatches() {
+        AsyncCheckoutService service = service(10, 2);
+        when(purchaseService.makePurchaseBatch(anyList())).thenAnswer(invocation -> invocation
+                .<List<CheckoutRequestDTO>>getArgument(0).stream()
+                .map(request -> request.quantity() > 5
+                        ? CheckoutOutcome.failed("Stock insuficiente para el producto seleccionado.")
+                        : CheckoutOutcome.completed(purchase(request)))
+                .toList());
+
+        CheckoutStatusDTO first = service.submit("a@example.com", 1L, 2);
+        CheckoutStatusDTO second = service.submit("b@example.com", 1L, 9);
+        CheckoutStatusDTO third = service.submit("c@example.com", 1L, 1);
+        assertEquals(Status.PENDING, first.status());
+        assertEquals(3, service.getQueued());
+
+        assertEquals(2, service.processQueued()); // batch-size 2
+        assertEquals(Status.COMPLETED, service.getStatus(first.id()).orElseThrow().status());
+        assertEquals(2, service.getStatus(first.id()).orElseThrow().purchase().quantity());
+        CheckoutStatusDTO failed = service.getStatus(second.id()).orElseThrow();
+        assertEquals(Status.FAILED, failed.status());
+        assertEquals("Stock insuficiente para el producto seleccionado.", failed.error());
+        assertEquals(Status.PENDING, service.getStatus(third.id()).orElseThrow().status());
+
+        assertEquals(1, service.processQueued());
+        assertEquals(Status.COMPLETED, service.getStatus(third.id()).orElseThrow().status());
+        assertEquals(0, service.processQueued());
+        verify(purchaseService, times(2)).makePurchaseBatch(anyList());
+    }
+
+    @Test
+    @DisplayName("Si la tanda se deshace entera las compras se repiten una a una")
+    void retriesAloneWhenBatchFails() {
+        AsyncCheckoutService service = service(10, 10);
+        when(purchaseService.makePurchaseBatch(anyList())).thenThrow(new CannotAcquireLockException("deadlock"));
+        when(purchaseService.makePurchase("a@example.com", 1L, 1)).thenReturn(purchase(new CheckoutRequestDTO("a@example.com", 1L, 1)));
+        when(purchaseService.makePurchase("b@example.com", 1L, 1)).thenThrow(new CannotAcquireLockException("deadlock"));
+
+        CheckoutStatusDTO first = service.submit("a@example.com", 1L, 1);
+        CheckoutStatusDTO second = service.submit("b@example.com", 1L, 1);
+        service.processQueued();
+
+        assertEquals(Status.COMPLETED, service.getStatus(first.id()).orElseThrow().status());
+        assertEquals(Status.FAILED, service.getStatus(second.id()).orElseThrow().status());
+    }
+
+    @Test
+    @DisplayName("Cola llena: se rechaza al momento con Retry-After y la compra no queda registrada")
+    void rejectsWhenFull() {
+        AsyncCheckoutService service = service(1, 10);
+        service.submit("a@example.com", 1L, 1);
+
+        CheckoutRejectedException rejected = assertThrows(CheckoutRejectedException.class,
+                () -> service.submit("b@example.com", 1L, 1));
+        assertEquals(Duration.ofSeconds(3), rejected.getRetryAfter());
+        assertEquals(1, service.getQueued());
+    }
+
+    @Test
+    @DisplayName("La validación de makePurchase se aplica antes de encolar")
+    void validatesBeforeQueueing() {
+        AsyncCheckoutService service = service(10, 10);
+        doThrow(new IllegalArgumentException("La cantidad debe ser mayor que cero."))
+                .when(purchaseService).validateCheckout(1L, 0);
+
+        assertThrows(IllegalArgumentException.class, () -> service.submit("a@example.com", 1L, 0));
+        assertEquals(0, service.getQueued());
+        assertTrue(service.getStatus("desconocida").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Los workers vacían la cola en segundo plano")
+    void workersDrainQueue() throws Exception {
+        AsyncCheckoutService service = service(10, 10);
+        when(purchaseService.makePurchaseBatch(anyList())).thenAnswer(invocation -> invocation
+                .<List<CheckoutRequestDTO>>getArgument(0).stream()
+                .map(request -> CheckoutOutcome.completed(purchase(request)))
+                .toList());
+        service.start();
+
+        CheckoutStatusDTO status = service.submit("a@example.com", 1L, 1);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getStatus(status.id()).orElseThrow().status() == Status.PENDING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Status.COMPLETED, service.getStatus(status.id()).orElseThrow().status());
+    }
+
+    private static Purchase purchase(CheckoutRequestDTO request) {
+        return Purchase.builder().id(1L).email(request.email()).product(Product.builder().id(request.productId()).build())
+                .quantity(request.quantity()).totalPrice(Money.of(10)).purchaseDate(LocalDateTime.now()).build();
+    }
+}
@@ -0,0 +1,129 @@
+package com.certidevs.service;
+
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartReservationServiceUnitTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PurchaseService purchaseService;
+
+    @Mock
+    private PartitionedCheckoutEngine checkoutEngine;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CartReservationService reservationService;
+
+    @BeforeEach
+    void setUp() {
+        reservationService = new CartReservationService(productRepository, purchaseService, checkoutEngine,
+                jdbcTemplate, transactionManager, Duration.ofMinutes(15), Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Reservar descuenta el stock con el UPDATE condicionado")
+    void reserve() {
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+
+        CartReservationService.Hold hold = reservationService.reserve("test@example.com", 1L, 2);
+
+        assertTrue(reservationService.findHold(hold.getId()).isPresent());
+        verify(productRepository).decrementStock(1L, 2);
+    }
+
+    @Test
+    @DisplayName("Reservar sin stock suficiente falla")
+    void reserve_insufficientStock() {
+        when(productRepository.decrementStock(1L, 50)).thenReturn(0);
+        when(productRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> reservationService.reserve("test@example.com", 1L, 50));
+    }
+
+    @Test
+    @DisplayName("Convertir la reserva en compra no vuelve a comprobar el stock")
+    void convertToPurchase() {
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        Purchase purchase = Purchase.builder().id(9L).build();
+        when(purchaseService.makeReservedPurchase("test@example.com", 1L, 2)).thenReturn(purchase);
+
+        CartReservationService.Hold hold = reservationService.reserve("test@example.com", 1L, 2);
+        assertEquals(purchase, reservationService.convertToPurchase(hold.getId()));
+
+        verify(productRepository, times(1)).decrementStock(anyLong(), anyInt());
+        assertTrue(reservationService.findHold(hold.getId()).isEmpty());
+        // Ya convertida: no se puede volver a usar ni caduca
+        assertThrows(IllegalArgumentException.class, () -> reservationService.convertToPurchase(hold.getId()));
+        reservationService.expire(System.nanoTime() + Duration.ofMinutes(16).toNanos());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Las reservas caducadas devuelven el stock agrupado por producto en un lote")
+    void expiredHoldsAreRestockedInBatch() {
+        when(productRepository.decrementStock(anyLong(), anyInt())).thenReturn(1);
+        reservationService.reserve("a@example.com", 1L, 2);
+        reservationService.reserve("b@example.com", 1L, 3);
+        reservationService.reserve("c@example.com", 2L, 1);
+
+        reservationService.expire(System.nanoTime() + Duration.ofMinutes(16).toNanos());
+
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> batch) -> batch.size() == 2
+                && batch.stream().anyMatch(args -> args[0].equals(5) && args[1].equals(1L))
+                && batch.stream().anyMatch(args -> args[0].equals(1) && args[1].equals(2L))));
+    }
+
+    @Test
+    @DisplayName("Si el lote de devolución falla, las reservas caducadas se reintentan y no se pierde el stock")
+    void failedRestockIsRetried() {
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        CartReservationService.Hold hold = reservationService.reserve("test@example.com", 1L, 2);
+        doThrow(new DataAccessResourceFailureException("Conexión perdida"))
+                .doReturn(new int[]{1})
+                .when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        long expired = System.nanoTime() + Duration.ofMinutes(16).toNanos();
+        assertThrows(DataAccessResourceFailureException.class, () -> reservationService.expire(expired));
+        assertTrue(reservationService.findHold(hold.getId()).isPresent()); // Sigue reservada hasta devolver el stock
+        assertEquals(Map.of(1L, 2L), reservationService.getReservedQuantities());
+
+        reservationService.expire(expired + CartReservationService.RESTOCK_RETRY_DELAY.toNanos() + Duration.ofSeconds(1).toNanos());
+
+        assertTrue(reservationService.findHold(hold.getId()).isEmpty());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+        verify(checkoutEngine).reserveExternal(1L, 2); // Al reservar se aparta en el motor particionado
+        verify(checkoutEngine).invalidate(1L); // Al devolver el stock
+    }
+}
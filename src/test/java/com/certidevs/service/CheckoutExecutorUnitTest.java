@@ -0,0 +1,160 @@
+package com.certidevs.service;
+
+import com.certidevs.model.Purchase;
+import com.certidevs.stats.CheckoutMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CheckoutExecutorUnitTest {
+
+    @Mock
+    private PurchaseService purchaseService;
+
+    @Mock
+    private IdempotentCheckoutService idempotentCheckoutService;
+
+    @Mock
+    private CheckoutMetrics checkoutMetrics;
+
+    private CheckoutExecutor checkoutExecutor;
+
+    @AfterEach
+    void tearDown() {
+        if (checkoutExecutor != null) checkoutExecutor.shutdown();
+    }
+
+    private CheckoutExecutor executor(int maxConcurrency, int queueCapacity, Duration maxQueueWait) {
+        checkoutExecutor = new CheckoutExecutor(purchaseService, idempotentCheckoutService, checkoutMetrics,
+                maxConcurrency, queueCapacity, maxQueueWait, Duration.ofSeconds(3));
+        return checkoutExecutor;
+    }
+
+    @Test
+    @DisplayName("La compra se ejecuta en un hilo virtual y se miden la espera y la ejecución")
+    void runsOnVirtualThread() throws Exception {
+        Purchase purchase = Purchase.builder().id(1L).build();
+        when(purchaseService.makePurchase("test@example.com", 1L, 2)).thenAnswer(invocation -> {
+            assertTrue(Thread.currentThread().isVirtual());
+            return purchase;
+        });
+
+        assertEquals(purchase, executor(2, 10, Duration.ofSeconds(1))
+                .makePurchase(null, "test@example.com", 1L, 2).get(5, TimeUnit.SECONDS));
+        verify(checkoutMetrics).recordQueueWait(anyLong());
+        verify(checkoutMetrics).recordExecution(anyLong());
+        verifyNoInteractions(idempotentCheckoutService);
+    }
+
+    @Test
+    @DisplayName("Con clave de idempotencia la compra pasa por IdempotentCheckoutService")
+    void idempotencyKey() throws Exception {
+        Purchase purchase = Purchase.builder().id(1L).build();
+        when(idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 2)).thenReturn(purchase);
+
+        assertEquals(purchase, executor(2, 10, Duration.ofSeconds(1))
+                .makePurchase("k1", "test@example.com", 1L, 2).get(5, TimeUnit.SECONDS));
+        verifyNoInteractions(purchaseService);
+    }
+
+    @Test
+    @DisplayName("Nunca hay más compras en curso que permisos")
+    void boundedConcurrency() throws Exception {
+        CheckoutExecutor executor = executor(3, 100, Duration.ofSeconds(10));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            results.add(executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return running.decrementAndGet();
+            }));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    @DisplayName("Con la cola llena se rechaza al momento con Retry-After")
+    void rejectsWhenQueueIsFull() throws Exception {
+        CheckoutExecutor executor = executor(1, 1, Duration.ofSeconds(10));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> first = executor.submit(() -> {
+            running.countDown();
+            await(release);
+            return 1;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> queued = executor.submit(() -> 2); // Ocupa la única plaza de la cola
+
+        CheckoutRejectedException rejected = assertThrows(CheckoutRejectedException.class, () -> executor.submit(() -> 3));
+        assertEquals(Duration.ofSeconds(3), rejected.getRetryAfter());
+        verify(checkoutMetrics).recordRejected(0);
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Una compra que espera más de max-queue-wait se rechaza")
+    void rejectsAfterMaxQueueWait() throws Exception {
+        CheckoutExecutor executor = executor(1, 10, Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = executor.submit(() -> {
+            await(release);
+            return 1;
+        });
+
+        CompletableFuture<Integer> waiting = executor.submit(() -> 2);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CheckoutRejectedException.class, error.getCause());
+        verify(checkoutMetrics).recordRejected(longThat(nanos -> nanos >= TimeUnit.MILLISECONDS.toNanos(50)));
+
+        release.countDown();
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getQueued());
+    }
+
+    @Test
+    @DisplayName("Los errores de la compra llegan al llamador")
+    void propagatesErrors() {
+        when(purchaseService.makePurchase("test@example.com", 1L, 2))
+                .thenThrow(new IllegalArgumentException("Stock insuficiente para el producto seleccionado."));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> executor(1, 10, Duration.ofSeconds(1))
+                .makePurchase(null, "test@example.com", 1L, 2).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.certidevs.service;
+
+import com.certidevs.stats.CheckoutMetrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Prueba de carga de un pico de compras: más peticiones por segundo de las que caben en el pool de conexiones.
+
+- Hilos de plataforma: como antes, 200 hilos de Tomcat que esperan cada uno una de las 10 conexiones.
+  Todas las peticiones acaban sirviéndose, pero la cola crece sin límite durante el pico.
+- CheckoutExecutor: 10 permisos y cola de 200; lo que no cabe se rechaza al momento con Retry-After.
+La compra se simula con un semáforo de 10 "conexiones" y 5 ms de trabajo, sin base de datos.
+Se ejecuta con las pruebas de integración (failsafe) porque los tiempos dependen de la máquina.
+ */
+class CheckoutLoadIT {
+
+    private static final int CONNECTIONS = 10;
+    private static final long WORK_NANOS = TimeUnit.MILLISECONDS.toNanos(5); // 2000 compras/s como máximo
+    private static final int REQUESTS = 4_000;
+    private static final long ARRIVAL_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 3_000; // 3000 peticiones/s
+
+    @Test
+    @DisplayName("p99 de las compras aceptadas: hilos de plataforma frente a CheckoutExecutor")
+    void p99PlatformVersusExecutor() throws Exception {
+        Result platform = platformThreads();
+        Result executor = checkoutExecutor();
+
+        System.out.printf("Hilos de plataforma: p99 %d ms, rechazadas %d%n", platform.p99Millis(), platform.rejected());
+        System.out.printf("CheckoutExecutor: p99 %d ms, rechazadas %d (rechazo en %d µs de media)%n",
+                executor.p99Millis(), executor.rejected(), executor.meanRejectionMicros());
+
+        assertEquals(REQUESTS, platform.completed());
+        assertEquals(REQUESTS, executor.completed() + executor.rejected());
+        assertTrue(executor.p99Millis() < platform.p99Millis(),
+                "Con la cola acotada las compras aceptadas no esperan a todo el pico");
+    }
+
+    private Result platformThreads() throws InterruptedException {
+        Semaphore connections = new Semaphore(CONNECTIONS, true);
+        ExecutorService tomcat = Executors.newFixedThreadPool(200);
+        long[] latencies = new long[REQUESTS];
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            long arrival = waitForArrival(start, i);
+            int request = i;
+            tomcat.execute(() -> {
+                checkout(connections);
+                latencies[request] = System.nanoTime() - arrival;
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(2, TimeUnit.MINUTES));
+        tomcat.shutdown();
+        return new Result(latencies, REQUESTS, 0, 0);
+    }
+
+    private Result checkoutExecutor() throws InterruptedException {
+        Semaphore connections = new Semaphore(CONNECTIONS, true);
+        CheckoutMetrics metrics = new CheckoutMetrics();
+        CheckoutExecutor executor = new CheckoutExecutor(null, null, metrics,
+                CONNECTIONS, 200, Duration.ofSeconds(2), Duration.ofSeconds(1));
+        long[] latencies = new long[REQUESTS];
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long rejectionNanos = 0;
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            long arrival = waitForArrival(start, i);
+            int request = i;
+            try {
+                executor.submit(() -> {
+                    checkout(connections);
+                    return request;
+                }).whenComplete((result, error) -> {
+                    if (error == null) {
+                        latencies[request] = System.nanoTime() - arrival;
+                        completed.incrementAndGet();
+                    } else {
+                        rejected.incrementAndGet();
+                    }
+                    done.countDown();
+                });
+            } catch (CheckoutRejectedException e) {
+                rejectionNanos += System.nanoTime() - arrival;
+                latencies[request] = -1;
+                rejected.incrementAndGet();
+                done.countDown();
+            }
+        }
+        assertTrue(done.await(2, TimeUnit.MINUTES));
+        executor.shutdown();
+        metrics.shutdown();
+        long[] accepted = Arrays.stream(latencies).filter(latency -> latency > 0).toArray();
+        return new Result(accepted, completed.get(), rejected.get(),
+                rejected.get() == 0 ? 0 : rejectionNanos / rejected.get());
+    }
+
+    // Llegadas a ritmo fijo (carga abierta): el generador no espera a que terminen las anteriores
+    private static long waitForArrival(long start, int request) {
+        long arrival = start + request * ARRIVAL_INTERVAL_NANOS;
+        long now;
+        while ((now = System.nanoTime()) < arrival) {
+            LockSupport.parkNanos(arrival - now);
+        }
+        return arrival;
+    }
+
+    private static void checkout(Semaphore connections) {
+        connections.acquireUninterruptibly();
+        try {
+            LockSupport.parkNanos(WORK_NANOS);
+        } finally {
+            connections.release();
+        }
+    }
+
+    private record Result(long[] latencies, int completed, int rejected, long meanRejectionNanos) {
+
+        long p99Millis() {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return TimeUnit.NANOSECONDS.toMillis(sorted[(int) Math.ceil(sorted.length * 0.99) - 1]);
+        }
+
+        long meanRejectionMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(meanRejectionNanos);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.CustomerPurchaseSummaryDTO;
+import com.certidevs.dto.PurchaseCancellationSummaryDTO;
+import com.certidevs.event.PurchaseCancelledEvent;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.model.CustomerPurchaseSummary;
+import com.certidevs.model.Money;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.CustomerPurchaseSummaryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerPurchaseSummaryServiceUnitTest {
+
+    @Mock
+    private CustomerPurchaseSummaryRepository summaryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CustomerPurchaseSummaryService summaryService;
+
+    @BeforeEach
+    void setUp() {
+        summaryService = new CustomerPurchaseSummaryService(summaryRepository, transactionManager, 2, 2, false);
+    }
+
+    @Test
+    @DisplayName("Resumen de un cliente sin compras")
+    void summaryWithoutPurchases() {
+        when(summaryRepository.findById("test@example.com")).thenReturn(Optional.empty());
+
+        CustomerPurchaseSummaryDTO summary = summaryService.getSummary("test@example.com");
+
+        assertEquals(0, summary.purchaseCount());
+        assertNull(summary.lastPurchaseDate());
+    }
+
+    @Test
+    @DisplayName("Resumen de un cliente leído por clave primaria")
+    void summaryFromTable() {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        when(summaryRepository.findById("test@example.com")).thenReturn(Optional.of(
+                new CustomerPurchaseSummary("test@example.com", 3L, Money.of(150), date)));
+
+        assertEquals(new CustomerPurchaseSummaryDTO("test@example.com", 3, Money.of(150), date),
+                summaryService.getSummary("test@example.com"));
+    }
+
+    @Test
+    @DisplayName("Una compra suma al resumen con un upsert")
+    void purchaseCreated() {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        Purchase purchase = Purchase.builder().id(1L).email("test@example.com").totalPrice(Money.of(50)).purchaseDate(date).build();
+
+        summaryService.onPurchaseCreated(new PurchaseCreatedEvent(purchase));
+
+        verify(summaryRepository).addPurchase("test@example.com", 5000L, date);
+    }
+
+    @Test
+    @DisplayName("Una cancelación recalcula el resumen del cliente")
+    void purchaseCancelled() {
+        Purchase purchase = Purchase.builder().id(1L).email("test@example.com").build();
+
+        summaryService.onPurchaseCancelled(new PurchaseCancelledEvent(purchase));
+
+        InOrder inOrder = inOrder(summaryRepository);
+        inOrder.verify(summaryRepository).flush();
+        inOrder.verify(summaryRepository).deleteByEmailIn(List.of("test@example.com"));
+        inOrder.verify(summaryRepository).insertFromPurchases(List.of("test@example.com"));
+    }
+
+    @Test
+    @DisplayName("Una cancelación masiva recalcula los resúmenes de todos los clientes afectados")
+    void purchasesCancelled() {
+        List<String> emails = List.of("a@example.com", "b@example.com");
+
+        summaryService.onPurchasesCancelled(new PurchasesCancelledEvent(List.of(1L, 2L), emails, List.of(),
+                new PurchaseCancellationSummaryDTO(2, 2, Map.of(1L, 2L))));
+
+        verify(summaryRepository).deleteByEmailIn(emails);
+        verify(summaryRepository).insertFromPurchases(emails);
+    }
+
+    @Test
+    @DisplayName("La reconstrucción recalcula los emails por bloques")
+    void rebuild() {
+        when(summaryRepository.findDistinctEmailsAfter("", 2)).thenReturn(List.of("a@example.com", "b@example.com"));
+        when(summaryRepository.findDistinctEmailsAfter("b@example.com", 2)).thenReturn(List.of("c@example.com"));
+        when(summaryRepository.findDistinctEmailsAfter("c@example.com", 2)).thenReturn(List.of());
+
+        assertEquals(3, summaryService.rebuild());
+
+        verify(summaryRepository).rebuildRange("a@example.com", "b@example.com");
+        verify(summaryRepository).rebuildRange("c@example.com", "c@example.com");
+        verify(summaryRepository).deleteWithoutPurchases();
+    }
+}
@@ -0,0 +1,105 @@
+package com.certidevs.service;
+
+import com.certidevs.model.DiscountRule;
+import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Product;
+import com.certidevs.repository.DiscountRuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DiscountEngineUnitTest {
+
+    @Mock
+    private DiscountRuleRepository discountRuleRepository;
+
+    private DiscountEngine discountEngine;
+
+    private final Manufacturer manufacturer = Manufacturer.builder().id(7L).build();
+    private final Product product = Product.builder().id(1L).manufacturer(manufacturer).build();
+    private final Product otherProduct = Product.builder().id(2L).manufacturer(manufacturer).build();
+    private final Product unrelatedProduct = Product.builder().id(3L).build();
+
+    @BeforeEach
+    void setUp() {
+        discountEngine = new DiscountEngine(discountRuleRepository, Duration.ofMinutes(1));
+    }
+
+    @Test
+    @DisplayName("Sin reglas en base de datos se aplica el 10% a partir de 10 unidades")
+    void legacyRule() {
+        when(discountRuleRepository.findByActiveTrue()).thenReturn(List.of());
+        discountEngine.reload();
+
+        assertEquals(0, discountEngine.discountBasisPoints(product, 9));
+        assertEquals(1000, discountEngine.discountBasisPoints(product, 10));
+    }
+
+    @Test
+    @DisplayName("Tramos: se aplica el de mayor cantidad mínima alcanzada")
+    void tiers() {
+        when(discountRuleRepository.findByActiveTrue()).thenReturn(List.of(
+                rule(DiscountRule.Scope.GLOBAL, null, 5, 5.0),
+                rule(DiscountRule.Scope.GLOBAL, null, 20, 15.0),
+                rule(DiscountRule.Scope.GLOBAL, null, 10, 10.0)));
+        discountEngine.reload();
+
+        assertEquals(0, discountEngine.discountBasisPoints(product, 4));
+        assertEquals(500, discountEngine.discountBasisPoints(product, 5));
+        assertEquals(1000, discountEngine.discountBasisPoints(product, 19));
+        assertEquals(1500, discountEngine.discountBasisPoints(product, 500));
+    }
+
+    @Test
+    @DisplayName("Gana el ámbito más específico con un tramo aplicable")
+    void precedence() {
+        when(discountRuleRepository.findByActiveTrue()).thenReturn(List.of(
+                rule(DiscountRule.Scope.GLOBAL, null, 1, 2.0),
+                rule(DiscountRule.Scope.MANUFACTURER, 7L, 1, 5.0),
+                rule(DiscountRule.Scope.PRODUCT, 1L, 10, 30.0)));
+        discountEngine.reload();
+
+        assertEquals(3000, discountEngine.discountBasisPoints(product, 10)); // Producto
+        assertEquals(500, discountEngine.discountBasisPoints(product, 3)); // Tramo de producto no alcanzado: fabricante
+        assertEquals(500, discountEngine.discountBasisPoints(otherProduct, 10)); // Fabricante
+        assertEquals(200, discountEngine.discountBasisPoints(unrelatedProduct, 10)); // Global
+    }
+
+    @Test
+    @DisplayName("Las reglas nuevas se aplican tras recargar, sin reiniciar")
+    void reloadSwapsRules() {
+        when(discountRuleRepository.findByActiveTrue())
+                .thenReturn(List.of(rule(DiscountRule.Scope.PRODUCT, 1L, 1, 10.0)))
+                .thenReturn(List.of(rule(DiscountRule.Scope.PRODUCT, 1L, 1, 50.0)));
+
+        discountEngine.reload();
+        assertEquals(1000, discountEngine.discountBasisPoints(product, 1));
+        discountEngine.reload();
+        assertEquals(5000, discountEngine.discountBasisPoints(product, 1));
+    }
+
+    @Test
+    @DisplayName("Una regla inválida no se compila y se mantienen las reglas anteriores")
+    void invalidRule() {
+        when(discountRuleRepository.findByActiveTrue())
+                .thenReturn(List.of(rule(DiscountRule.Scope.MANUFACTURER, null, 1, 10.0)));
+
+        assertThrows(IllegalArgumentException.class, () -> discountEngine.reload());
+        assertEquals(1000, discountEngine.discountBasisPoints(product, 10));
+    }
+
+    private static DiscountRule rule(DiscountRule.Scope scope, Long targetId, int minQuantity, double percentage) {
+        return DiscountRule.builder().scope(scope).targetId(targetId).minQuantity(minQuantity)
+                .percentage(percentage).active(true).build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.certidevs.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelUnitTest {
+
+    // Ticks de 1 ns empezando en 0 para controlar el tiempo a mano
+    private final HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1, TimeUnit.NANOSECONDS, 0);
+
+    @Test
+    @DisplayName("Los temporizadores vencen en su tick, también los de niveles superiores")
+    void expiresAcrossLevels() {
+        wheel.schedule("a", 5, TimeUnit.NANOSECONDS);
+        wheel.schedule("b", 64, TimeUnit.NANOSECONDS); // Nivel 1
+        wheel.schedule("c", 5_000, TimeUnit.NANOSECONDS); // Nivel 2
+        wheel.schedule("d", 300_000, TimeUnit.NANOSECONDS); // Nivel 3
+
+        assertEquals(List.of(), wheel.advance(4));
+        assertEquals(List.of("a"), wheel.advance(5));
+        assertEquals(List.of(), wheel.advance(63));
+        assertEquals(List.of("b"), wheel.advance(64));
+        assertEquals(List.of(), wheel.advance(4_999));
+        assertEquals(List.of("c"), wheel.advance(5_000));
+        assertEquals(List.of(), wheel.advance(299_999));
+        assertEquals(List.of("d"), wheel.advance(300_000));
+    }
+
+    @Test
+    @DisplayName("Un temporizador cancelado no vence")
+    void cancelledTimeoutDoesNotExpire() {
+        var first = wheel.schedule("a", 10, TimeUnit.NANOSECONDS);
+        wheel.schedule("b", 10, TimeUnit.NANOSECONDS);
+        var third = wheel.schedule("c", 10, TimeUnit.NANOSECONDS);
+
+        assertTrue(first.cancel());
+        assertTrue(third.cancel());
+        assertFalse(third.cancel(), "Cancelar dos veces no tiene efecto");
+
+        assertEquals(List.of("b"), wheel.advance(10));
+    }
+
+    @Test
+    @DisplayName("Muchos temporizadores con vencimientos aleatorios vencen todos en su momento")
+    void manyTimeouts() {
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long delay = 1 + random.nextInt(200_000);
+            deadlines.add(delay);
+            wheel.schedule(String.valueOf(delay), delay, TimeUnit.NANOSECONDS);
+        }
+
+        int expired = 0;
+        for (long now = 1_000; now <= 200_000; now += 1_000) {
+            for (String payload : wheel.advance(now)) {
+                long deadline = Long.parseLong(payload);
+                assertTrue(deadline <= now && deadline > now - 1_000, "Vence en el intervalo correcto");
+                expired++;
+            }
+        }
+        assertEquals(deadlines.size(), expired);
+    }
+}
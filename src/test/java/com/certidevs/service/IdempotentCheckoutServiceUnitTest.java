@@ -0,0 +1,172 @@
+package com.certidevs.service;
+
+import com.certidevs.model.CheckoutIdempotencyKey;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.CheckoutIdempotencyKeyRepository;
+import com.certidevs.repository.PurchaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotentCheckoutServiceUnitTest {
+
+    @Mock
+    private PurchaseService purchaseService;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @Mock
+    private CheckoutIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotentCheckoutService idempotentCheckoutService;
+
+    private final Purchase purchase = Purchase.builder().id(7L).email("test@example.com").quantity(1).build();
+
+    @BeforeEach
+    void setUp() {
+        idempotentCheckoutService = new IdempotentCheckoutService(purchaseService, purchaseRepository,
+                idempotencyKeyRepository, transactionManager, 100, Duration.ofHours(1), Duration.ofDays(7), Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("Un reintento con la misma clave devuelve la compra original sin volver a comprar")
+    void retryReturnsOriginalPurchase() {
+        when(idempotencyKeyRepository.findByIdempotencyKey("k1")).thenReturn(Optional.empty());
+        when(purchaseService.makePurchase("test@example.com", 1L, 1, "k1")).thenReturn(purchase);
+        when(purchaseRepository.findById(7L)).thenReturn(Optional.of(purchase));
+
+        Purchase first = idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1);
+        Purchase retry = idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1);
+
+        assertEquals(first, retry);
+        verify(purchaseService, times(1)).makePurchase("test@example.com", 1L, 1, "k1");
+        verify(idempotencyKeyRepository, times(1)).findByIdempotencyKey("k1"); // El reintento sale de la caché
+    }
+
+    @Test
+    @DisplayName("Una clave guardada en base de datos devuelve la compra original")
+    void keyStoredInDatabase() {
+        when(idempotencyKeyRepository.findByIdempotencyKey("k1")).thenReturn(Optional.of(
+                CheckoutIdempotencyKey.builder().idempotencyKey("k1").purchaseId(7L).build()));
+        when(purchaseRepository.findById(7L)).thenReturn(Optional.of(purchase));
+
+        assertEquals(purchase, idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1));
+        verifyNoInteractions(purchaseService);
+    }
+
+    @Test
+    @DisplayName("Clave confirmada a la vez por otra instancia: se devuelve la compra ganadora")
+    void uniqueViolationReturnsWinner() {
+        when(idempotencyKeyRepository.findByIdempotencyKey("k1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(CheckoutIdempotencyKey.builder().idempotencyKey("k1").purchaseId(7L).build()));
+        when(purchaseService.makePurchase("test@example.com", 1L, 1, "k1"))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry 'k1'"));
+        when(purchaseRepository.findById(7L)).thenReturn(Optional.of(purchase));
+
+        assertEquals(purchase, idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1));
+    }
+
+    @Test
+    @DisplayName("Peticiones concurrentes con la misma clave se ejecutan una sola vez")
+    void concurrentDuplicatesCollapse() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(idempotencyKeyRepository.findByIdempotencyKey("k1")).thenReturn(Optional.empty());
+        when(purchaseService.makePurchase("test@example.com", 1L, 1, "k1")).thenAnswer(invocation -> {
+            executing.countDown();
+            release.await(); // Mantener la primera ejecución en curso mientras llegan los duplicados
+            return purchase;
+        });
+        when(purchaseRepository.findById(7L)).thenReturn(Optional.of(purchase));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Purchase>> results = new ArrayList<>();
+        results.add(executor.submit(() -> idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1)));
+        assertTrue(executing.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            results.add(executor.submit(() -> idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1)));
+        }
+        Thread.sleep(100); // Dar tiempo a que los duplicados se queden esperando
+        release.countDown();
+
+        for (Future<Purchase> result : results) {
+            assertEquals(7L, result.get(5, TimeUnit.SECONDS).getId());
+        }
+        executor.shutdown();
+        verify(purchaseService, times(1)).makePurchase("test@example.com", 1L, 1, "k1");
+    }
+
+    @Test
+    @DisplayName("Un error en la compra se propaga y la clave no queda guardada en caché")
+    void failureIsNotCached() {
+        when(idempotencyKeyRepository.findByIdempotencyKey("k1")).thenReturn(Optional.empty());
+        when(purchaseService.makePurchase("test@example.com", 1L, 1, "k1"))
+                .thenThrow(new IllegalArgumentException("Stock insuficiente para el producto seleccionado."));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1));
+        verify(purchaseService, times(2)).makePurchase("test@example.com", 1L, 1, "k1");
+    }
+
+    @Test
+    @DisplayName("La misma clave con otra compra se rechaza (caché y base de datos)")
+    void reusedKeyWithDifferentRequestIsRejected() {
+        when(idempotencyKeyRepository.findByIdempotencyKey("k1")).thenReturn(Optional.empty());
+        when(purchaseService.makePurchase("test@example.com", 1L, 1, "k1")).thenReturn(purchase);
+        idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotentCheckoutService.makePurchase("k1", "test@example.com", 1L, 5));
+
+        when(idempotencyKeyRepository.findByIdempotencyKey("k2")).thenReturn(Optional.of(
+                CheckoutIdempotencyKey.builder().idempotencyKey("k2").purchaseId(7L)
+                        .requestHash(CheckoutIdempotencyKey.fingerprint("test@example.com", 1L, 1)).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotentCheckoutService.makePurchase("k2", "other@example.com", 1L, 1));
+        verify(purchaseService, times(1)).makePurchase(any(), any(), any(), any());
+        verify(purchaseRepository, never()).findById(any());
+    }
+
+    @Test
+    @DisplayName("Las claves caducadas se borran por lotes hasta que no queda ninguna")
+    void deleteExpiredInBatches() {
+        when(idempotencyKeyRepository.deleteCreatedBefore(any(LocalDateTime.class), eq(IdempotentCheckoutService.CLEANUP_BATCH_SIZE)))
+                .thenReturn(IdempotentCheckoutService.CLEANUP_BATCH_SIZE, 3);
+
+        assertEquals(IdempotentCheckoutService.CLEANUP_BATCH_SIZE + 3, idempotentCheckoutService.deleteExpired());
+        verify(idempotencyKeyRepository, times(2)).deleteCreatedBefore(any(LocalDateTime.class), anyInt());
+    }
+
+    @Test
+    @DisplayName("La retención no puede ser menor que la caducidad de la caché")
+    void retentionShorterThanTtlIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotentCheckoutService(purchaseService,
+                purchaseRepository, idempotencyKeyRepository, transactionManager, 100, Duration.ofHours(1),
+                Duration.ofMinutes(30), Duration.ofHours(1)));
+    }
+}
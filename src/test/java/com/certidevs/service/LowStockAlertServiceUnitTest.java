@@ -0,0 +1,89 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.LowStockAlertDTO;
+import com.certidevs.event.StockLevelChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LowStockAlertServiceUnitTest {
+
+    private final LowStockAlertService alertService =
+            new LowStockAlertService(5, Duration.ofMillis(300), Duration.ofMinutes(1));
+
+    @AfterEach
+    void tearDown() {
+        alertService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Sin cruce de umbral no hay alerta")
+    void noCrossing() {
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 20, 19, null));
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 4, 3, null));
+
+        assertTrue(alertService.getActiveAlerts().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Bajar del umbral del producto añade la alerta al panel y recuperarse la quita")
+    void boardFollowsCrossings() {
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 12, 9, 10));
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(2L, "Otro", 3, 0, null));
+
+        List<LowStockAlertDTO> alerts = alertService.getActiveAlerts();
+        assertEquals(List.of(2L, 1L), alerts.stream().map(LowStockAlertDTO::productId).toList());
+        assertEquals(LowStockAlertDTO.Level.OUT_OF_STOCK, alerts.get(0).level());
+        assertEquals(LowStockAlertDTO.Level.LOW, alerts.get(1).level());
+
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 9, 11, 10)); // Cancelación
+        assertEquals(List.of(2L), alertService.getActiveAlerts().stream().map(LowStockAlertDTO::productId).toList());
+    }
+
+    @Test
+    @DisplayName("Las alertas de un producto se agrupan: solo se envía el último estado")
+    void debounce() throws InterruptedException {
+        CapturingEmitter emitter = new CapturingEmitter();
+        alertService.register(emitter);
+
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 6, 5, null)); // LOW, sale al momento
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 5, 7, null)); // OK, agrupada
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 7, 0, null)); // OUT, sustituye a OK
+
+        assertNotNull(emitter.events.poll(1, TimeUnit.SECONDS));
+        assertNotNull(emitter.events.poll(1, TimeUnit.SECONDS)); // La agrupada, tras el debounce
+        assertNull(emitter.events.poll(500, TimeUnit.MILLISECONDS), "Solo dos envíos para tres cambios");
+    }
+
+    @Test
+    @DisplayName("Si el producto vuelve al estado ya enviado no se envía nada más")
+    void debounceSkipsUnchangedState() throws InterruptedException {
+        CapturingEmitter emitter = new CapturingEmitter();
+        alertService.register(emitter);
+
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 6, 5, null)); // LOW
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 5, 8, null)); // OK
+        alertService.onStockLevelChanged(new StockLevelChangedEvent(1L, "Producto", 8, 4, null)); // LOW otra vez
+
+        assertNotNull(emitter.events.poll(1, TimeUnit.SECONDS));
+        assertNull(emitter.events.poll(800, TimeUnit.MILLISECONDS));
+    }
+
+    private static final class CapturingEmitter extends SseEmitter {
+        private final BlockingQueue<SseEventBuilder> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            events.add(builder);
+        }
+    }
+}
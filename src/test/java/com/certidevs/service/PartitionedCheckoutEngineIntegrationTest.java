@@ -0,0 +1,128 @@
+package com.certidevs.service;
+
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.repository.ProductRepository;
+import com.certidevs.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Benchmark de compras por segundo sobre un único producto muy demandado:
+ruta transaccional de PurchaseService frente al motor particionado.
+El contexto arranca en modo transactional y el motor particionado se crea a mano en el test.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PartitionedCheckoutEngineIntegrationTest {
+
+    private static final int THREADS = 32;
+    private static final int PURCHASES_PER_THREAD = 200;
+    private static final int INITIAL_STOCK = THREADS * PURCHASES_PER_THREAD;
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DiscountEngine discountEngine;
+
+    private final List<Long> productIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        purchaseRepository.findAll().stream()
+                .filter(p -> productIds.contains(p.getProduct().getId()))
+                .forEach(purchaseRepository::delete);
+        productRepository.deleteAllById(productIds);
+    }
+
+    @Test
+    @DisplayName("Compras por segundo en un producto caliente: transaccional vs particionado")
+    void hotProductThroughput() throws Exception {
+        // Ruta transaccional actual
+        Long transactionalProductId = createProduct();
+        double transactional = measure(productId -> purchaseService.makePurchase("hot@example.com", productId, 1),
+                transactionalProductId);
+
+        // Motor particionado
+        PartitionedCheckoutEngine engine = new PartitionedCheckoutEngine(productRepository, purchaseRepository,
+                transactionManager, eventPublisher, discountEngine, "partitioned", 8, 20, 256);
+        engine.start();
+        Long partitionedProductId = createProduct();
+        double partitioned = measure(productId -> engine.checkout("hot@example.com", productId, 1),
+                partitionedProductId);
+        engine.stop(); // Vuelca las compras pendientes
+
+        System.out.printf("Producto caliente: transaccional %.0f compras/s, particionado %.0f compras/s%n",
+                transactional, partitioned);
+
+        // Tras el volcado final el stock y las compras en base de datos deben cuadrar
+        assertEquals(0, productRepository.findById(partitionedProductId).orElseThrow().getQuantity());
+        assertEquals(INITIAL_STOCK, purchaseRepository.findAll().stream()
+                .filter(p -> p.getProduct().getId().equals(partitionedProductId))
+                .count());
+    }
+
+    private Long createProduct() {
+        Product product = productRepository.save(Product.builder()
+                .name("Producto caliente")
+                .price(Money.of(10))
+                .quantity(INITIAL_STOCK)
+                .active(true)
+                .build());
+        productIds.add(product.getId());
+        return product.getId();
+    }
+
+    private double measure(Consumer<Long> checkout, Long productId) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+
+        for (int i = 0; i < THREADS; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < PURCHASES_PER_THREAD; j++) {
+                    checkout.accept(productId);
+                    completed.incrementAndGet();
+                }
+                return null;
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "Los hilos deberían terminar a tiempo");
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        assertEquals(INITIAL_STOCK, completed.get(), "Todas las compras deberían completarse");
+        return completed.get() / (elapsedNanos / 1_000_000_000.0);
+    }
+}
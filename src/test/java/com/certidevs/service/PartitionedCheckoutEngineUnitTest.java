@@ -0,0 +1,213 @@
+package com.certidevs.service;
+
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.DiscountRuleRepository;
+import com.certidevs.repository.ProductRepository;
+import com.certidevs.repository.PurchaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionedCheckoutEngineUnitTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PurchaseRepository purchaseRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private DiscountRuleRepository discountRuleRepository;
+
+    private PartitionedCheckoutEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        // Intervalo de volcado largo para que solo se vuelque al parar el motor
+        engine = new PartitionedCheckoutEngine(productRepository, purchaseRepository, transactionManager,
+                eventPublisher, new DiscountEngine(discountRuleRepository, Duration.ofMinutes(1)), // Reglas por defecto
+                "partitioned", 4, 60_000, 1000);
+        engine.start();
+    }
+
+    @Test
+    @DisplayName("Las compras se reservan en memoria y se vuelcan agrupadas al parar")
+    void checkout_flushesOnStop() {
+        Product product = Product.builder().id(1L).price(Money.of(100)).quantity(5).build();
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(productRepository.decrementStock(1L, 4)).thenReturn(1);
+
+        Purchase first = engine.checkout("a@example.com", 1L, 3);
+        Purchase second = engine.checkout("b@example.com", 1L, 1);
+
+        assertEquals(Money.of(300), first.getTotalPrice());
+        assertEquals(product, second.getProduct());
+        // El producto se carga una sola vez y no se escribe nada hasta el volcado
+        verify(productRepository, times(1)).findById(1L);
+        verifyNoInteractions(purchaseRepository);
+
+        engine.stop();
+
+        List<Purchase> saved = savedPurchases();
+        assertEquals(List.of("a@example.com", "b@example.com"), saved.stream().map(Purchase::getEmail).toList());
+        assertEquals(List.of(3, 1), saved.stream().map(Purchase::getQuantity).toList());
+        verify(productRepository).decrementStock(1L, 4); // Un único UPDATE agregado por producto
+    }
+
+    @Test
+    @DisplayName("La compra devuelta es una copia: el volcado no le asigna el id desde el hilo de la partición")
+    void checkout_returnsCopy() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(Product.builder().id(1L).price(Money.of(1)).quantity(5).build()));
+        when(productRepository.decrementStock(1L, 1)).thenReturn(1);
+        when(purchaseRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Purchase> purchases = invocation.getArgument(0);
+            purchases.forEach(purchase -> purchase.setId(99L));
+            return purchases;
+        });
+
+        Purchase accepted = engine.checkout("a@example.com", 1L, 1);
+        engine.stop();
+
+        assertNull(accepted.getId());
+        assertNotSame(accepted, savedPurchases().get(0));
+    }
+
+    @Test
+    @DisplayName("Stock modificado fuera del motor: las compras confirmadas se guardan igualmente y se informa la sobreventa")
+    void flush_neverDropsOnStockConflict() {
+        // Los productos 1 y 5 caen en la misma partición (5 % 4 = 1)
+        when(productRepository.findById(1L)).thenReturn(Optional.of(Product.builder().id(1L).price(Money.of(1)).quantity(5).build()));
+        when(productRepository.findById(5L)).thenReturn(Optional.of(Product.builder().id(5L).price(Money.of(2)).quantity(5).build()));
+        when(productRepository.decrementStock(1L, 2)).thenReturn(0); // Stock editado a mano por debajo de lo vendido
+        when(productRepository.decrementStock(5L, 1)).thenReturn(1);
+
+        engine.checkout("a@example.com", 1L, 2);
+        engine.checkout("b@example.com", 5L, 1);
+        engine.stop();
+
+        List<Purchase> saved = savedPurchases();
+        assertEquals(List.of(1L, 5L), saved.stream().map(purchase -> purchase.getProduct().getId()).toList());
+        assertEquals(1, engine.getOversoldPurchases());
+        verify(productRepository).forceDecrementStock(1L, 2);
+        verify(productRepository, never()).forceDecrementStock(eq(5L), anyInt());
+    }
+
+    @Test
+    @DisplayName("Un error al volcar no descarta las compras: se reintentan sin bloquear al resto de productos")
+    void flush_retriesFailures() {
+        PartitionedCheckoutEngine fastEngine = new PartitionedCheckoutEngine(productRepository, purchaseRepository,
+                transactionManager, eventPublisher, new DiscountEngine(discountRuleRepository, Duration.ofMinutes(1)),
+                "partitioned", 4, 1, 1000);
+        fastEngine.start();
+        when(productRepository.findById(1L)).thenReturn(Optional.of(Product.builder().id(1L).price(Money.of(1)).quantity(5).build()));
+        when(productRepository.findById(5L)).thenReturn(Optional.of(Product.builder().id(5L).price(Money.of(2)).quantity(5).build()));
+        when(productRepository.decrementStock(1L, 2))
+                .thenThrow(new IllegalStateException("Conexión perdida"))
+                .thenReturn(1);
+        when(productRepository.decrementStock(5L, 1)).thenReturn(1);
+
+        fastEngine.checkout("a@example.com", 1L, 2);
+        fastEngine.checkout("b@example.com", 5L, 1);
+
+        verify(productRepository, timeout(5_000).times(2)).decrementStock(1L, 2);
+        fastEngine.stop();
+        engine.stop();
+
+        List<Purchase> saved = savedPurchases();
+        assertEquals(2, saved.size());
+        assertEquals(1, saved.stream().filter(purchase -> purchase.getProduct().getId() == 1L).count());
+        assertEquals(0, fastEngine.getOversoldPurchases());
+    }
+
+    @Test
+    @DisplayName("Una reserva externa no puede llevarse unidades ya prometidas y el motor no vende las reservadas")
+    void reserveExternal_respectsPromisedUnits() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(Product.builder().id(1L).price(Money.of(1)).quantity(5).build()));
+        when(productRepository.decrementStock(1L, 3)).thenReturn(1);
+
+        engine.checkout("a@example.com", 1L, 3);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> engine.reserveExternal(1L, 3));
+            assertEquals("Stock insuficiente para el producto seleccionado.", exception.getMessage());
+
+            engine.reserveExternal(1L, 2);
+            assertThrows(IllegalArgumentException.class, () -> engine.checkout("b@example.com", 1L, 1));
+
+            // Al terminar la transacción externa el producto se recarga sin sus unidades (deshecha: vuelven a estar)
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        engine.checkout("b@example.com", 1L, 2);
+        assertThrows(IllegalArgumentException.class, () -> engine.checkout("c@example.com", 1L, 1));
+        verify(productRepository, times(2)).findById(1L);
+        engine.stop();
+    }
+
+    @Test
+    @DisplayName("reserveExternal necesita la transacción del llamador")
+    void reserveExternal_requiresTransaction() {
+        assertThrows(IllegalStateException.class, () -> engine.reserveExternal(1L, 1));
+        engine.stop();
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("El stock en memoria rechaza compras que lo superan")
+    void checkout_insufficientStock() {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(Product.builder().id(1L).price(Money.of(1)).quantity(2).build()));
+
+        engine.checkout("a@example.com", 1L, 2);
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> engine.checkout("b@example.com", 1L, 1));
+
+        assertEquals("Stock insuficiente para el producto seleccionado.", exception.getMessage());
+        engine.stop();
+        verify(productRepository).decrementStock(1L, 2);
+    }
+
+    @Test
+    @DisplayName("Producto no encontrado")
+    void checkout_productNotFound() {
+        when(productRepository.findById(9L)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> engine.checkout("a@example.com", 9L, 1));
+        engine.stop();
+        verifyNoInteractions(purchaseRepository);
+    }
+
+    // Compras de todas las llamadas a saveAll, en orden
+    @SuppressWarnings("unchecked")
+    private List<Purchase> savedPurchases() {
+        ArgumentCaptor<List<Purchase>> captor = ArgumentCaptor.forClass(List.class);
+        verify(purchaseRepository, atLeastOnce()).saveAll(captor.capture());
+        return captor.getAllValues().stream().flatMap(List::stream).toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.ProductPageDTO;
+import com.certidevs.dto.ProductSort;
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Recorre la lista de productos página a página con cada columna y orden, hacia delante y hacia atrás,
+contra MySQL: con valores repetidos y NULL ningún producto se repite ni se pierde entre páginas.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ProductListService.class)
+class ProductListServiceIntegrationTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductListService productListService;
+
+    private List<Long> all;
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            // Nombres, precios y cantidades repetidos, y algunos NULL
+            products.add(Product.builder()
+                    .name(i % 7 == 0 ? null : "Producto " + (i % 5))
+                    .price(i % 6 == 0 ? null : Money.of(i % 4))
+                    .quantity(i % 5 == 0 ? null : i % 3)
+                    .build());
+        }
+        all = productRepository.saveAll(products).stream().map(Product::getId).sorted().toList();
+    }
+
+    @Test
+    @DisplayName("Todas las columnas y órdenes: las páginas recorren todos los productos una vez, en los dos sentidos")
+    void walksEveryPage() {
+        for (ProductSort sort : ProductSort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                List<ProductPageDTO> pages = new ArrayList<>();
+                ProductPageDTO page = productListService.findPage(sort, descending, 5, null, null);
+                pages.add(page);
+                while (page.next() != null) {
+                    page = productListService.findPage(sort, descending, 5, page.next(), null);
+                    pages.add(page);
+                }
+                List<Long> forward = ids(pages);
+                assertEquals(all, forward.stream().sorted().toList(), sort + (descending ? " desc" : " asc"));
+                assertEquals(5, pages.size());
+
+                // Desde la última página hacia atrás se obtienen las mismas páginas
+                List<ProductPageDTO> backwards = new ArrayList<>(List.of(page));
+                while (page.previous() != null) {
+                    page = productListService.findPage(sort, descending, 5, null, page.previous());
+                    backwards.add(page);
+                }
+                Collections.reverse(backwards);
+                assertEquals(forward, ids(backwards), sort + (descending ? " desc" : " asc") + " hacia atrás");
+            }
+        }
+    }
+
+    private static List<Long> ids(List<ProductPageDTO> pages) {
+        return pages.stream().flatMap(p -> p.products().stream()).map(Product::getId).toList();
+    }
+}
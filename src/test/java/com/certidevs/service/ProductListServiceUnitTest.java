@@ -0,0 +1,130 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.ProductCursor;
+import com.certidevs.dto.ProductPageDTO;
+import com.certidevs.dto.ProductSort;
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductListServiceUnitTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private FetchableFluentQuery<Product> query;
+
+    private ProductListService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ProductListService(productRepository, 20, 100);
+    }
+
+    @Test
+    @DisplayName("Primera página: size + 1 filas indican que hay siguiente, sin página anterior")
+    void firstPage() {
+        stubQuery(products(1, 21));
+
+        ProductPageDTO page = service.findPage(ProductSort.PRICE, false, null, null, null);
+
+        assertEquals(20, page.products().size());
+        assertEquals(20, page.size());
+        assertNull(page.previous());
+        assertEquals(new ProductCursor(20L, "2000"), page.next()); // Precio en céntimos
+        verify(query).limit(21);
+        verify(query).sortBy(Sort.by(Sort.Direction.ASC, "price").and(Sort.by(Sort.Direction.ASC, "id")));
+    }
+
+    @Test
+    @DisplayName("Última página hacia delante: hay anterior y no hay siguiente")
+    void lastPage() {
+        stubQuery(products(41, 45));
+
+        ProductPageDTO page = service.findPage(ProductSort.ID, false, 20, new ProductCursor(40L, null), null);
+
+        assertEquals(List.of(41L, 42L, 43L, 44L, 45L), ids(page));
+        assertEquals(new ProductCursor(41L, null), page.previous());
+        assertNull(page.next());
+        verify(query).sortBy(Sort.by(Sort.Direction.ASC, "id"));
+    }
+
+    @Test
+    @DisplayName("Página anterior: se lee en orden inverso y se da la vuelta")
+    void previousPage() {
+        List<Product> backwards = new ArrayList<>(products(19, 30));
+        Collections.reverse(backwards); // 30, 29, ... 19: una fila de más
+        stubQuery(backwards);
+
+        ProductPageDTO page = service.findPage(ProductSort.NAME, true, 10, null, new ProductCursor(31L, "Producto 31"));
+
+        assertEquals(LongStream.rangeClosed(21, 30).boxed().toList(), ids(page));
+        assertEquals(new ProductCursor(21L, "Producto 21"), page.previous());
+        assertEquals(new ProductCursor(30L, "Producto 30"), page.next());
+        // Descendente leído al revés: ascendente
+        verify(query).sortBy(Sort.by(Sort.Direction.ASC, "name").and(Sort.by(Sort.Direction.ASC, "id")));
+    }
+
+    @Test
+    @DisplayName("El tamaño de página se limita a max-page-size")
+    void clampsPageSize() {
+        stubQuery(List.of());
+
+        ProductPageDTO page = service.findPage(ProductSort.ID, false, 10_000, null, null);
+
+        assertEquals(100, page.size());
+        assertNull(page.next());
+        verify(query).limit(101);
+    }
+
+    @Test
+    @DisplayName("Cursor no válido o en las dos direcciones: IllegalArgumentException sin consultar")
+    void rejectsInvalidCursors() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(ProductSort.PRICE, false, null, new ProductCursor(1L, "caro"), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findPage(ProductSort.ID, false, null, new ProductCursor(1L, null), new ProductCursor(2L, null)));
+        verifyNoInteractions(productRepository);
+    }
+
+    // El repositorio aplica la función de la consulta fluida sobre el mock y devuelve las filas indicadas
+    @SuppressWarnings("unchecked")
+    private void stubQuery(List<Product> rows) {
+        when(query.sortBy(any())).thenReturn(query);
+        when(query.limit(anyInt())).thenReturn(query);
+        when(query.all()).thenReturn(rows);
+        when(productRepository.findBy(any(Specification.class), any(Function.class)))
+                .thenAnswer(invocation -> invocation.<Function<FetchableFluentQuery<Product>, List<Product>>>getArgument(1).apply(query));
+    }
+
+    private static List<Product> products(long from, long to) {
+        return LongStream.rangeClosed(from, to)
+                .mapToObj(id -> Product.builder().id(id).name("Producto " + id).price(Money.of(id)).build())
+                .toList();
+    }
+
+    private static List<Long> ids(ProductPageDTO page) {
+        return page.products().stream().map(Product::getId).toList();
+    }
+}
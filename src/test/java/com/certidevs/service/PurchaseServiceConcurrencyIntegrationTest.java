@@ -0,0 +1,142 @@
+package com.certidevs.service;
+
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.repository.ProductRepository;
+import com.certidevs.repository.PurchaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+Testing de concurrencia de PurchaseService contra la base de datos real:
+varios hilos compran el mismo producto a la vez y el stock nunca debe quedar negativo.
+No es @Transactional porque cada hilo necesita su propia transacción con commit.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PurchaseServiceConcurrencyIntegrationTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    private static final int INITIAL_STOCK = 500;
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PurchaseRepository purchaseRepository;
+
+    private final List<Long> productIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        // Borrar las compras y productos creados por el test
+        purchaseRepository.findAll().stream()
+                .filter(p -> productIds.contains(p.getProduct().getId()))
+                .forEach(purchaseRepository::delete);
+        productRepository.deleteAllById(productIds);
+    }
+
+    @Test
+    @DisplayName("makePurchase con UPDATE condicionado - el stock nunca es negativo")
+    void makePurchase_concurrent() throws Exception {
+        Long productId = createProduct();
+
+        Result result = runConcurrently(() -> purchaseService.makePurchase("concurrent@example.com", productId, 3));
+
+        assertStockConsistent(productId, result);
+        System.out.printf("makePurchase (UPDATE condicionado): %d compras, %.0f compras/s%n",
+                result.successes(), result.throughput());
+    }
+
+    @Test
+    @DisplayName("makePurchaseOptimistic con @Version y reintentos - el stock nunca es negativo")
+    void makePurchaseOptimistic_concurrent() throws Exception {
+        Long productId = createProduct();
+
+        Result result = runConcurrently(() -> {
+            // Reintentar mientras otra transacción haya modificado la versión del producto
+            while (true) {
+                try {
+                    return purchaseService.makePurchaseOptimistic("concurrent@example.com", productId, 3);
+                } catch (ObjectOptimisticLockingFailureException e) {
+                    Thread.onSpinWait();
+                }
+            }
+        });
+
+        assertStockConsistent(productId, result);
+        System.out.printf("makePurchaseOptimistic (leer-modificar-guardar): %d compras, %.0f compras/s%n",
+                result.successes(), result.throughput());
+    }
+
+    private Long createProduct() {
+        Product product = productRepository.save(Product.builder()
+                .name("Producto concurrencia")
+                .price(Money.of(10))
+                .quantity(INITIAL_STOCK)
+                .active(true)
+                .build());
+        productIds.add(product.getId());
+        return product.getId();
+    }
+
+    private Result runConcurrently(Callable<?> purchase) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger rejections = new AtomicInteger();
+
+        for (int i = 0; i < THREADS; i++) {
+            executor.submit(() -> {
+                start.await(); // Todos los hilos arrancan a la vez para maximizar la contención
+                for (int j = 0; j < ATTEMPTS_PER_THREAD; j++) {
+                    try {
+                        purchase.call();
+                        successes.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejections.incrementAndGet(); // Stock insuficiente
+                    }
+                }
+                return null;
+            });
+        }
+
+        long startNanos = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES), "Los hilos deberían terminar a tiempo");
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        return new Result(successes.get(), rejections.get(),
+                (successes.get() + rejections.get()) / (elapsedNanos / 1_000_000_000.0));
+    }
+
+    private void assertStockConsistent(Long productId, Result result) {
+        Product product = productRepository.findById(productId).orElseThrow();
+
+        // 16 hilos * 50 intentos * 3 unidades = 2400 unidades pedidas sobre 500 de stock
+        assertTrue(product.getQuantity() >= 0, "El stock nunca debería ser negativo");
+        assertEquals(INITIAL_STOCK - result.successes() * 3, product.getQuantity(),
+                "Cada compra confirmada debería haber descontado exactamente 3 unidades");
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD, result.successes() + result.rejections());
+    }
+
+    private record Result(int successes, int rejections, double throughput) {
+    }
+}
@@ -1,21 +1,43 @@
 package com.certidevs.service;
 
+import com.certidevs.archive.PurchaseArchive;
+import com.certidevs.dto.CheckoutOutcome;
+import com.certidevs.dto.CheckoutRequestDTO;
+import com.certidevs.dto.PurchaseCancellationSummaryDTO;
+import com.certidevs.dto.PurchaseCursor;
+import com.certidevs.dto.PurchaseLine;
+import com.certidevs.dto.PurchaseListItemDTO;
+import com.certidevs.dto.PurchasePageDTO;
+import com.certidevs.dto.PurchaseStockRestoreDTO;
+import com.certidevs.event.StockLevelChangedEvent;
+import com.certidevs.model.CheckoutIdempotencyKey;
+import com.certidevs.model.Money;
 import com.certidevs.model.Product;
 import com.certidevs.model.Purchase;
+import com.certidevs.repository.CheckoutIdempotencyKeyRepository;
 import com.certidevs.repository.ProductRepository;
 import com.certidevs.repository.PurchaseRepository;
+import com.certidevs.stats.CheckoutMetrics;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,6 +51,27 @@ class PurchaseServiceUnitTest {
     @Mock // Mock del repositorio de Product
     private ProductRepository productRepository;
 
+    @Mock // Mock del motor de compras particionado (desactivado: isEnabled devuelve false)
+    private PartitionedCheckoutEngine checkoutEngine;
+
+    @Mock // Mock del publicador de eventos de compra
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock // Mock del repositorio de claves de idempotencia
+    private CheckoutIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock // Mock del EntityManager (desasociar compras en el recorrido en streaming)
+    private EntityManager entityManager;
+
+    @Mock // Mock de las métricas de compra
+    private CheckoutMetrics checkoutMetrics;
+
+    @Mock // Mock del archivo de compras (vacío: getArchivedBefore devuelve null)
+    private PurchaseArchive purchaseArchive;
+
+    @Spy // Motor de descuentos real con las reglas por defecto (10% a partir de 10 unidades)
+    private DiscountEngine discountEngine = new DiscountEngine(null, Duration.ofMinutes(1));
+
     @InjectMocks // Inyecta los mocks en el servicio PurchaseService
     private PurchaseService purchaseService;
 
@@ -41,7 +84,7 @@ class PurchaseServiceUnitTest {
         product = Product.builder()
                 .id(1L)
                 .name("Producto Test")
-                .price(100.0)
+                .price(Money.of(100))
                 .quantity(20)
                 .build();
 
@@ -51,7 +94,7 @@ class PurchaseServiceUnitTest {
                 .email("test@example.com")
                 .product(product)
                 .quantity(2)
-                .totalPrice(200.0)
+                .totalPrice(Money.of(200))
                 .purchaseDate(LocalDateTime.now())
                 .build();
     }
@@ -62,7 +105,7 @@ class PurchaseServiceUnitTest {
     @DisplayName("Prueba del método getPurchaseById - Compra encontrada")
     void testGetPurchaseById_Found() {
         // Configurar el mock para devolver la compra cuando se busque por ID
-        when(purchaseRepository.findById(1L)).thenReturn(Optional.of(purchase)); // Mock de findById
+        when(purchaseRepository.findWithProductById(1L)).thenReturn(Optional.of(purchase)); // Mock de findById
 
         // Ejecutar el método
         Purchase result = purchaseService.getPurchaseById(1L); // Llama al método del servicio
@@ -73,14 +116,14 @@ class PurchaseServiceUnitTest {
         assertEquals("test@example.com", result.getEmail(), "El email debería ser 'test@example.com'.");
 
         // Verificar que el método findById haya sido llamado una vez
-        verify(purchaseRepository, times(1)).findById(1L); // Verifica la interacción con el mock
+        verify(purchaseRepository, times(1)).findWithProductById(1L); // Verifica la interacción con el mock
     }
 
     @Test
     @DisplayName("Prueba del método getPurchaseById - Compra no encontrada")
     void testGetPurchaseById_NotFound() {
         // Configurar el mock para devolver vacío cuando se busque por ID
-        when(purchaseRepository.findById(1L)).thenReturn(Optional.empty()); // Mock findById vacío
+        when(purchaseRepository.findWithProductById(1L)).thenReturn(Optional.empty()); // Mock findById vacío
 
         // Ejecutar y verificar excepción
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
@@ -91,7 +134,7 @@ class PurchaseServiceUnitTest {
         assertEquals("Compra no encontrada.", exception.getMessage(), "El mensaje de la excepción debería ser 'Compra no encontrada.'.");
 
         // Verificar que el método findById haya sido llamado
-        verify(purchaseRepository).findById(1L); // Verifica interacción con el mock
+        verify(purchaseRepository).findWithProductById(1L); // Verifica interacción con el mock
     }
 
     @Test
@@ -130,6 +173,24 @@ class PurchaseServiceUnitTest {
         verify(purchaseRepository).findByEmail("test@example.com");
     }
 
+    @Test
+    @DisplayName("Prueba del método getPurchaseListByEmail - archivadas primero y después la proyección de MySQL")
+    void testGetPurchaseListByEmail() {
+        Purchase archived = Purchase.builder().id(1L).quantity(2).totalPrice(Money.of(20))
+                .purchaseDate(LocalDateTime.of(2023, 1, 10, 9, 0))
+                .product(Product.builder().id(3L).name("Teclado").build()).build();
+        PurchaseListItemDTO hot = new PurchaseListItemDTO(7L, 3L, "Teclado", 1, Money.of(10),
+                LocalDateTime.of(2025, 1, 10, 9, 0));
+        when(purchaseArchive.findByEmail("test@example.com")).thenReturn(List.of(archived));
+        when(purchaseRepository.findListItemsByEmail("test@example.com")).thenReturn(List.of(hot));
+
+        List<PurchaseListItemDTO> result = purchaseService.getPurchaseListByEmail("test@example.com");
+
+        assertEquals(List.of(new PurchaseListItemDTO(1L, 3L, "Teclado", 2, Money.of(20),
+                LocalDateTime.of(2023, 1, 10, 9, 0)), hot), result);
+        verify(purchaseRepository, never()).findByEmail(anyString()); // Sin entidades
+    }
+
     @Test
     @DisplayName("Prueba del método makePurchase - Compra con descuento")
     void testMakePurchase_WithDiscount() {
@@ -138,15 +199,15 @@ class PurchaseServiceUnitTest {
         Long productId = 1L; // ID del producto
         Integer quantity = 10; // Cantidad comprada (dispara el descuento)
 
+        // Configurar el mock para que el UPDATE condicionado reserve el stock (1 fila actualizada)
+        when(productRepository.decrementStock(productId, quantity)).thenReturn(1); // Mock decrementStock
+
         // Configurar el mock para devolver el producto cuando se busque por ID
         when(productRepository.findById(productId)).thenReturn(Optional.of(product)); // Mock findById
 
         // Configurar el mock para guardar la compra y devolver la misma compra
         when(purchaseRepository.save(any(Purchase.class))).thenAnswer(invocation -> invocation.getArgument(0)); // Mock save
 
-        // Configurar el mock para guardar el producto actualizado
-        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0)); // Mock save
-
         // Ejecutar el método
         Purchase result = purchaseService.makePurchase(email, productId, quantity);
 
@@ -155,16 +216,18 @@ class PurchaseServiceUnitTest {
         assertEquals(email, result.getEmail(), "El email de la compra debería ser 'test@example.com'.");
         assertEquals(product, result.getProduct(), "El producto de la compra debería ser igual al producto de la prueba.");
         assertEquals(quantity, result.getQuantity(), "La cantidad de la compra debería ser 10.");
-        assertEquals(900.0, result.getTotalPrice(), 0.001, "El precio total debería ser 900.0 (10 * 100 * 0.9).");
+        assertEquals(Money.of(900), result.getTotalPrice(), "El precio total debería ser 900.00 (10 * 100 * 0.9).");
         assertNotNull(result.getPurchaseDate(), "La fecha de compra no debería ser nula.");
 
-        // Verificar que el stock del producto se haya actualizado correctamente
-        assertEquals(10, product.getQuantity(), "El stock del producto debería ser 10 (20 - 10).");
-
-        // Verificar que los métodos del repositorio hayan sido llamados
+        // Verificar que el stock se haya reservado con el UPDATE condicionado y no con save del producto
+        verify(productRepository).decrementStock(productId, 10); // Verifica la reserva atómica de 10 unidades
         verify(productRepository).findById(productId); // Verifica que findById ha sido llamado
         verify(purchaseRepository).save(any(Purchase.class)); // Verifica que save de compra ha sido llamado
-        verify(productRepository).save(any(Product.class)); // Verifica que save de producto ha sido llamado
+        verify(productRepository, never()).save(any(Product.class)); // El producto no se reescribe entero
+
+        // Verificar que se registran la latencia y el pedido en las métricas
+        verify(checkoutMetrics).recordOrder(10, Money.of(900));
+        verify(checkoutMetrics).recordLatency(anyLong());
     }
 
     @Test
@@ -175,15 +238,15 @@ class PurchaseServiceUnitTest {
         Long productId = 1L;
         Integer quantity = 5; // Cantidad comprada (no dispara el descuento)
 
+        // Configurar el mock para que el UPDATE condicionado reserve el stock (1 fila actualizada)
+        when(productRepository.decrementStock(productId, quantity)).thenReturn(1); // Mock decrementStock
+
         // Configurar el mock para devolver el producto cuando se busque por ID
         when(productRepository.findById(productId)).thenReturn(Optional.of(product)); // Mock findById
 
         // Configurar el mock para guardar la compra y devolver la misma compra
         when(purchaseRepository.save(any(Purchase.class))).thenAnswer(invocation -> invocation.getArgument(0)); // Mock save
 
-        // Configurar el mock para guardar el producto actualizado
-        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0)); // Mock save
-
         // Ejecutar el método
         Purchase result = purchaseService.makePurchase(email, productId, quantity);
 
@@ -192,16 +255,14 @@ class PurchaseServiceUnitTest {
         assertEquals(email, result.getEmail(), "El email de la compra debería ser 'test@example.com'.");
         assertEquals(product, result.getProduct(), "El producto de la compra debería ser igual al producto de la prueba.");
         assertEquals(quantity, result.getQuantity(), "La cantidad de la compra debería ser igual a 5.");
-        assertEquals(500.0, result.getTotalPrice(), 0.001, "El precio total debería ser 500.0 (5 * 100).");
+        assertEquals(Money.of(500), result.getTotalPrice(), "El precio total debería ser 500.00 (5 * 100).");
         assertNotNull(result.getPurchaseDate(), "La fecha de compra no debería ser nula.");
 
-        // Verificar que el stock del producto se haya actualizado correctamente
-        assertEquals(15, product.getQuantity(), "El stock del producto debería ser 15 (20 - 5).");
-
-        // Verificar que los métodos del repositorio hayan sido llamados
+        // Verificar que el stock se haya reservado con el UPDATE condicionado y no con save del producto
+        verify(productRepository).decrementStock(productId, 5); // Verifica la reserva atómica de 5 unidades
         verify(productRepository).findById(productId); // Verifica que findById ha sido llamado
         verify(purchaseRepository).save(any(Purchase.class)); // Verifica que save de compra ha sido llamado
-        verify(productRepository).save(any(Product.class)); // Verifica que save de producto ha sido llamado
+        verify(productRepository, never()).save(any(Product.class)); // El producto no se reescribe entero
     }
 
     @Test
@@ -212,8 +273,9 @@ class PurchaseServiceUnitTest {
         Long productId = 1L;
         Integer quantity = 25; // Cantidad que excede el stock actual de 20
 
-        // Configurar el mock para devolver el producto cuando se busque por ID
-        when(productRepository.findById(productId)).thenReturn(Optional.of(product));
+        // Configurar el mock: el UPDATE condicionado no actualiza ninguna fila pero el producto existe
+        when(productRepository.decrementStock(productId, quantity)).thenReturn(0);
+        when(productRepository.existsById(productId)).thenReturn(true);
 
         // Ejecutar y verificar excepción
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
@@ -223,17 +285,167 @@ class PurchaseServiceUnitTest {
         // Verificar el mensaje de la excepción
         assertEquals("Stock insuficiente para el producto seleccionado.", exception.getMessage(), "El mensaje de la excepción debería ser 'Se debería lanzar una excepción cuando el stock es insuficiente.'.");
 
-        // Verificar que el método findById haya sido llamado pero que los métodos save no hayan sido llamados
-        verify(productRepository).findById(productId); // Verifica que findById ha sido llamado
+        // Verificar que no se haya guardado nada
+        verify(productRepository).decrementStock(productId, quantity); // Verifica que se intentó la reserva
+        verify(productRepository, never()).findById(productId); // No hace falta cargar el producto
         verify(purchaseRepository, never()).save(any(Purchase.class)); // Verifica que save de compra nunca ha sido llamado
         verify(productRepository, never()).save(any(Product.class)); // Verifica que save de producto nunca ha sido llamado
+
+        // La compra fallida cuenta en la latencia pero no como pedido
+        verify(checkoutMetrics).recordLatency(anyLong());
+        verify(checkoutMetrics, never()).recordOrder(anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Prueba del método makePurchase - Producto no encontrado")
+    void testMakePurchase_ProductNotFound() {
+        // Configurar el mock: el UPDATE no actualiza ninguna fila y el producto no existe
+        when(productRepository.decrementStock(99L, 1)).thenReturn(0);
+        when(productRepository.existsById(99L)).thenReturn(false);
+
+        // Ejecutar y verificar excepción
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> purchaseService.makePurchase("test@example.com", 99L, 1));
+
+        assertEquals("Producto no encontrado.", exception.getMessage());
+        verify(purchaseRepository, never()).save(any(Purchase.class));
+    }
+
+    @Test
+    @DisplayName("Prueba del método makePurchase con clave de idempotencia")
+    void testMakePurchase_WithIdempotencyKey() {
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(purchaseRepository.save(any(Purchase.class))).thenReturn(purchase);
+
+        Purchase result = purchaseService.makePurchase("test@example.com", 1L, 2, "clave-1");
+
+        // La clave se guarda con el id de la compra en la misma transacción
+        assertEquals(purchase, result);
+        verify(idempotencyKeyRepository).saveAndFlush(argThat((CheckoutIdempotencyKey key) ->
+                key.getIdempotencyKey().equals("clave-1") && key.getPurchaseId().equals(1L)));
+        verify(checkoutEngine, never()).checkout(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Prueba del método makePurchaseBatch - Una compra sin stock no impide las demás")
+    void testMakePurchaseBatch() {
+        when(productRepository.decrementStock(1L, 2)).thenReturn(1);
+        when(productRepository.decrementStock(1L, 25)).thenReturn(0);
+        when(productRepository.existsById(1L)).thenReturn(true);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(purchaseRepository.save(any(Purchase.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<CheckoutOutcome> outcomes = purchaseService.makePurchaseBatch(List.of(
+                new CheckoutRequestDTO("a@example.com", 1L, 2),
+                new CheckoutRequestDTO("b@example.com", 1L, 25),
+                new CheckoutRequestDTO("c@example.com", 1L, 0)));
+
+        // Un resultado por petición, en el mismo orden
+        assertEquals("a@example.com", outcomes.get(0).purchase().getEmail());
+        assertEquals("Stock insuficiente para el producto seleccionado.", outcomes.get(1).error());
+        assertEquals("La cantidad debe ser mayor que cero.", outcomes.get(2).error());
+        verify(purchaseRepository, times(1)).save(any(Purchase.class));
+        verify(checkoutMetrics, times(3)).recordLatency(anyLong());
+    }
+
+    @Test
+    @DisplayName("Prueba del método makePurchaseBatch - Cada compra ve el stock ya descontado por las anteriores")
+    void testMakePurchaseBatch_DetachesProduct() {
+        // findById lee la fila de la base de datos solo si el producto no está ya en el contexto de persistencia
+        AtomicInteger stock = new AtomicInteger(20);
+        List<Product> managed = new ArrayList<>();
+        when(productRepository.decrementStock(eq(1L), anyInt())).thenAnswer(invocation -> {
+            stock.addAndGet(-invocation.<Integer>getArgument(1));
+            return 1;
+        });
+        when(productRepository.findById(1L)).thenAnswer(invocation -> {
+            if (managed.isEmpty()) {
+                managed.add(Product.builder().id(1L).name("Producto Test").price(Money.of(100)).quantity(stock.get()).build());
+            }
+            return Optional.of(managed.get(0));
+        });
+        doAnswer(invocation -> managed.remove(invocation.getArgument(0))).when(entityManager).detach(any(Product.class));
+        when(purchaseRepository.save(any(Purchase.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        purchaseService.makePurchaseBatch(List.of(
+                new CheckoutRequestDTO("a@example.com", 1L, 8),
+                new CheckoutRequestDTO("b@example.com", 1L, 7)));
+
+        verify(eventPublisher).publishEvent(new StockLevelChangedEvent(1L, "Producto Test", 20, 12, null));
+        verify(eventPublisher).publishEvent(new StockLevelChangedEvent(1L, "Producto Test", 12, 5, null));
+        verify(entityManager, never()).refresh(any()); // Sin consultas adicionales
+    }
+
+    @Test
+    @DisplayName("Prueba del método makePurchaseOptimistic - Compra sin descuento")
+    void testMakePurchaseOptimistic() {
+        // Configurar los mocks de lectura y guardado
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        when(purchaseRepository.save(any(Purchase.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Ejecutar el método
+        Purchase result = purchaseService.makePurchaseOptimistic("test@example.com", 1L, 5);
+
+        // Verificar el resultado: el stock se modifica en la entidad y se guarda (con control de versión)
+        assertEquals(Money.of(500), result.getTotalPrice(), "El precio total debería ser 500.00 (5 * 100).");
+        assertEquals(15, product.getQuantity(), "El stock del producto debería ser 15 (20 - 5).");
+        verify(productRepository).save(product);
+        verify(productRepository, never()).decrementStock(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Prueba del método makePurchases - Cesta con varias líneas")
+    void testMakePurchases() {
+        Product product2 = Product.builder().id(2L).name("Producto 2").price(Money.of(10)).quantity(50).build();
+        List<PurchaseLine> lines = List.of(
+                new PurchaseLine(1L, 2),
+                new PurchaseLine(2L, 10),
+                new PurchaseLine(1L, 3) // Línea repetida del mismo producto
+        );
+
+        // Configurar los mocks: una sola consulta para todos los productos
+        when(productRepository.findAllById(any())).thenReturn(List.of(product, product2));
+        when(purchaseRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Ejecutar el método
+        List<Purchase> result = purchaseService.makePurchases("test@example.com", lines);
+
+        // Verificar el resultado: una compra por línea y el stock descontado por producto
+        assertEquals(3, result.size(), "Debería haber una compra por línea de la cesta.");
+        assertEquals(Money.of(200), result.get(0).getTotalPrice());
+        assertEquals(Money.of(90), result.get(1).getTotalPrice(), "10 unidades llevan el 10% de descuento.");
+        assertEquals(15, product.getQuantity(), "El stock debería ser 15 (20 - 2 - 3).");
+        assertEquals(40, product2.getQuantity(), "El stock debería ser 40 (50 - 10).");
+
+        verify(productRepository, times(1)).findAllById(any());
+        verify(purchaseRepository, times(1)).saveAll(anyList());
+        verify(productRepository, never()).findById(anyLong());
+        verify(purchaseRepository, never()).save(any(Purchase.class));
+    }
+
+    @Test
+    @DisplayName("Prueba del método makePurchases - Stock insuficiente en una línea")
+    void testMakePurchases_InsufficientStock() {
+        // 15 + 10 unidades del producto 1 superan su stock de 20
+        List<PurchaseLine> lines = List.of(new PurchaseLine(1L, 15), new PurchaseLine(1L, 10));
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> purchaseService.makePurchases("test@example.com", lines));
+
+        // No se escribe nada y el stock no cambia
+        assertEquals("Stock insuficiente para el producto seleccionado.", exception.getMessage());
+        assertEquals(20, product.getQuantity());
+        verify(purchaseRepository, never()).saveAll(anyList());
+        verify(checkoutMetrics).recordLatency(anyLong()); // La cesta rechazada también cuenta en la latencia
     }
 
     @Test
     @DisplayName("Prueba del método cancelPurchase")
     void testCancelPurchase() {
         // Configurar el mock para devolver la compra cuando se busque por ID
-        when(purchaseRepository.findById(1L)).thenReturn(Optional.of(purchase));
+        when(purchaseRepository.findWithProductById(1L)).thenReturn(Optional.of(purchase));
 
         // Ejecutar el método
         purchaseService.cancelPurchase(1L); // Llama al método del servicio
@@ -243,6 +455,45 @@ class PurchaseServiceUnitTest {
 
         // Verificar que la compra haya sido eliminada
         verify(purchaseRepository).delete(purchase); // Verifica que delete ha sido llamado
+
+        // Verificar que se avisa del nuevo nivel de stock (stock anterior y nuevo, sin consultas adicionales)
+        verify(eventPublisher).publishEvent(new StockLevelChangedEvent(
+                product.getId(), product.getName(), 20, 22, product.getLowStockThreshold()));
+    }
+
+    @Test
+    @DisplayName("Prueba del método cancelPurchases - Cancelación masiva")
+    void testCancelPurchases() {
+        List<Long> ids = List.of(1L, 2L, 3L);
+        // Compras 1 y 2 del producto 1 (5 unidades) y compra 3 del producto 2 (4 unidades)
+        when(purchaseRepository.sumQuantitiesByProduct(ids)).thenReturn(List.of(
+                new PurchaseStockRestoreDTO(1L, 5L, 2L),
+                new PurchaseStockRestoreDTO(2L, 4L, 1L)
+        ));
+        when(purchaseRepository.deleteByIdIn(ids)).thenReturn(3);
+
+        PurchaseCancellationSummaryDTO summary = purchaseService.cancelPurchases(ids);
+
+        assertEquals(3, summary.cancelledPurchases());
+        assertEquals(9, summary.restoredUnits());
+        assertEquals(5L, summary.restoredStockByProduct().get(1L));
+        // Un único UPDATE por producto y ninguna carga de entidades
+        verify(productRepository).incrementStock(1L, 5);
+        verify(productRepository).incrementStock(2L, 4);
+        verify(purchaseRepository, never()).findById(anyLong());
+        verify(purchaseRepository, never()).findWithProductById(anyLong());
+        verify(productRepository, never()).save(any(Product.class));
+    }
+
+    @Test
+    @DisplayName("Prueba del método cancelPurchases - Cancelación concurrente")
+    void testCancelPurchases_ConcurrentCancellation() {
+        List<Long> ids = List.of(1L, 2L);
+        when(purchaseRepository.sumQuantitiesByProduct(ids)).thenReturn(List.of(new PurchaseStockRestoreDTO(1L, 5L, 2L)));
+        when(purchaseRepository.deleteByIdIn(ids)).thenReturn(1); // Otra transacción ya borró una
+
+        assertThrows(IllegalStateException.class, () -> purchaseService.cancelPurchases(ids));
+        verify(productRepository, never()).incrementStock(anyLong(), anyInt());
     }
 
     @Test
@@ -251,19 +502,105 @@ class PurchaseServiceUnitTest {
         // Definir el rango de fechas para la prueba
         LocalDateTime startDate = LocalDateTime.of(2024, 1, 1, 0, 0);
         LocalDateTime endDate = LocalDateTime.of(2024, 12, 31, 23, 59);
+        Purchase second = Purchase.builder().id(2L).purchaseDate(LocalDateTime.of(2024, 6, 1, 10, 0)).build();
+        Purchase third = Purchase.builder().id(3L).purchaseDate(LocalDateTime.of(2024, 7, 1, 10, 0)).build();
+
+        // Configurar el mock: la consulta pide una fila más que el tamaño de página
+        when(purchaseRepository.findPageByPurchaseDate(eq(startDate), eq(endDate), eq(startDate), eq(0L), any()))
+                .thenReturn(List.of(purchase, second, third));
 
-//        // Configurar el mock para devolver la lista de compras dentro del rango de fechas
-//        when(purchaseRepository.findByPurchaseDateBetween(startDate, endDate)).thenReturn(Arrays.asList(purchase));
+        // Ejecutar el método
+        PurchasePageDTO result = purchaseService.getPurchasesBetweenDates(startDate, endDate, null, 2);
 
-//        // Ejecutar el método
-//        List<Purchase> result = purchaseService.getPurchasesBetweenDates(startDate, endDate); // Llama al método del servicio
+        // Verificar el resultado: dos compras y el cursor apunta a la última devuelta
+        assertEquals(List.of(purchase, second), result.purchases());
+        assertEquals(new PurchaseCursor(second.getPurchaseDate(), 2L), result.next());
+        verify(purchaseRepository).findPageByPurchaseDate(startDate, endDate, startDate, 0L, PageRequest.ofSize(3));
+    }
+
+    @Test
+    @DisplayName("Última página del historial: sin cursor siguiente")
+    void testGetPurchasesBetweenDatesLastPage() {
+        LocalDateTime startDate = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime endDate = LocalDateTime.of(2024, 12, 31, 23, 59);
+        PurchaseCursor cursor = new PurchaseCursor(LocalDateTime.of(2024, 6, 1, 10, 0), 2L);
+        when(purchaseRepository.findPageByEmailAndPurchaseDate(eq("test@example.com"), eq(startDate), eq(endDate),
+                eq(cursor.purchaseDate()), eq(2L), any())).thenReturn(List.of(purchase));
 
-//        // Verificar el resultado
-//        assertNotNull(result, "La lista no debería ser nula.");
-//        assertEquals(1, result.size(), "Debería haber una compra en la lista.");
-//        assertEquals(purchase, result.get(0), "La compra en la lista debería ser igual a la compra de prueba.");
+        PurchasePageDTO result = purchaseService.getPurchasesByEmailBetweenDates("test@example.com", startDate, endDate, cursor, 2);
+
+        assertEquals(List.of(purchase), result.purchases());
+        assertNull(result.next());
+    }
+
+    @Test
+    @DisplayName("Recorrido en streaming: cada compra se procesa y se desasocia")
+    void testForEachPurchaseBetweenDates() {
+        LocalDateTime startDate = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime endDate = LocalDateTime.of(2024, 12, 31, 23, 59);
+        when(purchaseRepository.streamByPurchaseDate(startDate, endDate)).thenReturn(Stream.of(purchase));
+
+        List<Purchase> visited = new ArrayList<>();
+        long count = purchaseService.forEachPurchaseBetweenDates(startDate, endDate, visited::add);
+
+        assertEquals(1, count);
+        assertEquals(List.of(purchase), visited);
+        verify(entityManager).detach(purchase);
+    }
+
+    @Test
+    @DisplayName("Rango de fechas inválido")
+    void testGetPurchasesBetweenDatesInvalidRange() {
+        LocalDateTime date = LocalDateTime.of(2024, 1, 1, 0, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> purchaseService.getPurchasesBetweenDates(date, date, null, 10));
+        verifyNoInteractions(purchaseRepository);
+    }
+
+    @Test
+    @DisplayName("Historial que empieza en meses archivados: la página se completa con las particiones activas")
+    void testGetPurchasesBetweenDatesAcrossArchive() {
+        LocalDateTime startDate = LocalDateTime.of(2023, 1, 1, 0, 0);
+        LocalDateTime endDate = LocalDateTime.of(2024, 12, 31, 23, 59);
+        LocalDateTime archivedBefore = LocalDateTime.of(2024, 1, 1, 0, 0);
+        Purchase archived = Purchase.builder().id(1L).purchaseDate(LocalDateTime.of(2023, 6, 1, 10, 0)).build();
+        Purchase hot = Purchase.builder().id(2L).purchaseDate(LocalDateTime.of(2024, 6, 1, 10, 0)).build();
+        PurchaseCursor first = new PurchaseCursor(startDate, 0L);
+        when(purchaseArchive.getArchivedBefore()).thenReturn(archivedBefore);
+        when(purchaseArchive.findPage(null, startDate, archivedBefore, first, 3)).thenReturn(List.of(archived));
+        when(purchaseRepository.findPageByPurchaseDate(archivedBefore, endDate, startDate, 0L, PageRequest.ofSize(2)))
+                .thenReturn(List.of(hot));
+
+        PurchasePageDTO result = purchaseService.getPurchasesBetweenDates(startDate, endDate, null, 2);
+
+        // La consulta a MySQL empieza en archivedBefore: solo lee las particiones activas del rango
+        assertEquals(List.of(archived, hot), result.purchases());
+        assertNull(result.next());
+    }
+
+    @Test
+    @DisplayName("Historial de meses archivados: no se consulta MySQL")
+    void testGetPurchasesByEmailBetweenDatesOnlyArchived() {
+        LocalDateTime startDate = LocalDateTime.of(2023, 1, 1, 0, 0);
+        LocalDateTime endDate = LocalDateTime.of(2023, 3, 1, 0, 0);
+        Purchase archived = Purchase.builder().id(1L).email("test@example.com")
+                .purchaseDate(LocalDateTime.of(2023, 2, 1, 10, 0)).build();
+        when(purchaseArchive.getArchivedBefore()).thenReturn(LocalDateTime.of(2024, 1, 1, 0, 0));
+        when(purchaseArchive.findPage(eq("test@example.com"), eq(startDate), eq(endDate), any(), eq(11)))
+                .thenReturn(List.of(archived));
+
+        PurchasePageDTO result = purchaseService.getPurchasesByEmailBetweenDates("test@example.com", startDate, endDate, null, 10);
+
+        assertEquals(List.of(archived), result.purchases());
+        verifyNoInteractions(purchaseRepository);
+    }
+
+    @Test
+    @DisplayName("Compra por id: si no está en MySQL se busca en el archivo")
+    void testGetPurchaseByIdArchived() {
+        when(purchaseRepository.findWithProductById(1L)).thenReturn(Optional.empty());
+        when(purchaseArchive.findById(1L)).thenReturn(Optional.of(purchase));
 
-        // Verificar que el método findByPurchaseDateBetween haya sido llamado con las fechas correctas
-//        verify(purchaseRepository).findByPurchaseDateBetween(startDate, endDate);
+        assertSame(purchase, purchaseService.getPurchaseById(1L));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.certidevs.service;
+
+import com.certidevs.archive.PurchaseArchive;
+import com.certidevs.dto.PurchaseCancellationSummaryDTO;
+import com.certidevs.dto.PurchaseProductDTO;
+import com.certidevs.event.PurchaseCancelledEvent;
+import com.certidevs.event.PurchasesCancelledEvent;
+import com.certidevs.model.Manufacturer;
+import com.certidevs.model.Money;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import com.certidevs.repository.DailyManufacturerRevenueRepository;
+import com.certidevs.repository.DailyProductRevenueRepository;
+import com.certidevs.repository.ProductRepository;
+import com.certidevs.service.RevenueRollupService.RevenueDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RevenueRollupServiceUnitTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 15, 10, 0);
+    private static final Clock CLOCK = Clock.fixed(NOW.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 14);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PurchaseArchive purchaseArchive;
+
+    @Mock
+    private DailyProductRevenueRepository productRevenueRepository;
+
+    @Mock
+    private DailyManufacturerRevenueRepository manufacturerRevenueRepository;
+
+    private RevenueRollupService rollupService;
+
+    @BeforeEach
+    void setUp() {
+        rollupService = new RevenueRollupService(jdbcTemplate, transactionManager, productRepository, purchaseArchive,
+                productRevenueRepository, manufacturerRevenueRepository, true, Duration.ofMinutes(1),
+                Duration.ofMinutes(1), 100, 2, false, CLOCK);
+    }
+
+    @Test
+    @DisplayName("Las compras asentadas desde la marca de agua se suman por producto y por fabricante")
+    void rollsUpFromWatermark() {
+        when(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), any())).thenReturn(List.of(5L), List.of(12L));
+        when(jdbcTemplate.queryForObject(contains("MIN(id)"), eq(Long.class), any(), any())).thenReturn(20L);
+        when(jdbcTemplate.queryForObject(contains("MAX(id)"), eq(Long.class), any(), any(), any())).thenReturn(12L, (Long) null);
+        doReturn(List.of(
+                new RevenueDelta(DAY, 1L, 7L, 3_000, 3, 2),
+                new RevenueDelta(DAY, 2L, 7L, 1_000, 1, 1),
+                new RevenueDelta(DAY, 3L, null, 500, 1, 1)))
+                .when(jdbcTemplate).query(contains("GROUP BY"), any(RowMapper.class), eq(5L), eq(12L));
+
+        assertEquals(4, rollupService.rollUp());
+
+        // Solo hasta la primera compra sin asentar (id 20), en bloques de batch-size
+        verify(jdbcTemplate).queryForObject(contains("MIN(id)"), eq(Long.class), eq(NOW.minusMinutes(1)), eq(5L));
+        verify(jdbcTemplate).queryForObject(contains("MAX(id)"), eq(Long.class), eq(5L), eq(20L), eq(100));
+        assertEquals(List.of(
+                List.of(DAY, 1L, 3_000L, 3L, 2L),
+                List.of(DAY, 2L, 1_000L, 1L, 1L),
+                List.of(DAY, 3L, 500L, 1L, 1L)), batch("daily_product_revenue"));
+        assertEquals(List.of(List.of(DAY, 7L, 4_000L, 4L, 3L)), batch("daily_manufacturer_revenue"));
+        verify(jdbcTemplate).update(contains("UPDATE rollup_watermark"), eq(12L), eq(NOW), eq(RevenueRollupService.WATERMARK));
+    }
+
+    @Test
+    @DisplayName("Sin compras asentadas nuevas no se escribe nada")
+    void nothingToRollUp() {
+        when(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), any())).thenReturn(List.of(12L));
+        when(jdbcTemplate.queryForObject(contains("MIN(id)"), eq(Long.class), any(), any())).thenReturn(13L);
+
+        assertEquals(0, rollupService.rollUp());
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verify(jdbcTemplate, never()).update(contains("UPDATE rollup_watermark"), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Cancelación masiva: se restan agrupadas solo las compras ya sumadas")
+    void bulkCancellationDeltas() {
+        when(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), any())).thenReturn(List.of(10L));
+        Product product = Product.builder().id(1L).manufacturer(Manufacturer.builder().id(7L).build()).build();
+        when(productRepository.findAllById(any())).thenReturn(List.of(product));
+        LocalDateTime date = DAY.atTime(9, 0);
+
+        rollupService.onPurchasesCancelled(new PurchasesCancelledEvent(List.of(8L, 9L, 11L), List.of("a@example.com"),
+                List.of(new PurchaseProductDTO(8L, 1L, 2, Money.of(20), date),
+                        new PurchaseProductDTO(9L, 1L, 1, Money.of(10), date.plusHours(1)),
+                        new PurchaseProductDTO(11L, 2L, 5, Money.of(50), date)), // Aún no sumada
+                new PurchaseCancellationSummaryDTO(3, 8, Map.of())));
+
+        assertEquals(List.of(List.of(DAY, 1L, -3_000L, -3L, -2L)), batch("daily_product_revenue"));
+        assertEquals(List.of(List.of(DAY, 7L, -3_000L, -3L, -2L)), batch("daily_manufacturer_revenue"));
+    }
+
+    @Test
+    @DisplayName("Cancelación de una compra posterior a la marca de agua: no hay nada que restar")
+    void cancellationAfterWatermark() {
+        when(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), any())).thenReturn(List.of(10L));
+        Purchase purchase = Purchase.builder().id(11L).quantity(1).totalPrice(Money.of(10))
+                .purchaseDate(DAY.atTime(9, 0)).product(Product.builder().id(1L).build()).build();
+
+        rollupService.onPurchaseCancelled(new PurchaseCancelledEvent(purchase));
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Backfill: un mes por tarea, sin tocar los días de meses archivados")
+    void backfillByMonth() {
+        when(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Long.class), any())).thenReturn(List.of(12L));
+        when(jdbcTemplate.queryForObject(contains("MIN(id)"), eq(Long.class), any(), any())).thenReturn(null);
+        when(jdbcTemplate.queryForObject(contains("MAX(id)"), eq(Long.class), any(), any(), any())).thenReturn(null);
+        when(jdbcTemplate.queryForObject(contains("MIN(purchase_date)"), eq(LocalDateTime.class)))
+                .thenReturn(LocalDateTime.of(2025, 1, 20, 9, 30));
+        when(purchaseArchive.getArchivedBefore()).thenReturn(LocalDateTime.of(2025, 2, 1, 0, 0));
+        when(jdbcTemplate.queryForObject(contains("FOR SHARE"), eq(Long.class), any())).thenReturn(12L);
+        doReturn(List.of(new RevenueDelta(DAY, 1L, null, 1_000, 1, 1)))
+                .when(jdbcTemplate).query(contains("GROUP BY"), any(RowMapper.class), any(), any(), any());
+
+        assertEquals(2, rollupService.backfill());
+
+        verify(jdbcTemplate).update(contains("DELETE FROM daily_product_revenue"),
+                eq(LocalDate.of(2025, 2, 1)), eq(LocalDate.of(2025, 2, 28)));
+        verify(jdbcTemplate).update(contains("DELETE FROM daily_product_revenue"),
+                eq(LocalDate.of(2025, 3, 1)), eq(LocalDate.of(2025, 3, 15)));
+        verify(jdbcTemplate).query(contains("GROUP BY"), any(RowMapper.class),
+                eq(LocalDateTime.of(2025, 3, 1, 0, 0)), eq(LocalDateTime.of(2025, 3, 16, 0, 0)), eq(12L));
+        verify(jdbcTemplate, times(2)).update(contains("DELETE FROM daily_manufacturer_revenue"),
+                any(LocalDate.class), any(LocalDate.class));
+    }
+
+    @Test
+    @DisplayName("Informes: rango de días invertido")
+    void invalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> rollupService.getDailyRevenue(DAY, DAY.minusDays(1)));
+        verifyNoInteractions(productRevenueRepository);
+    }
+
+    // Filas del último lote enviado a la tabla indicada
+    @SuppressWarnings("unchecked")
+    private List<List<Object>> batch(String table) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(contains("INSERT INTO " + table), rows.capture());
+        return rows.getValue().stream().map(List::of).toList();
+    }
+}
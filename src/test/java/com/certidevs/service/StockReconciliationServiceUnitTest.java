@@ -0,0 +1,164 @@
+package com.certidevs.service;
+
+import com.certidevs.dto.StockReconciliationDTO;
+import com.certidevs.service.StockReconciliationService.StockRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReconciliationServiceUnitTest {
+
+    private static final Clock CLOCK = Clock.fixed(
+            LocalDateTime.of(2025, 3, 15, 10, 0).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+
+    @TempDir
+    private Path directory;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CartReservationService cartReservationService;
+
+    @Mock
+    private PartitionedCheckoutEngine checkoutEngine;
+
+    private StockReconciliationService service(int chunkSize, Duration timeBudget) {
+        return new StockReconciliationService(jdbcTemplate, transactionManager, cartReservationService, checkoutEngine,
+                4, chunkSize, timeBudget, directory.toString(), false, Duration.ofDays(1), false, CLOCK);
+    }
+
+    @Test
+    @DisplayName("Descuadres: se informan, se corrigen con un lote de UPDATE y los productos nuevos toman stock recibido")
+    void reportsAndCorrectsDrift() throws IOException {
+        when(jdbcTemplate.queryForMap(contains("FROM product"))).thenReturn(Map.of("min_id", 1L, "max_id", 4L));
+        when(cartReservationService.getReservedQuantities()).thenReturn(Map.of(4L, 2L));
+        doReturn(List.of(
+                new StockRow(1, "Nuevo", 10, null, 3, 0), // Sin stock recibido
+                new StockRow(2, "Cuadrado", 7, 10L, 3, 0),
+                new StockRow(3, "Editado, a mano", 12, 10L, 3, 0), // 5 de más
+                new StockRow(4, "Reservado", 3, 10L, 3, 0))) // Esperado 10 - 3 - 2 = 5
+                .when(jdbcTemplate).query(contains("FROM product pr"), any(RowMapper.class), any(), any(), any(), any(), any(), any());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        StockReconciliationDTO result = service(10, Duration.ofMinutes(1)).reconcile(true);
+
+        assertEquals(4, result.productsChecked());
+        assertEquals(1, result.baselinesCreated());
+        assertEquals(2, result.driftedProducts());
+        assertEquals(7, result.driftUnits());
+        assertEquals(1, result.corrected()); // El producto con reservas no se corrige
+        assertTrue(result.completed());
+
+        assertEquals(List.of(List.of(1L, 13L)), batchRows("INSERT IGNORE INTO product_stock_baseline", 2));
+        assertEquals(List.of(List.of(-5L, 3L, -5L)), batchRows("UPDATE product", 3));
+        verify(checkoutEngine).reserveExternal(3L, 5); // La bajada se aparta antes en el motor particionado
+        verify(checkoutEngine, never()).invalidate(anyLong());
+        assertEquals(List.of(
+                "product_id,name,quantity,expected,drift,corrected",
+                "3,\"Editado, a mano\",12,7,5,true",
+                "4,\"Reservado\",3,5,-2,false"), Files.readAllLines(Path.of(result.report())));
+    }
+
+    @Test
+    @DisplayName("No se corrige una bajada de stock que el motor particionado ya tiene comprometida")
+    void skipsCorrectionPromisedByEngine() {
+        when(jdbcTemplate.queryForMap(contains("FROM product"))).thenReturn(Map.of("min_id", 1L, "max_id", 1L));
+        doReturn(List.of(new StockRow(1, "Editado", 12, 10L, 3, 0)))
+                .when(jdbcTemplate).query(contains("FROM product pr"), any(RowMapper.class), any(), any(), any(), any(), any(), any());
+        doThrow(new IllegalArgumentException("Stock insuficiente para el producto seleccionado."))
+                .when(checkoutEngine).reserveExternal(1L, 5);
+
+        StockReconciliationDTO result = service(10, Duration.ofMinutes(1)).reconcile(true);
+
+        assertEquals(1, result.driftedProducts());
+        assertEquals(0, result.corrected());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Sin corrección solo se escribe el informe")
+    void reportOnly() {
+        when(jdbcTemplate.queryForMap(contains("FROM product"))).thenReturn(Map.of("min_id", 1L, "max_id", 1L));
+        doReturn(List.of(new StockRow(1, "Editado", 12, 10L, 3, 0)))
+                .when(jdbcTemplate).query(contains("FROM product pr"), any(RowMapper.class), any(), any(), any(), any(), any(), any());
+
+        StockReconciliationDTO result = service(10, Duration.ofMinutes(1)).reconcile(false);
+
+        assertEquals(1, result.driftedProducts());
+        assertEquals(0, result.corrected());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Catálogo de 1M de productos: trozos de chunk-size ids en paralelo dentro del tiempo")
+    void millionProducts() {
+        when(jdbcTemplate.queryForMap(contains("FROM product"))).thenReturn(Map.of("min_id", 1L, "max_id", 1_000_000L));
+        AtomicLong largestChunk = new AtomicLong();
+        doAnswer(invocation -> {
+            long from = invocation.getArgument(6);
+            long to = invocation.getArgument(7);
+            List<StockRow> rows = new ArrayList<>((int) (to - from + 1));
+            for (long id = from; id <= to; id++) {
+                // Uno de cada mil productos tiene una unidad de más
+                rows.add(new StockRow(id, "Producto " + id, id % 1000 == 0 ? 8 : 7, 10L, 3, 0));
+            }
+            largestChunk.accumulateAndGet(rows.size(), Math::max);
+            return rows;
+        }).when(jdbcTemplate).query(contains("FROM product pr"), any(RowMapper.class), any(), any(), any(), any(), any(), any());
+
+        StockReconciliationDTO result = service(5_000, Duration.ofSeconds(30)).reconcile(false);
+
+        assertTrue(result.completed());
+        assertEquals(1_000_000, result.productsChecked());
+        assertEquals(1_000, result.driftedProducts());
+        assertTrue(largestChunk.get() <= 5_000, "Trozo de " + largestChunk.get() + " productos");
+        assertTrue(result.elapsedMillis() < 30_000, result.elapsedMillis() + " ms");
+    }
+
+    @Test
+    @DisplayName("Tiempo agotado: los trozos pendientes no se revisan y el resultado queda incompleto")
+    void timeBudgetExceeded() {
+        when(jdbcTemplate.queryForMap(contains("FROM product"))).thenReturn(Map.of("min_id", 1L, "max_id", 100L));
+
+        StockReconciliationDTO result = service(10, Duration.ZERO).reconcile(false);
+
+        assertFalse(result.completed());
+        assertEquals(0, result.productsChecked());
+    }
+
+    // Filas del lote enviado con la sentencia indicada (las primeras columnas de cada fila)
+    @SuppressWarnings("unchecked")
+    private List<List<Object>> batchRows(String sql, int columns) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains(sql), rows.capture());
+        return rows.getValue().stream().map(row -> List.of(row).subList(0, columns)).toList();
+    }
+}
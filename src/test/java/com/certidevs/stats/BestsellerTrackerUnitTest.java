@@ -0,0 +1,53 @@
+package com.certidevs.stats;
+
+import com.certidevs.dto.BestsellerDTO;
+import com.certidevs.event.PurchaseCreatedEvent;
+import com.certidevs.model.Product;
+import com.certidevs.model.Purchase;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BestsellerTrackerUnitTest {
+
+    private static final long HOUR = 60 * 60_000L;
+
+    private final BestsellerTracker tracker = new BestsellerTracker(4, 16);
+
+    @Test
+    @DisplayName("Cada ventana solo cuenta las ventas de su periodo")
+    void windows() {
+        long now = 1_000 * HOUR;
+        tracker.record(1, 10, now - 3 * HOUR); // Fuera de la última hora
+        tracker.record(2, 5, now - 2 * 24 * HOUR); // Fuera de las últimas 24 horas
+        tracker.record(3, 1, now);
+
+        assertEquals(List.of(3L), productIds(tracker.getBestsellers(BestsellerWindow.LAST_HOUR, 10, now)));
+        assertEquals(List.of(1L, 3L), productIds(tracker.getBestsellers(BestsellerWindow.LAST_DAY, 10, now)));
+        assertEquals(List.of(1L, 2L, 3L), productIds(tracker.getBestsellers(BestsellerWindow.LAST_WEEK, 10, now)));
+    }
+
+    @Test
+    @DisplayName("Las compras confirmadas suman sus unidades")
+    void purchaseCreated() {
+        Purchase purchase = Purchase.builder().id(1L).quantity(4).product(Product.builder().id(9L).build()).build();
+
+        tracker.onPurchaseCreated(new PurchaseCreatedEvent(purchase));
+        tracker.onPurchaseCreated(new PurchaseCreatedEvent(purchase));
+
+        assertEquals(List.of(new BestsellerDTO(9L, 8, 0)), tracker.getBestsellers(BestsellerWindow.LAST_HOUR, 5));
+    }
+
+    @Test
+    @DisplayName("Ventana desconocida")
+    void unknownWindow() {
+        assertThrows(IllegalArgumentException.class, () -> BestsellerWindow.fromCode("30d"));
+    }
+
+    private static List<Long> productIds(List<BestsellerDTO> bestsellers) {
+        return bestsellers.stream().map(BestsellerDTO::productId).toList();
+    }
+}
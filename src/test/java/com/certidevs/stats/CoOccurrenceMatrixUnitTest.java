@@ -0,0 +1,92 @@
+package com.certidevs.stats;
+
+import com.certidevs.stats.CoOccurrenceMatrix.Related;
+import com.certidevs.stats.CoOccurrenceMatrix.RelatedProducts;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoOccurrenceMatrixUnitTest {
+
+    @Test
+    @DisplayName("Las parejas se cuentan en las dos filas y los k mejores salen ordenados (a igualdad, id menor)")
+    void topK() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(4);
+        matrix.addBuyer(1);
+        matrix.addBuyer(1);
+        matrix.addPair(1, 2);
+        matrix.addPair(1, 3);
+        matrix.addPair(1, 3);
+        matrix.addPair(1, 4);
+        matrix.addPair(1, 5);
+        matrix.addPair(1, 5);
+
+        RelatedProducts related = matrix.topK(1, 3);
+
+        assertEquals(2, related.buyers());
+        assertEquals(List.of(new Related(3, 2), new Related(5, 2), new Related(2, 1)), related.related());
+        assertEquals(List.of(new Related(1, 2)), matrix.topK(5, 3).related());
+        assertEquals(1, matrix.getCount(4, 1));
+        assertEquals(new RelatedProducts(0, List.of()), matrix.topK(99, 3));
+    }
+
+    @Test
+    @DisplayName("Las filas y las franjas crecen sin perder cuentas")
+    void growth() {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(2);
+        for (long other = 2; other <= 5_000; other++) {
+            for (int i = 0; i <= other % 7; i++) {
+                matrix.addPair(1, other);
+            }
+        }
+
+        assertEquals(5_000, matrix.getProductCount());
+        assertEquals(2, matrix.getCount(1, 4_999)); // 4999 % 7 = 1
+        assertEquals(2, matrix.getCount(4_999, 1));
+        assertEquals(List.of(new Related(6, 7), new Related(13, 7)), matrix.topK(1, 2).related());
+    }
+
+    @Test
+    @DisplayName("Parejas desde varios hilos a la vez: no se pierde ningún incremento")
+    void concurrentPairs() throws Exception {
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (long product = 1; product <= 1_000; product++) {
+                        matrix.addBuyer(product);
+                        matrix.addPair(product, product % 10 + 1_001);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(4, matrix.getBuyers(500));
+        assertEquals(4, matrix.getCount(500, 1_001)); // 500 % 10 + 1001
+        assertEquals(4, matrix.getCount(1_001, 500));
+        assertEquals(100, matrix.topK(1_001, 1_000).related().size()); // 10, 20, ..., 1000
+    }
+
+    @Test
+    @DisplayName("Franjas que no son potencia de dos y parejas de un producto consigo mismo")
+    void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new CoOccurrenceMatrix(3));
+        CoOccurrenceMatrix matrix = new CoOccurrenceMatrix(4);
+        assertThrows(IllegalArgumentException.class, () -> matrix.addPair(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> matrix.topK(1, 0));
+    }
+}
@@ -0,0 +1,120 @@
+package com.certidevs.stats;
+
+import com.certidevs.dto.DistinctBuyersDTO;
+import com.certidevs.model.ProductDailyBuyers;
+import com.certidevs.repository.ProductDailyBuyersRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DistinctBuyersServiceUnitTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2024, 6, 3);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    @Mock
+    private ProductDailyBuyersRepository buyersRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DistinctBuyersService distinctBuyersService;
+
+    @BeforeEach
+    void setUp() {
+        distinctBuyersService = new DistinctBuyersService(buyersRepository, transactionManager,
+                Duration.ofHours(1), 100, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        distinctBuyersService.shutdown();
+    }
+
+    @Test
+    @DisplayName("Une los sketches guardados y los pendientes de varios días y productos")
+    void countMergesStoredAndPending() {
+        HyperLogLog stored = new HyperLogLog();
+        stored.add("a@example.com");
+        stored.add("b@example.com");
+        when(buyersRepository.findByProductIdInAndDayBetween(anyCollection(), eq(MONDAY), eq(TUESDAY))).thenReturn(List.of(
+                ProductDailyBuyers.builder().productId(1L).day(MONDAY).sketch(stored.toBytes()).build()));
+
+        distinctBuyersService.record(2L, TUESDAY, "b@example.com"); // Repetido en otro producto y día
+        distinctBuyersService.record(2L, TUESDAY, "c@example.com");
+
+        DistinctBuyersDTO result = distinctBuyersService.countDistinctBuyers(List.of(1L, 2L), MONDAY, TUESDAY);
+
+        assertEquals(3, result.distinctBuyers());
+    }
+
+    @Test
+    @DisplayName("Una consulta repetida sale de la caché")
+    void repeatedQueryIsCached() {
+        when(buyersRepository.findByProductIdInAndDayBetween(anyCollection(), any(), any())).thenReturn(List.of());
+
+        distinctBuyersService.countDistinctBuyers(List.of(1L), MONDAY, TUESDAY);
+        distinctBuyersService.countDistinctBuyers(List.of(1L), MONDAY, TUESDAY);
+
+        verify(buyersRepository, times(1)).findByProductIdInAndDayBetween(anyCollection(), any(), any());
+    }
+
+    @Test
+    @DisplayName("El flush fusiona los pendientes con el sketch guardado")
+    @SuppressWarnings("unchecked")
+    void flushMergesIntoStoredSketch() {
+        HyperLogLog stored = new HyperLogLog();
+        stored.add("a@example.com");
+        ProductDailyBuyers row = ProductDailyBuyers.builder().id(5L).productId(1L).day(MONDAY).sketch(stored.toBytes()).build();
+        when(buyersRepository.findByProductIdInAndDayBetween(anyCollection(), eq(MONDAY), eq(MONDAY))).thenReturn(List.of(row));
+
+        distinctBuyersService.record(1L, MONDAY, "a@example.com");
+        distinctBuyersService.record(1L, MONDAY, "b@example.com");
+        distinctBuyersService.flush();
+
+        ArgumentCaptor<List<ProductDailyBuyers>> saved = ArgumentCaptor.forClass(List.class);
+        verify(buyersRepository).saveAll(saved.capture());
+        assertEquals(2, HyperLogLog.fromBytes(saved.getValue().get(0).getSketch()).estimate());
+
+        // Ya está en la caché: la consulta no vuelve a la base de datos
+        assertEquals(2, distinctBuyersService.countDistinctBuyers(List.of(1L), MONDAY, MONDAY).distinctBuyers());
+        verify(buyersRepository, times(1)).findByProductIdInAndDayBetween(anyCollection(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Si el flush falla los sketches vuelven a pendientes")
+    void failedFlushKeepsPending() {
+        when(buyersRepository.findByProductIdInAndDayBetween(anyCollection(), any(), any())).thenReturn(List.of());
+        when(buyersRepository.saveAll(anyList())).thenThrow(new OptimisticLockingFailureException("conflicto"));
+
+        distinctBuyersService.record(1L, MONDAY, "a@example.com");
+        assertThrows(OptimisticLockingFailureException.class, () -> distinctBuyersService.flush());
+
+        assertEquals(1, distinctBuyersService.countDistinctBuyers(List.of(1L), MONDAY, MONDAY).distinctBuyers());
+    }
+
+    @Test
+    @DisplayName("Rango de fechas inválido")
+    void invalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> distinctBuyersService.countDistinctBuyers(List.of(1L), TUESDAY, MONDAY));
+        assertThrows(IllegalArgumentException.class,
+                () -> distinctBuyersService.countDistinctBuyers(List.of(), MONDAY, TUESDAY));
+    }
+}
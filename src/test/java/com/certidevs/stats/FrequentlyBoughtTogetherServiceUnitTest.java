@@ -0,0 +1,138 @@
+package com.certidevs.stats;
+
+import com.certidevs.dto.RelatedProductDTO;
+import com.certidevs.stats.FrequentlyBoughtTogetherService.EmailProduct;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FrequentlyBoughtTogetherServiceUnitTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private FrequentlyBoughtTogetherService service(int maxBasketProducts) {
+        return new FrequentlyBoughtTogetherService(jdbcTemplate, 4, maxBasketProducts, 100, 2, 2,
+                Duration.ofHours(1), true);
+    }
+
+    // Primera compra (id) de cada producto del cliente
+    private void firstPurchases(long[]... rows) {
+        doReturn(List.of(rows)).when(jdbcTemplate).query(contains("MIN(id)"), any(RowMapper.class), eq("a@example.com"));
+    }
+
+    @Test
+    @DisplayName("La primera compra de un producto forma pareja con los productos comprados antes")
+    void firstPurchaseOfProduct() {
+        FrequentlyBoughtTogetherService service = service(200);
+        firstPurchases(new long[]{1, 10}, new long[]{2, 11}, new long[]{3, 12});
+
+        service.update("a@example.com", 2, 11);
+        service.update("a@example.com", 3, 12);
+
+        assertEquals(List.of(new RelatedProductDTO(1L, 1, 1.0), new RelatedProductDTO(2L, 1, 1.0)),
+                service.getRelated(3, 5));
+        assertEquals(List.of(new RelatedProductDTO(1L, 1, 1.0), new RelatedProductDTO(3L, 1, 1.0)),
+                service.getRelated(2, 5));
+        // La compra 10 es anterior al seguimiento: el producto 1 no tiene compradores, pero la confianza no pasa de 1
+        assertEquals(List.of(new RelatedProductDTO(2L, 1, 1.0), new RelatedProductDTO(3L, 1, 1.0)),
+                service.getRelated(1, 5));
+    }
+
+    @Test
+    @DisplayName("Repetir la compra de un producto no vuelve a contar al cliente")
+    void repeatedPurchase() {
+        FrequentlyBoughtTogetherService service = service(200);
+        firstPurchases(new long[]{1, 10}, new long[]{2, 11});
+
+        service.update("a@example.com", 2, 11);
+        service.update("a@example.com", 2, 15); // Segunda compra del producto 2
+
+        assertEquals(List.of(new RelatedProductDTO(1L, 1, 1.0)), service.getRelated(2, 5));
+    }
+
+    @Test
+    @DisplayName("Reconstrucción en paralelo por bloques de emails hasta la mayor id al empezar")
+    void rebuild() {
+        FrequentlyBoughtTogetherService service = service(2);
+        when(jdbcTemplate.queryForObject(contains("MAX(id)"), eq(Long.class))).thenReturn(100L);
+        when(jdbcTemplate.queryForList(contains("SELECT DISTINCT email"), eq(String.class), anyString(), eq(2)))
+                .thenReturn(List.of("a@example.com", "b@example.com"), List.of("c@example.com", "d@example.com"), List.of());
+        doAnswer(invocation -> switch ((String) invocation.getArgument(2)) {
+            case "a@example.com" -> rows("a@example.com", 1, 2, "b@example.com", 1, 3);
+            default -> rows("c@example.com", 1, 2, "d@example.com", 1, 2, 3); // d: más de 2 productos, sin parejas
+        }).when(jdbcTemplate).query(contains("DISTINCT email, product_id"), any(RowMapper.class), anyString(), anyString(), eq(100L));
+
+        assertEquals(4, service.rebuild());
+
+        assertEquals(List.of(new RelatedProductDTO(2L, 2, 0.5), new RelatedProductDTO(3L, 1, 0.25)),
+                service.getRelated(1, 5));
+        verify(jdbcTemplate).queryForList(anyString(), eq(String.class), eq("b@example.com"), eq(2));
+    }
+
+    @Test
+    @DisplayName("Las compras que llegan durante la reconstrucción se aplican también a la matriz nueva")
+    void updatesDuringRebuild() {
+        FrequentlyBoughtTogetherService service = service(200);
+        firstPurchases(new long[]{1, 50}, new long[]{2, 101});
+        when(jdbcTemplate.queryForObject(contains("MAX(id)"), eq(Long.class))).thenReturn(100L);
+        when(jdbcTemplate.queryForList(contains("SELECT DISTINCT email"), eq(String.class), anyString(), anyInt()))
+                .thenReturn(List.of("a@example.com"), List.of());
+        doAnswer(invocation -> {
+            service.update("a@example.com", 2, 101); // Confirmada mientras se lee el bloque
+            return rows("a@example.com", 1);
+        }).when(jdbcTemplate).query(contains("DISTINCT email, product_id"), any(RowMapper.class), anyString(), anyString(), anyLong());
+
+        service.rebuild();
+
+        assertEquals(List.of(new RelatedProductDTO(2L, 1, 1.0)), service.getRelated(1, 5));
+        assertEquals(List.of(new RelatedProductDTO(1L, 1, 1.0)), service.getRelated(2, 5));
+    }
+
+    @Test
+    @DisplayName("Servir los relacionados de un producto con 10.000 parejas: microsegundos y sin consultas")
+    void servingIsFast() {
+        FrequentlyBoughtTogetherService service = service(20_000);
+        long[][] rows = new long[10_001][];
+        for (int i = 0; i <= 10_000; i++) {
+            rows[i] = new long[]{i + 1, i + 1};
+        }
+        firstPurchases(rows);
+        service.update("a@example.com", 10_001, 10_001);
+        clearInvocations(jdbcTemplate);
+
+        int calls = 10_000;
+        long started = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            assertEquals(5, service.getRelated(10_001, 5).size());
+        }
+        long micros = (System.nanoTime() - started) / 1_000 / calls;
+
+        assertTrue(micros < 1_000, micros + " µs por consulta");
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    // Filas (email, producto) ordenadas por email: cada email va seguido de sus productos
+    private static List<EmailProduct> rows(Object... emailsAndProducts) {
+        List<EmailProduct> rows = new ArrayList<>();
+        String email = null;
+        for (Object value : emailsAndProducts) {
+            if (value instanceof String text) email = text;
+            else rows.add(new EmailProduct(email, ((Number) value).longValue()));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,63 @@
+package com.certidevs.stats;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogUnitTest {
+
+    @Test
+    @DisplayName("Pocos elementos: estimación exacta o casi (linear counting)")
+    void smallCardinality() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.add("buyer" + i + "@example.com");
+            sketch.add("buyer" + i + "@example.com"); // Repetidos no cuentan
+        }
+        assertEquals(100, sketch.estimate(), 2);
+    }
+
+    @Test
+    @DisplayName("Muchos elementos: error dentro de tres errores estándar")
+    void largeCardinality() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.add("buyer" + i + "@example.com");
+        }
+        assertEquals(1_000_000, sketch.estimate(), 1_000_000 * 3 * HyperLogLog.STANDARD_ERROR);
+    }
+
+    @Test
+    @DisplayName("La fusión estima la unión sin contar dos veces los comunes")
+    void merge() {
+        HyperLogLog monday = new HyperLogLog();
+        HyperLogLog tuesday = new HyperLogLog();
+        for (int i = 0; i < 10_000; i++) monday.add("buyer" + i);
+        for (int i = 5_000; i < 15_000; i++) tuesday.add("buyer" + i);
+
+        monday.merge(tuesday);
+
+        assertEquals(15_000, monday.estimate(), 15_000 * 3 * HyperLogLog.STANDARD_ERROR);
+    }
+
+    @Test
+    @DisplayName("Serialización dispersa con pocos compradores y densa con muchos")
+    void serialization() {
+        HyperLogLog empty = new HyperLogLog();
+        assertEquals(1, empty.toBytes().length);
+        assertTrue(HyperLogLog.fromBytes(empty.toBytes()).isEmpty());
+
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 10; i++) small.add("buyer" + i);
+        byte[] sparse = small.toBytes();
+        assertTrue(sparse.length <= 1 + 10 * 3);
+        assertEquals(small.estimate(), HyperLogLog.fromBytes(sparse).estimate());
+
+        HyperLogLog large = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) large.add("buyer" + i);
+        byte[] dense = large.toBytes();
+        assertEquals(1 + HyperLogLog.REGISTERS, dense.length);
+        assertEquals(large.estimate(), HyperLogLog.fromBytes(dense).estimate());
+    }
+}
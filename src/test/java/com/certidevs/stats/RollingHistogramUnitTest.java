@@ -0,0 +1,92 @@
+package com.certidevs.stats;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingHistogramUnitTest {
+
+    private static final long SLOT = 15_000;
+
+    @Test
+    @DisplayName("Las cubetas cubren todos los valores con error relativo menor del 1,6 %")
+    void bucketsAreContiguous() {
+        long previousUpper = -1;
+        for (int index = 0; index <= RollingHistogram.bucketIndex(1L << 40); index++) {
+            long upper = RollingHistogram.bucketUpperBound(index);
+            assertEquals(index, RollingHistogram.bucketIndex(upper));
+            assertEquals(index, RollingHistogram.bucketIndex(previousUpper + 1));
+            assertTrue((double) (upper - previousUpper - 1) / Math.max(1, upper) < 0.016);
+            previousUpper = upper;
+        }
+    }
+
+    @Test
+    @DisplayName("Percentiles de una distribución uniforme")
+    void percentiles() {
+        RollingHistogram histogram = new RollingHistogram(SLOT, 4, 1_000_000);
+        for (int value = 1; value <= 10_000; value++) {
+            histogram.record(value, 0);
+        }
+
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(4, 0);
+        assertEquals(10_000, snapshot.count());
+        assertEquals(5_000, snapshot.percentile(50), 5_000 * 0.016);
+        assertEquals(9_900, snapshot.percentile(99), 9_900 * 0.016);
+        assertEquals(10_000, snapshot.percentile(100));
+        assertEquals(5_000.5, snapshot.mean(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Los slots fuera de la ventana no cuentan y se reutilizan vacíos")
+    void rollingWindow() {
+        RollingHistogram histogram = new RollingHistogram(SLOT, 4, 1_000);
+        histogram.record(100, 0);
+        histogram.record(5, 3 * SLOT);
+
+        assertEquals(2, histogram.snapshot(4, 3 * SLOT).count());
+        assertEquals(1, histogram.snapshot(1, 3 * SLOT).count());
+        assertEquals(1, histogram.snapshot(4, 4 * SLOT).count()); // El slot 0 ya ha salido de la ventana
+
+        // El anillo tiene 6 slots: la época 6 reutiliza el slot de la 0 (preparado por adelantado)
+        histogram.prepareNext(5 * SLOT);
+        histogram.record(7, 6 * SLOT);
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(4, 6 * SLOT);
+        assertEquals(2, snapshot.count());
+        assertEquals(7, snapshot.max());
+    }
+
+    @Test
+    @DisplayName("Los valores fuera de rango se recortan al máximo")
+    void clampsToMax() {
+        RollingHistogram histogram = new RollingHistogram(SLOT, 4, 1_000);
+        histogram.record(50_000, 0);
+
+        assertEquals(1_000, histogram.snapshot(4, 0).max());
+    }
+
+    @Test
+    @DisplayName("Registros concurrentes sin locks no pierden valores")
+    void concurrentRecords() throws InterruptedException {
+        RollingHistogram histogram = new RollingHistogram(SLOT, 4, 1_000_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 1_000, SLOT);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        RollingHistogram.Snapshot snapshot = histogram.snapshot(4, SLOT);
+        assertEquals(800_000, snapshot.count());
+        assertEquals(8L * 100 * 499_500, snapshot.sum());
+    }
+}
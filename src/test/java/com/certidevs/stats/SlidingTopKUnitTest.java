@@ -0,0 +1,65 @@
+package com.certidevs.stats;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingTopKUnitTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    @DisplayName("Top-N ordenado por unidades dentro de la ventana")
+    void topWithinWindow() {
+        SlidingTopK topK = new SlidingTopK(MINUTE, 5, 4, 16);
+        topK.record(1, 5, 0);
+        topK.record(2, 10, MINUTE);
+        topK.record(3, 1, 2 * MINUTE);
+        topK.record(1, 6, 3 * MINUTE);
+
+        List<SlidingTopK.TopEntry> top = topK.top(2, 4 * MINUTE);
+
+        assertEquals(List.of(1L, 2L), top.stream().map(SlidingTopK.TopEntry::key).toList());
+        assertEquals(11, top.get(0).count());
+    }
+
+    @Test
+    @DisplayName("Las ventas de cubos fuera de la ventana dejan de contar")
+    void oldBucketsExpire() {
+        SlidingTopK topK = new SlidingTopK(MINUTE, 5, 4, 16);
+        topK.record(1, 100, 0);
+        topK.record(2, 1, 5 * MINUTE);
+
+        assertEquals(List.of(2L), topK.top(10, 5 * MINUTE).stream().map(SlidingTopK.TopEntry::key).toList());
+
+        // El cubo 0 se reutiliza en la época 5: las ventas antiguas se descartan al escribir
+        topK.record(3, 1, 5 * MINUTE + 1);
+        assertTrue(topK.top(10, 5 * MINUTE).stream().noneMatch(entry -> entry.key() == 1));
+    }
+
+    @Test
+    @DisplayName("Registros concurrentes desde varios hilos no pierden unidades")
+    void concurrentRecords() throws InterruptedException {
+        SlidingTopK topK = new SlidingTopK(MINUTE, 5, 8, 64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    topK.record(i % 10, 1, 0);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        List<SlidingTopK.TopEntry> top = topK.top(10, 0);
+        assertEquals(10, top.size());
+        top.forEach(entry -> assertEquals(8_000, entry.count()));
+    }
+}
@@ -0,0 +1,51 @@
+package com.certidevs.stats;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingSketchUnitTest {
+
+    @Test
+    @DisplayName("Con menos claves que capacidad las cuentas son exactas")
+    void exactBelowCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        sketch.add(1, 5);
+        sketch.add(2, 3);
+        sketch.add(1, 2);
+
+        Map<Long, long[]> counters = counters(sketch);
+        assertEquals(7, counters.get(1L)[0]);
+        assertEquals(0, counters.get(1L)[1]);
+        assertEquals(3, counters.get(2L)[0]);
+    }
+
+    @Test
+    @DisplayName("Memoria acotada y los elementos frecuentes se conservan con muchas claves raras")
+    void heavyHittersSurvive() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(20);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // 30% de las ventas son del producto 7, el resto se reparte entre 100.000 productos
+            long key = random.nextInt(10) < 3 ? 7 : 1_000 + random.nextInt(100_000);
+            sketch.add(key, 1);
+        }
+
+        assertEquals(20, sketch.size());
+        long[] counter = counters(sketch).get(7L);
+        assertNotNull(counter);
+        assertTrue(counter[0] >= 29_000, "La estimación nunca se queda corta");
+        assertTrue(counter[0] - counter[1] <= 31_000);
+    }
+
+    private static Map<Long, long[]> counters(SpaceSavingSketch sketch) {
+        Map<Long, long[]> counters = new HashMap<>();
+        sketch.forEach(counters::put);
+        return counters;
+    }
+}